@@ -19,10 +19,19 @@ public class AdaptiveBalancingState extends BalancingState {
   @Override
   public void releaseServer(long timeToLastByteMillis, boolean isServerError) {
     if (isServerAvailable()) {
-      upstream.releaseServer(getCurrentServer().getIndex(), !getTriedServers().isEmpty(), isServerError, timeToLastByteMillis, true);
+      upstream.releaseServer(getCurrentServer(), !getTriedServerEntries().isEmpty(), isServerError, timeToLastByteMillis, true);
     }
   }
 
+  @Override
+  ServerEntry acquireHedgeServer() {
+    if (!isServerAvailable()) {
+      return null;
+    }
+    ServerEntry server = acquireAdaptiveServer();
+    return server != null && server.getServer() != getCurrentServer().getServer() ? server : null;
+  }
+
   private ServerEntry acquireAdaptiveServer() {
     if (serverEntryIterator == null) {
       List<ServerEntry> entries = upstream.acquireAdaptiveServers(profile);
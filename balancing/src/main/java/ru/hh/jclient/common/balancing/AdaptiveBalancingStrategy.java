@@ -1,10 +1,8 @@
 package ru.hh.jclient.common.balancing;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import jakarta.annotation.Nullable;
+import java.time.Clock;
 import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
-import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import static ru.hh.jclient.common.balancing.RequestBalancer.WARM_UP_DEFAULT_TIME_MILLIS;
@@ -18,25 +16,21 @@ final class AdaptiveBalancingStrategy {
   private static final int lowestHealthPercent = 2;
   private static final int lowestHealth = lowestHealthPercent * DOWNTIME_DETECTOR_WINDOW / 100;
 
-  static List<Integer> getServers(List<Server> servers, int triesCount) {
-    if (triesCount < 0) {
-      throw new IllegalArgumentException("triesCount should not be negative");
-    }
-
+  /**
+   * Scores are proportional to the share of requests a server should get: inverted response time times health times slow start factor.
+   * Every score is positive.
+   */
+  static long[] getScores(List<Server> servers, @Nullable Float latencyQuantile, Clock clock) {
     int n = servers.size();
-    int count = Math.min(n, triesCount);
-    if (count == 0) {
-      return Collections.emptyList();
-    }
-
-    if (servers.size() == 1) {
-      return Stream.generate(() -> 0).limit(triesCount).toList();
+    long[] scores = new long[n];
+    if (n == 1) {
+      scores[0] = 1;
+      return scores;
     }
 
     boolean[] warmup = null;
-    long[] scores = new long[n];
-    int[] ids = new int[n];
     int[] healths = new int[n];
+    float[] slowStartFactors = new float[n];
 
     // gather statistics
     int i = 0;
@@ -46,11 +40,13 @@ final class AdaptiveBalancingStrategy {
     long warmupCount = 0;
     for (Server server : servers) {
       healths[i] = server.getDowntimeDetector().successCount();
+      slowStartFactors[i] = server.getSlowStartFactor(clock);
 
       var tracker = server.getResponseTimeTracker();
+      long time = latencyQuantile == null ? tracker.mean() : server.getLatencyHistogram().quantile(latencyQuantile);
       LOGGER.debug(
           "balancer gather warmup: {}, time: {}, successCount: {}, server: {}",
-          tracker.isWarmUp(), tracker.mean(), server.getDowntimeDetector().successCount(), server
+          tracker.isWarmUp(), time, server.getDowntimeDetector().successCount(), server
       );
       if (tracker.isWarmUp()) {
         if (warmup == null) {
@@ -59,11 +55,11 @@ final class AdaptiveBalancingStrategy {
         warmup[i] = true;
         warmupCount++;
       } else {
-        long mean = Math.max(1, tracker.mean());
-        scores[i] = mean;
-        min = Math.min(min, mean);
-        max = Math.max(max, mean);
-        sumOfMeans += mean;
+        long latency = Math.max(1, time);
+        scores[i] = latency;
+        min = Math.min(min, latency);
+        max = Math.max(max, latency);
+        sumOfMeans += latency;
       }
 
       i++;
@@ -86,60 +82,19 @@ final class AdaptiveBalancingStrategy {
       }
     }
 
-    // adjust scores based on downtime detector health and response time tracker score
-    long total = 0;
+    // adjust scores based on downtime detector health, response time tracker score and slow start
     for (int j = 0; j < n; j++) {
       long invertedTime = scores[j];
       int health = Math.max(healths[j], lowestHealth);
-      long score = invertedTime * health;
+      long score = Math.max(1, Math.round(invertedTime * health * (double) slowStartFactors[j]));
       LOGGER.debug(
-          "balancer stats health: {}, warmup: {}, inverted_time_score: {}, final_score: {}, server: {}",
-          health, warmup != null && warmup[j], invertedTime, score, servers.get(j)
+          "balancer stats health: {}, warmup: {}, inverted_time_score: {}, slow_start_factor: {}, final_score: {}, server: {}",
+          health, warmup != null && warmup[j], invertedTime, slowStartFactors[j], score, servers.get(j)
       );
-      total += score;
       scores[j] = score;
-      ids[j] = j;
-    }
-
-    // weighted-randomly pick count elements
-    List<Integer> shuffled = new ArrayList<>(triesCount);
-    for (int j = n - 1, r = count - 1; j >= 0 && r >= 0; j--, r--) { // index to put new random element
-      long pick = ThreadLocalRandom.current().nextLong(total);
-      long sum = 0L;
-      for (int k = 0; k <= j; k++) { // random index of element to swap
-        sum += scores[k];
-        if (pick < sum) {
-          shuffled.add(ids[k]);
-          LOGGER.debug("balancer pick for retry: {}, idx: {}, server: {}", n - 1 - j, ids[k], servers.get(ids[k]));
-          total -= scores[k];
-          swap(scores, ids, k, j);
-          break;
-        }
-      }
-    }
-
-    if (triesCount == count) {
-      return shuffled;
-    }
-
-    for (int j = 0; j < triesCount - count; j++) {
-      shuffled.add(shuffled.get(j % count));
     }
-    return shuffled;
-  }
-
-  private static void swap(long[] scores, int[] ids, int a, int b) {
-    if (a == b) {
-      return;
-    }
-
-    long c = scores[a];
-    scores[a] = scores[b];
-    scores[b] = c;
 
-    int d = ids[a];
-    ids[a] = ids[b];
-    ids[b] = d;
+    return scores;
   }
 
   private AdaptiveBalancingStrategy() {
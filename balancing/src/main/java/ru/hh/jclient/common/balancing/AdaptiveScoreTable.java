@@ -0,0 +1,118 @@
+package ru.hh.jclient.common.balancing;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptive scores of servers of an upstream snapshot, computed once and shared by requests until the table gets stale:
+ * on any error, once there were as many releases as servers, or after {@link #MAX_AGE_NANOS}.
+ * So requests draw servers from {@link AliasTable} instead of reading statistics of every server,
+ * and rebuilding costs O(1) per request on average.
+ * Outlier ejection state is taken at build time as well: ejection is caused by an error, which makes the table stale at once.
+ */
+final class AdaptiveScoreTable {
+  static final long MAX_AGE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private final UpstreamSnapshot snapshot;
+  private final long createdNanos;
+  /**
+   * snapshot indexes of servers scores are drawn for
+   */
+  private final int[] ids;
+  private final AliasTable aliasTable;
+  private final int[] ejectedIds;
+  private final boolean onlyEjected;
+  private final AtomicInteger releases = new AtomicInteger();
+  private volatile boolean stale;
+
+  private AdaptiveScoreTable(UpstreamSnapshot snapshot, long createdNanos, int[] ids, AliasTable aliasTable, int[] ejectedIds,
+                             boolean onlyEjected) {
+    this.snapshot = snapshot;
+    this.createdNanos = createdNanos;
+    this.ids = ids;
+    this.aliasTable = aliasTable;
+    this.ejectedIds = ejectedIds;
+    this.onlyEjected = onlyEjected;
+  }
+
+  /**
+   * Ejected outliers are left out unless every server is ejected.
+   */
+  static AdaptiveScoreTable create(UpstreamSnapshot snapshot, long nowNanos, Clock clock) {
+    boolean ejectionEnabled = snapshot.getOutlierEjectionConfig() != null;
+    int[] allowedIds = new int[snapshot.size()];
+    int[] ejectedIds = new int[ejectionEnabled ? snapshot.size() : 0];
+    int allowedCount = 0;
+    int ejectedCount = 0;
+    for (int i = 0; i < snapshot.size(); i++) {
+      Server server = snapshot.getServer(i);
+      if (server == null) {
+        continue;
+      }
+      if (ejectionEnabled && server.getOutlierDetector().getEjectedUntilMillis() != 0) {
+        ejectedIds[ejectedCount++] = i;
+      } else {
+        allowedIds[allowedCount++] = i;
+      }
+    }
+    boolean onlyEjected = allowedCount == 0;
+    int[] ids = onlyEjected ? Arrays.copyOf(ejectedIds, ejectedCount) : Arrays.copyOf(allowedIds, allowedCount);
+    List<Server> servers = new ArrayList<>(ids.length);
+    for (int id : ids) {
+      servers.add(snapshot.getServer(id));
+    }
+    long[] scores = AdaptiveBalancingStrategy.getScores(servers, snapshot.getConfigs().getAdaptiveLatencyQuantile(), clock);
+    return new AdaptiveScoreTable(snapshot, nowNanos, ids, new AliasTable(scores), Arrays.copyOf(ejectedIds, ejectedCount), onlyEjected);
+  }
+
+  boolean isStale(UpstreamSnapshot currentSnapshot, long nowNanos) {
+    return snapshot != currentSnapshot || stale || releases.get() >= ids.length || nowNanos - createdNanos >= MAX_AGE_NANOS;
+  }
+
+  /**
+   * @return snapshot the table was built for, indexes of the table point at its servers
+   */
+  UpstreamSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  void onRelease(boolean isError) {
+    if (isError) {
+      stale = true;
+    } else {
+      releases.incrementAndGet();
+    }
+  }
+
+  /**
+   * @return snapshot indexes of distinct servers, repeated in the same order if there are less servers than tries
+   */
+  int[] sample(int triesCount) {
+    if (ids.length == 0 || triesCount <= 0) {
+      return new int[0];
+    }
+    int[] picked = aliasTable.sample(triesCount);
+    for (int i = 0; i < picked.length; i++) {
+      picked[i] = ids[picked[i]];
+    }
+    return picked;
+  }
+
+  /**
+   * @return snapshot indexes of servers that were ejected at build time
+   */
+  int[] getEjectedIds() {
+    return ejectedIds;
+  }
+
+  /**
+   * @return whether every server was ejected at build time, then ejected servers are drawn as well
+   */
+  boolean isOnlyEjected() {
+    return onlyEjected;
+  }
+}
@@ -0,0 +1,145 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Vose's alias method: after O(n) construction draws an index with probability proportional to its weight in O(1).
+ * Immutable, so a table can be shared by concurrent requests.
+ */
+final class AliasTable {
+  /**
+   * draws of already picked indexes before the rest is scanned linearly, only reached when picked indexes hold most of the weight
+   */
+  static final int MAX_REDRAWS = 16;
+
+  private final long[] weights;
+  private final double[] probabilities;
+  private final int[] aliases;
+
+  /**
+   * @param weights non-negative, indexes with zero weight are drawn only if all weights are zero
+   */
+  AliasTable(long[] weights) {
+    int n = weights.length;
+    this.weights = weights;
+    this.probabilities = new double[n];
+    this.aliases = new int[n];
+
+    long total = 0;
+    for (long weight : weights) {
+      total += weight;
+    }
+    if (total <= 0) {
+      Arrays.fill(probabilities, 1);
+      return;
+    }
+
+    double[] scaled = new double[n];
+    int[] small = new int[n];
+    int[] large = new int[n];
+    int smallCount = 0;
+    int largeCount = 0;
+    for (int i = 0; i < n; i++) {
+      scaled[i] = (double) weights[i] * n / total;
+      if (scaled[i] < 1) {
+        small[smallCount++] = i;
+      } else {
+        large[largeCount++] = i;
+      }
+    }
+    while (smallCount > 0 && largeCount > 0) {
+      int less = small[--smallCount];
+      int more = large[--largeCount];
+      probabilities[less] = scaled[less];
+      aliases[less] = more;
+      scaled[more] = scaled[more] + scaled[less] - 1;
+      if (scaled[more] < 1) {
+        small[smallCount++] = more;
+      } else {
+        large[largeCount++] = more;
+      }
+    }
+    // the rest is 1 up to rounding errors
+    while (largeCount > 0) {
+      probabilities[large[--largeCount]] = 1;
+    }
+    while (smallCount > 0) {
+      probabilities[small[--smallCount]] = 1;
+    }
+  }
+
+  int size() {
+    return weights.length;
+  }
+
+  int draw() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int index = random.nextInt(weights.length);
+    return random.nextDouble() < probabilities[index] ? index : aliases[index];
+  }
+
+  /**
+   * Draws distinct indexes one after another, each with probability proportional to its weight among the ones not drawn yet.
+   * If more indexes are requested than there are, drawn ones are repeated in the same order.
+   */
+  int[] sample(int count) {
+    int n = weights.length;
+    int[] picked = new int[count];
+    int distinctCount = Math.min(n, count);
+    for (int i = 0; i < distinctCount; i++) {
+      picked[i] = drawExcluding(picked, i);
+    }
+    for (int i = distinctCount; i < count; i++) {
+      picked[i] = picked[i % distinctCount];
+    }
+    return picked;
+  }
+
+  /**
+   * A draw of a picked index is simply repeated, which is the same as drawing from the rest with their weights.
+   */
+  private int drawExcluding(int[] picked, int pickedCount) {
+    for (int i = 0; i < MAX_REDRAWS; i++) {
+      int index = draw();
+      if (!contains(picked, pickedCount, index)) {
+        return index;
+      }
+    }
+    return scanExcluding(picked, pickedCount);
+  }
+
+  private int scanExcluding(int[] picked, int pickedCount) {
+    long total = 0;
+    int last = -1;
+    for (int i = 0; i < weights.length; i++) {
+      if (!contains(picked, pickedCount, i)) {
+        total += weights[i];
+        last = i;
+      }
+    }
+    if (total <= 0) {
+      return last;
+    }
+    long pick = ThreadLocalRandom.current().nextLong(total);
+    long sum = 0;
+    for (int i = 0; i < weights.length; i++) {
+      if (!contains(picked, pickedCount, i)) {
+        sum += weights[i];
+        if (pick < sum) {
+          return i;
+        }
+      }
+    }
+    return last;
+  }
+
+  private static boolean contains(int[] values, int count, int value) {
+    for (int i = 0; i < count; i++) {
+      if (values[i] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -2,6 +2,7 @@ package ru.hh.jclient.common.balancing;
 
 import java.util.function.UnaryOperator;
 import ru.hh.jclient.common.HttpClient;
+import ru.hh.jclient.common.HttpClientFactory;
 import ru.hh.jclient.common.RequestStrategy;
 import ru.hh.jclient.consul.UpstreamConfigService;
 import ru.hh.jclient.consul.UpstreamService;
@@ -38,6 +39,13 @@ public class BalancingRequestStrategy implements RequestStrategy<RequestBalancer
     return configAction.apply(builder);
   }
 
+  @Override
+  public void startConnectionPrewarm(HttpClientFactory httpClientFactory, int connectionsPerServer, String path, double timeoutMultiplier) {
+    upstreamManager.startConnectionPrewarm(
+        new ConnectionPrewarmer(httpClientFactory, connectionsPerServer, path, timeoutMultiplier, upstreamManager.getMonitoring())
+    );
+  }
+
   @Override
   public BalancingRequestStrategy createCustomizedCopy(UnaryOperator<RequestBalancerBuilder> configAction) {
     UnaryOperator<RequestBalancerBuilder> chainedConfigAction = this.configAction.andThen(configAction)::apply;
@@ -1,19 +1,39 @@
 package ru.hh.jclient.common.balancing;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
+import ru.hh.jclient.common.TransportConfig;
 import ru.hh.jclient.common.balancing.config.BalancingStrategyType;
 
 public class BalancingState {
   protected final Upstream upstream;
   protected final String profile;
-  private final Set<Integer> triedServers;
+  private final String affinityKey;
+  /**
+   * entries rather than indexes: servers may be updated between tries, and then indexes point at other servers
+   */
+  private final List<ServerEntry> triedServers;
   private ServerEntry currentServer;
+  /**
+   * server of a hedged attempt whose result is not used
+   */
+  private ServerEntry abandonedServer;
+  private boolean concurrencyAcquired;
 
   public BalancingState(Upstream upstream, String profile) {
+    this(upstream, profile, null);
+  }
+
+  /**
+   * @param affinityKey requests with the same key go to the same server if upstream uses consistent hash balancing
+   */
+  public BalancingState(Upstream upstream, String profile, String affinityKey) {
     this.upstream = upstream;
     this.profile = profile;
-    this.triedServers = new HashSet<>();
+    this.affinityKey = affinityKey;
+    this.triedServers = new ArrayList<>();
   }
 
   public UpstreamConfig getUpstreamConfig() {
@@ -34,30 +54,171 @@ public class BalancingState {
 
   public void incrementTries() {
     if (isServerAvailable()) {
-      triedServers.add(currentServer.getIndex());
+      triedServers.add(currentServer);
       currentServer = null;
     }
+    if (abandonedServer != null) {
+      triedServers.add(abandonedServer);
+      abandonedServer = null;
+    }
   }
 
   public void acquireServer() {
-    setCurrentServer(upstream.acquireServer(getTriedServers()));
+    setCurrentServer(upstream.acquireServerExcluding(getTriedServerEntries(), affinityKey));
   }
 
   public void releaseServer(long timeToLastByteMillis, boolean isServerError) {
     if (isServerAvailable()) {
-      upstream.releaseServer(getCurrentServer().getIndex(), !getTriedServers().isEmpty(), isServerError, timeToLastByteMillis, false);
+      upstream.releaseServer(getCurrentServer(), !getTriedServerEntries().isEmpty(), isServerError, timeToLastByteMillis, false);
     }
   }
 
-  protected Set<Integer> getTriedServers() {
+  /**
+   * @return server for a hedged attempt, different from the current one, or null if there is none
+   */
+  ServerEntry acquireHedgeServer() {
+    if (!isServerAvailable()) {
+      return null;
+    }
+    List<ServerEntry> excludedServers = new ArrayList<>(triedServers);
+    excludedServers.add(currentServer);
+    ServerEntry server = upstream.acquireServerExcluding(excludedServers, affinityKey);
+    if (server != null && excludedServers.stream().anyMatch(excluded -> excluded.getServer() == server.getServer())) {
+      upstream.releaseCancelledServer(server, false, false);
+      return null;
+    }
+    return server;
+  }
+
+  /**
+   * Releases server and concurrency of an attempt that completed without a response, so there are no statistics to learn from.
+   */
+  void releaseFailedRequest() {
+    if (isServerAvailable()) {
+      upstream.releaseCancelledServer(currentServer, true, getBalancingStrategyType() == BalancingStrategyType.ADAPTIVE);
+    }
+    releaseConcurrency(-1, false);
+  }
+
+  /**
+   * Releases server of an attempt that lost to another one. The server is not picked again by retries.
+   */
+  void releaseCancelledServer(ServerEntry server) {
+    upstream.releaseCancelledServer(server, true, getBalancingStrategyType() == BalancingStrategyType.ADAPTIVE);
+    abandonedServer = server;
+  }
+
+  /**
+   * Releases server of an attempt that failed while another one is in flight, the failure is counted in server statistics.
+   * The server is not picked again by retries.
+   */
+  void releaseFailedServer(ServerEntry server, long timeToLastByteMillis, boolean isServerError) {
+    boolean adaptive = getBalancingStrategyType() == BalancingStrategyType.ADAPTIVE;
+    upstream.releaseServer(server, false, isServerError, timeToLastByteMillis, adaptive);
+    abandonedServer = server;
+  }
+
+  boolean tryAcquireConcurrency() {
+    concurrencyAcquired = upstream.tryAcquireConcurrency();
+    return concurrencyAcquired;
+  }
+
+  /**
+   * @param responseTimeMillis response time of the attempt, or negative value if the attempt was not sent
+   * @return new concurrency limit if the response changed it, -1 otherwise
+   */
+  int releaseConcurrency(long responseTimeMillis, boolean isServerError) {
+    if (!concurrencyAcquired) {
+      return -1;
+    }
+    concurrencyAcquired = false;
+    if (responseTimeMillis < 0) {
+      upstream.cancelConcurrency();
+      return -1;
+    }
+    return upstream.releaseConcurrency(responseTimeMillis, isServerError);
+  }
+
+  /**
+   * A hedged attempt is in flight along with the current one, so it takes a permit of its own.
+   */
+  boolean tryAcquireHedgeConcurrency() {
+    return upstream.tryAcquireConcurrency();
+  }
+
+  /**
+   * Releases the permit of one of two attempts in flight together, the one that is left keeps the permit of the request.
+   *
+   * @param responseTimeMillis response time of the attempt, or negative value if there is no response
+   * @return new concurrency limit if the response changed it, -1 otherwise
+   */
+  int releaseHedgeConcurrency(long responseTimeMillis, boolean isServerError) {
+    if (responseTimeMillis < 0) {
+      upstream.cancelConcurrency();
+      return -1;
+    }
+    return upstream.releaseConcurrency(responseTimeMillis, isServerError);
+  }
+
+  int getConcurrencyLimit() {
+    return upstream.getConcurrencyLimit();
+  }
+
+  void onFirstAttemptSuccess() {
+    upstream.onFirstAttemptSuccess();
+  }
+
+  boolean tryAcquireRetry() {
+    return upstream.tryAcquireRetry();
+  }
+
+  /**
+   * @return the lowest mean response time among servers a retry may go to, or -1 if it is unknown
+   */
+  long getExpectedRetryResponseTimeMillis() {
+    if (!isServerAvailable()) {
+      return upstream.getExpectedRetryResponseTimeMillis(triedServers);
+    }
+    List<ServerEntry> excludedServers = new ArrayList<>(triedServers);
+    excludedServers.add(currentServer);
+    return upstream.getExpectedRetryResponseTimeMillis(excludedServers);
+  }
+
+  boolean isCurrentServerRemote() {
+    return isServerAvailable() && upstream.isRemote(currentServer.getDatacenter());
+  }
+
+  float getCrossDcSpilloverShare() {
+    return upstream.getCrossDcSpilloverShare();
+  }
+
+  long getResponseTimeQuantile(float quantile) {
+    return upstream.getResponseTimeQuantile(quantile);
+  }
+
+  protected List<ServerEntry> getTriedServerEntries() {
     return triedServers;
   }
 
+  /**
+   * @deprecated use {@link #getTriedServerEntries()}. Indexes may point at other servers after an update of the upstream,
+   * and the set is a copy now, changing it does not affect the state
+   */
+  @Deprecated
+  protected Set<Integer> getTriedServers() {
+    return triedServers.stream().map(ServerEntry::getIndex).collect(Collectors.toSet());
+  }
+
   void setCurrentServer(ServerEntry currentServer) {
     this.currentServer = currentServer;
   }
 
+  TransportConfig getTransportConfig(double timeoutMultiplier) {
+    return upstream.getTransportConfig(getUpstreamConfig(), timeoutMultiplier);
+  }
+
   BalancingStrategyType getBalancingStrategyType() {
-    return BalancingStrategyType.WEIGHTED;
+    BalancingStrategyType balancingStrategyType = upstream.getBalancingStrategyType();
+    return balancingStrategyType == BalancingStrategyType.ADAPTIVE ? BalancingStrategyType.WEIGHTED : balancingStrategyType;
   }
 }
@@ -1,11 +1,8 @@
 package ru.hh.jclient.common.balancing;
 
-import jakarta.annotation.Nonnull;
 import java.time.Clock;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Objects;
 import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,85 +10,75 @@ import org.slf4j.LoggerFactory;
 final class BalancingStrategy {
   private static final Logger LOGGER = LoggerFactory.getLogger(BalancingStrategy.class);
 
-  static int getLeastLoadedServer(
-      List<Server> servers,
-      Set<Integer> excludedServers,
-      String currentDatacenter,
-      Clock clock
-  ) {
+  /**
+   * Servers are ordered by (excluded, differentDC, load), the least one wins. Ejected outliers are ordered as excluded ones.
+   * The scan keeps the current minimum in locals, so picking a server allocates nothing.
+   *
+   * @param preferRemote if true, servers of other datacenters go before local ones, see {@link CrossDcSpilloverEstimator}
+   */
+  static int getLeastLoadedServer(UpstreamSnapshot snapshot, Set<Integer> excludedServers, Clock clock, boolean preferRemote) {
+    List<Server> servers = snapshot.getServers();
+    int size = snapshot.size();
+    boolean hasExcluded = !excludedServers.isEmpty();
+    long nowMillis = snapshot.getOutlierEjectionConfig() != null ? clock.millis() : 0;
+
     int minIndex = -1;
-    Weight minWeight = null;
-    String[] serverStatLog = LOGGER.isTraceEnabled() ? new String[servers.size()] : null;
-    for (int index = 0; index < servers.size(); index++) {
-      Server server = servers.get(index);
+    boolean minExcluded = false;
+    boolean minDifferentDC = false;
+    float minLoad = 0f;
+    String[] serverStatLog = LOGGER.isTraceEnabled() ? new String[size] : null;
+    for (int index = 0; index < size; index++) {
+      Server server = snapshot.getServer(index);
 
       if (server == null) {
         continue;
       }
 
-      boolean isDifferentDC = !Objects.equals(currentDatacenter, server.getDatacenter());
-
-      float statLoad = server.getStatLoad(servers, clock);
-      Weight weight = new Weight(excludedServers.contains(index), isDifferentDC, statLoad);
-      if (LOGGER.isTraceEnabled()) {
+      boolean excluded = hasExcluded && excludedServers.contains(index) || snapshot.isEjected(server, nowMillis);
+      boolean differentDC = snapshot.isRemote(server);
+      float load = server.getStatLoad(servers, clock);
+      if (serverStatLog != null) {
         serverStatLog[index] = "{static balancer stats for " + server
-            + ", excluded:" + weight.isExcluded()
-            + ", differentDC:" + weight.isDifferentDC()
-            + ", load:" + weight.getLoad() + '}';
+            + ", excluded:" + excluded
+            + ", differentDC:" + differentDC
+            + ", load:" + load + '}';
       }
 
-      if (minIndex < 0 || minWeight.compareTo(weight) > 0) {
+      if (minIndex < 0 || isLess(excluded, differentDC != preferRemote, load, minExcluded, minDifferentDC != preferRemote, minLoad)) {
         minIndex = index;
-        minWeight = weight;
+        minExcluded = excluded;
+        minDifferentDC = differentDC;
+        minLoad = load;
       }
     }
 
-    if (minIndex != -1) {
-      LOGGER.debug("static balancer pick excluded:{} differentDC:{}, load:{} for server idx={}:{}{}",
-          minWeight.isExcluded(), minWeight.isDifferentDC(), minWeight.getLoad(),
-          minIndex, servers.get(minIndex),
-          !LOGGER.isTraceEnabled() ? ""
-              : (" of " + Arrays.toString(serverStatLog) + " with excluded idx=" + excludedServers)
-      );
-    } else {
-      LOGGER.debug("no server available");
+    if (LOGGER.isDebugEnabled()) {
+      if (minIndex != -1) {
+        LOGGER.debug("static balancer pick excluded:{} differentDC:{}, load:{} for server idx={}:{}{}",
+            minExcluded, minDifferentDC, minLoad,
+            minIndex, servers.get(minIndex),
+            serverStatLog == null ? "" : (" of " + Arrays.toString(serverStatLog) + " with excluded idx=" + excludedServers)
+        );
+      } else {
+        LOGGER.debug("no server available");
+      }
     }
     return minIndex;
   }
 
-  private BalancingStrategy() {
-  }
-
-  private static final class Weight implements Comparable<Weight> {
-    private static final Comparator<Weight> weightComparator = Comparator
-        .comparing(Weight::isExcluded)
-        .thenComparing(Weight::isDifferentDC)
-        .thenComparingDouble(Weight::getLoad);
-    private final boolean excluded;
-    private final boolean differentDC;
-    private final float load;
-
-    Weight(boolean excluded, boolean differentDC, float load) {
-      this.excluded = excluded;
-      this.differentDC = differentDC;
-      this.load = load;
-    }
-
-    public boolean isDifferentDC() {
-      return differentDC;
-    }
-
-    public float getLoad() {
-      return load;
+  private static boolean isLess(
+      boolean excluded, boolean secondaryDC, float load,
+      boolean minExcluded, boolean minSecondaryDC, float minLoad
+  ) {
+    if (excluded != minExcluded) {
+      return !excluded;
     }
-
-    public boolean isExcluded() {
-      return excluded;
+    if (secondaryDC != minSecondaryDC) {
+      return !secondaryDC;
     }
+    return Float.compare(load, minLoad) < 0;
+  }
 
-    @Override
-    public int compareTo(@Nonnull Weight other) {
-      return weightComparator.compare(this, other);
-    }
+  private BalancingStrategy() {
   }
 }
@@ -3,6 +3,7 @@ package ru.hh.jclient.common.balancing;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import static java.util.Objects.requireNonNull;
@@ -25,6 +26,7 @@ public class BalancingUpstreamManager implements UpstreamManager {
   private final Map<String, Upstream> upstreams = new ConcurrentHashMap<>();
   private final Set<Monitoring> monitoring;
   private final String datacenter;
+  private volatile ConnectionPrewarmer connectionPrewarmer;
 
   public BalancingUpstreamManager(ConfigStore configStore,
                                   ServerStore serverStore,
@@ -42,6 +44,7 @@ public class BalancingUpstreamManager implements UpstreamManager {
   }
 
   private void updateUpstream(@Nonnull String upstreamName) {
+    long serversVersion = serverStore.getVersion(upstreamName);
     List<Server> servers = serverStore.getServers(upstreamName);
 
     if (servers.isEmpty() && serverStore.getInitialSize(upstreamName).filter(val -> val > 0).isPresent()) {
@@ -55,20 +58,37 @@ public class BalancingUpstreamManager implements UpstreamManager {
       LOGGER.debug("Config for upstream {} is not found", upstreamName);
       return;
     }
-    upstreams.compute(upstreamName, (serviceName, upstream) -> {
+    Upstream currentUpstream = upstreams.get(upstreamName);
+    List<Server> previousServers = currentUpstream != null ? currentUpstream.getServers() : List.of();
+    Upstream updatedUpstream = upstreams.compute(upstreamName, (serviceName, upstream) -> {
       if (upstream == null) {
         upstream = createUpstream(upstreamName, newConfig, servers);
       } else {
-        upstream.update(newConfig, servers);
+        upstream.update(newConfig, servers, serversVersion);
       }
       return upstream;
     });
+
+    ConnectionPrewarmer prewarmer = connectionPrewarmer;
+    if (prewarmer != null) {
+      Set<Server> knownServers = new HashSet<>(previousServers);
+      List<Server> addedServers = servers.stream().filter(server -> server != null && !knownServers.contains(server)).toList();
+      if (!addedServers.isEmpty()) {
+        prewarmer.prewarm(updatedUpstream, addedServers);
+      }
+    }
   }
 
   private Upstream createUpstream(String upstreamName, UpstreamConfigs upstreamConfigs, List<Server> servers) {
     return new Upstream(upstreamName, upstreamConfigs, servers, datacenter);
   }
 
+  @Override
+  public void startConnectionPrewarm(ConnectionPrewarmer connectionPrewarmer) {
+    this.connectionPrewarmer = connectionPrewarmer;
+    upstreams.values().forEach(upstream -> connectionPrewarmer.prewarm(upstream, upstream.getServers()));
+  }
+
   @Override
   public Upstream getUpstream(String serviceName, @Nullable String profile) {
     return upstreams.get(getNameWithoutScheme(serviceName));
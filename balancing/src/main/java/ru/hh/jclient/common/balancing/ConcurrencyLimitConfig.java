@@ -0,0 +1,41 @@
+package ru.hh.jclient.common.balancing;
+
+public final class ConcurrencyLimitConfig {
+  static final int DEFAULT_INITIAL_LIMIT = 20;
+  static final int DEFAULT_MIN_LIMIT = 1;
+  static final int DEFAULT_MAX_LIMIT = 1000;
+
+  private final int initialLimit;
+  private final int minLimit;
+  private final int maxLimit;
+
+  ConcurrencyLimitConfig(int initialLimit, int minLimit, int maxLimit) {
+    this.initialLimit = initialLimit;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+  }
+
+  /**
+   * limit of requests in flight to the upstream before the first adjustment
+   */
+  public int getInitialLimit() {
+    return initialLimit;
+  }
+
+  public int getMinLimit() {
+    return minLimit;
+  }
+
+  public int getMaxLimit() {
+    return maxLimit;
+  }
+
+  @Override
+  public String toString() {
+    return "ConcurrencyLimitConfig{" +
+        "initialLimit=" + initialLimit +
+        ", minLimit=" + minLimit +
+        ", maxLimit=" + maxLimit +
+        '}';
+  }
+}
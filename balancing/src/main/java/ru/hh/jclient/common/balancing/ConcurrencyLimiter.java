@@ -0,0 +1,133 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Vegas-style adaptive limit of requests in flight to an upstream.
+ * Every response is a sample of round trip time, and the smallest one is taken as time without queueing.
+ * Their ratio estimates how many requests wait in upstream queues: limit * (1 - noLoadRtt / rtt).
+ * The limit grows while the queue stays below {@link #ALPHA} * log10(limit) and shrinks once it exceeds {@link #BETA} * log10(limit),
+ * as well as on every server error. Samples taken while less than half of the limit is used say nothing about the limit and are skipped.
+ * Time without queueing is probed again every {@link #PROBE_MULTIPLIER} * limit samples, so the limit follows an upstream that got slower.
+ * Acquiring stays lock-free, only samples are serialized.
+ */
+final class ConcurrencyLimiter {
+  static final int ALPHA = 3;
+  static final int BETA = 6;
+  static final int PROBE_MULTIPLIER = 30;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  /**
+   * null if requests are not limited
+   */
+  private volatile ConcurrencyLimitConfig config;
+  private volatile int limit;
+
+  // guarded by this
+  private double estimatedLimit;
+  private long noLoadRttMillis;
+  private long samplesUntilProbe;
+
+  synchronized void setConfig(ConcurrencyLimitConfig config) {
+    ConcurrencyLimitConfig previous = this.config;
+    if (config != null) {
+      double initial = previous == null ? config.getInitialLimit() : estimatedLimit;
+      estimatedLimit = Math.max(config.getMinLimit(), Math.min(config.getMaxLimit(), initial));
+      limit = (int) estimatedLimit;
+      samplesUntilProbe = (long) PROBE_MULTIPLIER * limit;
+    }
+    this.config = config;
+  }
+
+  /**
+   * Requests are counted even if the limit is disabled, so a config update does not unbalance {@link #release} calls.
+   *
+   * @return false if the limit is reached and the request should be rejected
+   */
+  boolean tryAcquire() {
+    if (config == null) {
+      inFlight.incrementAndGet();
+      return true;
+    }
+    int current;
+    do {
+      current = inFlight.get();
+      if (current >= limit) {
+        return false;
+      }
+    } while (!inFlight.compareAndSet(current, current + 1));
+    return true;
+  }
+
+  /**
+   * Releases a request that was not sent.
+   */
+  void cancel() {
+    inFlight.decrementAndGet();
+  }
+
+  /**
+   * @param isError whether the response is a server error, which is treated as a sign of overload
+   * @return new limit if the sample changed it, -1 otherwise
+   */
+  int release(long rttMillis, boolean isError) {
+    int inFlightBefore = inFlight.getAndDecrement();
+    if (config == null) {
+      return -1;
+    }
+    synchronized (this) {
+      ConcurrencyLimitConfig config = this.config;
+      if (config == null) {
+        return -1;
+      }
+      int previousLimit = limit;
+      double newLimit = getNewLimit(Math.max(rttMillis, 1), isError, inFlightBefore);
+      estimatedLimit = Math.max(config.getMinLimit(), Math.min(config.getMaxLimit(), newLimit));
+      limit = (int) estimatedLimit;
+      return limit != previousLimit ? limit : -1;
+    }
+  }
+
+  private double getNewLimit(long rttMillis, boolean isError, int inFlight) {
+    if (--samplesUntilProbe <= 0) {
+      samplesUntilProbe = (long) PROBE_MULTIPLIER * limit;
+      noLoadRttMillis = rttMillis;
+      return estimatedLimit;
+    }
+    if (noLoadRttMillis == 0 || rttMillis < noLoadRttMillis) {
+      noLoadRttMillis = rttMillis;
+      return estimatedLimit;
+    }
+    double log = Math.max(1, Math.log10(estimatedLimit));
+    if (isError) {
+      return estimatedLimit - log;
+    }
+    if (inFlight * 2 < estimatedLimit) {
+      return estimatedLimit;
+    }
+    double queueSize = Math.ceil(estimatedLimit * (1 - (double) noLoadRttMillis / rttMillis));
+    if (queueSize < ALPHA * log) {
+      return estimatedLimit + log;
+    }
+    if (queueSize > BETA * log) {
+      return estimatedLimit - log;
+    }
+    return estimatedLimit;
+  }
+
+  int getLimit() {
+    return limit;
+  }
+
+  int getInFlight() {
+    return inFlight.get();
+  }
+
+  @Override
+  public String toString() {
+    return "ConcurrencyLimiter{" +
+        "limit=" + limit +
+        ", inFlight=" + inFlight +
+        '}';
+  }
+}
@@ -0,0 +1,33 @@
+package ru.hh.jclient.common.balancing;
+
+public final class ConnectionPoolConfig {
+  private final int maxConnectionsPerHost;
+  private final int idleTimeoutMs;
+
+  ConnectionPoolConfig(int maxConnectionsPerHost, int idleTimeoutMs) {
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+    this.idleTimeoutMs = idleTimeoutMs;
+  }
+
+  /**
+   * limit of connections to a server of the upstream, 0 means the one of the http client factory
+   */
+  public int getMaxConnectionsPerHost() {
+    return maxConnectionsPerHost;
+  }
+
+  /**
+   * time an unused connection stays in the pool, 0 means the one of the http client factory
+   */
+  public int getIdleTimeoutMs() {
+    return idleTimeoutMs;
+  }
+
+  @Override
+  public String toString() {
+    return "ConnectionPoolConfig{" +
+        "maxConnectionsPerHost=" + maxConnectionsPerHost +
+        ", idleTimeoutMs=" + idleTimeoutMs +
+        '}';
+  }
+}
@@ -0,0 +1,91 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.hh.jclient.common.HttpClientFactory;
+import ru.hh.jclient.common.Monitoring;
+import ru.hh.jclient.common.RequestContext;
+import ru.hh.jclient.common.TransportConfig;
+import ru.hh.jclient.common.Uri;
+import static ru.hh.jclient.common.balancing.Upstream.DEFAULT_PROFILE;
+
+/**
+ * Opens keep-alive connections to new servers of upstreams in the background, so that the first requests to them
+ * do not pay for TCP and TLS handshakes. Connections are opened with the transport config of the default profile,
+ * so they get into the pool its requests use. Results are recorded as server health, see {@link Upstream#recordPrewarmResult}.
+ */
+public final class ConnectionPrewarmer {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPrewarmer.class);
+  private static final String DEFAULT_SCHEME = "http";
+
+  private final HttpClientFactory httpClientFactory;
+  private final int connectionsPerServer;
+  private final String path;
+  private final double timeoutMultiplier;
+  private final Set<Monitoring> monitorings;
+
+  ConnectionPrewarmer(
+      HttpClientFactory httpClientFactory,
+      int connectionsPerServer,
+      String path,
+      double timeoutMultiplier,
+      Set<Monitoring> monitorings
+  ) {
+    this.httpClientFactory = httpClientFactory;
+    this.connectionsPerServer = connectionsPerServer;
+    this.path = path;
+    this.timeoutMultiplier = timeoutMultiplier;
+    this.monitorings = monitorings;
+  }
+
+  /**
+   * Returns at once, connections are opened asynchronously.
+   */
+  void prewarm(Upstream upstream, Collection<Server> servers) {
+    try {
+      TransportConfig transportConfig = upstream.getTransportConfig(upstream.getConfig(DEFAULT_PROFILE), timeoutMultiplier);
+      for (Server server : servers) {
+        if (server != null) {
+          prewarm(upstream, server, transportConfig);
+        }
+      }
+    } catch (RuntimeException e) {
+      LOGGER.warn("Failed to prewarm connections to servers of upstream {}", upstream.getName(), e);
+    }
+  }
+
+  private void prewarm(Upstream upstream, Server server, TransportConfig transportConfig) {
+    String scheme = server.getAddressScheme() != null ? server.getAddressScheme() : DEFAULT_SCHEME;
+    Uri uri = new Uri(scheme, null, server.getAddressHost(), server.getAddressPort(), path, null);
+    String datacenter = Optional.ofNullable(server.getDatacenter()).map(String::toLowerCase).orElse(null);
+    RequestContext context = new RequestContext(upstream.getName(), datacenter, server.getHostName(), false, transportConfig);
+    LOGGER.debug("Prewarming {} connections to server {} of upstream {}", connectionsPerServer, server.getAddress(), upstream.getName());
+    for (int i = 0; i < connectionsPerServer; i++) {
+      long startNanos = System.nanoTime();
+      httpClientFactory.prewarmConnection(uri, context).whenComplete((ignored, throwable) -> {
+        long timeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        onResult(upstream, server, datacenter, timeMillis, throwable);
+      });
+    }
+  }
+
+  private void onResult(Upstream upstream, Server server, String datacenter, long timeMillis, Throwable throwable) {
+    boolean isError = throwable != null;
+    if (isError) {
+      LOGGER.warn("Failed to prewarm connection to server {} of upstream {} in {} ms: {}", server.getAddress(), upstream.getName(),
+          timeMillis, throwable.toString());
+    }
+    upstream.recordPrewarmResult(server, isError);
+    for (Monitoring monitoring : monitorings) {
+      try {
+        monitoring.countConnectionPrewarm(upstream.getName(), datacenter, server.getAddress(), timeMillis, isError);
+      } catch (Exception e) {
+        LOGGER.error("Error occurred while sending metrics", e);
+      }
+    }
+  }
+}
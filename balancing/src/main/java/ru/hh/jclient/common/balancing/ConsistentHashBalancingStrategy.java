@@ -0,0 +1,116 @@
+package ru.hh.jclient.common.balancing;
+
+import java.time.Clock;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Weighted rendezvous hashing with bounded load: every server gets a pseudo-random score for the affinity key,
+ * scaled by its weight, and the highest one wins. The same key keeps going to the same server, so its in-process caches stay warm,
+ * and a membership change moves only keys of the servers that were added or removed.
+ * Retries exclude tried servers and so go to the next server in the key order.
+ * A server whose requests in flight exceed {@link #LOAD_FACTOR} times its fair share of the group is passed over for the next one,
+ * so a hot key does not overload a single server.
+ * Servers are ordered by (excluded, differentDC, overloaded, score) the same way {@link BalancingStrategy} orders them by load.
+ */
+final class ConsistentHashBalancingStrategy {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConsistentHashBalancingStrategy.class);
+  static final float LOAD_FACTOR = 1.25f;
+
+  static int getServer(UpstreamSnapshot snapshot, Set<Integer> excludedServers, String affinityKey, Clock clock, boolean preferRemote) {
+    int size = snapshot.size();
+    boolean hasExcluded = !excludedServers.isEmpty();
+    long nowMillis = snapshot.getOutlierEjectionConfig() != null ? clock.millis() : 0;
+    long keyHash = mix(affinityKey.hashCode());
+
+    long primaryRequests = 0;
+    long primaryWeight = 0;
+    for (int index = 0; index < size; index++) {
+      Server server = snapshot.getServer(index);
+      if (server != null && snapshot.isRemote(server) == preferRemote) {
+        primaryRequests += server.getCurrentRequests();
+        primaryWeight += Math.max(server.getWeight(), 0);
+      }
+    }
+    // the request being balanced is counted as well, so an idle group does not look overloaded
+    double requestsPerWeight = primaryWeight > 0 ? (primaryRequests + 1.0) / primaryWeight : 0;
+
+    int maxIndex = -1;
+    boolean maxExcluded = false;
+    boolean maxSecondaryDC = false;
+    boolean maxOverloaded = false;
+    double maxScore = 0;
+    for (int index = 0; index < size; index++) {
+      Server server = snapshot.getServer(index);
+      if (server == null) {
+        continue;
+      }
+
+      boolean excluded = hasExcluded && excludedServers.contains(index) || snapshot.isEjected(server, nowMillis);
+      boolean secondaryDC = snapshot.isRemote(server) != preferRemote;
+      boolean overloaded = !secondaryDC && server.getCurrentRequests() > LOAD_FACTOR * requestsPerWeight * server.getWeight();
+      double score = getScore(keyHash, server);
+
+      if (maxIndex < 0 || isGreater(excluded, secondaryDC, overloaded, score, maxExcluded, maxSecondaryDC, maxOverloaded, maxScore)) {
+        maxIndex = index;
+        maxExcluded = excluded;
+        maxSecondaryDC = secondaryDC;
+        maxOverloaded = overloaded;
+        maxScore = score;
+      }
+    }
+
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debug("consistent hash pick excluded:{} secondaryDC:{}, overloaded:{}, score:{} for server idx={} with excluded idx={}",
+          maxExcluded, maxSecondaryDC, maxOverloaded, maxScore, maxIndex, excludedServers
+      );
+    }
+    return maxIndex;
+  }
+
+  /**
+   * @return weight / -ln(u), where u is uniform in (0, 1) for the pair of key and server address,
+   *     so a server wins with probability proportional to its weight
+   */
+  static double getScore(long keyHash, Server server) {
+    int weight = server.getWeight();
+    if (weight <= 0) {
+      return 0;
+    }
+    long hash = mix(keyHash ^ server.getAddress().hashCode());
+    double uniform = ((hash >>> 11) + 0.5) / (1L << 53);
+    return weight / -Math.log(uniform);
+  }
+
+  /**
+   * finalizer of 64-bit MurmurHash3, spreads String hash codes over all bits
+   */
+  private static long mix(long hash) {
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  private static boolean isGreater(
+      boolean excluded, boolean secondaryDC, boolean overloaded, double score,
+      boolean maxExcluded, boolean maxSecondaryDC, boolean maxOverloaded, double maxScore
+  ) {
+    if (excluded != maxExcluded) {
+      return !excluded;
+    }
+    if (secondaryDC != maxSecondaryDC) {
+      return !secondaryDC;
+    }
+    if (overloaded != maxOverloaded) {
+      return !overloaded;
+    }
+    return Double.compare(score, maxScore) > 0;
+  }
+
+  private ConsistentHashBalancingStrategy() {
+  }
+}
@@ -0,0 +1,37 @@
+package ru.hh.jclient.common.balancing;
+
+public final class CrossDcSpilloverConfig {
+  static final float DEFAULT_HEADROOM = 0.2f;
+  static final int DEFAULT_CAPACITY_PER_WEIGHT = 10;
+
+  private final float headroom;
+  private final int capacityPerWeight;
+
+  CrossDcSpilloverConfig(float headroom, int capacityPerWeight) {
+    this.headroom = headroom;
+    this.capacityPerWeight = capacityPerWeight;
+  }
+
+  /**
+   * share of local capacity kept free: requests spill over to other datacenters once local utilization exceeds 1 - headroom,
+   * and all of them do at full utilization
+   */
+  public float getHeadroom() {
+    return headroom;
+  }
+
+  /**
+   * requests a server can process concurrently per unit of its weight
+   */
+  public int getCapacityPerWeight() {
+    return capacityPerWeight;
+  }
+
+  @Override
+  public String toString() {
+    return "CrossDcSpilloverConfig{" +
+        "headroom=" + headroom +
+        ", capacityPerWeight=" + capacityPerWeight +
+        '}';
+  }
+}
@@ -0,0 +1,58 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Share of requests sent to other datacenters while local servers are short of headroom.
+ * Local utilization is requests in flight to local servers divided by their capacity,
+ * where capacity of a server is its weight times {@link CrossDcSpilloverConfig#getCapacityPerWeight()} times its recent success ratio,
+ * and ejected servers have none. The share grows linearly from 0 at 1 - headroom utilization to 1 at full utilization.
+ * It is recalculated by a single thread at most once per {@link #RECALCULATION_INTERVAL_MS}, so selection stays O(1) on average.
+ */
+final class CrossDcSpilloverEstimator {
+  static final long RECALCULATION_INTERVAL_MS = 100;
+
+  private final AtomicLong calculatedAtMillis = new AtomicLong();
+  private volatile float share;
+
+  float getShare(UpstreamSnapshot snapshot, long nowMillis) {
+    long calculatedAt = calculatedAtMillis.get();
+    if (nowMillis - calculatedAt >= RECALCULATION_INTERVAL_MS && calculatedAtMillis.compareAndSet(calculatedAt, nowMillis)) {
+      share = calculateShare(snapshot, nowMillis);
+    }
+    return share;
+  }
+
+  static float calculateShare(UpstreamSnapshot snapshot, long nowMillis) {
+    CrossDcSpilloverConfig config = snapshot.getCrossDcSpilloverConfig();
+    if (config == null) {
+      return 0;
+    }
+    boolean hasRemote = false;
+    long inflight = 0;
+    double capacity = 0;
+    for (int i = 0; i < snapshot.size(); i++) {
+      Server server = snapshot.getServer(i);
+      if (server == null || server.getWeight() <= 0) {
+        continue;
+      }
+      if (snapshot.isRemote(server)) {
+        hasRemote = true;
+        continue;
+      }
+      inflight += server.getCurrentRequests();
+      if (!snapshot.isEjected(server, nowMillis)) {
+        capacity += (double) server.getWeight() * config.getCapacityPerWeight() * server.getOutlierDetector().getSuccessRatio();
+      }
+    }
+    if (!hasRemote) {
+      return 0;
+    }
+    if (capacity <= 0) {
+      return 1;
+    }
+    double utilization = inflight / capacity;
+    double share = (utilization - (1 - config.getHeadroom())) / config.getHeadroom();
+    return (float) Math.max(0, Math.min(1, share));
+  }
+}
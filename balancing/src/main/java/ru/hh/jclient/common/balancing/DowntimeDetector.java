@@ -1,13 +1,21 @@
 package ru.hh.jclient.common.balancing;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ring buffer of last n results. Writers claim a slot with a single atomic increment and swap its value,
+ * so concurrent results are never lost and {@link #errorsCount} always catches up with the buffer contents.
+ */
 public class DowntimeDetector {
   private static final float ERRORS_THRESHOLD = 0.2f;
   private final int n;
-  private final int[] errors;
+  private final AtomicIntegerArray errors;
   private final float errorsThreshold;
 
-  private volatile int errorsCount;
-  private int current = 0;
+  private final AtomicInteger errorsCount = new AtomicInteger();
+  private final AtomicLong current = new AtomicLong();
 
   public DowntimeDetector(int n) {
     this(n, ERRORS_THRESHOLD, 100);
@@ -26,36 +34,38 @@ public class DowntimeDetector {
       throw new IllegalArgumentException("Invalid initialLivePercent value: " + initialLivePercent);
     }
     this.n = n;
-    this.errors = new int[n];
+    this.errors = new AtomicIntegerArray(n);
     this.errorsThreshold = errorsThreshold;
     int initialErrorsCount = n * (100 - initialLivePercent) / 100;
     if (initialErrorsCount > 0) {
-      this.errorsCount = initialErrorsCount;
+      this.errorsCount.set(initialErrorsCount);
       for (int i = 0; i < initialErrorsCount; i++) {
-        errors[i] = 1;
+        errors.set(i, 1);
       }
-    } else {
-      this.errorsCount = 0;
     }
   }
 
-  public synchronized void failed() {
-    errorsCount = errorsCount + 1 - errors[current];
-    errors[current] = 1;
-    current = (current + 1) % n;
+  public void failed() {
+    record(1);
+  }
+
+  public void success() {
+    record(0);
   }
 
-  public synchronized void success() {
-    errorsCount -= errors[current];
-    errors[current] = 0;
-    current = (current + 1) % n;
+  private void record(int error) {
+    int slot = (int) (current.getAndIncrement() % n);
+    int previous = errors.getAndSet(slot, error);
+    if (previous != error) {
+      errorsCount.addAndGet(error - previous);
+    }
   }
 
   public boolean tooMuchErrors() {
-    return 1.0f * errorsCount / n > errorsThreshold;
+    return 1.0f * errorsCount.get() / n > errorsThreshold;
   }
 
   public int successCount() {
-    return n - errorsCount;
+    return n - errorsCount.get();
   }
 }
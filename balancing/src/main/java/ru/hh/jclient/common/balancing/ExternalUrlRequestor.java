@@ -50,6 +50,10 @@ public class ExternalUrlRequestor extends RequestBalancer {
   protected void onRequestReceived(RequestResponseWrapper wrapper, long timeToLastByteMillis) {
   }
 
+  @Override
+  protected void onRequestFailed(Throwable throwable) {
+  }
+
   @Override
   protected void onResponse(RequestResponseWrapper wrapper, int triesUsed, boolean willFireRetry) {
     boolean isRequestFinal = !willFireRetry;
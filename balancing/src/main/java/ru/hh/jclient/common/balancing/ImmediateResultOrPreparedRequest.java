@@ -1,6 +1,7 @@
 package ru.hh.jclient.common.balancing;
 
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
 import ru.hh.jclient.common.Request;
 import ru.hh.jclient.common.RequestBuilder;
 import ru.hh.jclient.common.RequestContext;
@@ -10,17 +11,45 @@ public final class ImmediateResultOrPreparedRequest {
   private final Response result;
   private final RequestContext requestContext;
   private final Request processedRequest;
+  /**
+   * builder of the balanced request, set instead of {@link #processedRequest}
+   */
+  private final RequestBuilder balancedRequestBuilder;
+  /**
+   * timeout of {@link #balancedRequestBuilder} before it is multiplied
+   */
+  private final int requestTimeoutMs;
 
   public ImmediateResultOrPreparedRequest(@Nonnull Response result, @Nonnull RequestContext requestContext) {
     this.result = result;
     this.requestContext = requestContext;
     this.processedRequest = null;
+    this.balancedRequestBuilder = null;
+    this.requestTimeoutMs = 0;
   }
 
   public ImmediateResultOrPreparedRequest(@Nonnull RequestContext requestContext, @Nonnull Request processedRequest) {
     this.result = null;
     this.requestContext = requestContext;
     this.processedRequest = processedRequest;
+    this.balancedRequestBuilder = null;
+    this.requestTimeoutMs = 0;
+  }
+
+  /**
+   * For a request that is not built yet, so the executor can add its headers to the builder and copy the request
+   * once per attempt.
+   */
+  ImmediateResultOrPreparedRequest(
+      @Nonnull RequestContext requestContext,
+      @Nonnull RequestBuilder balancedRequestBuilder,
+      int requestTimeoutMs
+  ) {
+    this.result = null;
+    this.requestContext = requestContext;
+    this.processedRequest = null;
+    this.balancedRequestBuilder = balancedRequestBuilder;
+    this.requestTimeoutMs = requestTimeoutMs;
   }
 
   public Response getResult() {
@@ -35,8 +64,27 @@ public final class ImmediateResultOrPreparedRequest {
     if (result != null) {
       throw new IllegalStateException("first check result");
     }
+    if (balancedRequestBuilder != null) {
+      return getBalancedRequestBuilder(timeoutMultiplier).build();
+    }
     RequestBuilder requestBuilder = new RequestBuilder(processedRequest);
     requestBuilder.setRequestTimeout((int) (processedRequest.getRequestTimeout() * timeoutMultiplier));
     return requestBuilder.build();
   }
+
+  /**
+   * The builder belongs to the attempt, it is not copied and should be used once.
+   *
+   * @return builder of the balanced request with multiplied timeout, or null if the request is built already
+   */
+  @Nullable
+  public RequestBuilder getBalancedRequestBuilder(double timeoutMultiplier) {
+    if (result != null) {
+      throw new IllegalStateException("first check result");
+    }
+    if (balancedRequestBuilder != null) {
+      balancedRequestBuilder.setRequestTimeout((int) (requestTimeoutMs * timeoutMultiplier));
+    }
+    return balancedRequestBuilder;
+  }
 }
@@ -0,0 +1,118 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of last n response times with log-linear buckets: every power of two is split into {@link #SUB_BUCKETS} buckets,
+ * so quantiles are off by at most 1/{@link #SUB_BUCKETS} of the value. Memory is fixed: a ring of bucket indexes plus bucket counters.
+ * Recording is lock-free in the same way as {@link ResponseTimeTracker}.
+ */
+public class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 3;
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 24;
+  static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+  static final int BUCKETS = bucketOf(MAX_VALUE) + 1;
+
+  private final int n;
+  private final AtomicIntegerArray window;
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong current = new AtomicLong();
+
+  /**
+   * quantiles are recalculated at most once per this number of records
+   */
+  private final int recalculationStep;
+  private volatile CachedQuantile cachedQuantile;
+
+  public LatencyHistogram(int n) {
+    this.n = n;
+    this.window = new AtomicIntegerArray(n);
+    this.recalculationStep = Math.max(1, n / 20);
+    for (int i = 0; i < n; i++) {
+      window.set(i, -1);
+    }
+  }
+
+  public void record(long time) {
+    int bucket = bucketOf(Math.max(0, Math.min(time, MAX_VALUE)));
+    int previous = window.getAndSet((int) (current.getAndIncrement() % n), bucket);
+    if (previous == bucket) {
+      return;
+    }
+    counts.incrementAndGet(bucket);
+    if (previous >= 0) {
+      counts.decrementAndGet(previous);
+    }
+  }
+
+  /**
+   * @param quantile value in (0, 1]
+   * @return upper bound of the bucket holding the quantile, 0 if nothing is recorded
+   */
+  public long quantile(float quantile) {
+    long position = current.get();
+    CachedQuantile cached = cachedQuantile;
+    if (cached != null && cached.quantile == quantile && position - cached.position < recalculationStep) {
+      return cached.value;
+    }
+    long value = calculateQuantile(quantile);
+    cachedQuantile = new CachedQuantile(quantile, position, value);
+    return value;
+  }
+
+  private long calculateQuantile(float quantile) {
+    long[] snapshot = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = Math.max(0, counts.get(i));
+      total += snapshot[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(quantile * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return upperBoundOf(i);
+      }
+    }
+    return upperBoundOf(BUCKETS - 1);
+  }
+
+  static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  static long upperBoundOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    int shift = exponent - SUB_BUCKET_BITS;
+    long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    return lowerBound + (1L << shift) - 1;
+  }
+
+  private static final class CachedQuantile {
+    private final float quantile;
+    private final long position;
+    private final long value;
+
+    private CachedQuantile(float quantile, long position, long value) {
+      this.quantile = quantile;
+      this.position = position;
+      this.value = value;
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Passive outlier detection state of a single server, see {@link Upstream#releaseServer}.
+ * A server whose recent results have too many errors is ejected: not selected until {@link #ejectedUntilMillis}.
+ * After that a single probe request is let through; its success readmits the server,
+ * its failure ejects it again for twice as long, up to {@link OutlierEjectionConfig#getMaxEjectionTimeMs()}.
+ * A lost probe (e.g. cancelled) is given up after {@link OutlierEjectionConfig#getBaseEjectionTimeMs()}, so another one can be sent.
+ * Recent success ratio is also used as server health by {@link CrossDcSpilloverEstimator}.
+ */
+final class OutlierDetector {
+  static final int WINDOW = 20;
+  static final float ERRORS_THRESHOLD = 0.5f;
+
+  /**
+   * replaced on ejection, so a readmitted server starts with a clean history
+   */
+  private volatile DowntimeDetector errors = new DowntimeDetector(WINDOW, ERRORS_THRESHOLD);
+  /**
+   * 0 if server is not ejected
+   */
+  private final AtomicLong ejectedUntilMillis = new AtomicLong();
+  /**
+   * probe is in flight until this moment
+   */
+  private final AtomicLong probeUntilMillis = new AtomicLong();
+  /**
+   * ejections in a row, each one doubles ejection time
+   */
+  private volatile int ejections;
+  private volatile long readmittedAtMillis;
+
+  /**
+   * @return true if recent results have too many errors
+   */
+  boolean record(boolean isError) {
+    DowntimeDetector errors = this.errors;
+    if (isError) {
+      errors.failed();
+    } else {
+      errors.success();
+    }
+    return errors.tooMuchErrors();
+  }
+
+  float getSuccessRatio() {
+    return (float) errors.successCount() / WINDOW;
+  }
+
+  long getEjectedUntilMillis() {
+    return ejectedUntilMillis.get();
+  }
+
+  /**
+   * @return true if server should not be selected: it is ejected and its probe is not due or is already in flight
+   */
+  boolean isEjected(long nowMillis) {
+    long ejectedUntil = ejectedUntilMillis.get();
+    return ejectedUntil != 0 && (nowMillis < ejectedUntil || probeUntilMillis.get() > nowMillis);
+  }
+
+  boolean isProbeDue(long nowMillis) {
+    long ejectedUntil = ejectedUntilMillis.get();
+    return ejectedUntil != 0 && nowMillis >= ejectedUntil && probeUntilMillis.get() <= nowMillis;
+  }
+
+  /**
+   * @return true if server may be used: it is not ejected, or this call took its single probe
+   */
+  boolean tryAcquire(long nowMillis, OutlierEjectionConfig config) {
+    long ejectedUntil = ejectedUntilMillis.get();
+    if (ejectedUntil == 0) {
+      return true;
+    }
+    if (nowMillis < ejectedUntil) {
+      return false;
+    }
+    long probeUntil = probeUntilMillis.get();
+    return probeUntil <= nowMillis && probeUntilMillis.compareAndSet(probeUntil, nowMillis + config.getBaseEjectionTimeMs());
+  }
+
+  /**
+   * @param probeFailed whether server is ejected again after a failed probe, otherwise it was healthy before
+   * @return ejection time
+   */
+  long eject(long nowMillis, OutlierEjectionConfig config, boolean probeFailed) {
+    int ejections = this.ejections;
+    if (!probeFailed && nowMillis - readmittedAtMillis > config.getMaxEjectionTimeMs()) {
+      // server was healthy long enough to forget previous ejections
+      ejections = 0;
+    }
+    long ejectionTime = Math.min(config.getMaxEjectionTimeMs(), config.getBaseEjectionTimeMs() << Math.min(ejections, 30));
+    this.ejections = ejections + 1;
+    errors = new DowntimeDetector(WINDOW, ERRORS_THRESHOLD);
+    probeUntilMillis.set(0);
+    ejectedUntilMillis.set(nowMillis + ejectionTime);
+    return ejectionTime;
+  }
+
+  void readmit(long nowMillis) {
+    readmittedAtMillis = nowMillis;
+    ejectedUntilMillis.set(0);
+    probeUntilMillis.set(0);
+  }
+
+  @Override
+  public String toString() {
+    return "OutlierDetector{" +
+        "ejectedUntilMillis=" + ejectedUntilMillis +
+        ", ejections=" + ejections +
+        '}';
+  }
+}
@@ -0,0 +1,50 @@
+package ru.hh.jclient.common.balancing;
+
+public final class OutlierEjectionConfig {
+  static final int DEFAULT_BASE_EJECTION_TIME_MS = 10_000;
+  static final int DEFAULT_MAX_EJECTION_TIME_MS = 300_000;
+  static final int DEFAULT_MAX_EJECTION_PERCENT = 30;
+
+  public static final OutlierEjectionConfig DEFAULT_OUTLIER_EJECTION_CONFIG = new OutlierEjectionConfig(
+      DEFAULT_BASE_EJECTION_TIME_MS,
+      DEFAULT_MAX_EJECTION_TIME_MS,
+      DEFAULT_MAX_EJECTION_PERCENT
+  );
+
+  private final int baseEjectionTimeMs;
+  private final int maxEjectionTimeMs;
+  private final int maxEjectionPercent;
+
+  OutlierEjectionConfig(int baseEjectionTimeMs, int maxEjectionTimeMs, int maxEjectionPercent) {
+    this.baseEjectionTimeMs = baseEjectionTimeMs;
+    this.maxEjectionTimeMs = maxEjectionTimeMs;
+    this.maxEjectionPercent = maxEjectionPercent;
+  }
+
+  /**
+   * time of the first ejection, every next ejection in a row is twice as long
+   */
+  public int getBaseEjectionTimeMs() {
+    return baseEjectionTimeMs;
+  }
+
+  public int getMaxEjectionTimeMs() {
+    return maxEjectionTimeMs;
+  }
+
+  /**
+   * share of upstream servers that can be ejected at the same time, though at least one server of an upstream with several ones can be
+   */
+  public int getMaxEjectionPercent() {
+    return maxEjectionPercent;
+  }
+
+  @Override
+  public String toString() {
+    return "OutlierEjectionConfig{" +
+        "baseEjectionTimeMs=" + baseEjectionTimeMs +
+        ", maxEjectionTimeMs=" + maxEjectionTimeMs +
+        ", maxEjectionPercent=" + maxEjectionPercent +
+        '}';
+  }
+}
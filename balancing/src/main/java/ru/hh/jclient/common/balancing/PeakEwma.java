@@ -0,0 +1,58 @@
+package ru.hh.jclient.common.balancing;
+
+/**
+ * Peak-sensitive moving average of server response time: a response slower than the average replaces it at once,
+ * faster ones pull it down with weight that depends on time passed since the previous one, and without responses it decays to zero
+ * with {@link #DECAY_TIME_NANOS}. So a server getting slow is noticed with its first slow response,
+ * not after it fills a window of samples as {@link ResponseTimeTracker} does.
+ */
+final class PeakEwma {
+  static final long DECAY_TIME_NANOS = 10_000_000_000L;
+  /**
+   * cost of a server that has requests in flight but no responses yet, so a new server gets a single request until it responds
+   */
+  static final double PENALTY = Integer.MAX_VALUE;
+
+  private volatile double costMillis;
+  private volatile long stampNanos = System.nanoTime();
+
+  synchronized void observe(long responseTimeMillis, long nowNanos) {
+    double cost = costMillis;
+    if (responseTimeMillis > cost) {
+      costMillis = responseTimeMillis;
+    } else {
+      double weight = Math.exp(-Math.max(nowNanos - stampNanos, 0) / (double) DECAY_TIME_NANOS);
+      costMillis = cost * weight + responseTimeMillis * (1 - weight);
+    }
+    stampNanos = nowNanos;
+  }
+
+  /**
+   * reads without locking, a concurrent observation may be seen half applied, which only shifts decay of a single read
+   */
+  double getCostMillis(long nowNanos) {
+    double cost = costMillis;
+    if (cost == 0) {
+      return 0;
+    }
+    return cost * Math.exp(-Math.max(nowNanos - stampNanos, 0) / (double) DECAY_TIME_NANOS);
+  }
+
+  /**
+   * @return expected time to serve a new request: cost times requests in flight including the new one
+   */
+  double getScore(int currentRequests, long nowNanos) {
+    double cost = getCostMillis(nowNanos);
+    if (cost == 0) {
+      return currentRequests == 0 ? 0 : PENALTY + currentRequests;
+    }
+    return cost * (currentRequests + 1);
+  }
+
+  @Override
+  public String toString() {
+    return "PeakEwma{" +
+        "costMillis=" + costMillis +
+        '}';
+  }
+}
@@ -0,0 +1,68 @@
+package ru.hh.jclient.common.balancing;
+
+import java.time.Clock;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Least expected latency: score of a server is its {@link PeakEwma} cost times requests in flight including the new one,
+ * divided by weight, which is ramped up during slow start. Both parts react at once, in-flight requests on acquire
+ * and cost on the first slow response, so a server getting slow loses its traffic within milliseconds.
+ * Servers are ordered by (excluded, differentDC, score) the same way {@link BalancingStrategy} orders them by load.
+ */
+final class PeakEwmaBalancingStrategy {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PeakEwmaBalancingStrategy.class);
+
+  static int getServer(UpstreamSnapshot snapshot, Set<Integer> excludedServers, Clock clock, long nowNanos, boolean preferRemote) {
+    int size = snapshot.size();
+    boolean hasExcluded = !excludedServers.isEmpty();
+    long nowMillis = snapshot.getOutlierEjectionConfig() != null ? clock.millis() : 0;
+
+    int minIndex = -1;
+    boolean minExcluded = false;
+    boolean minSecondaryDC = false;
+    double minScore = 0;
+    for (int index = 0; index < size; index++) {
+      Server server = snapshot.getServer(index);
+      if (server == null || server.getWeight() <= 0) {
+        continue;
+      }
+
+      boolean excluded = hasExcluded && excludedServers.contains(index) || snapshot.isEjected(server, nowMillis);
+      boolean secondaryDC = snapshot.isRemote(server) != preferRemote;
+      double weight = server.getWeight() * server.getSlowStartFactor(clock);
+      double score = server.getPeakEwma().getScore(server.getCurrentRequests(), nowNanos) / weight;
+
+      if (minIndex < 0 || isLess(excluded, secondaryDC, score, minExcluded, minSecondaryDC, minScore)) {
+        minIndex = index;
+        minExcluded = excluded;
+        minSecondaryDC = secondaryDC;
+        minScore = score;
+      }
+    }
+
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debug("peak ewma pick excluded:{} secondaryDC:{}, score:{} for server idx={} with excluded idx={}",
+          minExcluded, minSecondaryDC, minScore, minIndex, excludedServers
+      );
+    }
+    return minIndex;
+  }
+
+  private static boolean isLess(
+      boolean excluded, boolean secondaryDC, double score,
+      boolean minExcluded, boolean minSecondaryDC, double minScore
+  ) {
+    if (excluded != minExcluded) {
+      return !excluded;
+    }
+    if (secondaryDC != minSecondaryDC) {
+      return !secondaryDC;
+    }
+    return Double.compare(score, minScore) < 0;
+  }
+
+  private PeakEwmaBalancingStrategy() {
+  }
+}
@@ -0,0 +1,71 @@
+package ru.hh.jclient.common.balancing;
+
+import java.time.Clock;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.hh.jclient.common.balancing.UpstreamSnapshot.ServerSampler;
+
+/**
+ * Picks the less loaded of two servers sampled proportionally to their weights instead of scanning the whole upstream.
+ * Weight is accounted by sampling only, so load is requests in flight rather than the weighted stat load {@link BalancingStrategy} uses:
+ * comparing weighted loads of servers already sampled by weight would favour heavy servers twice.
+ * Requests in flight are divided by slow start factor, so a server on slow start still gets its share gradually.
+ * Servers of the upstream datacenter are sampled first, other datacenters only if there are no local servers or the request spills over.
+ * If sampling does not find a server that is neither excluded nor ejected, falls back to {@link BalancingStrategy#getLeastLoadedServer},
+ * which keeps the same ordering for excluded servers.
+ */
+final class PowerOfTwoChoicesBalancingStrategy {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PowerOfTwoChoicesBalancingStrategy.class);
+  private static final int MAX_SAMPLE_ATTEMPTS = 4;
+
+  static int getServer(UpstreamSnapshot snapshot, Set<Integer> excludedServers, Clock clock, boolean preferRemote) {
+    ServerSampler sampler = preferRemote && snapshot.getRemoteSampler().size() > 0 || snapshot.getLocalSampler().size() == 0
+        ? snapshot.getRemoteSampler()
+        : snapshot.getLocalSampler();
+    if (sampler.size() <= 2) {
+      return BalancingStrategy.getLeastLoadedServer(snapshot, excludedServers, clock, preferRemote);
+    }
+
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long nowMillis = snapshot.getOutlierEjectionConfig() != null ? clock.millis() : 0;
+    int first = -1;
+    int second = -1;
+    for (int attempt = 0; attempt < MAX_SAMPLE_ATTEMPTS && second < 0; attempt++) {
+      int index = sampler.sample(random);
+      if (index == first || excludedServers.contains(index) || index >= snapshot.size()
+          || snapshot.isEjected(snapshot.getServer(index), nowMillis)) {
+        continue;
+      }
+      if (first < 0) {
+        first = index;
+      } else {
+        second = index;
+      }
+    }
+
+    if (first < 0) {
+      LOGGER.trace("no server sampled with excluded idx={}, falling back to full scan", excludedServers);
+      return BalancingStrategy.getLeastLoadedServer(snapshot, excludedServers, clock, preferRemote);
+    }
+    if (second < 0) {
+      return first;
+    }
+
+    float firstLoad = getLoad(snapshot.getServer(first), clock);
+    float secondLoad = getLoad(snapshot.getServer(second), clock);
+    int result = Float.compare(secondLoad, firstLoad) < 0 ? second : first;
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debug("power of two choices pick idx={} of idx={} load:{}, idx={} load:{}", result, first, firstLoad, second, secondLoad);
+    }
+    return result;
+  }
+
+  private static float getLoad(Server server, Clock clock) {
+    return server.getCurrentRequests() / server.getSlowStartFactor(clock);
+  }
+
+  private PowerOfTwoChoicesBalancingStrategy() {
+  }
+}
@@ -14,6 +14,7 @@ import org.slf4j.event.Level;
 import ru.hh.jclient.common.HttpClientFactoryBuilder;
 import static ru.hh.jclient.common.JClientBase.HTTP_POST;
 import ru.hh.jclient.common.Request;
+import ru.hh.jclient.common.RequestBuilder;
 import ru.hh.jclient.common.RequestEngine;
 import ru.hh.jclient.common.RequestResponseWrapper;
 import ru.hh.jclient.common.RequestStrategy;
@@ -70,36 +71,100 @@ public abstract class RequestBalancer implements RequestEngine {
           .handleFailFastResponse(request, resultOrContext.getRequestContext(), resultOrContext.getResult())
           .thenApply(RequestResponseWrapper::getResponse);
     }
-    return requestExecutor
-        .executeRequest(
-            resultOrContext.getBalancedRequest(this.timeoutMultiplier),
-            maxTries - triesLeft,
-            resultOrContext.getRequestContext()
-        )
+    return executeAttempt(resultOrContext)
+        .whenComplete((wrapper, throwable) -> {
+          if (throwable != null) {
+            onRequestFailed(throwable);
+          }
+        })
         .thenApply(this::finishRequest)
         .thenCompose(this::unwrapOrRetry);
   }
 
   protected abstract ImmediateResultOrPreparedRequest getResultOrContext(Request request);
 
+  /**
+   * Sends prepared request. Implementations may send more than one request, e.g. hedged ones,
+   * but the returned future should complete with a single response.
+   */
+  protected CompletableFuture<RequestResponseWrapper> executeAttempt(ImmediateResultOrPreparedRequest resultOrContext) {
+    RequestBuilder requestBuilder = resultOrContext.getBalancedRequestBuilder(this.timeoutMultiplier);
+    if (requestBuilder != null) {
+      return requestExecutor.executeRequest(requestBuilder, getTriesUsed(), resultOrContext.getRequestContext());
+    }
+    return requestExecutor.executeRequest(
+        resultOrContext.getBalancedRequest(this.timeoutMultiplier),
+        getTriesUsed(),
+        resultOrContext.getRequestContext()
+    );
+  }
+
   private RequestResponseWrapper finishRequest(RequestResponseWrapper wrapper) {
     long timeToLastByteMillis = wrapper.getTimeToLastByteMillis();
     updateLeftTriesAndTime((int) timeToLastByteMillis);
     Response response = wrapper.getResponse();
-    this.trace.add(new TraceFrame(response.getUri().getHost(), response.getStatusCode(), response.getStatusText()));
+    this.trace.add(new TraceFrame(getAttemptHost(wrapper), response.getStatusCode(), response.getStatusText()));
     onRequestReceived(wrapper, timeToLastByteMillis);
     return wrapper;
   }
 
+  /**
+   * @return host the attempt was sent to, for the trace
+   */
+  protected String getAttemptHost(RequestResponseWrapper wrapper) {
+    return wrapper.getResponse().getUri().getHost();
+  }
+
   protected abstract void onRequestReceived(@Nullable RequestResponseWrapper wrapper, long timeToLastByteMillis);
 
+  /**
+   * Called instead of {@link #onRequestReceived} if the attempt completed exceptionally, e.g. a listener threw.
+   * The request is not retried then, so whatever the attempt acquired should be released here.
+   */
+  protected abstract void onRequestFailed(Throwable throwable);
+
   private void updateLeftTriesAndTime(int responseTimeMillis) {
     requestTimeLeftMs = requestTimeLeftMs >= responseTimeMillis ? requestTimeLeftMs - responseTimeMillis : 0;
+    useTry();
+  }
+
+  protected void useTry() {
     if (triesLeft > 0) {
       triesLeft--;
     }
   }
 
+  protected int getTriesUsed() {
+    return maxTries - triesLeft;
+  }
+
+  protected int getTriesLeft() {
+    return triesLeft;
+  }
+
+  protected int getRequestTimeLeftMs() {
+    return requestTimeLeftMs;
+  }
+
+  /**
+   * @return time left until deadline of the incoming request, negative if it has none or the request ignores it
+   */
+  protected long getDeadlineTimeLeftMs() {
+    return request.isDeadlineEnabled() ? requestExecutor.getDeadlineTimeLeftMs() : -1;
+  }
+
+  protected double getTimeoutMultiplier() {
+    return timeoutMultiplier;
+  }
+
+  protected RequestStrategy.RequestExecutor getRequestExecutor() {
+    return requestExecutor;
+  }
+
+  protected boolean isIdempotent() {
+    return forceIdempotence || !HTTP_POST.equals(request.getMethod());
+  }
+
   protected CompletableFuture<Response> unwrapOrRetry(RequestResponseWrapper wrapper) {
     Response response = wrapper.getResponse();
     boolean doRetry = checkRetry(response);
@@ -122,14 +187,22 @@ public abstract class RequestBalancer implements RequestEngine {
     if (triesLeft == 0 || requestTimeLeftMs == 0) {
       return false;
     }
-    boolean isIdempotent = forceIdempotence || !HTTP_POST.equals(request.getMethod());
-    return checkRetry(response, isIdempotent);
+    return checkRetry(response, isIdempotent()) && tryAcquireRetry(response);
   }
 
   protected boolean checkRetry(Response response, boolean isIdempotent) {
     return retryPolicy.isRetriable(response, isIdempotent);
   }
 
+  /**
+   * Called when a retry is allowed by tries, time and retry policy, right before it is fired.
+   *
+   * @return false to return the response as is instead of retrying
+   */
+  protected boolean tryAcquireRetry(Response response) {
+    return true;
+  }
+
   protected abstract void onRetry();
 
   private void logResponse(Response response, long responseTimeMillis, int retriesCount, boolean doRetry) {
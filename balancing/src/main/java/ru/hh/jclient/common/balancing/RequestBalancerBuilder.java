@@ -29,6 +29,7 @@ public class RequestBalancerBuilder implements RequestEngineBuilder<RequestBalan
   private boolean forceIdempotence;
   private boolean adaptive;
   private String profile;
+  private String affinityKey;
   private RetryPolicy retryPolicy;
 
   @Override
@@ -39,8 +40,8 @@ public class RequestBalancerBuilder implements RequestEngineBuilder<RequestBalan
 
     if (LOGGER.isTraceEnabled()) {
       LOGGER.trace("builderParams::: request: {}, profile: {}, upstream: {}, timeoutMultiplier: {}, " +
-                   "maxTimeoutTries: {}, maxTries: {}, forceIdempotence: {}, adaptive: {}, retryPolicy: {}",
-          request, profile, upstream, timeoutMultiplier, maxTimeoutTries, maxTries, forceIdempotence, adaptive, retryPolicy
+                   "maxTimeoutTries: {}, maxTries: {}, forceIdempotence: {}, adaptive: {}, affinityKey: {}, retryPolicy: {}",
+          request, profile, upstream, timeoutMultiplier, maxTimeoutTries, maxTries, forceIdempotence, adaptive, affinityKey, retryPolicy
       );
     }
     if (upstream == null || !upstream.isEnabled()) {
@@ -58,7 +59,7 @@ public class RequestBalancerBuilder implements RequestEngineBuilder<RequestBalan
       if (adaptive || upstream.isAdaptive()) {
         state = new AdaptiveBalancingState(upstream, profile);
       } else {
-        state = new BalancingState(upstream, profile);
+        state = new BalancingState(upstream, profile, affinityKey);
       }
       logExternalFlagAccuracy(false, request);
       return new UpstreamRequestBalancer(
@@ -115,6 +116,15 @@ public class RequestBalancerBuilder implements RequestEngineBuilder<RequestBalan
     return this;
   }
 
+  /**
+   * Requests with the same key go to the same server, and their retries to the next one for the key,
+   * if upstream uses {@code consistent_hash} balancing strategy. Ignored by other strategies.
+   */
+  public RequestBalancerBuilder withAffinityKey(String affinityKey) {
+    this.affinityKey = affinityKey;
+    return this;
+  }
+
   public String getBalancingRequestsLogLevel() {
     return this.balancingRequestsLogLevel;
   }
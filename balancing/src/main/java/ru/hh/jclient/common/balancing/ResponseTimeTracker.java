@@ -1,29 +1,35 @@
 package ru.hh.jclient.common.balancing;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ring buffer of last n response times, lock-free in the same way as {@link DowntimeDetector}.
+ */
 public class ResponseTimeTracker {
-  private final long[] times;
+  private final AtomicLongArray times;
   private final int n;
 
-  private volatile long total;
+  private final AtomicLong total = new AtomicLong();
   private volatile boolean isWarmUp = true;
-  private int current;
+  private final AtomicLong current = new AtomicLong();
 
   public ResponseTimeTracker(int n) {
     this.n = n;
-    times = new long[n];
+    times = new AtomicLongArray(n);
   }
 
-  public synchronized void time(long time) {
-    total += time - times[current];
-    times[current] = time;
-    if (current == n - 1 && isWarmUp) {
+  public void time(long time) {
+    long position = current.getAndIncrement();
+    long previous = times.getAndSet((int) (position % n), time);
+    total.addAndGet(time - previous);
+    if (isWarmUp && position >= n - 1) {
       isWarmUp = false;
     }
-    current = (current + 1) % n;
   }
 
   public long mean() {
-    return total / n;
+    return total.get() / n;
   }
 
   public boolean isWarmUp() {
@@ -0,0 +1,59 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket limiting retries of an upstream. Every successful first attempt deposits {@link #ratio} of a token,
+ * every retry withdraws a whole one, so in the long run retries are at most ratio of successful requests.
+ * The bucket starts full and holds at most {@link #MAX_TOKENS}, which bounds the burst of retries after a quiet period.
+ * Tokens are kept in thousandths to stay in a single atomic long.
+ */
+final class RetryBudget {
+  static final int MAX_TOKENS = 100;
+  private static final long SCALE = 1000;
+  private static final long MAX_SCALED_TOKENS = MAX_TOKENS * SCALE;
+
+  private final AtomicLong scaledTokens = new AtomicLong(MAX_SCALED_TOKENS);
+  /**
+   * non-positive value disables the budget
+   */
+  private volatile float ratio;
+
+  void setRatio(float ratio) {
+    this.ratio = ratio;
+  }
+
+  boolean isEnabled() {
+    return ratio > 0;
+  }
+
+  void deposit() {
+    float ratio = this.ratio;
+    if (ratio <= 0) {
+      return;
+    }
+    long deposit = Math.max(1, (long) (ratio * SCALE));
+    // a full bucket is the common case, it is left without a write
+    if (scaledTokens.get() < MAX_SCALED_TOKENS) {
+      scaledTokens.accumulateAndGet(deposit, (current, added) -> Math.min(MAX_SCALED_TOKENS, current + added));
+    }
+  }
+
+  boolean tryWithdraw() {
+    if (ratio <= 0) {
+      return true;
+    }
+    long current;
+    do {
+      current = scaledTokens.get();
+      if (current < SCALE) {
+        return false;
+      }
+    } while (!scaledTokens.compareAndSet(current, current - SCALE));
+    return true;
+  }
+
+  float getTokens() {
+    return (float) scaledTokens.get() / SCALE;
+  }
+}
@@ -14,13 +14,26 @@ import org.slf4j.LoggerFactory;
 import static ru.hh.jclient.common.balancing.AdaptiveBalancingStrategy.DOWNTIME_DETECTOR_WINDOW;
 import static ru.hh.jclient.common.balancing.AdaptiveBalancingStrategy.INITIAL_LIVE_PERCENT;
 import static ru.hh.jclient.common.balancing.AdaptiveBalancingStrategy.RESPONSE_TIME_TRACKER_WINDOW;
+import static ru.hh.jclient.common.balancing.BalancingUpstreamManager.SCHEMA_SEPARATOR;
+import ru.hh.jclient.common.balancing.config.SlowStartCurve;
 
 //TODO move to ru.hh.jclient.common.balancing.internal
 public class Server {
   private static final Logger LOGGER = LoggerFactory.getLogger(Server.class);
   private static final String DELIMITER = ":";
+  static final float SLOW_START_MIN_FACTOR = 0.01f;
+  /**
+   * slow start factor grows in steps at least this big, each step rescales stat requests
+   */
+  static final float SLOW_START_FACTOR_STEP = 0.01f;
 
   private final String address;
+  /**
+   * parts of {@link #address} to put into request uri, scheme is null unless the address has one
+   */
+  private final String addressScheme;
+  private final String addressHost;
+  private final int addressPort;
   private final String hostName;
   private final String datacenter;
 
@@ -28,33 +41,50 @@ public class Server {
 
   private final DowntimeDetector downtimeDetector;
   private final ResponseTimeTracker responseTimeTracker;
+  private final LatencyHistogram latencyHistogram;
+  private final OutlierDetector outlierDetector = new OutlierDetector();
+  private final PeakEwma peakEwma = new PeakEwma();
 
   private volatile int weight;
   private volatile Map<String, String> meta;
   private volatile List<String> tags;
 
   /**
-   * not volatile for optimization. Should protect writes with {@link Server#slowStartEndMillis}
+   * share of weight the server gets during slow start, 1 if it is not in slow start.
+   * Written last on slow start init, so it protects {@link Server#slowStartCurve} and slow start times
    */
-  private boolean slowStartModeEnabled;
-  private volatile long slowStartEndMillis = 0;
-
+  private volatile float slowStartFactor = 1;
+  private SlowStartCurve slowStartCurve = SlowStartCurve.LINEAR;
+  private long slowStartStartMillis;
   /**
-   * not volatile for optimization. Should protect writes with {@link Server#slowStartEndMillis}
+   * 0 if slow start was never set for the server
    */
-  private boolean statisticsFilledWithInitialValues;
+  private long slowStartEndMillis;
+
+  private volatile boolean statisticsFilledWithInitialValues;
 
-  private volatile StampedLock lock;
   private volatile int statLimit;
 
   public Server(String address, String hostName, int weight, String datacenter) {
     this.address = requireNonNull(address, "address should not be null");
+    int schemeEnd = address.indexOf(SCHEMA_SEPARATOR);
+    this.addressScheme = schemeEnd < 0 ? null : address.substring(0, schemeEnd);
+    String authority = schemeEnd < 0 ? address : address.substring(schemeEnd + SCHEMA_SEPARATOR.length());
+    int portStart = authority.lastIndexOf(DELIMITER);
+    if (portStart > 0 && isPort(authority, portStart + 1)) {
+      this.addressHost = authority.substring(0, portStart);
+      this.addressPort = Integer.parseInt(authority, portStart + 1, authority.length(), 10);
+    } else {
+      this.addressHost = authority;
+      this.addressPort = -1;
+    }
     this.hostName = hostName;
     this.weight = weight;
     this.datacenter = datacenter;
 
     this.downtimeDetector = new DowntimeDetector(DOWNTIME_DETECTOR_WINDOW, INITIAL_LIVE_PERCENT);
     this.responseTimeTracker = new ResponseTimeTracker(RESPONSE_TIME_TRACKER_WINDOW);
+    this.latencyHistogram = new LatencyHistogram(RESPONSE_TIME_TRACKER_WINDOW);
 
     this.requests = new AtomicLong();
   }
@@ -63,6 +93,18 @@ public class Server {
     return host + DELIMITER + port;
   }
 
+  private static boolean isPort(String value, int start) {
+    if (start >= value.length() || value.length() - start > 5) {
+      return false;
+    }
+    for (int i = start; i < value.length(); i++) {
+      if (!Character.isDigit(value.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   // TODO can have effect on server selection but changes without locking
   public void update(int weight, Map<String, String> meta, List<String> tags) {
     if (this.weight != weight) {
@@ -79,20 +121,18 @@ public class Server {
   }
 
   void acquire() {
-    executeWithLockIfAvailable(() -> requests.addAndGet(packRequests(1, 1)));
+    requests.addAndGet(packRequests(1, 1));
   }
 
   void release(boolean isRetry) {
-    executeWithLockIfAvailable(() -> {
-      requests.updateAndGet(i -> {
-        int stat = unpackStatRequests(i);
-        if (isRetry) {
-          stat = stat > 0 ? stat - 1 : 0;
-        }
-        int current = unpackCurrentRequests(i);
-        current = current > 0 ? current - 1 : 0;
-        return packRequests(stat, current);
-      });
+    requests.updateAndGet(i -> {
+      int stat = unpackStatRequests(i);
+      if (isRetry) {
+        stat = stat > 0 ? stat - 1 : 0;
+      }
+      int current = unpackCurrentRequests(i);
+      current = current > 0 ? current - 1 : 0;
+      return packRequests(stat, current);
     });
   }
 
@@ -102,11 +142,12 @@ public class Server {
     } else {
       downtimeDetector.success();
       responseTimeTracker.time(responseTimeMillis);
+      latencyHistogram.record(responseTimeMillis);
     }
   }
 
   /**
-   * protected by {@link Upstream#rescale(java.util.List)}
+   * called by a single thread at a time, see {@link Upstream#rescale(UpstreamSnapshot)}
    */
   void rescaleStatsRequests() {
     requests.updateAndGet(reqs -> {
@@ -123,6 +164,21 @@ public class Server {
     return address;
   }
 
+  String getAddressScheme() {
+    return addressScheme;
+  }
+
+  String getAddressHost() {
+    return addressHost;
+  }
+
+  /**
+   * @return -1 if the address has no port
+   */
+  int getAddressPort() {
+    return addressPort;
+  }
+
   public int getWeight() {
     return weight;
   }
@@ -139,6 +195,18 @@ public class Server {
     return responseTimeTracker;
   }
 
+  public LatencyHistogram getLatencyHistogram() {
+    return latencyHistogram;
+  }
+
+  OutlierDetector getOutlierDetector() {
+    return outlierDetector;
+  }
+
+  PeakEwma getPeakEwma() {
+    return peakEwma;
+  }
+
   public Map<String, String> getMeta() {
     return meta;
   }
@@ -148,35 +216,62 @@ public class Server {
   }
 
   public float getStatLoad(Collection<Server> currentServers, Clock clock) {
-    if (slowStartModeEnabled) {
-      long currentTimeMillis = getCurrentTimeMillis(clock);
-      if (slowStartEndMillis > 0 && currentTimeMillis <= slowStartEndMillis) {
-        LOGGER.trace(
-            "Server {} is on slowStart, returning infinite load. Current epoch millis: {}, slow start end epoch millis: {}",
-            this,
-            currentTimeMillis,
-            slowStartEndMillis
-        );
-        return Float.POSITIVE_INFINITY;
-      }
-      LOGGER.trace("Slow start for server {} ended", this);
-      slowStartModeEnabled = false;
-    }
+    float slowStartFactor = getSlowStartFactor(clock);
     if (!statisticsFilledWithInitialValues) {
       statisticsFilledWithInitialValues = true;
-      slowStartEndMillis = -1;
       requests.updateAndGet(value -> {
-        if (!slowStartModeEnabled) {
-          int initialStatRequests = (int) Math.floor(calculateMaxRealStatLoad(currentServers) * weight);
-          LOGGER.trace("Server {} statistics has no init value. Calculated initial statRequests={}", this, initialStatRequests);
-          return packRequests(initialStatRequests, unpackCurrentRequests(value));
-        }
-        return value;
+        int initialStatRequests = (int) Math.floor(calculateMaxRealStatLoad(currentServers) * weight * slowStartFactor);
+        LOGGER.trace("Server {} statistics has no init value. Calculated initial statRequests={}", this, initialStatRequests);
+        return packRequests(initialStatRequests, unpackCurrentRequests(value));
       });
     }
     return calculateLoad();
   }
 
+  /**
+   * Effective weight of the server is its weight times this factor.
+   * During slow start the factor grows from {@link #SLOW_START_MIN_FACTOR} to 1 along {@link SlowStartCurve}.
+   * Stat requests are scaled together with the factor the same way {@link #update} does on weight change,
+   * so the load stays the same and the server gets a bigger share of new requests only, not the whole difference at once.
+   */
+  float getSlowStartFactor(Clock clock) {
+    float factor = slowStartFactor;
+    if (factor >= 1) {
+      return factor;
+    }
+    long currentTimeMillis = getCurrentTimeMillis(clock);
+    float newFactor = 1;
+    if (currentTimeMillis < slowStartEndMillis) {
+      float progress = (float) Math.max(0, currentTimeMillis - slowStartStartMillis) / (slowStartEndMillis - slowStartStartMillis);
+      newFactor = calculateSlowStartFactor(slowStartCurve, progress);
+    }
+    if (newFactor < 1 && newFactor - factor < SLOW_START_FACTOR_STEP) {
+      return factor;
+    }
+    return updateSlowStartFactor(newFactor);
+  }
+
+  private synchronized float updateSlowStartFactor(float newFactor) {
+    float factor = slowStartFactor;
+    if (newFactor <= factor) {
+      return factor;
+    }
+    double ratio = (double) newFactor / factor;
+    requests.updateAndGet(reqs -> packRequests((int) Math.round(unpackStatRequests(reqs) * ratio), unpackCurrentRequests(reqs)));
+    slowStartFactor = newFactor;
+    if (newFactor >= 1) {
+      LOGGER.trace("Slow start for server {} ended", this);
+    }
+    return newFactor;
+  }
+
+  static float calculateSlowStartFactor(SlowStartCurve curve, float progress) {
+    if (curve == SlowStartCurve.EXPONENTIAL) {
+      return (float) Math.pow(SLOW_START_MIN_FACTOR, 1 - progress);
+    }
+    return Math.max(SLOW_START_MIN_FACTOR, progress);
+  }
+
   public int getCurrentRequests() {
     return unpackCurrentRequests(requests.get());
   }
@@ -195,26 +290,49 @@ public class Server {
 
   private float calculateLoad() {
     long requests = this.requests.get();
-    return (float) (unpackStatRequests(requests) + unpackCurrentRequests(requests)) / this.weight;
+    return (float) (unpackStatRequests(requests) + unpackCurrentRequests(requests)) / (this.weight * slowStartFactor);
   }
 
   protected long getCurrentTimeMillis(Clock clock) {
     return clock.millis();
   }
 
+  /**
+   * @deprecated servers are not locked anymore, the lock is ignored
+   */
+  @Deprecated
   public void setSharedLock(StampedLock lock) {
-    this.lock = lock;
   }
 
   public void setStatLimit(int statLimit) {
     this.statLimit = statLimit;
   }
 
+  /**
+   * @deprecated use {@link #setSlowStartIfNeeded(int, SlowStartCurve, Clock)}. Weight is ramped up during slow start now,
+   * the server is not excluded until a random moment anymore
+   */
+  @Deprecated
   public void setSlowStartEndTimeIfNeeded(int slowStartSeconds, Clock clock) {
-    if (slowStartSeconds > 0 && slowStartEndMillis == 0) {
-      slowStartModeEnabled = true;
-      this.slowStartEndMillis = (long) (getCurrentTimeMillis(clock) + (Math.random() * Duration.ofSeconds(slowStartSeconds).toMillis()));
-      LOGGER.trace("Set slow start for server {}. Slow start is going to end at {} epoch millis", this, slowStartEndMillis);
+    setSlowStartIfNeeded(slowStartSeconds, SlowStartCurve.LINEAR, clock);
+  }
+
+  /**
+   * Starts slow start of a server that has not got any requests yet.
+   */
+  public void setSlowStartIfNeeded(int slowStartSeconds, SlowStartCurve curve, Clock clock) {
+    if (slowStartSeconds <= 0 || statisticsFilledWithInitialValues) {
+      return;
+    }
+    synchronized (this) {
+      if (slowStartEndMillis == 0) {
+        long currentTimeMillis = getCurrentTimeMillis(clock);
+        slowStartCurve = curve;
+        slowStartStartMillis = currentTimeMillis;
+        slowStartEndMillis = currentTimeMillis + Duration.ofSeconds(slowStartSeconds).toMillis();
+        slowStartFactor = calculateSlowStartFactor(curve, 0);
+        LOGGER.trace("Set {} slow start for server {}. Slow start is going to end at {} epoch millis", curve, this, slowStartEndMillis);
+      }
     }
   }
 
@@ -242,20 +360,6 @@ public class Server {
     return (int) requestsValue;
   }
 
-  private void executeWithLockIfAvailable(Runnable action) {
-    if (lock == null) {
-      action.run();
-      return;
-    }
-
-    long stamp = lock.writeLock();
-    try {
-      action.run();
-    } finally {
-      lock.unlockWrite(stamp);
-    }
-  }
-
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -286,13 +390,13 @@ public class Server {
         ", requests=" + requests +
         ", downtimeDetector=" + downtimeDetector +
         ", responseTimeTracker=" + responseTimeTracker +
+        ", outlierDetector=" + outlierDetector +
+        ", peakEwma=" + peakEwma +
         ", weight=" + weight +
         ", meta=" + meta +
         ", tags=" + tags +
-        ", slowStartModeEnabled=" + slowStartModeEnabled +
-        ", slowStartEndMillis=" + slowStartEndMillis +
+        ", slowStartFactor=" + slowStartFactor +
         ", statisticsFilledWithInitialValues=" + statisticsFilledWithInitialValues +
-        ", lock=" + lock +
         ", statLimit=" + statLimit +
         '}';
   }
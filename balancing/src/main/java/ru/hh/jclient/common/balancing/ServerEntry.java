@@ -1,32 +1,44 @@
 package ru.hh.jclient.common.balancing;
 
+/**
+ * Handle of a server acquired for a request. It keeps the {@link Server} itself and the generation of the snapshot it was selected from,
+ * so the server is released correctly even if upstream servers were updated and {@link #index} points at another one now.
+ */
 final class ServerEntry {
   private final int index;
-  private final String address;
-  private final String hostName;
-  private final String datacenter;
+  private final long generation;
+  private final Server server;
 
-
-  ServerEntry(int index, String address, String hostName, String datacenter) {
+  ServerEntry(int index, long generation, Server server) {
     this.index = index;
-    this.address = address;
-    this.hostName = hostName;
-    this.datacenter = datacenter;
+    this.generation = generation;
+    this.server = server;
   }
 
+  /**
+   * @return index of the server in the snapshot of {@link #getGeneration()}
+   */
   public int getIndex() {
     return index;
   }
 
+  long getGeneration() {
+    return generation;
+  }
+
+  Server getServer() {
+    return server;
+  }
+
   public String getAddress() {
-    return address;
+    return server.getAddress();
   }
 
   public String getDatacenter() {
-    return datacenter;
+    return server.getDatacenter();
   }
 
   public String getHostName() {
-    return hostName;
+    return server.getHostName();
   }
 }
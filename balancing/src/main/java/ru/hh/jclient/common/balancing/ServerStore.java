@@ -2,10 +2,24 @@ package ru.hh.jclient.common.balancing;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 public interface ServerStore {
   List<Server> getServers(String serviceName);
+
+  default List<Server> getServers(String serviceName, String datacenter) {
+    return getServers(serviceName).stream().filter(server -> Objects.equals(datacenter, server.getDatacenter())).toList();
+  }
+
+  /**
+   * @return positive version of servers returned by {@link #getServers(String)}, changed whenever they or their weights change,
+   *     0 if the store does not track versions
+   */
+  default long getVersion(String serviceName) {
+    return 0;
+  }
+
   Optional<Integer> getInitialSize(String serviceName);
   void updateServers(String serviceName, Collection<Server> aliveServers, Collection<Server> deadServers);
 }
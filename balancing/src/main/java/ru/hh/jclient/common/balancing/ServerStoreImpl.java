@@ -1,7 +1,11 @@
 package ru.hh.jclient.common.balancing;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -9,16 +13,31 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Keeps an immutable snapshot of servers per service, indexed by datacenter.
+ * Readers share snapshot lists instead of copying them; an update builds a new snapshot only if it changes something,
+ * so repeated updates with the same servers keep the version and allocate nothing but the delta check.
+ */
 public class ServerStoreImpl implements ServerStore {
-  private final ConcurrentMap<String, Set<Server>> serverList = new ConcurrentHashMap<>();
-  private final Map<String, Integer> initialCapacities = new HashMap<>();
+  private final ConcurrentMap<String, ServersSnapshot> snapshots = new ConcurrentHashMap<>();
+  private final Map<String, Integer> initialCapacities = new ConcurrentHashMap<>();
 
   @Override
   public List<Server> getServers(String serviceName) {
-    return Optional
-        .ofNullable(serverList.get(serviceName))
-        .map(List::copyOf)
-        .orElseGet(List::of);
+    ServersSnapshot snapshot = snapshots.get(serviceName);
+    return snapshot == null ? List.of() : snapshot.servers;
+  }
+
+  @Override
+  public List<Server> getServers(String serviceName, String datacenter) {
+    ServersSnapshot snapshot = snapshots.get(serviceName);
+    return snapshot == null ? List.of() : snapshot.serversByDatacenter.getOrDefault(datacenter, List.of());
+  }
+
+  @Override
+  public long getVersion(String serviceName) {
+    ServersSnapshot snapshot = snapshots.get(serviceName);
+    return snapshot == null ? 0 : snapshot.version;
   }
 
   @Override
@@ -28,17 +47,71 @@ public class ServerStoreImpl implements ServerStore {
 
   @Override
   public void updateServers(String serviceName, Collection<Server> aliveServers, Collection<Server> deadServers) {
-    serverList.compute(serviceName, (upstream, serverSet) -> {
-      if (serverSet != null) {
-        serverSet.addAll(aliveServers);
-        serverSet.removeAll(deadServers);
-        return serverSet;
+    snapshots.compute(serviceName, (upstream, snapshot) -> {
+      if (snapshot != null) {
+        return snapshot.update(aliveServers, deadServers);
       }
-      serverSet = ConcurrentHashMap.newKeySet();
-
-      serverSet.addAll(aliveServers);
       initialCapacities.put(serviceName, aliveServers.size());
-      return serverSet;
+      return new ServersSnapshot(1, new ArrayList<>(new LinkedHashSet<>(aliveServers)));
     });
   }
+
+  private static final class ServersSnapshot {
+    private final long version;
+    private final List<Server> servers;
+    private final Map<String, List<Server>> serversByDatacenter;
+    /**
+     * weights are updated in place, so they are kept to tell whether a snapshot is stale
+     */
+    private final int[] weights;
+
+    private ServersSnapshot(long version, List<Server> servers) {
+      this.version = version;
+      this.servers = Collections.unmodifiableList(servers);
+      Map<String, List<Server>> serversByDatacenter = new HashMap<>();
+      this.weights = new int[servers.size()];
+      for (int i = 0; i < servers.size(); i++) {
+        Server server = servers.get(i);
+        serversByDatacenter.computeIfAbsent(server.getDatacenter(), datacenter -> new ArrayList<>()).add(server);
+        weights[i] = server.getWeight();
+      }
+      serversByDatacenter.replaceAll((datacenter, datacenterServers) -> Collections.unmodifiableList(datacenterServers));
+      this.serversByDatacenter = Collections.unmodifiableMap(serversByDatacenter);
+    }
+
+    /**
+     * Dead servers win over alive ones, and a stored server is kept if an equal alive one comes, like in a set.
+     * Stored servers keep their order, new ones are appended.
+     */
+    private ServersSnapshot update(Collection<Server> aliveServers, Collection<Server> deadServers) {
+      Set<Server> dead = deadServers.isEmpty() ? Set.of() : new HashSet<>(deadServers);
+      List<Server> updated = new ArrayList<>(servers.size() + aliveServers.size());
+      Set<Server> present = new HashSet<>();
+      boolean changed = false;
+      for (Server server : servers) {
+        if (dead.contains(server)) {
+          changed = true;
+        } else {
+          updated.add(server);
+          present.add(server);
+        }
+      }
+      for (Server server : aliveServers) {
+        if (!dead.contains(server) && present.add(server)) {
+          updated.add(server);
+          changed = true;
+        }
+      }
+      return changed || isWeightChanged() ? new ServersSnapshot(version + 1, updated) : this;
+    }
+
+    private boolean isWeightChanged() {
+      for (int i = 0; i < servers.size(); i++) {
+        if (servers.get(i).getWeight() != weights[i]) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
 }
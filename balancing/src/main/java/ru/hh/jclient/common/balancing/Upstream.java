@@ -1,40 +1,50 @@
 package ru.hh.jclient.common.balancing;
 
 import java.time.Clock;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.concurrent.locks.StampedLock;
-import java.util.function.Consumer;
-import static java.util.stream.Collectors.toList;
+import static java.util.Objects.requireNonNullElse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ru.hh.jclient.common.TransportConfig;
+import static ru.hh.jclient.common.balancing.AdaptiveBalancingStrategy.RESPONSE_TIME_TRACKER_WINDOW;
 import static ru.hh.jclient.common.balancing.BalancingStrategy.getLeastLoadedServer;
 import ru.hh.jclient.common.balancing.config.BalancingStrategyType;
 
 public class Upstream {
   private static final Logger LOGGER = LoggerFactory.getLogger(Upstream.class);
+  private static final Clock SYSTEM_CLOCK = Clock.systemUTC();
   static final String DEFAULT_PROFILE = "default";
   static final int DEFAULT_STAT_LIMIT = 10_000_000;
 
   private final String name;
   private final String datacenter;
-  private int statLimit = DEFAULT_STAT_LIMIT;
+  private final Clock clock;
+  private volatile int statLimit = DEFAULT_STAT_LIMIT;
   private final boolean enabled; // todo: https://jira.hh.ru/browse/HH-203739
 
-  private volatile List<Server> servers;
-  private volatile UpstreamConfigs upstreamConfigs;
+  /**
+   * servers and configs are published together, readers never lock
+   */
+  private volatile UpstreamSnapshot snapshot;
   private boolean failedSelection = false;
 
-  private final ReadWriteLock configReadWriteLock = new ReentrantReadWriteLock();
-  private final Lock configWriteLock = configReadWriteLock.writeLock();
-  private final Lock configReadLock = configReadWriteLock.readLock();
-
-  private final StampedLock lock = new StampedLock();
+  private final AtomicBoolean rescaleInProgress = new AtomicBoolean();
+  private final LatencyHistogram latencyHistogram = new LatencyHistogram(RESPONSE_TIME_TRACKER_WINDOW);
+  private final RetryBudget retryBudget = new RetryBudget();
+  private final Object outlierEjectionLock = new Object();
+  private final CrossDcSpilloverEstimator crossDcSpilloverEstimator = new CrossDcSpilloverEstimator();
+  private final ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter();
+  private final AtomicBoolean adaptiveScoreTableRebuilding = new AtomicBoolean();
+  private volatile AdaptiveScoreTable adaptiveScoreTable;
 
   Upstream(
       String name,
@@ -51,74 +61,222 @@ public class Upstream {
       List<Server> servers,
       String datacenter,
       boolean enabled
+  ) {
+    this(name, upstreamConfigs, servers, datacenter, enabled, SYSTEM_CLOCK);
+  }
+
+  /**
+   * @param clock time source of balancing, simulations pass a virtual one
+   */
+  Upstream(
+      String name,
+      UpstreamConfigs upstreamConfigs,
+      List<Server> servers,
+      String datacenter,
+      boolean enabled,
+      Clock clock
   ) {
     this.name = name;
     this.datacenter = datacenter;
     this.enabled = enabled;
+    this.clock = clock;
     this.update(upstreamConfigs, servers);
   }
 
   List<Server> getServers() {
-    return servers;
+    return snapshot.getServers();
   }
 
   ServerEntry acquireServer(Set<Integer> excludedServers) {
-    configReadLock.lock();
-    try {
-      int index;
-      List<Server> servers = this.servers;
-      long readStamp = lock.tryOptimisticRead();
-      index = getLeastLoadedServer(servers, excludedServers, datacenter, Clock.systemDefaultZone());
-      if (!lock.validate(readStamp)) {
-        //fallback to lock
-        readStamp = lock.readLock();
-        try {
-          index = getLeastLoadedServer(servers, excludedServers, datacenter, Clock.systemDefaultZone());
-        } finally {
-          lock.unlockRead(readStamp);
+    return acquireServer(this.snapshot, excludedServers, null);
+  }
+
+  ServerEntry acquireServerExcluding(Collection<ServerEntry> excludedServers) {
+    return acquireServerExcluding(excludedServers, null);
+  }
+
+  /**
+   * @param excludedServers servers acquired earlier, possibly from an older snapshot
+   * @param affinityKey key of {@link BalancingStrategyType#CONSISTENT_HASH} balancing, ignored by other strategies
+   */
+  ServerEntry acquireServerExcluding(Collection<ServerEntry> excludedServers, String affinityKey) {
+    UpstreamSnapshot snapshot = this.snapshot;
+    return acquireServer(snapshot, getIndexes(snapshot, excludedServers), affinityKey);
+  }
+
+  /**
+   * @return indexes of the servers in the snapshot, servers that are not in it anymore are skipped
+   */
+  private static Set<Integer> getIndexes(UpstreamSnapshot snapshot, Collection<ServerEntry> entries) {
+    if (entries.isEmpty()) {
+      return Set.of();
+    }
+    Set<Integer> indexes = new HashSet<>();
+    for (ServerEntry entry : entries) {
+      if (entry.getGeneration() == snapshot.getGeneration()) {
+        indexes.add(entry.getIndex());
+        continue;
+      }
+      // servers were updated since the entry was acquired, membership changes are rare enough for a linear search
+      for (int i = 0; i < snapshot.size(); i++) {
+        if (snapshot.getServer(i) == entry.getServer()) {
+          indexes.add(i);
+          break;
         }
       }
+    }
+    return indexes;
+  }
 
-      if (index >= 0) {
-        Server server = servers.get(index);
-        server.acquire();
-        failedSelection = false;
-        return new ServerEntry(index, server.getAddress(), server.getHostName(), server.getDatacenter());
+  private ServerEntry acquireServer(UpstreamSnapshot snapshot, Set<Integer> excludedServers, String affinityKey) {
+    boolean preferRemote = isSpilledOver(snapshot);
+    int index = selectServer(snapshot, excludedServers, affinityKey, preferRemote);
+    if (index >= 0 && !tryAcquireOutlier(snapshot, index)) {
+      // either another request took the single probe of the server in the meantime, or every server is ejected
+      Set<Integer> excludedWithEjected = new HashSet<>(excludedServers);
+      excludedWithEjected.add(index);
+      int nextIndex = selectServer(snapshot, excludedWithEjected, affinityKey, preferRemote);
+      if (nextIndex >= 0) {
+        tryAcquireOutlier(snapshot, nextIndex);
+        index = nextIndex;
       }
-      if (!failedSelection) {
-        failedSelection = true;
-        LOGGER.warn("Next server for upstream {} with excluded server indexes {} not found. Returning null", this, excludedServers);
-      }
-      return null;
-    } finally {
-      configReadLock.unlock();
     }
+
+    if (index >= 0) {
+      Server server = snapshot.getServer(index);
+      server.acquire();
+      failedSelection = false;
+      return new ServerEntry(index, snapshot.getGeneration(), server);
+    }
+    if (!failedSelection) {
+      failedSelection = true;
+      LOGGER.warn("Next server for upstream {} with excluded server indexes {} not found. Returning null", this, excludedServers);
+    }
+    return null;
+  }
+
+  /**
+   * Consistent hash balancing falls back to the least loaded server for requests without an affinity key.
+   */
+  private int selectServer(UpstreamSnapshot snapshot, Set<Integer> excludedServers, String affinityKey, boolean preferRemote) {
+    BalancingStrategyType balancingStrategyType = snapshot.getConfigs().getBalancingStrategyType();
+    if (balancingStrategyType == BalancingStrategyType.POWER_OF_TWO_CHOICES) {
+      return PowerOfTwoChoicesBalancingStrategy.getServer(snapshot, excludedServers, clock, preferRemote);
+    }
+    if (balancingStrategyType == BalancingStrategyType.PEAK_EWMA) {
+      return PeakEwmaBalancingStrategy.getServer(snapshot, excludedServers, clock, nanoTime(), preferRemote);
+    }
+    if (balancingStrategyType == BalancingStrategyType.CONSISTENT_HASH && affinityKey != null) {
+      return ConsistentHashBalancingStrategy.getServer(snapshot, excludedServers, affinityKey, clock, preferRemote);
+    }
+    return getLeastLoadedServer(snapshot, excludedServers, clock, preferRemote);
+  }
+
+  /**
+   * @return whether this request should go to another datacenter, with probability of current spillover share
+   */
+  private boolean isSpilledOver(UpstreamSnapshot snapshot) {
+    if (snapshot.getCrossDcSpilloverConfig() == null) {
+      return false;
+    }
+    float share = crossDcSpilloverEstimator.getShare(snapshot, clock.millis());
+    return share > 0 && ThreadLocalRandom.current().nextFloat() < share;
+  }
+
+  /**
+   * @return share of requests currently sent to other datacenters because local servers are short of headroom
+   */
+  float getCrossDcSpilloverShare() {
+    UpstreamSnapshot snapshot = this.snapshot;
+    return snapshot.getCrossDcSpilloverConfig() == null ? 0 : crossDcSpilloverEstimator.getShare(snapshot, clock.millis());
+  }
+
+  boolean isRemote(String serverDatacenter) {
+    return !Objects.equals(datacenter, serverDatacenter);
+  }
+
+  /**
+   * @return false if the server is an ejected outlier and this call did not take its probe
+   */
+  private boolean tryAcquireOutlier(UpstreamSnapshot snapshot, int index) {
+    OutlierEjectionConfig config = snapshot.getOutlierEjectionConfig();
+    return config == null || snapshot.getServer(index).getOutlierDetector().tryAcquire(clock.millis(), config);
   }
 
+  /**
+   * Servers are drawn from {@link AdaptiveScoreTable}, which leaves ejected outliers out unless every server is ejected.
+   * A server due for a probe is put first, so the probe is actually sent instead of being taken by a retry that never happens.
+   */
   List<ServerEntry> acquireAdaptiveServers(String profile) {
-    configReadLock.lock();
-    try {
-      List<Server> allowedServers = new ArrayList<>();
-      List<Integer> allowedIds = new ArrayList<>();
-      for (int i = 0; i < servers.size(); i++) {
-        Server server = servers.get(i);
-        if (server != null) {
-          allowedIds.add(i);
-          allowedServers.add(server);
-        }
+    UpstreamSnapshot currentSnapshot = this.snapshot;
+    int maxTries = getConfig(currentSnapshot, profile).getMaxTries();
+    AdaptiveScoreTable scoreTable = getAdaptiveScoreTable(currentSnapshot);
+    // the table may be built for the previous snapshot while the current one is being scored, entries refer to its servers then
+    UpstreamSnapshot snapshot = scoreTable.getSnapshot();
+    List<ServerEntry> entries = new ArrayList<>(maxTries);
+    int probedId = acquireOutlierProbe(snapshot, scoreTable.getEjectedIds());
+    if (probedId >= 0) {
+      entries.add(new ServerEntry(probedId, snapshot.getGeneration(), snapshot.getServer(probedId)));
+      if (scoreTable.isOnlyEjected()) {
+        return entries;
       }
+    }
+    for (int id : scoreTable.sample(maxTries - entries.size())) {
+      entries.add(new ServerEntry(id, snapshot.getGeneration(), snapshot.getServer(id)));
+    }
+    return entries;
+  }
 
-      return AdaptiveBalancingStrategy
-          .getServers(allowedServers, getConfig(profile).getMaxTries())
-          .stream()
-          .map(id -> {
-            Server server = allowedServers.get(id);
-            return new ServerEntry(allowedIds.get(id), server.getAddress(), server.getHostName(), server.getDatacenter());
-          })
-          .collect(toList());
+  /**
+   * @return monotonic time of the system clock, time of the clock itself otherwise
+   */
+  private long nanoTime() {
+    if (clock == SYSTEM_CLOCK) {
+      return System.nanoTime();
+    }
+    Instant now = clock.instant();
+    return TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano();
+  }
+
+  /**
+   * Only one request rebuilds a stale table, the others keep using the previous one meanwhile, even if it was built for
+   * the previous snapshot. Servers are released by their entries, so entries of the previous snapshot are released correctly.
+   */
+  private AdaptiveScoreTable getAdaptiveScoreTable(UpstreamSnapshot snapshot) {
+    AdaptiveScoreTable scoreTable = adaptiveScoreTable;
+    long nowNanos = nanoTime();
+    if (scoreTable != null && !scoreTable.isStale(snapshot, nowNanos)) {
+      return scoreTable;
+    }
+    if (!adaptiveScoreTableRebuilding.compareAndSet(false, true)) {
+      // there is no previous table for the very first requests only
+      return scoreTable != null ? scoreTable : AdaptiveScoreTable.create(snapshot, nowNanos, clock);
+    }
+    try {
+      scoreTable = AdaptiveScoreTable.create(snapshot, nowNanos, clock);
+      adaptiveScoreTable = scoreTable;
+      return scoreTable;
     } finally {
-      configReadLock.unlock();
+      adaptiveScoreTableRebuilding.set(false);
+    }
+  }
+
+  /**
+   * @return index of an ejected server this call took the probe of, -1 if there is no server due for a probe
+   */
+  private int acquireOutlierProbe(UpstreamSnapshot snapshot, int[] ejectedIds) {
+    OutlierEjectionConfig config = snapshot.getOutlierEjectionConfig();
+    if (config == null || ejectedIds.length == 0) {
+      return -1;
+    }
+    long nowMillis = clock.millis();
+    for (int id : ejectedIds) {
+      OutlierDetector detector = snapshot.getServer(id).getOutlierDetector();
+      if (detector.getEjectedUntilMillis() != 0 && detector.isProbeDue(nowMillis) && detector.tryAcquire(nowMillis, config)) {
+        return id;
+      }
     }
+    return -1;
   }
 
   ServerEntry acquireServer() {
@@ -129,82 +287,303 @@ public class Upstream {
     releaseServer(serverIndex, isRetry, isError, responseTimeMillis, false);
   }
 
+  /**
+   * Releases server by its index in the current snapshot, a request acquired the server from should use {@link ServerEntry} instead.
+   */
   void releaseServer(int serverIndex, boolean isRetry, boolean isError, long responseTimeMillis, boolean adaptive) {
-    configReadLock.lock();
-    try {
-      if (serverIndex < 0 || serverIndex >= servers.size()) {
+    UpstreamSnapshot snapshot = this.snapshot;
+    if (serverIndex < 0 || serverIndex >= snapshot.size()) {
+      return;
+    }
+    releaseServer(snapshot, snapshot.getServer(serverIndex), isRetry, isError, responseTimeMillis, adaptive);
+  }
+
+  /**
+   * Releases the very server the entry was acquired for, even if it was replaced or removed by an update since then.
+   */
+  void releaseServer(ServerEntry serverEntry, boolean isRetry, boolean isError, long responseTimeMillis, boolean adaptive) {
+    releaseServer(this.snapshot, serverEntry.getServer(), isRetry, isError, responseTimeMillis, adaptive);
+  }
+
+  private void releaseServer(UpstreamSnapshot snapshot, Server server, boolean isRetry, boolean isError, long responseTimeMillis,
+                             boolean adaptive) {
+    if (!isError && snapshot.isResponseTimeRecorded()) {
+      latencyHistogram.record(responseTimeMillis);
+    }
+    if (server != null) {
+      if (adaptive) {
+        server.releaseAdaptive(isError, responseTimeMillis);
+        AdaptiveScoreTable scoreTable = adaptiveScoreTable;
+        if (scoreTable != null) {
+          scoreTable.onRelease(isError);
+        }
+      } else {
+        server.release(isRetry);
+        if (!isError) {
+          // adaptive balancing records it on its own, other strategies need it for expected response time of retries
+          server.getResponseTimeTracker().time(responseTimeMillis);
+        }
+        if (snapshot.isPeakEwmaRecorded()) {
+          // errors are observed as well: a timeout is exactly the slow response the cost should catch
+          server.getPeakEwma().observe(responseTimeMillis, nanoTime());
+        }
+      }
+      if (snapshot.isServerHealthTracked()) {
+        recordOutlierResult(snapshot, server, isError);
+      }
+    }
+
+    if (!adaptive) {
+      rescale(snapshot);
+    }
+  }
+
+  /**
+   * Passive outlier ejection: a server whose recent results have too many errors is not selected for a while, see {@link OutlierDetector}.
+   * The first result after ejection time is treated as the probe one, even if it comes from a request sent before the ejection.
+   */
+  private void recordOutlierResult(UpstreamSnapshot snapshot, Server server, boolean isError) {
+    OutlierEjectionConfig config = snapshot.getOutlierEjectionConfig();
+    OutlierDetector detector = server.getOutlierDetector();
+    if (config == null) {
+      detector.record(isError);
+      return;
+    }
+    long nowMillis = clock.millis();
+    long ejectedUntil = detector.getEjectedUntilMillis();
+    if (ejectedUntil != 0) {
+      if (nowMillis < ejectedUntil) {
         return;
       }
-      Server server = servers.get(serverIndex);
-      if (server != null) {
-        if (adaptive) {
-          server.releaseAdaptive(isError, responseTimeMillis);
-        } else {
-          server.release(isRetry);
+      if (isError) {
+        long ejectionTime = detector.eject(nowMillis, config, true);
+        LOGGER.warn("Probe to server {} of upstream {} failed, server is ejected for {} ms", server.getAddress(), name, ejectionTime);
+      } else {
+        detector.readmit(nowMillis);
+        LOGGER.info("Probe to server {} of upstream {} succeeded, server is readmitted", server.getAddress(), name);
+      }
+      return;
+    }
+    if (detector.record(isError) && isError) {
+      eject(snapshot, server, config, nowMillis);
+    }
+  }
+
+  /**
+   * Ejections are rare, so they are serialized to keep the number of ejected servers within the limit.
+   */
+  private void eject(UpstreamSnapshot snapshot, Server server, OutlierEjectionConfig config, long nowMillis) {
+    synchronized (outlierEjectionLock) {
+      OutlierDetector detector = server.getOutlierDetector();
+      if (detector.getEjectedUntilMillis() != 0) {
+        return;
+      }
+      int ejected = 0;
+      int total = 0;
+      for (int i = 0; i < snapshot.size(); i++) {
+        Server other = snapshot.getServer(i);
+        if (other != null) {
+          total++;
+          if (other.getOutlierDetector().getEjectedUntilMillis() != 0) {
+            ejected++;
+          }
         }
       }
+      int maxEjected = total < 2 ? 0 : Math.max(1, total * config.getMaxEjectionPercent() / 100);
+      if (ejected >= maxEjected) {
+        LOGGER.debug(
+            "Server {} of upstream {} has too many errors, but {} of {} servers are already ejected",
+            server.getAddress(), name, ejected, total
+        );
+        return;
+      }
+      long ejectionTime = detector.eject(nowMillis, config, false);
+      LOGGER.warn("Server {} of upstream {} has too many errors and is ejected for {} ms", server.getAddress(), name, ejectionTime);
+    }
+  }
 
-      if (!adaptive) {
-        rescale(servers);
+  /**
+   * Records whether a connection to the server was opened ahead of requests, see {@link ConnectionPrewarmer}.
+   * A failure counts as a failed request for outlier ejection and downtime detection, so that a new server
+   * that does not accept connections gets few requests. Response time is not recorded, the prewarm request is not a usual one.
+   */
+  void recordPrewarmResult(Server server, boolean isError) {
+    UpstreamSnapshot snapshot = this.snapshot;
+    if (snapshot.getConfigs().getBalancingStrategyType() == BalancingStrategyType.ADAPTIVE) {
+      if (isError) {
+        server.getDowntimeDetector().failed();
+      } else {
+        server.getDowntimeDetector().success();
       }
-    } finally {
-      configReadLock.unlock();
+    }
+    if (snapshot.isServerHealthTracked()) {
+      recordOutlierResult(snapshot, server, isError);
     }
   }
 
-  private void rescale(List<Server> servers) {
-    boolean[] rescale = {true, true};
-    iterateServers(servers, server -> {
-      int localOrRemote = Objects.equals(server.getDatacenter(), datacenter) ? 0 : 1;
-      rescale[localOrRemote] &= server.needToRescale();
-    });
+  /**
+   * Releases server of an attempt whose response is not going to be used, e.g. a hedged attempt that lost.
+   * Cancellation says nothing about server health, so only request counters are restored.
+   *
+   * @param requestSent if false, the server was acquired but not used, so stat requests are restored as well
+   */
+  void releaseCancelledServer(ServerEntry serverEntry, boolean requestSent, boolean adaptive) {
+    if (!adaptive && serverEntry.getServer() != null) {
+      serverEntry.getServer().release(!requestSent);
+    }
+  }
 
-    if (rescale[0] || rescale[1]) {
-      LOGGER.trace("Need to rescale servers. Double checking with lock");
-      long writeStamp = lock.writeLock();
-      try {
-        iterateServers(servers, server -> {
-          int localOrRemote = Objects.equals(server.getDatacenter(), datacenter) ? 0 : 1;
-          rescale[localOrRemote] &= server.needToRescale();
-        });
-        if (rescale[0] || rescale[1]) {
-          LOGGER.debug("Rescaling servers {}", servers);
-          iterateServers(servers, server -> {
-            int localOrRemote = Objects.equals(server.getDatacenter(), datacenter) ? 0 : 1;
-            if (rescale[localOrRemote]) {
-              server.rescaleStatsRequests();
-            }
-          });
-        }
-      } finally {
-        lock.unlockWrite(writeStamp);
+  /**
+   * @return quantile of successful response times of the upstream, 0 if there are none
+   */
+  long getResponseTimeQuantile(float quantile) {
+    return latencyHistogram.quantile(quantile);
+  }
+
+  /**
+   * @param excludedServers servers already tried by the request, they are considered only if every server was tried
+   * @return the lowest mean response time among servers a retry may go to, or -1 if any of them has too few responses to tell
+   */
+  long getExpectedRetryResponseTimeMillis(Collection<ServerEntry> excludedServers) {
+    UpstreamSnapshot snapshot = this.snapshot;
+    Set<Integer> excludedIndexes = getIndexes(snapshot, excludedServers);
+    boolean allExcluded = excludedIndexes.size() >= snapshot.size();
+    long expected = -1;
+    for (int i = 0; i < snapshot.size(); i++) {
+      Server server = snapshot.getServer(i);
+      if (server == null || !allExcluded && excludedIndexes.contains(i)) {
+        continue;
       }
+      ResponseTimeTracker tracker = server.getResponseTimeTracker();
+      if (tracker.isWarmUp()) {
+        return -1;
+      }
+      long mean = tracker.mean();
+      expected = expected < 0 ? mean : Math.min(expected, mean);
     }
+    return expected;
   }
 
-  void update(UpstreamConfigs newConfigs, List<Server> servers) {
-    configWriteLock.lock();
+  /**
+   * Refills retry budget, should be called once per request whose first attempt succeeded.
+   */
+  void onFirstAttemptSuccess() {
+    retryBudget.deposit();
+  }
+
+  /**
+   * @return false if retry budget is exhausted and the retry should not be fired
+   */
+  boolean tryAcquireRetry() {
+    return retryBudget.tryWithdraw();
+  }
+
+  /**
+   * @return false if the upstream has as many requests in flight as its concurrency limit allows, and the request should be rejected
+   */
+  boolean tryAcquireConcurrency() {
+    return concurrencyLimiter.tryAcquire();
+  }
+
+  /**
+   * @return new concurrency limit if the response changed it, -1 otherwise
+   */
+  int releaseConcurrency(long responseTimeMillis, boolean isError) {
+    return concurrencyLimiter.release(responseTimeMillis, isError);
+  }
+
+  void cancelConcurrency() {
+    concurrencyLimiter.cancel();
+  }
+
+  int getConcurrencyLimit() {
+    return concurrencyLimiter.getLimit();
+  }
+
+  int getConcurrencyInFlight() {
+    return concurrencyLimiter.getInFlight();
+  }
+
+  /**
+   * Halves stat requests of local or remote servers once all of them reach {@link #statLimit}.
+   * Concurrent selection may see a partially rescaled group; that costs at most a single suboptimal pick,
+   * so only rescalers are serialized, not readers.
+   */
+  private void rescale(UpstreamSnapshot snapshot) {
+    boolean rescaleLocal = needToRescale(snapshot, false);
+    boolean rescaleRemote = needToRescale(snapshot, true);
+    if (!rescaleLocal && !rescaleRemote) {
+      return;
+    }
+
+    if (!rescaleInProgress.compareAndSet(false, true)) {
+      LOGGER.trace("Rescale is already in progress");
+      return;
+    }
     try {
-      this.upstreamConfigs = newConfigs;
-      this.servers = servers;
-      this.servers.forEach(server -> {
-        server.setStatLimit(statLimit);
-        server.setSharedLock(lock);
-      });
-      UpstreamConfig upstreamConfig = getUpstreamConfigOrThrow(DEFAULT_PROFILE);
-      initSlowStart(upstreamConfig, Clock.systemDefaultZone());
-      this.failedSelection = false;
+      LOGGER.debug("Rescaling servers {}", snapshot.getServers());
+      for (int i = 0; i < snapshot.size(); i++) {
+        Server server = snapshot.getServer(i);
+        if (server != null && (snapshot.isRemote(server) ? rescaleRemote : rescaleLocal)) {
+          server.rescaleStatsRequests();
+        }
+      }
     } finally {
-      configWriteLock.unlock();
+      rescaleInProgress.set(false);
+    }
+  }
+
+  private static boolean needToRescale(UpstreamSnapshot snapshot, boolean remote) {
+    boolean found = false;
+    for (int i = 0; i < snapshot.size(); i++) {
+      Server server = snapshot.getServer(i);
+      if (server == null || snapshot.isRemote(server) != remote) {
+        continue;
+      }
+      if (!server.needToRescale()) {
+        return false;
+      }
+      found = true;
+    }
+    return found;
+  }
+
+  void update(UpstreamConfigs newConfigs, List<Server> servers) {
+    update(newConfigs, servers, 0);
+  }
+
+  /**
+   * @param serversVersion version of servers from {@link ServerStore#getVersion}, if neither it nor configs changed, update is skipped
+   */
+  synchronized void update(UpstreamConfigs newConfigs, List<Server> servers, long serversVersion) {
+    UpstreamSnapshot current = this.snapshot;
+    if (current != null && serversVersion > 0 && current.getServersVersion() == serversVersion && current.getConfigs() == newConfigs) {
+      LOGGER.trace("Servers version {} and configs of upstream {} are not changed, skipping update", serversVersion, name);
+      return;
     }
+    UpstreamConfig upstreamConfig = getUpstreamConfigOrThrow(newConfigs, DEFAULT_PROFILE);
+    servers.forEach(server -> {
+      if (server != null) {
+        server.setStatLimit(statLimit);
+      }
+    });
+    initSlowStart(servers, upstreamConfig, clock);
+    retryBudget.setRatio(requireNonNullElse(newConfigs.getRetryBudgetRatio(), 0f));
+    concurrencyLimiter.setConfig(newConfigs.getConcurrencyLimitConfig());
+    this.snapshot = new UpstreamSnapshot(current == null ? 0 : current.getGeneration() + 1, serversVersion, newConfigs, servers, datacenter);
+    this.failedSelection = false;
   }
 
-  private UpstreamConfig getUpstreamConfigOrThrow(String profile) {
+  private static UpstreamConfig getUpstreamConfigOrThrow(UpstreamConfigs upstreamConfigs, String profile) {
     return upstreamConfigs.get(profile).orElseThrow(() -> new IllegalStateException("Profile " + profile + " should be present"));
   }
 
-  private void initSlowStart(UpstreamConfig upstreamConfig, Clock clock) {
-    servers.forEach(server -> server.setSlowStartEndTimeIfNeeded(upstreamConfig.getSlowStartIntervalSec(), clock));
+  private static void initSlowStart(List<Server> servers, UpstreamConfig upstreamConfig, Clock clock) {
+    servers.forEach(server -> {
+      if (server != null) {
+        server.setSlowStartIfNeeded(upstreamConfig.getSlowStartIntervalSec(), upstreamConfig.getSlowStartCurve(), clock);
+      }
+    });
   }
 
   String getName() {
@@ -220,42 +599,61 @@ public class Upstream {
   }
 
   UpstreamConfig getConfig(String profile) {
+    return getConfig(snapshot, profile);
+  }
+
+  private static UpstreamConfig getConfig(UpstreamSnapshot snapshot, String profile) {
     profile = profile == null || profile.isEmpty() ? DEFAULT_PROFILE : profile;
-    configReadLock.lock();
-    try {
-      return getUpstreamConfigOrThrow(profile);
-    } finally {
-      configReadLock.unlock();
-    }
+    return getUpstreamConfigOrThrow(snapshot.getConfigs(), profile);
   }
 
   boolean isAdaptive() {
-    return upstreamConfigs.getBalancingStrategyType() == BalancingStrategyType.ADAPTIVE;
+    return snapshot.getConfigs().getBalancingStrategyType() == BalancingStrategyType.ADAPTIVE;
+  }
+
+  boolean isPowerOfTwoChoices() {
+    return getBalancingStrategyType() == BalancingStrategyType.POWER_OF_TWO_CHOICES;
+  }
+
+  BalancingStrategyType getBalancingStrategyType() {
+    return snapshot.getConfigs().getBalancingStrategyType();
+  }
+
+  /**
+   * Requests with the same transport config share a connection pool, so it should be built the same way for all of them.
+   */
+  TransportConfig getTransportConfig(UpstreamConfig upstreamConfig, double timeoutMultiplier) {
+    ConnectionPoolConfig connectionPoolConfig = snapshot.getConfigs().getConnectionPoolConfig();
+    return new TransportConfig(
+        (int) (upstreamConfig.getConnectTimeoutMs() * timeoutMultiplier),
+        connectionPoolConfig != null ? connectionPoolConfig.getMaxConnectionsPerHost() : 0,
+        connectionPoolConfig != null ? connectionPoolConfig.getIdleTimeoutMs() : 0
+    );
   }
 
   //visible for testing
-  void setStatLimit(int statLimit) {
-    this.statLimit = statLimit;
-    servers.forEach(server -> server.setStatLimit(statLimit));
+  UpstreamSnapshot getSnapshot() {
+    return snapshot;
   }
 
-  private static void iterateServers(List<Server> servers, Consumer<Server> function) {
-    servers.forEach(server -> {
-      if (server == null) {
-        return;
+  //visible for testing
+  void setStatLimit(int statLimit) {
+    this.statLimit = statLimit;
+    snapshot.getServers().forEach(server -> {
+      if (server != null) {
+        server.setStatLimit(statLimit);
       }
-
-      function.accept(server);
     });
   }
 
   @Override
   public String toString() {
+    UpstreamSnapshot snapshot = this.snapshot;
     return "Upstream{" +
       "name=" + name +
-      ", upstreamConfig=" + upstreamConfigs +
+      ", upstreamConfig=" + snapshot.getConfigs() +
       ", datacenter='" + datacenter + '\'' +
-      ", servers=" + servers +
+      ", servers=" + snapshot.getServers() +
       '}';
   }
 }
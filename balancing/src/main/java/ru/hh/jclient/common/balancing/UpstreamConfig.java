@@ -1,5 +1,7 @@
 package ru.hh.jclient.common.balancing;
 
+import ru.hh.jclient.common.balancing.config.SlowStartCurve;
+
 public final class UpstreamConfig {
   public static final String DEFAULT = "default";
 
@@ -22,7 +24,10 @@ public final class UpstreamConfig {
   private final RetryPolicy retryPolicy = new RetryPolicy();
 
   private int slowStartIntervalSec;
+  private SlowStartCurve slowStartCurve = SlowStartCurve.LINEAR;
   private boolean isSessionRequired;
+  private int hedgeDelayMs;
+  private float hedgeQuantile;
 
   UpstreamConfig(int maxTries, int maxTimeoutTries, int connectTimeoutMs, int requestTimeoutMs) {
     this.maxTries = maxTries;
@@ -51,10 +56,32 @@ public final class UpstreamConfig {
     return slowStartIntervalSec;
   }
 
+  public SlowStartCurve getSlowStartCurve() {
+    return slowStartCurve;
+  }
+
   public boolean isSessionRequired() {
     return isSessionRequired;
   }
 
+  /**
+   * fixed delay before a hedged attempt, 0 if not set
+   */
+  public int getHedgeDelayMs() {
+    return hedgeDelayMs;
+  }
+
+  /**
+   * quantile of upstream response time used as a delay before a hedged attempt, 0 if not set
+   */
+  public float getHedgeQuantile() {
+    return hedgeQuantile;
+  }
+
+  public boolean isHedgingEnabled() {
+    return hedgeDelayMs > 0 || hedgeQuantile > 0;
+  }
+
   public RetryPolicy getRetryPolicy() {
     return retryPolicy;
   }
@@ -64,11 +91,26 @@ public final class UpstreamConfig {
     return this;
   }
 
+  UpstreamConfig setSlowStartCurve(SlowStartCurve slowStartCurve) {
+    this.slowStartCurve = slowStartCurve;
+    return this;
+  }
+
   public UpstreamConfig setSessionRequired(boolean sessionRequired) {
     this.isSessionRequired = sessionRequired;
     return this;
   }
 
+  UpstreamConfig setHedgeDelayMs(int hedgeDelayMs) {
+    this.hedgeDelayMs = hedgeDelayMs;
+    return this;
+  }
+
+  UpstreamConfig setHedgeQuantile(float hedgeQuantile) {
+    this.hedgeQuantile = hedgeQuantile;
+    return this;
+  }
+
   @Override
   public String toString() {
     return "{max_tries=" + maxTries
@@ -76,7 +118,10 @@ public final class UpstreamConfig {
         + ", connect_timeout_ms=" + connectTimeoutMs
         + ", request_timeout_ms=" + requestTimeoutMs
         + ", slow_start_interval_sec=" + slowStartIntervalSec
+        + ", slow_start_curve=" + slowStartCurve.getPublicName()
         + ", is_session_required=" + isSessionRequired
+        + ", hedge_delay_ms=" + hedgeDelayMs
+        + ", hedge_quantile=" + hedgeQuantile
         + '}';
   }
 }
@@ -5,8 +5,17 @@ import java.util.Map;
 import static java.util.Objects.requireNonNullElse;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import static java.util.stream.Collectors.toMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import static ru.hh.jclient.common.balancing.ConcurrencyLimitConfig.DEFAULT_INITIAL_LIMIT;
+import static ru.hh.jclient.common.balancing.ConcurrencyLimitConfig.DEFAULT_MAX_LIMIT;
+import static ru.hh.jclient.common.balancing.ConcurrencyLimitConfig.DEFAULT_MIN_LIMIT;
+import static ru.hh.jclient.common.balancing.CrossDcSpilloverConfig.DEFAULT_CAPACITY_PER_WEIGHT;
+import static ru.hh.jclient.common.balancing.CrossDcSpilloverConfig.DEFAULT_HEADROOM;
+import static ru.hh.jclient.common.balancing.OutlierEjectionConfig.DEFAULT_BASE_EJECTION_TIME_MS;
+import static ru.hh.jclient.common.balancing.OutlierEjectionConfig.DEFAULT_MAX_EJECTION_PERCENT;
+import static ru.hh.jclient.common.balancing.OutlierEjectionConfig.DEFAULT_MAX_EJECTION_TIME_MS;
 import static ru.hh.jclient.common.balancing.UpstreamConfig.DEFAULT;
 import static ru.hh.jclient.common.balancing.UpstreamConfig.DEFAULT_CONFIG;
 import static ru.hh.jclient.common.balancing.UpstreamConfig.DEFAULT_CONNECT_TIMEOUT_MS;
@@ -14,44 +23,144 @@ import static ru.hh.jclient.common.balancing.UpstreamConfig.DEFAULT_MAX_TIMEOUT_
 import static ru.hh.jclient.common.balancing.UpstreamConfig.DEFAULT_MAX_TRIES;
 import static ru.hh.jclient.common.balancing.UpstreamConfig.DEFAULT_REQUEST_TIMEOUT_MS;
 import ru.hh.jclient.common.balancing.config.BalancingStrategyType;
+import ru.hh.jclient.common.balancing.config.Profile;
+import ru.hh.jclient.common.balancing.config.SlowStartCurve;
 
 public final class UpstreamConfigs {
   private static final Logger log = LoggerFactory.getLogger(UpstreamConfigs.class);
 
   private static final BalancingStrategyType DEFAULT_BALANCING_STRATEGY = BalancingStrategyType.WEIGHTED;
+  private static final SlowStartCurve DEFAULT_SLOW_START_CURVE = SlowStartCurve.LINEAR;
 
   private final Map<String, UpstreamConfig> configByProfile;
   private final BalancingStrategyType balancingStrategyType;
+  /**
+   * quantile of response time used by adaptive balancing instead of mean, null means mean
+   */
+  @Nullable
+  private final Float adaptiveLatencyQuantile;
+  /**
+   * share of successful first attempts allowed to be retried, null means retries are limited by tries only
+   */
+  @Nullable
+  private final Float retryBudgetRatio;
+  /**
+   * null means servers are never ejected
+   */
+  @Nullable
+  private final OutlierEjectionConfig outlierEjectionConfig;
+  /**
+   * null means servers of other datacenters are used only if local ones are not available
+   */
+  @Nullable
+  private final CrossDcSpilloverConfig crossDcSpilloverConfig;
+  /**
+   * null means requests in flight to the upstream are not limited
+   */
+  @Nullable
+  private final ConcurrencyLimitConfig concurrencyLimitConfig;
+  /**
+   * null means the upstream shares connections with the others
+   */
+  @Nullable
+  private final ConnectionPoolConfig connectionPoolConfig;
 
-  private UpstreamConfigs(Map<String, UpstreamConfig> configByProfile, @Nullable String balancingStrategyType) {
-    this.configByProfile = configByProfile;
+  private UpstreamConfigs(Builder builder) {
+    this.configByProfile = builder.configByProfile;
 
+    String balancingStrategyType = builder.balancingStrategyType;
     BalancingStrategyType parsedStrategy = BalancingStrategyType.tryParseFromString(balancingStrategyType);
     if (parsedStrategy == null && balancingStrategyType != null) {
       log.error("Invalid balancing strategy '{}', will use default ('{}')", balancingStrategyType, DEFAULT_BALANCING_STRATEGY.getPublicName());
     }
 
     this.balancingStrategyType = requireNonNullElse(parsedStrategy, DEFAULT_BALANCING_STRATEGY);
+
+    Float adaptiveLatencyQuantile = builder.adaptiveLatencyQuantile;
+    if (adaptiveLatencyQuantile != null && !(adaptiveLatencyQuantile > 0 && adaptiveLatencyQuantile <= 1)) {
+      log.error("Invalid adaptive latency quantile {}, will use mean response time", adaptiveLatencyQuantile);
+      adaptiveLatencyQuantile = null;
+    }
+    this.adaptiveLatencyQuantile = adaptiveLatencyQuantile;
+
+    Float retryBudgetRatio = builder.retryBudgetRatio;
+    if (retryBudgetRatio != null && !(retryBudgetRatio > 0)) {
+      log.error("Invalid retry budget ratio {}, retries will not be limited by budget", retryBudgetRatio);
+      retryBudgetRatio = null;
+    }
+    this.retryBudgetRatio = retryBudgetRatio;
+    this.outlierEjectionConfig = builder.outlierEjectionConfig;
+    this.crossDcSpilloverConfig = builder.crossDcSpilloverConfig;
+    this.concurrencyLimitConfig = builder.concurrencyLimitConfig;
+    this.connectionPoolConfig = builder.connectionPoolConfig;
   }
 
   public static UpstreamConfigs of(Map<String, UpstreamConfig> configByProfile, @Nullable String balancingStrategyType) {
-    return new UpstreamConfigs(configByProfile, balancingStrategyType);
+    return builder(configByProfile).withBalancingStrategyType(balancingStrategyType).build();
+  }
+
+  public static Builder builder(Map<String, UpstreamConfig> configByProfile) {
+    return new Builder(configByProfile);
   }
 
   public Optional<UpstreamConfig> get(String profile) {
     return Optional.ofNullable(configByProfile.get(profile));
   }
 
+  /**
+   * upstream response times are recorded only if some profile derives hedge delay from them
+   */
+  boolean isHedgeQuantileUsed() {
+    return configByProfile.values().stream().anyMatch(config -> config.getHedgeQuantile() > 0);
+  }
+
   public BalancingStrategyType getBalancingStrategyType() {
     return balancingStrategyType;
   }
 
+  @Nullable
+  public Float getAdaptiveLatencyQuantile() {
+    return adaptiveLatencyQuantile;
+  }
+
+  @Nullable
+  public Float getRetryBudgetRatio() {
+    return retryBudgetRatio;
+  }
+
+  @Nullable
+  public OutlierEjectionConfig getOutlierEjectionConfig() {
+    return outlierEjectionConfig;
+  }
+
+  @Nullable
+  public CrossDcSpilloverConfig getCrossDcSpilloverConfig() {
+    return crossDcSpilloverConfig;
+  }
+
+  @Nullable
+  public ConcurrencyLimitConfig getConcurrencyLimitConfig() {
+    return concurrencyLimitConfig;
+  }
+
+  @Nullable
+  public ConnectionPoolConfig getConnectionPoolConfig() {
+    return connectionPoolConfig;
+  }
+
   public static UpstreamConfigs getDefaultConfig() {
     return getDefaultConfig(null);
   }
 
   public static UpstreamConfigs getDefaultConfig(@Nullable String balancingStrategyType) {
-    return new UpstreamConfigs(Map.of(DEFAULT, DEFAULT_CONFIG), balancingStrategyType);
+    return defaultConfigBuilder().withBalancingStrategyType(balancingStrategyType).build();
+  }
+
+  /**
+   * @return builder of configs with the default profile only
+   */
+  public static Builder defaultConfigBuilder() {
+    return builder(Map.of(DEFAULT, DEFAULT_CONFIG));
   }
 
   public static UpstreamConfig createUpstreamConfigWithDefaults(
@@ -76,6 +185,114 @@ public final class UpstreamConfigs {
     return upstreamConfig;
   }
 
+  /**
+   * Settings missing in the profile are taken from defaults, invalid ones are logged and replaced with defaults too.
+   */
+  public static UpstreamConfig createUpstreamConfigWithDefaults(Profile profile) {
+    UpstreamConfig upstreamConfig = createUpstreamConfigWithDefaults(
+        profile.getMaxTries(),
+        profile.getMaxTimeoutTries(),
+        profile.getConnectTimeoutSec(),
+        profile.getRequestTimeoutSec(),
+        profile.getSlowStartIntervalSec(),
+        profile.isSessionRequired(),
+        Optional
+            .ofNullable(profile.getRetryPolicy())
+            .map(policy -> policy
+                .entrySet()
+                .stream()
+                .collect(toMap(Map.Entry::getKey, e -> e.getValue().isRetryNonIdempotent())))
+            .orElseGet(Map::of)
+    );
+    String slowStartCurve = profile.getSlowStartCurve();
+    SlowStartCurve parsedSlowStartCurve = SlowStartCurve.tryParseFromString(slowStartCurve);
+    if (slowStartCurve != null && parsedSlowStartCurve == null) {
+      log.error("Invalid slow start curve '{}', will use default ('{}')", slowStartCurve, DEFAULT_SLOW_START_CURVE.getPublicName());
+    }
+    upstreamConfig.setSlowStartCurve(requireNonNullElse(parsedSlowStartCurve, DEFAULT_SLOW_START_CURVE));
+    upstreamConfig.setHedgeDelayMs(convertToMillisOrFallback(profile.getHedgeDelaySec(), 0));
+    Float hedgeQuantile = profile.getHedgeQuantile();
+    if (hedgeQuantile != null && !(hedgeQuantile > 0 && hedgeQuantile < 1)) {
+      log.error("Invalid hedge quantile {}, will use hedge delay only", hedgeQuantile);
+    } else {
+      upstreamConfig.setHedgeQuantile(requireNonNullElse(hedgeQuantile, 0f));
+    }
+
+    return upstreamConfig;
+  }
+
+  public static OutlierEjectionConfig createOutlierEjectionConfigWithDefaults(
+      Float baseEjectionTimeSec,
+      Float maxEjectionTimeSec,
+      Integer maxEjectionPercent
+  ) {
+    int baseEjectionTimeMs = convertToMillisOrFallback(baseEjectionTimeSec, DEFAULT_BASE_EJECTION_TIME_MS);
+    if (baseEjectionTimeMs <= 0) {
+      log.error("Invalid base ejection time {} sec, will use default ({} ms)", baseEjectionTimeSec, DEFAULT_BASE_EJECTION_TIME_MS);
+      baseEjectionTimeMs = DEFAULT_BASE_EJECTION_TIME_MS;
+    }
+    int maxEjectionTimeMs = convertToMillisOrFallback(maxEjectionTimeSec, Math.max(DEFAULT_MAX_EJECTION_TIME_MS, baseEjectionTimeMs));
+    if (maxEjectionTimeMs < baseEjectionTimeMs) {
+      log.error("Max ejection time {} sec is less than base one, will use base ejection time", maxEjectionTimeSec);
+      maxEjectionTimeMs = baseEjectionTimeMs;
+    }
+    int ejectionPercent = requireNonNullElse(maxEjectionPercent, DEFAULT_MAX_EJECTION_PERCENT);
+    if (ejectionPercent < 0 || ejectionPercent > 100) {
+      log.error("Invalid max ejection percent {}, will use default ({})", maxEjectionPercent, DEFAULT_MAX_EJECTION_PERCENT);
+      ejectionPercent = DEFAULT_MAX_EJECTION_PERCENT;
+    }
+    return new OutlierEjectionConfig(baseEjectionTimeMs, maxEjectionTimeMs, ejectionPercent);
+  }
+
+  public static CrossDcSpilloverConfig createCrossDcSpilloverConfigWithDefaults(Float headroom, Integer capacityPerWeight) {
+    float validHeadroom = requireNonNullElse(headroom, DEFAULT_HEADROOM);
+    if (!(validHeadroom > 0 && validHeadroom <= 1)) {
+      log.error("Invalid cross dc spillover headroom {}, will use default ({})", headroom, DEFAULT_HEADROOM);
+      validHeadroom = DEFAULT_HEADROOM;
+    }
+    int validCapacityPerWeight = requireNonNullElse(capacityPerWeight, DEFAULT_CAPACITY_PER_WEIGHT);
+    if (validCapacityPerWeight <= 0) {
+      log.error("Invalid cross dc spillover capacity per weight {}, will use default ({})", capacityPerWeight, DEFAULT_CAPACITY_PER_WEIGHT);
+      validCapacityPerWeight = DEFAULT_CAPACITY_PER_WEIGHT;
+    }
+    return new CrossDcSpilloverConfig(validHeadroom, validCapacityPerWeight);
+  }
+
+  public static ConcurrencyLimitConfig createConcurrencyLimitConfigWithDefaults(Integer initialLimit, Integer minLimit, Integer maxLimit) {
+    int validMinLimit = requireNonNullElse(minLimit, DEFAULT_MIN_LIMIT);
+    if (validMinLimit < 1) {
+      log.error("Invalid min concurrency limit {}, will use default ({})", minLimit, DEFAULT_MIN_LIMIT);
+      validMinLimit = DEFAULT_MIN_LIMIT;
+    }
+    int validMaxLimit = requireNonNullElse(maxLimit, Math.max(DEFAULT_MAX_LIMIT, validMinLimit));
+    if (validMaxLimit < validMinLimit) {
+      log.error("Max concurrency limit {} is less than min one, will use min concurrency limit", maxLimit);
+      validMaxLimit = validMinLimit;
+    }
+    int validInitialLimit = requireNonNullElse(initialLimit, DEFAULT_INITIAL_LIMIT);
+    if (validInitialLimit < validMinLimit || validInitialLimit > validMaxLimit) {
+      int clampedLimit = Math.max(validMinLimit, Math.min(validMaxLimit, validInitialLimit));
+      if (initialLimit != null) {
+        log.error("Initial concurrency limit {} is out of [{}, {}], will use {}", initialLimit, validMinLimit, validMaxLimit, clampedLimit);
+      }
+      validInitialLimit = clampedLimit;
+    }
+    return new ConcurrencyLimitConfig(validInitialLimit, validMinLimit, validMaxLimit);
+  }
+
+  public static ConnectionPoolConfig createConnectionPoolConfigWithDefaults(Integer maxConnectionsPerHost, Float idleTimeoutSec) {
+    int validMaxConnectionsPerHost = requireNonNullElse(maxConnectionsPerHost, 0);
+    if (validMaxConnectionsPerHost < 0) {
+      log.error("Invalid max connections per host {}, will use the one of http client", maxConnectionsPerHost);
+      validMaxConnectionsPerHost = 0;
+    }
+    int idleTimeoutMs = convertToMillisOrFallback(idleTimeoutSec, 0);
+    if (idleTimeoutMs < 0) {
+      log.error("Invalid connection idle timeout {} sec, will use the one of http client", idleTimeoutSec);
+      idleTimeoutMs = 0;
+    }
+    return new ConnectionPoolConfig(validMaxConnectionsPerHost, idleTimeoutMs);
+  }
 
   private static int convertToMillisOrFallback(Float value, int defaultValue) {
     return Optional
@@ -84,11 +301,74 @@ public final class UpstreamConfigs {
         .orElse(defaultValue);
   }
 
+  /**
+   * Upstream-wide settings, null ones are not used. Invalid settings are logged and not used either.
+   */
+  public static final class Builder {
+    private final Map<String, UpstreamConfig> configByProfile;
+    private String balancingStrategyType;
+    private Float adaptiveLatencyQuantile;
+    private Float retryBudgetRatio;
+    private OutlierEjectionConfig outlierEjectionConfig;
+    private CrossDcSpilloverConfig crossDcSpilloverConfig;
+    private ConcurrencyLimitConfig concurrencyLimitConfig;
+    private ConnectionPoolConfig connectionPoolConfig;
+
+    private Builder(Map<String, UpstreamConfig> configByProfile) {
+      this.configByProfile = configByProfile;
+    }
+
+    public Builder withBalancingStrategyType(@Nullable String balancingStrategyType) {
+      this.balancingStrategyType = balancingStrategyType;
+      return this;
+    }
+
+    public Builder withAdaptiveLatencyQuantile(@Nullable Float adaptiveLatencyQuantile) {
+      this.adaptiveLatencyQuantile = adaptiveLatencyQuantile;
+      return this;
+    }
+
+    public Builder withRetryBudgetRatio(@Nullable Float retryBudgetRatio) {
+      this.retryBudgetRatio = retryBudgetRatio;
+      return this;
+    }
+
+    public Builder withOutlierEjectionConfig(@Nullable OutlierEjectionConfig outlierEjectionConfig) {
+      this.outlierEjectionConfig = outlierEjectionConfig;
+      return this;
+    }
+
+    public Builder withCrossDcSpilloverConfig(@Nullable CrossDcSpilloverConfig crossDcSpilloverConfig) {
+      this.crossDcSpilloverConfig = crossDcSpilloverConfig;
+      return this;
+    }
+
+    public Builder withConcurrencyLimitConfig(@Nullable ConcurrencyLimitConfig concurrencyLimitConfig) {
+      this.concurrencyLimitConfig = concurrencyLimitConfig;
+      return this;
+    }
+
+    public Builder withConnectionPoolConfig(@Nullable ConnectionPoolConfig connectionPoolConfig) {
+      this.connectionPoolConfig = connectionPoolConfig;
+      return this;
+    }
+
+    public UpstreamConfigs build() {
+      return new UpstreamConfigs(this);
+    }
+  }
+
   @Override
   public String toString() {
     return "UpstreamConfigs{" +
         "configByProfile=" + configByProfile +
         ", balancingStrategyType=" + balancingStrategyType +
+        ", adaptiveLatencyQuantile=" + adaptiveLatencyQuantile +
+        ", retryBudgetRatio=" + retryBudgetRatio +
+        ", outlierEjectionConfig=" + outlierEjectionConfig +
+        ", crossDcSpilloverConfig=" + crossDcSpilloverConfig +
+        ", concurrencyLimitConfig=" + concurrencyLimitConfig +
+        ", connectionPoolConfig=" + connectionPoolConfig +
         '}';
   }
 }
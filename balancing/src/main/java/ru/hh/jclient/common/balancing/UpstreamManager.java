@@ -15,4 +15,10 @@ public interface UpstreamManager {
   Set<Monitoring> getMonitoring();
 
   void updateUpstreams(Collection<String> upstreams);
+
+  /**
+   * Prewarms connections to servers of existing upstreams and to every server added later.
+   */
+  default void startConnectionPrewarm(ConnectionPrewarmer connectionPrewarmer) {
+  }
 }
@@ -3,10 +3,13 @@ package ru.hh.jclient.common.balancing;
 import jakarta.annotation.Nullable;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ru.hh.jclient.common.HopelessRetryReason;
 import ru.hh.jclient.common.HttpHeaders;
 import static ru.hh.jclient.common.HttpStatuses.BAD_GATEWAY;
+import static ru.hh.jclient.common.HttpStatuses.CONCURRENCY_LIMIT_EXCEEDED;
 import ru.hh.jclient.common.MappedTransportErrorResponse;
 import ru.hh.jclient.common.Monitoring;
 import ru.hh.jclient.common.Request;
@@ -16,13 +19,18 @@ import ru.hh.jclient.common.RequestResponseWrapper;
 import ru.hh.jclient.common.RequestStrategy;
 import ru.hh.jclient.common.Response;
 import ru.hh.jclient.common.ResponseConverterUtils;
+import static ru.hh.jclient.common.ResponseStatusMessages.CONCURRENCY_LIMIT_EXCEEDED_MESSAGE;
 import ru.hh.jclient.common.Uri;
-import static ru.hh.jclient.common.balancing.BalancingUpstreamManager.SCHEMA_SEPARATOR;
 
 public class UpstreamRequestBalancer extends RequestBalancer {
   private static final Logger LOGGER = LoggerFactory.getLogger(UpstreamRequestBalancer.class);
+  private static final String DEFAULT_SCHEME = "http";
 
   private final BalancingState state;
+  /**
+   * parsed once, attempts only put server address into it
+   */
+  private final Uri originalUri;
 
   private final Set<Monitoring> monitorings;
 
@@ -47,36 +55,84 @@ public class UpstreamRequestBalancer extends RequestBalancer {
         forceIdempotence
     );
     this.state = state;
+    this.originalUri = request.getUri();
     this.monitorings = monitorings;
   }
 
   @Override
   protected ImmediateResultOrPreparedRequest getResultOrContext(Request request) {
     String upstreamName = state.getUpstreamName();
+    if (!state.tryAcquireConcurrency()) {
+      int limit = state.getConcurrencyLimit();
+      LOGGER.debug("Concurrency limit {} of upstream {} is exceeded, rejecting {} {}", limit, upstreamName,
+          request.getMethod(), request.getUri());
+      countConcurrencyLimitExceeded(limit);
+      return new ImmediateResultOrPreparedRequest(getConcurrencyLimitExceededResponse(request, upstreamName),
+          new RequestContext(upstreamName, "unknown", "unknown"));
+    }
     state.acquireServer();
     if (!state.isServerAvailable()) {
+      state.releaseConcurrency(-1, false);
       return new ImmediateResultOrPreparedRequest(getServerNotAvailableResponse(request, upstreamName),
           new RequestContext(upstreamName,  "unknown", "unknown"));
     }
+    return prepareRequest(request, state.getCurrentServer());
+  }
+
+  private ImmediateResultOrPreparedRequest prepareRequest(Request request, ServerEntry server) {
     int requestTimeout = request.getRequestTimeout() > 0 ? request.getRequestTimeout() : state.getUpstreamConfig().getRequestTimeoutMs();
 
     RequestBuilder requestBuilder = new RequestBuilder(request);
-    requestBuilder.setUrl(getBalancedUrl(request, state.getCurrentServer().getAddress()));
-    requestBuilder.setRequestTimeout(requestTimeout);
-    String dc = Optional.ofNullable(state.getCurrentServer().getDatacenter()).map(String::toLowerCase).orElse(null);
-    var context = new RequestContext(upstreamName, dc, state.getCurrentServer().getHostName(), state.getUpstreamConfig().isSessionRequired());
-    return new ImmediateResultOrPreparedRequest(context, requestBuilder.build());
+    requestBuilder.setUri(getBalancedUri(server.getServer()));
+    String dc = Optional.ofNullable(server.getDatacenter()).map(String::toLowerCase).orElse(null);
+    var context = new RequestContext(
+        state.getUpstreamName(),
+        dc,
+        server.getHostName(),
+        state.getUpstreamConfig().isSessionRequired(),
+        state.getTransportConfig(getTimeoutMultiplier())
+    );
+    return new ImmediateResultOrPreparedRequest(context, requestBuilder, requestTimeout);
   }
 
-  private static String getBalancedUrl(Request request, String serverAddress) {
-    String originalServer = getOriginalServer(request);
-    return request.getUrl().replace(originalServer, serverAddress);
+  /**
+   * Replaces scheme and authority only, path, query and fragment are taken as they were parsed.
+   * The scheme of the server address is used, or http if the address has none, as {@link RequestBuilder#setUrl} assumes.
+   */
+  private Uri getBalancedUri(Server server) {
+    String scheme = server.getAddressScheme() != null ? server.getAddressScheme() : DEFAULT_SCHEME;
+    return new Uri(scheme, originalUri.getUserInfo(), server.getAddressHost(), server.getAddressPort(), originalUri.getPath(),
+        originalUri.getQuery(), originalUri.getFragment());
   }
 
-  private static String getOriginalServer(Request request) {
-    Uri uri = request.getUri();
-    var baseUri = uri.getScheme() + SCHEMA_SEPARATOR + uri.getHost() + ":" + uri.getPort();
-    return uri.getPort() > -1 ? baseUri : baseUri.substring(0, baseUri.lastIndexOf(":"));
+  @Override
+  protected CompletableFuture<RequestResponseWrapper> executeAttempt(ImmediateResultOrPreparedRequest resultOrContext) {
+    CompletableFuture<RequestResponseWrapper> attempt = super.executeAttempt(resultOrContext);
+    long hedgeDelayMs = getHedgeDelayMs();
+    if (hedgeDelayMs <= 0) {
+      return attempt;
+    }
+    return new HedgedAttempt(attempt, state.getCurrentServer()).start(hedgeDelayMs);
+  }
+
+  /**
+   * Only the first attempt of an idempotent request is hedged, and only if a try is left for the hedge:
+   * the hedge uses a try just like a retry does.
+   *
+   * @return delay before a hedged attempt, or non-positive value if hedging should not be used
+   */
+  private long getHedgeDelayMs() {
+    UpstreamConfig config = state.getUpstreamConfig();
+    if (!config.isHedgingEnabled() || getTriesUsed() > 0 || getTriesLeft() < 2 || !isIdempotent()) {
+      return -1;
+    }
+    if (config.getHedgeQuantile() > 0) {
+      long quantileMs = state.getResponseTimeQuantile(config.getHedgeQuantile());
+      if (quantileMs > 0) {
+        return quantileMs;
+      }
+    }
+    return config.getHedgeDelayMs();
   }
 
   public static Response getServerNotAvailableResponse(Request request, String upstreamName) {
@@ -86,9 +142,38 @@ public class UpstreamRequestBalancer extends RequestBalancer {
     );
   }
 
+  private static Response getConcurrencyLimitExceededResponse(Request request, String upstreamName) {
+    return ResponseConverterUtils.convert(
+        new MappedTransportErrorResponse(
+            CONCURRENCY_LIMIT_EXCEEDED,
+            CONCURRENCY_LIMIT_EXCEEDED_MESSAGE + " for upstream: " + upstreamName,
+            request.getUri()
+        )
+    );
+  }
+
+  @Override
+  protected String getAttemptHost(RequestResponseWrapper wrapper) {
+    return state.isServerAvailable() ? state.getCurrentServer().getServer().getAddressHost() : super.getAttemptHost(wrapper);
+  }
+
   @Override
   protected void onRequestReceived(RequestResponseWrapper wrapper, long timeToLastByteMillis) {
-    state.releaseServer(timeToLastByteMillis, isServerError(wrapper));
+    boolean isServerError = isServerError(wrapper);
+    state.releaseServer(timeToLastByteMillis, isServerError);
+    int concurrencyLimit = state.releaseConcurrency(timeToLastByteMillis, isServerError);
+    if (concurrencyLimit > 0) {
+      countConcurrencyLimit(concurrencyLimit);
+    }
+    if (!isServerError && trace.size() == 1) {
+      state.onFirstAttemptSuccess();
+    }
+  }
+
+  @Override
+  protected void onRequestFailed(Throwable throwable) {
+    LOGGER.debug("Attempt of {} {} failed, releasing server", request.getMethod(), request.getUri(), throwable);
+    state.releaseFailedRequest();
   }
 
   @Override
@@ -105,6 +190,8 @@ public class UpstreamRequestBalancer extends RequestBalancer {
     String upstreamName = state.getUpstreamName();
     String balancingStrategyType = state.getBalancingStrategyType().getPublicName();
     HttpHeaders requestHeaders = wrapper.getRequest().getHeaders();
+    boolean isCrossDc = state.isCurrentServerRemote();
+    float spilloverShare = isCrossDc ? state.getCrossDcSpilloverShare() : 0;
 
     for (Monitoring monitoring : monitorings) {
       try {
@@ -119,6 +206,9 @@ public class UpstreamRequestBalancer extends RequestBalancer {
             balancingStrategyType
         );
         monitoring.countRequestTime(upstreamName, dcName, requestHeaders, requestTimeMillis);
+        if (isCrossDc) {
+          monitoring.countCrossDcRequest(upstreamName, dcName, serverAddress, spilloverShare);
+        }
 
         if (isRequestFinal && triesUsed > 1) {
           monitoring.countRetry(upstreamName, dcName, serverAddress, requestHeaders, statusCode, trace.get(0).getResponseCode(), triesUsed);
@@ -129,11 +219,219 @@ public class UpstreamRequestBalancer extends RequestBalancer {
     }
   }
 
+  @Override
+  protected boolean tryAcquireRetry(Response response) {
+    HopelessRetryReason hopelessRetryReason = getHopelessRetryReason();
+    if (hopelessRetryReason != null) {
+      LOGGER.debug("Too little time left ({}), won't retry {} {}", hopelessRetryReason, request.getMethod(), request.getUri());
+      countHopelessRetry(state.getCurrentServer(), hopelessRetryReason);
+      return false;
+    }
+    if (state.tryAcquireRetry()) {
+      return true;
+    }
+    LOGGER.debug("Retry budget of upstream {} is exhausted, won't retry {} {}", state.getUpstreamName(), request.getMethod(), request.getUri());
+    countRetryBudgetExhausted(state.getCurrentServer());
+    return false;
+  }
+
+  /**
+   * Checked before retry budget, so that hopeless retries do not withdraw from it.
+   *
+   * @return limit that leaves the retry less time than servers it may go to usually respond in, or null if the retry has a chance
+   */
+  private HopelessRetryReason getHopelessRetryReason() {
+    long expectedResponseTimeMs = state.getExpectedRetryResponseTimeMillis();
+    if (expectedResponseTimeMs < 0) {
+      return null;
+    }
+    long requestTimeLeftMs = getRequestTimeLeftMs();
+    long deadlineTimeLeftMs = getDeadlineTimeLeftMs();
+    boolean deadlineIsCloser = deadlineTimeLeftMs >= 0 && deadlineTimeLeftMs < requestTimeLeftMs;
+    long timeLeftMs = deadlineIsCloser ? deadlineTimeLeftMs : requestTimeLeftMs;
+    if (timeLeftMs >= expectedResponseTimeMs) {
+      return null;
+    }
+    return deadlineIsCloser ? HopelessRetryReason.DEADLINE : HopelessRetryReason.REQUEST_TIMEOUT;
+  }
+
   @Override
   protected void onRetry() {
     state.incrementTries();
   }
 
+  private void countConcurrencyLimit(int limit) {
+    for (Monitoring monitoring : monitorings) {
+      try {
+        monitoring.countConcurrencyLimit(state.getUpstreamName(), limit);
+      } catch (Exception e) {
+        LOGGER.error("Error occurred while sending metrics", e);
+      }
+    }
+  }
+
+  private void countConcurrencyLimitExceeded(int limit) {
+    for (Monitoring monitoring : monitorings) {
+      try {
+        monitoring.countConcurrencyLimitExceeded(state.getUpstreamName(), limit);
+      } catch (Exception e) {
+        LOGGER.error("Error occurred while sending metrics", e);
+      }
+    }
+  }
+
+  private void countRetryBudgetExhausted(ServerEntry server) {
+    for (Monitoring monitoring : monitorings) {
+      try {
+        monitoring.countRetryBudgetExhausted(state.getUpstreamName(), server.getDatacenter(), server.getAddress());
+      } catch (Exception e) {
+        LOGGER.error("Error occurred while sending metrics", e);
+      }
+    }
+  }
+
+  private void countHopelessRetry(ServerEntry server, HopelessRetryReason reason) {
+    for (Monitoring monitoring : monitorings) {
+      try {
+        monitoring.countHopelessRetry(state.getUpstreamName(), server.getDatacenter(), server.getAddress(), reason);
+      } catch (Exception e) {
+        LOGGER.error("Error occurred while sending metrics", e);
+      }
+    }
+  }
+
+  private void countHedgedRequest(ServerEntry hedgeServer, boolean hedgeWon) {
+    for (Monitoring monitoring : monitorings) {
+      try {
+        monitoring.countHedgedRequest(state.getUpstreamName(), hedgeServer.getDatacenter(), hedgeServer.getAddress(), hedgeWon);
+      } catch (Exception e) {
+        LOGGER.error("Error occurred while sending metrics", e);
+      }
+    }
+  }
+
+  /**
+   * Sends the same request to another server if the first one does not respond in time.
+   * The first attempt to get a successful or non-retriable response wins, the other one is cancelled and its server released.
+   * An attempt that fails while the other one is in flight releases its server and leaves the result to the other attempt.
+   */
+  private final class HedgedAttempt {
+    private final CompletableFuture<RequestResponseWrapper> result = new CompletableFuture<>();
+    private final CompletableFuture<RequestResponseWrapper> primary;
+    private final ServerEntry primaryServer;
+    private CompletableFuture<RequestResponseWrapper> hedge;
+    private ServerEntry hedgeServer;
+    private ServerEntry failedServer;
+    private boolean completed;
+
+    private HedgedAttempt(CompletableFuture<RequestResponseWrapper> primary, ServerEntry primaryServer) {
+      this.primary = primary;
+      this.primaryServer = primaryServer;
+    }
+
+    CompletableFuture<RequestResponseWrapper> start(long hedgeDelayMs) {
+      primary.whenComplete((wrapper, throwable) -> complete(primaryServer, wrapper, throwable));
+      if (!primary.isDone()) {
+        getRequestExecutor().executeDelayed(this::sendHedge, hedgeDelayMs);
+      }
+      return result;
+    }
+
+    private synchronized void sendHedge() {
+      if (completed) {
+        return;
+      }
+      // the hedge is one more request in flight, it is skipped rather than rejected if the upstream has no room for it
+      if (!state.tryAcquireHedgeConcurrency()) {
+        LOGGER.debug("Concurrency limit {} of upstream {} is reached, not hedging {} {}", state.getConcurrencyLimit(),
+            state.getUpstreamName(), request.getMethod(), request.getUri());
+        return;
+      }
+      // hedges multiply load just like retries do, so they share the budget
+      if (!state.tryAcquireRetry()) {
+        releaseConcurrency(-1, false);
+        countRetryBudgetExhausted(primaryServer);
+        return;
+      }
+      ServerEntry server = state.acquireHedgeServer();
+      if (server == null) {
+        releaseConcurrency(-1, false);
+        LOGGER.debug("No server for hedged attempt of {} {}", request.getMethod(), request.getUri());
+        return;
+      }
+      useTry();
+      hedgeServer = server;
+      ImmediateResultOrPreparedRequest prepared = prepareRequest(request, server);
+      // the hedge has used its try already, while the attempt in flight uses its one on completion
+      hedge = getRequestExecutor()
+          .executeHedgedRequest(prepared.getBalancedRequestBuilder(getTimeoutMultiplier()), getTriesUsed(), prepared.getRequestContext());
+      hedge.whenComplete((wrapper, throwable) -> complete(server, wrapper, throwable));
+    }
+
+    private void complete(ServerEntry server, RequestResponseWrapper wrapper, Throwable throwable) {
+      synchronized (this) {
+        if (completed) {
+          return;
+        }
+        if (hedgeServer != null && failedServer == null && isFailed(wrapper, throwable)) {
+          failedServer = server;
+          if (throwable != null) {
+            state.releaseCancelledServer(server);
+            releaseConcurrency(-1, false);
+          } else {
+            state.releaseFailedServer(server, wrapper.getTimeToLastByteMillis(), isServerError(wrapper));
+            releaseConcurrency(wrapper.getTimeToLastByteMillis(), isServerError(wrapper));
+          }
+          LOGGER.debug("Hedged attempt of {} {} to {} failed, waiting for the other one", request.getMethod(), request.getUri(),
+              server.getAddress());
+          return;
+        }
+        completed = true;
+        if (hedgeServer != null) {
+          boolean hedgeWon = server == hedgeServer;
+          if (hedgeWon) {
+            state.setCurrentServer(hedgeServer);
+            getRequestExecutor().onHedgedAttemptWon();
+          }
+          if (failedServer == null) {
+            if (hedgeWon) {
+              primary.cancel(false);
+              state.releaseCancelledServer(primaryServer);
+            } else {
+              hedge.cancel(false);
+              state.releaseCancelledServer(hedgeServer);
+            }
+            releaseConcurrency(-1, false);
+          }
+          countHedgedRequest(hedgeServer, hedgeWon);
+        }
+      }
+      if (throwable != null) {
+        result.completeExceptionally(throwable);
+      } else {
+        result.complete(wrapper);
+      }
+    }
+
+    /**
+     * Releases the permit taken for the hedge, whichever of the two attempts is dropped: the permit of the request
+     * is released by the balancer along with the attempt that completes it.
+     */
+    private void releaseConcurrency(long responseTimeMillis, boolean isServerError) {
+      int concurrencyLimit = state.releaseHedgeConcurrency(responseTimeMillis, isServerError);
+      if (concurrencyLimit > 0) {
+        countConcurrencyLimit(concurrencyLimit);
+      }
+    }
+
+    /**
+     * @return true if the attempt would be retried, so the other one should get a chance instead
+     */
+    private boolean isFailed(RequestResponseWrapper wrapper, Throwable throwable) {
+      return throwable != null || checkRetry(wrapper.getResponse(), isIdempotent());
+    }
+  }
+
   public boolean isServerError(RequestResponseWrapper wrapper) {
     return wrapper != null && state.getUpstreamConfig().getRetryPolicy().isServerError(wrapper.getResponse());
   }
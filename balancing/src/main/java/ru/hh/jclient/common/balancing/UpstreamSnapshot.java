@@ -0,0 +1,149 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import ru.hh.jclient.common.balancing.config.BalancingStrategyType;
+
+/**
+ * Server list and configs of an upstream, replaced as a whole on every update.
+ * {@link Upstream#update(UpstreamConfigs, List)} publishes a new snapshot instead of mutating the current one,
+ * so server selection and release read it without any locking.
+ */
+final class UpstreamSnapshot {
+  private final long generation;
+  private final long serversVersion;
+  private final UpstreamConfigs configs;
+  private final List<Server> servers;
+  private final String datacenter;
+  private final ServerSampler localSampler;
+  private final ServerSampler remoteSampler;
+  private final boolean responseTimeRecorded;
+  private final boolean peakEwmaRecorded;
+  private final OutlierEjectionConfig outlierEjectionConfig;
+  private final CrossDcSpilloverConfig crossDcSpilloverConfig;
+
+  UpstreamSnapshot(long generation, UpstreamConfigs configs, List<Server> servers, String datacenter) {
+    this(generation, 0, configs, servers, datacenter);
+  }
+
+  UpstreamSnapshot(long generation, long serversVersion, UpstreamConfigs configs, List<Server> servers, String datacenter) {
+    this.generation = generation;
+    this.serversVersion = serversVersion;
+    this.configs = configs;
+    this.servers = servers;
+    this.datacenter = datacenter;
+    this.localSampler = new ServerSampler(servers, server -> server != null && !isRemote(server));
+    this.remoteSampler = new ServerSampler(servers, this::isRemote);
+    this.responseTimeRecorded = configs.isHedgeQuantileUsed();
+    this.peakEwmaRecorded = configs.getBalancingStrategyType() == BalancingStrategyType.PEAK_EWMA;
+    this.outlierEjectionConfig = configs.getOutlierEjectionConfig();
+    this.crossDcSpilloverConfig = configs.getCrossDcSpilloverConfig();
+  }
+
+  long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * @return version of servers from {@link ServerStore#getVersion}, 0 if unknown
+   */
+  long getServersVersion() {
+    return serversVersion;
+  }
+
+  UpstreamConfigs getConfigs() {
+    return configs;
+  }
+
+  boolean isResponseTimeRecorded() {
+    return responseTimeRecorded;
+  }
+
+  boolean isPeakEwmaRecorded() {
+    return peakEwmaRecorded;
+  }
+
+  List<Server> getServers() {
+    return servers;
+  }
+
+  int size() {
+    return servers.size();
+  }
+
+  Server getServer(int index) {
+    return servers.get(index);
+  }
+
+  ServerSampler getLocalSampler() {
+    return localSampler;
+  }
+
+  ServerSampler getRemoteSampler() {
+    return remoteSampler;
+  }
+
+  /**
+   * @return null if outlier ejection is disabled
+   */
+  OutlierEjectionConfig getOutlierEjectionConfig() {
+    return outlierEjectionConfig;
+  }
+
+  /**
+   * @return null if servers of other datacenters are used only when local ones are not available
+   */
+  CrossDcSpilloverConfig getCrossDcSpilloverConfig() {
+    return crossDcSpilloverConfig;
+  }
+
+  /**
+   * @return whether recent results of servers are needed, either for outlier ejection or as server health for spillover
+   */
+  boolean isServerHealthTracked() {
+    return outlierEjectionConfig != null || crossDcSpilloverConfig != null;
+  }
+
+  boolean isEjected(Server server, long nowMillis) {
+    return outlierEjectionConfig != null && server.getOutlierDetector().isEjected(nowMillis);
+  }
+
+  boolean isRemote(Server server) {
+    return server != null && !Objects.equals(datacenter, server.getDatacenter());
+  }
+
+  /**
+   * Samples server indexes proportionally to weights the servers had when the snapshot was built.
+   */
+  static final class ServerSampler {
+    private final int[] indexes;
+    private final long[] cumulativeWeights;
+
+    private ServerSampler(List<Server> servers, Predicate<Server> filter) {
+      this.indexes = IntStream
+          .range(0, servers.size())
+          .filter(i -> filter.test(servers.get(i)) && servers.get(i).getWeight() > 0)
+          .toArray();
+      this.cumulativeWeights = new long[indexes.length];
+      long total = 0;
+      for (int i = 0; i < indexes.length; i++) {
+        total += servers.get(indexes[i]).getWeight();
+        cumulativeWeights[i] = total;
+      }
+    }
+
+    int size() {
+      return indexes.length;
+    }
+
+    int sample(Random random) {
+      long point = random.nextLong(cumulativeWeights[cumulativeWeights.length - 1]);
+      int position = Arrays.binarySearch(cumulativeWeights, point + 1);
+      return indexes[position >= 0 ? position : -position - 1];
+    }
+  }
+}
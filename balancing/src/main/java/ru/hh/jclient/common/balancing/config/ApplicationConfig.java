@@ -3,7 +3,12 @@ package ru.hh.jclient.common.balancing.config;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 import static java.util.stream.Collectors.toMap;
+import ru.hh.jclient.common.balancing.ConcurrencyLimitConfig;
+import ru.hh.jclient.common.balancing.ConnectionPoolConfig;
+import ru.hh.jclient.common.balancing.CrossDcSpilloverConfig;
+import ru.hh.jclient.common.balancing.OutlierEjectionConfig;
 import ru.hh.jclient.common.balancing.UpstreamConfig;
 import ru.hh.jclient.common.balancing.UpstreamConfigFormatException;
 import ru.hh.jclient.common.balancing.UpstreamConfigs;
@@ -14,6 +19,24 @@ public class ApplicationConfig {
   @JsonProperty("balancing_strategy")
   private String balancingStrategyType;
 
+  @JsonProperty("adaptive_latency_quantile")
+  private Float adaptiveLatencyQuantile;
+
+  @JsonProperty("retry_budget_ratio")
+  private Float retryBudgetRatio;
+
+  @JsonProperty("outlier_ejection")
+  private OutlierEjection outlierEjection;
+
+  @JsonProperty("cross_dc_spillover")
+  private CrossDcSpillover crossDcSpillover;
+
+  @JsonProperty("concurrency_limit")
+  private ConcurrencyLimit concurrencyLimit;
+
+  @JsonProperty("connection_pool")
+  private ConnectionPool connectionPool;
+
   public Map<String, Host> getHosts() {
     return hosts;
   }
@@ -32,44 +55,124 @@ public class ApplicationConfig {
     return this;
   }
 
+  public Float getAdaptiveLatencyQuantile() {
+    return adaptiveLatencyQuantile;
+  }
+
+  public ApplicationConfig setAdaptiveLatencyQuantile(Float adaptiveLatencyQuantile) {
+    this.adaptiveLatencyQuantile = adaptiveLatencyQuantile;
+    return this;
+  }
+
+  public Float getRetryBudgetRatio() {
+    return retryBudgetRatio;
+  }
+
+  public ApplicationConfig setRetryBudgetRatio(Float retryBudgetRatio) {
+    this.retryBudgetRatio = retryBudgetRatio;
+    return this;
+  }
+
+  public OutlierEjection getOutlierEjection() {
+    return outlierEjection;
+  }
+
+  public ApplicationConfig setOutlierEjection(OutlierEjection outlierEjection) {
+    this.outlierEjection = outlierEjection;
+    return this;
+  }
+
+  public CrossDcSpillover getCrossDcSpillover() {
+    return crossDcSpillover;
+  }
+
+  public ApplicationConfig setCrossDcSpillover(CrossDcSpillover crossDcSpillover) {
+    this.crossDcSpillover = crossDcSpillover;
+    return this;
+  }
+
+  public ConcurrencyLimit getConcurrencyLimit() {
+    return concurrencyLimit;
+  }
+
+  public ApplicationConfig setConcurrencyLimit(ConcurrencyLimit concurrencyLimit) {
+    this.concurrencyLimit = concurrencyLimit;
+    return this;
+  }
+
+  public ConnectionPool getConnectionPool() {
+    return connectionPool;
+  }
+
+  public ApplicationConfig setConnectionPool(ConnectionPool connectionPool) {
+    this.connectionPool = connectionPool;
+    return this;
+  }
+
   public static UpstreamConfigs toUpstreamConfigs(ApplicationConfig config, String hostName) {
     if (config == null) {
       return UpstreamConfigs.getDefaultConfig();
     }
 
-    String balancingStrategyType = config.getBalancingStrategyType();
+    UpstreamConfigs.Builder builder;
     Map<String, Host> hostMap = config.getHosts();
-    if (hostMap == null || hostMap.get(hostName) == null) {
-      return UpstreamConfigs.getDefaultConfig(balancingStrategyType);
-    }
-
-    Map<String, Profile> profiles = hostMap.get(hostName).getProfiles();
+    Map<String, Profile> profiles = hostMap == null || hostMap.get(hostName) == null ? null : hostMap.get(hostName).getProfiles();
     if (profiles == null || profiles.isEmpty()) {
-      return UpstreamConfigs.getDefaultConfig(balancingStrategyType);
+      builder = UpstreamConfigs.defaultConfigBuilder();
+    } else {
+      try {
+        Map<String, UpstreamConfig> configByProfile = profiles
+            .entrySet()
+            .stream()
+            .collect(toMap(Map.Entry::getKey, e -> UpstreamConfigs.createUpstreamConfigWithDefaults(e.getValue())));
+        builder = UpstreamConfigs.builder(configByProfile);
+      } catch (Exception e) {
+        throw new UpstreamConfigFormatException("failed to get upstream config: " + config, e);
+      }
     }
 
-    try {
-      return UpstreamConfigs.of(
-          profiles.entrySet().stream().collect(toMap(Map.Entry::getKey, e -> convertProfileToUpstreamConfig(e.getValue()))),
-          balancingStrategyType
-      );
-    } catch (Exception e) {
-      throw new UpstreamConfigFormatException("failed to get upstream config: " + config, e);
-    }
+    return builder
+        .withBalancingStrategyType(config.getBalancingStrategyType())
+        .withAdaptiveLatencyQuantile(config.getAdaptiveLatencyQuantile())
+        .withRetryBudgetRatio(config.getRetryBudgetRatio())
+        .withOutlierEjectionConfig(convertIfPresent(config.getOutlierEjection(), ApplicationConfig::convertOutlierEjection))
+        .withCrossDcSpilloverConfig(convertIfPresent(config.getCrossDcSpillover(), ApplicationConfig::convertCrossDcSpillover))
+        .withConcurrencyLimitConfig(convertIfPresent(config.getConcurrencyLimit(), ApplicationConfig::convertConcurrencyLimit))
+        .withConnectionPoolConfig(convertIfPresent(config.getConnectionPool(), ApplicationConfig::convertConnectionPool))
+        .build();
+  }
+
+  private static <T, R> R convertIfPresent(T value, Function<T, R> converter) {
+    return Optional.ofNullable(value).map(converter).orElse(null);
+  }
+
+  private static OutlierEjectionConfig convertOutlierEjection(OutlierEjection outlierEjection) {
+    return UpstreamConfigs.createOutlierEjectionConfigWithDefaults(
+        outlierEjection.getBaseEjectionTimeSec(),
+        outlierEjection.getMaxEjectionTimeSec(),
+        outlierEjection.getMaxEjectionPercent()
+    );
+  }
+
+  private static CrossDcSpilloverConfig convertCrossDcSpillover(CrossDcSpillover crossDcSpillover) {
+    return UpstreamConfigs.createCrossDcSpilloverConfigWithDefaults(
+        crossDcSpillover.getHeadroom(),
+        crossDcSpillover.getCapacityPerWeight()
+    );
+  }
+
+  private static ConcurrencyLimitConfig convertConcurrencyLimit(ConcurrencyLimit concurrencyLimit) {
+    return UpstreamConfigs.createConcurrencyLimitConfigWithDefaults(
+        concurrencyLimit.getInitialLimit(),
+        concurrencyLimit.getMinLimit(),
+        concurrencyLimit.getMaxLimit()
+    );
   }
 
-  private static UpstreamConfig convertProfileToUpstreamConfig(Profile profile) {
-    return UpstreamConfigs.createUpstreamConfigWithDefaults(
-        profile.getMaxTries(),
-        profile.getMaxTimeoutTries(),
-        profile.getConnectTimeoutSec(),
-        profile.getRequestTimeoutSec(),
-        profile.getSlowStartIntervalSec(),
-        profile.isSessionRequired(),
-        Optional
-            .ofNullable(profile.getRetryPolicy())
-            .map(policy -> policy.entrySet().stream().collect(toMap(Map.Entry::getKey, e -> e.getValue().isRetryNonIdempotent())))
-            .orElseGet(Map::of)
+  private static ConnectionPoolConfig convertConnectionPool(ConnectionPool connectionPool) {
+    return UpstreamConfigs.createConnectionPoolConfigWithDefaults(
+        connectionPool.getMaxConnectionsPerHost(),
+        connectionPool.getIdleTimeoutSec()
     );
   }
 
@@ -78,6 +181,12 @@ public class ApplicationConfig {
     return "ApplicationConfig{" +
         "hosts=" + hosts +
         ", balancingStrategyType=" + balancingStrategyType +
+        ", adaptiveLatencyQuantile=" + adaptiveLatencyQuantile +
+        ", retryBudgetRatio=" + retryBudgetRatio +
+        ", outlierEjection=" + outlierEjection +
+        ", crossDcSpillover=" + crossDcSpillover +
+        ", concurrencyLimit=" + concurrencyLimit +
+        ", connectionPool=" + connectionPool +
         '}';
   }
 }
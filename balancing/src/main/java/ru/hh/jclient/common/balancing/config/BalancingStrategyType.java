@@ -6,6 +6,9 @@ import java.util.Arrays;
 public enum BalancingStrategyType {
   WEIGHTED,
   ADAPTIVE,
+  POWER_OF_TWO_CHOICES,
+  CONSISTENT_HASH,
+  PEAK_EWMA,
   ;
 
   public String getPublicName() {
@@ -0,0 +1,48 @@
+package ru.hh.jclient.common.balancing.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class ConcurrencyLimit {
+  @JsonProperty("initial_limit")
+  private Integer initialLimit;
+  @JsonProperty("min_limit")
+  private Integer minLimit;
+  @JsonProperty("max_limit")
+  private Integer maxLimit;
+
+  public Integer getInitialLimit() {
+    return initialLimit;
+  }
+
+  public ConcurrencyLimit setInitialLimit(Integer initialLimit) {
+    this.initialLimit = initialLimit;
+    return this;
+  }
+
+  public Integer getMinLimit() {
+    return minLimit;
+  }
+
+  public ConcurrencyLimit setMinLimit(Integer minLimit) {
+    this.minLimit = minLimit;
+    return this;
+  }
+
+  public Integer getMaxLimit() {
+    return maxLimit;
+  }
+
+  public ConcurrencyLimit setMaxLimit(Integer maxLimit) {
+    this.maxLimit = maxLimit;
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return "ConcurrencyLimit{" +
+        "initialLimit=" + initialLimit +
+        ", minLimit=" + minLimit +
+        ", maxLimit=" + maxLimit +
+        '}';
+  }
+}
@@ -0,0 +1,36 @@
+package ru.hh.jclient.common.balancing.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class ConnectionPool {
+  @JsonProperty("max_connections_per_host")
+  private Integer maxConnectionsPerHost;
+  @JsonProperty("idle_timeout_sec")
+  private Float idleTimeoutSec;
+
+  public Integer getMaxConnectionsPerHost() {
+    return maxConnectionsPerHost;
+  }
+
+  public ConnectionPool setMaxConnectionsPerHost(Integer maxConnectionsPerHost) {
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+    return this;
+  }
+
+  public Float getIdleTimeoutSec() {
+    return idleTimeoutSec;
+  }
+
+  public ConnectionPool setIdleTimeoutSec(Float idleTimeoutSec) {
+    this.idleTimeoutSec = idleTimeoutSec;
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return "ConnectionPool{" +
+        "maxConnectionsPerHost=" + maxConnectionsPerHost +
+        ", idleTimeoutSec=" + idleTimeoutSec +
+        '}';
+  }
+}
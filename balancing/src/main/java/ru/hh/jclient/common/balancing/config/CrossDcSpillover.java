@@ -0,0 +1,36 @@
+package ru.hh.jclient.common.balancing.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class CrossDcSpillover {
+  @JsonProperty("headroom")
+  private Float headroom;
+  @JsonProperty("capacity_per_weight")
+  private Integer capacityPerWeight;
+
+  public Float getHeadroom() {
+    return headroom;
+  }
+
+  public CrossDcSpillover setHeadroom(Float headroom) {
+    this.headroom = headroom;
+    return this;
+  }
+
+  public Integer getCapacityPerWeight() {
+    return capacityPerWeight;
+  }
+
+  public CrossDcSpillover setCapacityPerWeight(Integer capacityPerWeight) {
+    this.capacityPerWeight = capacityPerWeight;
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return "CrossDcSpillover{" +
+        "headroom=" + headroom +
+        ", capacityPerWeight=" + capacityPerWeight +
+        '}';
+  }
+}
@@ -0,0 +1,48 @@
+package ru.hh.jclient.common.balancing.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class OutlierEjection {
+  @JsonProperty("base_ejection_time_sec")
+  private Float baseEjectionTimeSec;
+  @JsonProperty("max_ejection_time_sec")
+  private Float maxEjectionTimeSec;
+  @JsonProperty("max_ejection_percent")
+  private Integer maxEjectionPercent;
+
+  public Float getBaseEjectionTimeSec() {
+    return baseEjectionTimeSec;
+  }
+
+  public OutlierEjection setBaseEjectionTimeSec(Float baseEjectionTimeSec) {
+    this.baseEjectionTimeSec = baseEjectionTimeSec;
+    return this;
+  }
+
+  public Float getMaxEjectionTimeSec() {
+    return maxEjectionTimeSec;
+  }
+
+  public OutlierEjection setMaxEjectionTimeSec(Float maxEjectionTimeSec) {
+    this.maxEjectionTimeSec = maxEjectionTimeSec;
+    return this;
+  }
+
+  public Integer getMaxEjectionPercent() {
+    return maxEjectionPercent;
+  }
+
+  public OutlierEjection setMaxEjectionPercent(Integer maxEjectionPercent) {
+    this.maxEjectionPercent = maxEjectionPercent;
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return "OutlierEjection{" +
+        "baseEjectionTimeSec=" + baseEjectionTimeSec +
+        ", maxEjectionTimeSec=" + maxEjectionTimeSec +
+        ", maxEjectionPercent=" + maxEjectionPercent +
+        '}';
+  }
+}
@@ -14,10 +14,16 @@ public class Profile {
   private Float requestTimeoutSec;
   @JsonProperty("slow_start_interval_sec")
   private Integer slowStartIntervalSec;
+  @JsonProperty("slow_start_curve")
+  private String slowStartCurve;
   @JsonProperty("retry_policy")
   private Map<Integer, RetryPolicyConfig> retryPolicy;
   @JsonProperty("session_required")
   private Boolean isSessionRequired;
+  @JsonProperty("hedge_delay_sec")
+  private Float hedgeDelaySec;
+  @JsonProperty("hedge_quantile")
+  private Float hedgeQuantile;
 
   public Map<Integer, RetryPolicyConfig> getRetryPolicy() {
     return retryPolicy;
@@ -73,6 +79,15 @@ public class Profile {
     return this;
   }
 
+  public String getSlowStartCurve() {
+    return slowStartCurve;
+  }
+
+  public Profile setSlowStartCurve(String slowStartCurve) {
+    this.slowStartCurve = slowStartCurve;
+    return this;
+  }
+
   public Boolean isSessionRequired() {
     return this.isSessionRequired;
   }
@@ -82,6 +97,24 @@ public class Profile {
     return this;
   }
 
+  public Float getHedgeDelaySec() {
+    return hedgeDelaySec;
+  }
+
+  public Profile setHedgeDelaySec(Float hedgeDelaySec) {
+    this.hedgeDelaySec = hedgeDelaySec;
+    return this;
+  }
+
+  public Float getHedgeQuantile() {
+    return hedgeQuantile;
+  }
+
+  public Profile setHedgeQuantile(Float hedgeQuantile) {
+    this.hedgeQuantile = hedgeQuantile;
+    return this;
+  }
+
   @Override
   public String toString() {
     return "Profile{" +
@@ -90,7 +123,10 @@ public class Profile {
         ", connectTimeoutMs=" + connectTimeoutSec +
         ", requestTimeoutMs=" + requestTimeoutSec +
         ", slowStartIntervalSec=" + slowStartIntervalSec +
+        ", slowStartCurve=" + slowStartCurve +
         ", isSessionRequired=" + isSessionRequired +
+        ", hedgeDelaySec=" + hedgeDelaySec +
+        ", hedgeQuantile=" + hedgeQuantile +
         ", retryPolicy=" + retryPolicy +
         '}';
   }
@@ -0,0 +1,35 @@
+package ru.hh.jclient.common.balancing.config;
+
+import jakarta.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Shape of weight growth of a server during slow start.
+ */
+public enum SlowStartCurve {
+  /**
+   * weight grows evenly over the whole interval
+   */
+  LINEAR,
+  /**
+   * weight grows by the same factor every moment, so the server gets little traffic for the most of the interval
+   */
+  EXPONENTIAL,
+  ;
+
+  public String getPublicName() {
+    return name().toLowerCase();
+  }
+
+  @Nullable
+  public static SlowStartCurve tryParseFromString(@Nullable String value) {
+    if (value == null) {
+      return null;
+    }
+
+    return Arrays.stream(values())
+        .filter(curve -> curve.getPublicName().equals(value))
+        .findFirst()
+        .orElse(null);
+  }
+}
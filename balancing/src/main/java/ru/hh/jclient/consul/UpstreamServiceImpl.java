@@ -1,6 +1,7 @@
 package ru.hh.jclient.consul;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -233,9 +234,10 @@ public class UpstreamServiceImpl implements AutoCloseable, UpstreamService {
   }
 
   void updateUpstreams(Map<ServiceHealthKey, ServiceHealth> upstreams, String serviceName, String datacenter) {
-    Set<Server> storedAndNewServers = getServers(serviceName, datacenter);
+    List<Server> storedServers = serverStore.getServers(serviceName, datacenter);
 
-    Map<String, Server> serverToRemoveByAddress = storedAndNewServers.stream().collect(toMap(Server::getAddress, Function.identity()));
+    Map<String, Server> serverToRemoveByAddress = storedServers.stream().collect(toMap(Server::getAddress, Function.identity()));
+    List<Server> aliveServers = new ArrayList<>(upstreams.size());
 
     for (ServiceHealth serviceHealth : upstreams.values()) {
       String nodeName = serviceHealth.getNode().getNode();
@@ -254,12 +256,12 @@ public class UpstreamServiceImpl implements AutoCloseable, UpstreamService {
 
       if (server == null) {
         server = new Server(address, nodeName, serverWeight, nodeDatacenter);
-        storedAndNewServers.add(server);
       }
       server.update(serverWeight, service.getMeta(), service.getTags());
+      aliveServers.add(server);
     }
-    serverStore.updateServers(serviceName, storedAndNewServers, serverToRemoveByAddress.values());
-    var updatedServers = getServers(serviceName, datacenter);
+    serverStore.updateServers(serviceName, aliveServers, serverToRemoveByAddress.values());
+    var updatedServers = serverStore.getServers(serviceName, datacenter);
     LOGGER.info(
         "upstreams for {} were updated in DC {}; alive servers: {}, dead servers: {}",
         serviceName,
@@ -297,14 +299,6 @@ public class UpstreamServiceImpl implements AutoCloseable, UpstreamService {
     return restoredDc;
   }
 
-  private Set<Server> getServers(String serviceName, String datacenter) {
-    return serverStore
-        .getServers(serviceName)
-        .stream()
-        .filter(server -> datacenter.equals(server.getDatacenter()))
-        .collect(Collectors.toSet());
-  }
-
   ServerStore getUpstreamStore() {
     return serverStore;
   }
@@ -1,5 +1,6 @@
 package ru.hh.jclient.common;
 
+import java.io.IOException;
 import java.time.Clock;
 import java.util.ArrayList;
 import static java.util.Collections.singletonList;
@@ -7,6 +8,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -17,6 +19,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
@@ -195,35 +198,54 @@ public class BalancingClientTest extends BalancingClientTestBase {
         return currentTimeMillis.get();
       }
     };
-    var servers = List.of(server1, server2);
+    List<Server> servers = new ArrayList<>();
+    servers.add(server1);
     when(serverStore.getServers(TEST_UPSTREAM)).thenReturn(servers);
 
-    int slowStartInterval = 2;
+    int slowStartInterval = 10;
     ApplicationConfig applicationConfig = buildTestConfig();
-    applicationConfig.getHosts().get(DEFAULT).getProfiles().get(DEFAULT).setSlowStartIntervalSec(3);
+    applicationConfig.getHosts().get(DEFAULT).getProfiles().get(DEFAULT).setSlowStartIntervalSec(slowStartInterval);
     when(configStore.getUpstreamConfig(TEST_UPSTREAM)).thenReturn(ApplicationConfig.toUpstreamConfigs(applicationConfig, DEFAULT));
 
     createHttpClientFactory(List.of(TEST_UPSTREAM));
-    var calledAddresses = new ArrayList<>();
+    var calledAddresses = new ArrayList<String>();
     when(httpClient.executeRequest(any(Request.class), any(CompletionHandler.class))).then(iom -> {
       Request request = completeWith(200, iom);
       calledAddresses.add(request.getUri().getHost());
       return null;
     });
 
-    getTestClient().get();
-    getTestClient().get();
-    getTestClient().get();
-    assertEquals(3, server1.getStatsRequests());
-    assertEquals(0, server2.getStatsRequests());
-    currentTimeMillis.addAndGet(TimeUnit.SECONDS.toMillis(slowStartInterval + 1));
-    getTestClient().get();
-    assertEquals(4, server1.getStatsRequests());
-    assertEquals(server1.getAddress(), calledAddresses.get(calledAddresses.size() - 1));
-    assertEquals(3, server2.getStatsRequests());
-    getTestClient().get();
-    assertEquals(4, server2.getStatsRequests());
-    assertEquals(server2.getAddress(), calledAddresses.get(calledAddresses.size() - 1));
+    currentTimeMillis.addAndGet(TimeUnit.SECONDS.toMillis(slowStartInterval));
+    for (int i = 0; i < 100; i++) {
+      getTestClient().get();
+    }
+    assertEquals(100, server1.getStatsRequests());
+
+    servers.add(server2);
+    upstreamManager.updateUpstreams(Set.of(TEST_UPSTREAM));
+
+    calledAddresses.clear();
+    for (int i = 0; i < 100; i++) {
+      getTestClient().get();
+    }
+    long server2Requests = calledAddresses.stream().filter(server2.getAddress()::equals).count();
+    assertTrue(server2Requests <= 2, "requests to server2 at slow start beginning: " + server2Requests);
+
+    currentTimeMillis.addAndGet(TimeUnit.SECONDS.toMillis(slowStartInterval) / 2);
+    calledAddresses.clear();
+    for (int i = 0; i < 100; i++) {
+      getTestClient().get();
+    }
+    server2Requests = calledAddresses.stream().filter(server2.getAddress()::equals).count();
+    assertTrue(server2Requests >= 25 && server2Requests <= 40, "requests to server2 in the middle of slow start: " + server2Requests);
+
+    currentTimeMillis.addAndGet(TimeUnit.SECONDS.toMillis(slowStartInterval));
+    calledAddresses.clear();
+    for (int i = 0; i < 100; i++) {
+      getTestClient().get();
+    }
+    server2Requests = calledAddresses.stream().filter(server2.getAddress()::equals).count();
+    assertTrue(server2Requests >= 45 && server2Requests <= 55, "requests to server2 after slow start: " + server2Requests);
   }
 
   @Test
@@ -429,6 +451,80 @@ public class BalancingClientTest extends BalancingClientTestBase {
     }
   }
 
+  @Test
+  public void retriedRequestListenersShouldFinishProcessing() throws Exception {
+    List<List<String>> listenerCalls = addRecordingListeners();
+    createHttpClientFactory(List.of(TEST_UPSTREAM));
+
+    when(httpClient.executeRequest(isA(Request.class), isA(CompletionHandler.class)))
+        .then(iom -> {
+          failWith(new IOException("Remotely closed"), iom);
+          return null;
+        })
+        .then(iom -> {
+          completeWith(200, iom);
+          return null;
+        });
+
+    getTestClient().get();
+
+    assertEquals(List.of(List.of("request", "retry:1", "finished")), listenerCalls);
+  }
+
+  @Test
+  public void listenersOfHedgeThatWonShouldFinishProcessing() throws Exception {
+    ApplicationConfig applicationConfig = buildTestConfig();
+    applicationConfig.getHosts().get(DEFAULT).getProfiles().get(DEFAULT).setHedgeDelaySec(0.02f);
+    when(configStore.getUpstreamConfig(TEST_UPSTREAM)).thenReturn(ApplicationConfig.toUpstreamConfigs(applicationConfig, DEFAULT));
+    List<List<String>> listenerCalls = addRecordingListeners();
+    createHttpClientFactory(List.of(TEST_UPSTREAM));
+
+    when(httpClient.executeRequest(isA(Request.class), isA(CompletionHandler.class)))
+        .then(iom -> null)
+        .then(iom -> {
+          completeWith(200, iom);
+          return null;
+        });
+
+    getTestClient().get();
+
+    assertEquals(List.of(List.of("request"), List.of("hedge:1", "finished")), listenerCalls);
+  }
+
+  /**
+   * @return calls of every listener instance got from the supplier, in order of creation
+   */
+  private List<List<String>> addRecordingListeners() {
+    List<List<String>> listenerCalls = new CopyOnWriteArrayList<>();
+    eventListenerSupplierList.add(() -> {
+      List<String> calls = new CopyOnWriteArrayList<>();
+      listenerCalls.add(calls);
+      return new HttpClientEventListener() {
+        @Override
+        public void onRequest(ru.hh.jclient.common.Request request, Object requestBodyEntity, RequestContext context) {
+          calls.add("request");
+        }
+
+        @Override
+        public void onRetry(ru.hh.jclient.common.Request request, Object requestBodyEntity, int retryCount, RequestContext context) {
+          calls.add("retry:" + retryCount);
+        }
+
+        @Override
+        public void onHedge(ru.hh.jclient.common.Request request, Object requestBodyEntity, int retryCount, RequestContext context) {
+          calls.add("hedge:" + retryCount);
+        }
+
+        @Override
+        public void onProcessingFinished() {
+          calls.add("finished");
+        }
+      };
+    });
+    withEmptyContext();
+    return listenerCalls;
+  }
+
   @Test
   public void balancedRequestMonitoring() throws Exception {
     String datacenter = "DC1";
@@ -93,6 +93,50 @@ abstract class BalancingClientTestBase extends HttpClientTestBase {
     testEventListener.assertCalled(REQUEST, RESPONSE, RESPONSE_CONVERTED, FINISHED);
   }
 
+  @Test
+  public void shouldReplaceOnlyAuthorityOfBalancedUrl() throws Exception {
+    when(serverStore.getServers(TEST_UPSTREAM)).thenReturn(List.of(new Server("server1:8080", null, 1, null)));
+
+    createHttpClientFactory(List.of(TEST_UPSTREAM));
+
+    Request[] request = new Request[1];
+    when(httpClient.executeRequest(isA(Request.class), isA(CompletionHandler.class)))
+        .then(iom -> {
+          request[0] = completeWith(200, iom);
+          return null;
+        });
+
+    getTestClient().get("http://" + TEST_UPSTREAM + "/path?from=http://" + TEST_UPSTREAM + "/other");
+
+    assertHostEquals(request[0], "server1");
+    assertEquals(8080, request[0].getUri().getPort());
+    assertEquals("/path", request[0].getUri().getPath());
+    assertTrue(request[0].getUri().getQuery().contains(TEST_UPSTREAM + "/other"), request[0].getUrl());
+  }
+
+  @Test
+  public void shouldUseHttpForServerWithoutSchemeAndKeepFragment() throws Exception {
+    when(serverStore.getServers(TEST_UPSTREAM)).thenReturn(List.of(new Server("server1:8080", null, 1, null)));
+
+    createHttpClientFactory(List.of(TEST_UPSTREAM));
+
+    Request[] request = new Request[1];
+    when(httpClient.executeRequest(isA(Request.class), isA(CompletionHandler.class)))
+        .then(iom -> {
+          request[0] = completeWith(200, iom);
+          return null;
+        });
+
+    getTestClient().get("https://" + TEST_UPSTREAM + "/path?key=value#fragment");
+
+    assertEquals("http", request[0].getUri().getScheme());
+    assertHostEquals(request[0], "server1");
+    assertEquals(8080, request[0].getUri().getPort());
+    assertEquals("/path", request[0].getUri().getPath());
+    assertEquals("key=value", request[0].getUri().getQuery());
+    assertEquals("fragment", request[0].getUri().getFragment());
+  }
+
   @Test
   public void retryShouldFailIfNoServersAvailable() {
     createHttpClientFactory(List.of(TEST_UPSTREAM));
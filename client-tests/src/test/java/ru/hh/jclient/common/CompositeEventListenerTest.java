@@ -0,0 +1,146 @@
+package ru.hh.jclient.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static org.mockito.Mockito.mock;
+
+public class CompositeEventListenerTest {
+
+  @Test
+  public void hooksShouldBeCalledInOrderOfListeners() {
+    List<String> calls = new ArrayList<>();
+    CompositeEventListener composite = new CompositeEventListener(
+        List.of(new RecordingListener("first", calls), new RecordingListener("second", calls))
+    );
+
+    composite.onProcessingFinished();
+    composite.onClientProblem(new RuntimeException());
+
+    assertEquals(List.of("first:finished", "second:finished", "first:problem", "second:problem"), calls);
+  }
+
+  @Test
+  public void responseShouldBePassedThroughListeners() {
+    Response original = mock(Response.class);
+    Response replaced = mock(Response.class);
+    HttpClientEventListener replacing = new HttpClientEventListener() {
+      @Override
+      public Response onResponse(Response response) {
+        return response == original ? replaced : response;
+      }
+    };
+    List<Response> seen = new ArrayList<>();
+    HttpClientEventListener recording = new HttpClientEventListener() {
+      @Override
+      public Response onResponse(Response response) {
+        seen.add(response);
+        return response;
+      }
+    };
+
+    assertSame(replaced, new CompositeEventListener(List.of(replacing, recording)).onResponse(original));
+    assertEquals(List.of(replaced), seen);
+  }
+
+  @Test
+  public void hooksOverriddenBySuperclassShouldBeCalled() {
+    List<String> calls = new ArrayList<>();
+    CompositeEventListener composite = new CompositeEventListener(List.of(new RecordingListener("parent", calls) {}));
+
+    composite.onProcessingFinished();
+
+    assertEquals(List.of("parent:finished"), calls);
+  }
+
+  @Test
+  public void hooksOverriddenByInterfaceShouldBeCalled() {
+    List<String> calls = new ArrayList<>();
+    CompositeEventListener composite = new CompositeEventListener(List.of(new RetryRecordingListener() {
+      @Override
+      public List<String> getCalls() {
+        return calls;
+      }
+    }));
+    Request request = new RequestBuilder("GET").setUrl("http://localhost/").build();
+
+    composite.onRequest(request, null, RequestContext.EMPTY_CONTEXT);
+    composite.onRetry(request, null, 1, RequestContext.EMPTY_CONTEXT);
+
+    assertEquals(List.of("retry:1"), calls);
+  }
+
+  @Test
+  public void hedgeShouldFallBackToRetry() {
+    List<String> calls = new ArrayList<>();
+    HttpClientEventListener retryListener = new HttpClientEventListener() {
+      @Override
+      public void onRetry(Request request, Object requestBodyEntity, int retryCount, RequestContext context) {
+        calls.add("retry:" + retryCount);
+      }
+    };
+    HttpClientEventListener hedgeListener = new HttpClientEventListener() {
+      @Override
+      public void onHedge(Request request, Object requestBodyEntity, int retryCount, RequestContext context) {
+        calls.add("hedge:" + retryCount);
+      }
+    };
+    Request request = new RequestBuilder("GET").setUrl("http://localhost/").build();
+
+    new CompositeEventListener(List.of(retryListener, hedgeListener)).onHedge(request, null, 1, RequestContext.EMPTY_CONTEXT);
+
+    assertEquals(List.of("retry:1", "hedge:1"), calls);
+  }
+
+  @Test
+  public void debugUnwrappingShouldBeAskedOnce() {
+    AtomicInteger asked = new AtomicInteger();
+    HttpClientEventListener debugListener = new HttpClientEventListener() {
+      @Override
+      public boolean canUnwrapDebugResponse() {
+        asked.incrementAndGet();
+        return true;
+      }
+    };
+    CompositeEventListener composite = new CompositeEventListener(List.of(HttpClientEventListener.DISABLED_EVENT_LISTENER, debugListener));
+
+    assertTrue(composite.canUnwrapDebugResponse());
+    assertTrue(composite.canUnwrapDebugResponse());
+    assertEquals(1, asked.get());
+    assertFalse(new CompositeEventListener(List.of(HttpClientEventListener.DISABLED_EVENT_LISTENER)).canUnwrapDebugResponse());
+  }
+
+  private interface RetryRecordingListener extends HttpClientEventListener {
+    List<String> getCalls();
+
+    @Override
+    default void onRetry(Request request, Object requestBodyEntity, int retryCount, RequestContext context) {
+      getCalls().add("retry:" + retryCount);
+    }
+  }
+
+  private static class RecordingListener implements HttpClientEventListener {
+    private final String name;
+    private final List<String> calls;
+
+    private RecordingListener(String name, List<String> calls) {
+      this.name = name;
+      this.calls = calls;
+    }
+
+    @Override
+    public void onClientProblem(Throwable t) {
+      calls.add(name + ":problem");
+    }
+
+    @Override
+    public void onProcessingFinished() {
+      calls.add(name + ":finished");
+    }
+  }
+}
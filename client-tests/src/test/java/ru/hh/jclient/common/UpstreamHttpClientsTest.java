@@ -0,0 +1,251 @@
+package ru.hh.jclient.common;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.StreamSupport;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.DefaultAsyncHttpClient;
+import org.asynchttpclient.DefaultAsyncHttpClientConfig;
+import org.asynchttpclient.exception.TooManyConnectionsException;
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.Mockito.mock;
+import ru.hh.jclient.common.metrics.MetricsProvider;
+
+public class UpstreamHttpClientsTest {
+  private static final TransportConfig TRANSPORT_CONFIG = new TransportConfig(100, 10, 30_000);
+
+  private DefaultAsyncHttpClient defaultClient;
+  private UpstreamHttpClients httpClients;
+
+  @BeforeEach
+  public void setUp() {
+    defaultClient = new DefaultAsyncHttpClient(new DefaultAsyncHttpClientConfig.Builder().setConnectTimeout(500).build());
+    httpClients = new UpstreamHttpClients(defaultClient, true);
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    httpClients.close();
+    defaultClient.close();
+  }
+
+  @Test
+  public void upstreamShouldGetClientWithItsTransportConfig() {
+    AsyncHttpClient client = httpClients.get(createContext("backend", TRANSPORT_CONFIG));
+
+    assertNotSame(defaultClient, client);
+    assertEquals(100, client.getConfig().getConnectTimeout());
+    assertEquals(10, client.getConfig().getMaxConnectionsPerHost());
+    assertEquals(30_000, client.getConfig().getPooledConnectionIdleTimeout());
+    assertSame(defaultClient.getEventLoopGroup(), ((DefaultAsyncHttpClient) client).getEventLoopGroup());
+    assertSame(client, httpClients.get(createContext("backend", new TransportConfig(100, 10, 30_000))));
+  }
+
+  @Test
+  public void upstreamsShouldNotShareClients() {
+    AsyncHttpClient client = httpClients.get(createContext("backend", TRANSPORT_CONFIG));
+
+    assertNotSame(client, httpClients.get(createContext("other", TRANSPORT_CONFIG)));
+    assertNotSame(client, httpClients.get(createContext("backend", new TransportConfig(200, 10, 30_000))));
+    assertEquals(Map.of("backend", 2L, "other", 1L), countClientsByUpstream());
+  }
+
+  @Test
+  public void unsetValuesShouldBeTakenFromDefaultClient() {
+    AsyncHttpClient client = httpClients.get(createContext("backend", new TransportConfig(0, 0, 0)));
+
+    assertEquals(500, client.getConfig().getConnectTimeout());
+    assertEquals(defaultClient.getConfig().getMaxConnectionsPerHost(), client.getConfig().getMaxConnectionsPerHost());
+    assertEquals(defaultClient.getConfig().getPooledConnectionIdleTimeout(), client.getConfig().getPooledConnectionIdleTimeout());
+  }
+
+  @Test
+  public void defaultClientShouldBeUsedWithoutTransportConfig() {
+    assertSame(defaultClient, httpClients.get(RequestContext.EMPTY_CONTEXT));
+    assertSame(defaultClient, httpClients.get(createContext("backend", null)));
+    assertSame(defaultClient, httpClients.get(createContext(null, TRANSPORT_CONFIG)));
+    assertSame(defaultClient, new UpstreamHttpClients(defaultClient, false).get(createContext("backend", TRANSPORT_CONFIG)));
+
+    AsyncHttpClient mockClient = mock(AsyncHttpClient.class);
+    assertSame(mockClient, new UpstreamHttpClients(mockClient, true).get(createContext("backend", TRANSPORT_CONFIG)));
+  }
+
+  @Test
+  public void metricsShouldBeReportedByUpstream() {
+    MetricsProvider metricsProvider = MetricsProviderFactory.from(httpClients);
+    assertEquals(Map.of(), metricsProvider.connectionCountByUpstream().get());
+
+    httpClients.get(createContext("backend", TRANSPORT_CONFIG));
+
+    assertEquals(Map.of("backend", 0L), metricsProvider.connectionCountByUpstream().get());
+    assertEquals(Map.of("backend", 0L), metricsProvider.idleConnectionCountByUpstream().get());
+    assertEquals(0L, metricsProvider.totalConnectionCount().get());
+  }
+
+  @Test
+  public void upstreamClientsShouldShareMaxConnections() throws Exception {
+    HttpServer server = createServer(null, null);
+    DefaultAsyncHttpClientConfig limitedConfig = new DefaultAsyncHttpClientConfig.Builder().setMaxConnections(1).build();
+    try (DefaultAsyncHttpClient limitedClient = new DefaultAsyncHttpClient(limitedConfig)) {
+      UpstreamHttpClients limitedClients = new UpstreamHttpClients(limitedClient, true);
+      String url = getUrl(server);
+      try {
+        sendHeadRequest(limitedClients, url, createContext("backend", TRANSPORT_CONFIG)).get(5, TimeUnit.SECONDS);
+
+        CompletableFuture<?> request = sendHeadRequest(limitedClients, url, createContext("other", TRANSPORT_CONFIG));
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> request.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TooManyConnectionsException.class, exception.getCause());
+      } finally {
+        limitedClients.close();
+      }
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void defaultAndUpstreamClientsShouldShareMaxConnections() throws Exception {
+    CountDownLatch responseLatch = new CountDownLatch(1);
+    ExecutorService serverExecutor = Executors.newCachedThreadPool();
+    HttpServer server = createServer(serverExecutor, responseLatch);
+    AsyncHttpClientConfig limitedConfig = UpstreamHttpClients.withSharedMaxConnections(
+        new DefaultAsyncHttpClientConfig.Builder().setMaxConnections(2).build()
+    );
+    try (DefaultAsyncHttpClient limitedClient = new DefaultAsyncHttpClient(limitedConfig)) {
+      UpstreamHttpClients limitedClients = new UpstreamHttpClients(limitedClient, true);
+      String url = getUrl(server);
+      try {
+        // responses are held, so every request keeps its connection busy
+        CompletableFuture<?> defaultRequest = sendHeadRequest(limitedClients, url, RequestContext.EMPTY_CONTEXT);
+        CompletableFuture<?> upstreamRequest = sendHeadRequest(limitedClients, url, createContext("backend", TRANSPORT_CONFIG));
+
+        for (RequestContext context : List.of(
+            RequestContext.EMPTY_CONTEXT,
+            createContext("backend", TRANSPORT_CONFIG),
+            createContext("other", TRANSPORT_CONFIG)
+        )) {
+          CompletableFuture<?> request = sendHeadRequest(limitedClients, url, context);
+          ExecutionException exception = assertThrows(ExecutionException.class, () -> request.get(5, TimeUnit.SECONDS));
+          assertInstanceOf(TooManyConnectionsException.class, exception.getCause());
+        }
+        assertTrue(MetricsProviderFactory.from(limitedClients).totalConnectionCount().get() <= 2);
+
+        responseLatch.countDown();
+        defaultRequest.get(5, TimeUnit.SECONDS);
+        upstreamRequest.get(5, TimeUnit.SECONDS);
+      } finally {
+        responseLatch.countDown();
+        limitedClients.close();
+      }
+    } finally {
+      server.stop(0);
+      serverExecutor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void prewarmedConnectionShouldStayInPoolOfUpstream() throws Exception {
+    HttpServer server = createServer(null, null);
+    try {
+      Uri uri = new Uri("http", null, "127.0.0.1", server.getAddress().getPort(), "/", null);
+
+      httpClients.prewarm(uri, createContext("backend", TRANSPORT_CONFIG)).get(5, TimeUnit.SECONDS);
+
+      assertEquals(Map.of("backend", 1L), MetricsProviderFactory.from(httpClients).idleConnectionCountByUpstream().get());
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void prewarmShouldFailWithoutConnection() throws Exception {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    Uri uri = new Uri("http", null, "127.0.0.1", port, "/", null);
+
+    CompletableFuture<Void> prewarm = httpClients.prewarm(uri, createContext("backend", TRANSPORT_CONFIG));
+
+    assertThrows(ExecutionException.class, () -> prewarm.get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void scheduledTaskShouldRunOutsideOfEventLoops() throws Exception {
+    CompletableFuture<Thread> taskThread = new CompletableFuture<>();
+
+    httpClients.schedule(() -> taskThread.complete(Thread.currentThread()), 10);
+
+    Thread thread = taskThread.get(5, TimeUnit.SECONDS);
+    assertFalse(StreamSupport
+        .stream(defaultClient.getEventLoopGroup().spliterator(), false)
+        .anyMatch(executor -> executor.inEventLoop(thread)));
+  }
+
+  private Map<String, Long> countClientsByUpstream() {
+    Map<String, Long> counts = new HashMap<>();
+    httpClients.getClientsByUpstream().forEach((upstreamName, clients) -> counts.put(upstreamName, (long) clients.size()));
+    return counts;
+  }
+
+  /**
+   * @param responseLatch responses are sent once it is released, or at once if it is null
+   */
+  private static HttpServer createServer(ExecutorService executor, CountDownLatch responseLatch) throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/", exchange -> {
+      exchange.getRequestBody().readAllBytes();
+      if (responseLatch != null) {
+        try {
+          responseLatch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      exchange.sendResponseHeaders(200, -1);
+      exchange.close();
+    });
+    server.setExecutor(executor);
+    server.start();
+    return server;
+  }
+
+  private static String getUrl(HttpServer server) {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+  }
+
+  private static CompletableFuture<org.asynchttpclient.Response> sendHeadRequest(
+      UpstreamHttpClients clients,
+      String url,
+      RequestContext context
+  ) {
+    return clients.get(context).prepareHead(url).execute().toCompletableFuture();
+  }
+
+  private static RequestContext createContext(String upstreamName, TransportConfig transportConfig) {
+    return new RequestContext(upstreamName, null, null, false, transportConfig);
+  }
+}
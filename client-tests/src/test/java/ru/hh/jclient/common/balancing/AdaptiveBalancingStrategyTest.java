@@ -1,5 +1,7 @@
 package ru.hh.jclient.common.balancing;
 
+import java.time.Clock;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import static java.util.stream.Collectors.toList;
@@ -15,14 +17,14 @@ public class AdaptiveBalancingStrategyTest extends AbstractBalancingStrategyTest
   public void shouldPickLessThanAll() {
     int retriesCount = 2;
     var servers = generateServers(3);
-    var balancedServers = AdaptiveBalancingStrategy.getServers(servers, retriesCount);
+    var balancedServers = sample(servers, retriesCount);
     assertEquals(retriesCount, balancedServers.size());
   }
 
   @Test
   public void shouldPickDifferent() {
     var servers = generateServers(3);
-    var balancedServers = AdaptiveBalancingStrategy.getServers(servers, servers.size());
+    var balancedServers = sample(servers, servers.size());
     assertEquals(List.of(0, 1, 2), balancedServers.stream().sorted().collect(toList()));
   }
 
@@ -30,7 +32,7 @@ public class AdaptiveBalancingStrategyTest extends AbstractBalancingStrategyTest
   public void shouldPickSameServerSeveralTimes() {
     int retriesCount = 3;
     var servers = generateServers(1);
-    var balancedServers = AdaptiveBalancingStrategy.getServers(servers, retriesCount);
+    var balancedServers = sample(servers, retriesCount);
     assertEquals(List.of(0, 0, 0), balancedServers);
   }
 
@@ -38,7 +40,7 @@ public class AdaptiveBalancingStrategyTest extends AbstractBalancingStrategyTest
   public void shouldPickAsMuchAsRequested() {
     int retriesCount = 5;
     var servers = generateServers(3);
-    var balancedServers = AdaptiveBalancingStrategy.getServers(servers, retriesCount);
+    var balancedServers = sample(servers, retriesCount);
 
     assertEquals(retriesCount, balancedServers.size());
     assertEquals(balancedServers.subList(0, 2), balancedServers.subList(3, 5), "Extra servers should be repeated in the same order");
@@ -46,15 +48,15 @@ public class AdaptiveBalancingStrategyTest extends AbstractBalancingStrategyTest
 
   @Test
   public void shouldReturnEmpty() {
-    assertEquals(List.of(), AdaptiveBalancingStrategy.getServers(generateServers(3), 0));
-    assertEquals(List.of(), AdaptiveBalancingStrategy.getServers(List.of(), 2));
+    assertEquals(List.of(), sample(generateServers(3), 0));
+    assertEquals(List.of(), sample(List.of(), 2));
   }
 
   @Test
   public void shouldWarmUp() {
     int retriesCount = 2;
     var servers = generateServers(2);
-    var balancedServers = AdaptiveBalancingStrategy.getServers(servers, retriesCount);
+    var balancedServers = sample(servers, retriesCount);
 
     var responseTimeTracker1 = servers.get(balancedServers.get(0)).getResponseTimeTracker();
     var responseTimeTracker2 = servers.get(balancedServers.get(1)).getResponseTimeTracker();
@@ -66,12 +68,44 @@ public class AdaptiveBalancingStrategyTest extends AbstractBalancingStrategyTest
       responseTimeTracker1.time(random.nextInt(100, 200));
     }
 
-    balancedServers = AdaptiveBalancingStrategy.getServers(servers, retriesCount);
+    balancedServers = sample(servers, retriesCount);
     boolean warmUp1 = servers.get(balancedServers.get(0)).getResponseTimeTracker().isWarmUp();
     boolean warmUp2 = servers.get(balancedServers.get(1)).getResponseTimeTracker().isWarmUp();
     assertNotEquals(warmUp1, warmUp2, "Only one server should be warmed up");
   }
 
+  @Test
+  public void shouldAvoidServerWithBadTailLatencyInQuantileMode() {
+    var servers = generateServers(2);
+    for (Server server : servers) {
+      server.getDowntimeDetector().success();
+    }
+    for (int i = 0; i < RESPONSE_TIME_TRACKER_WINDOW; i++) {
+      // same mean, but the second server has a long tail
+      servers.get(0).releaseAdaptive(false, 100);
+      servers.get(1).releaseAdaptive(false, i % 10 == 0 ? 910 : 10);
+    }
+    assertEquals(servers.get(0).getResponseTimeTracker().mean(), servers.get(1).getResponseTimeTracker().mean());
+
+    int firstPicked = 0;
+    for (int i = 0; i < 1000; i++) {
+      if (sample(servers, 1, 0.99f).get(0) == 0) {
+        firstPicked++;
+      }
+    }
+    assertTrue(firstPicked > 800, "server without tail should get most requests, got " + firstPicked);
+  }
+
+  private static List<Integer> sample(List<Server> servers, int triesCount) {
+    return sample(servers, triesCount, null);
+  }
+
+  private static List<Integer> sample(List<Server> servers, int triesCount, Float latencyQuantile) {
+    UpstreamConfigs configs = UpstreamConfigs.defaultConfigBuilder().withAdaptiveLatencyQuantile(latencyQuantile).build();
+    UpstreamSnapshot snapshot = new UpstreamSnapshot(0, configs, servers, null);
+    return Arrays.stream(AdaptiveScoreTable.create(snapshot, 0, Clock.systemUTC()).sample(triesCount)).boxed().toList();
+  }
+
   private static List<Server> generateServers(int n) {
     return IntStream
         .range(0, n)
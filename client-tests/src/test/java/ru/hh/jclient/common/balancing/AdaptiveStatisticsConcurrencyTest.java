@@ -0,0 +1,93 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class AdaptiveStatisticsConcurrencyTest {
+  private static final int WINDOW = 100;
+  private static final int THREADS = 8;
+  private static final int ITERATIONS = 200_000;
+
+  @Test
+  public void downtimeDetectorShouldNotLoseResults() throws Exception {
+    DowntimeDetector detector = new DowntimeDetector(WINDOW);
+
+    runConcurrently(() -> {
+      if (ThreadLocalRandom.current().nextBoolean()) {
+        detector.failed();
+      } else {
+        detector.success();
+      }
+    });
+
+    // every slot is overwritten, so the counter must match the buffer exactly if nothing was lost
+    for (int i = 0; i < WINDOW; i++) {
+      detector.failed();
+    }
+    assertEquals(0, detector.successCount());
+    assertTrue(detector.tooMuchErrors());
+
+    for (int i = 0; i < WINDOW; i++) {
+      detector.success();
+    }
+    assertEquals(WINDOW, detector.successCount());
+    assertFalse(detector.tooMuchErrors());
+  }
+
+  @Test
+  public void responseTimeTrackerShouldNotLoseResults() throws Exception {
+    ResponseTimeTracker tracker = new ResponseTimeTracker(WINDOW);
+
+    runConcurrently(() -> tracker.time(ThreadLocalRandom.current().nextLong(1, 1000)));
+
+    assertFalse(tracker.isWarmUp());
+    for (int i = 0; i < WINDOW; i++) {
+      tracker.time(42);
+    }
+    assertEquals(42, tracker.mean());
+  }
+
+  @Test
+  public void responseTimeTrackerShouldWarmUpAfterWindowIsFilled() {
+    ResponseTimeTracker tracker = new ResponseTimeTracker(WINDOW);
+    for (int i = 0; i < WINDOW - 1; i++) {
+      tracker.time(10);
+      assertTrue(tracker.isWarmUp());
+    }
+    tracker.time(10);
+    assertFalse(tracker.isWarmUp());
+    assertEquals(10, tracker.mean());
+  }
+
+  private static void runConcurrently(Runnable action) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < THREADS; t++) {
+        futures.add(executor.submit(() -> {
+          start.await();
+          for (int i = 0; i < ITERATIONS; i++) {
+            action.run();
+          }
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
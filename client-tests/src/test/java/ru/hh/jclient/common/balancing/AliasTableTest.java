@@ -0,0 +1,73 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.Arrays;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class AliasTableTest {
+  private static final int DRAWS = 100_000;
+
+  @Test
+  public void shouldDrawProportionallyToWeights() {
+    long[] weights = {1, 2, 3, 4, 0};
+    AliasTable aliasTable = new AliasTable(weights);
+
+    int[] counts = new int[weights.length];
+    for (int i = 0; i < DRAWS; i++) {
+      counts[aliasTable.draw()]++;
+    }
+
+    long total = Arrays.stream(weights).sum();
+    for (int i = 0; i < weights.length; i++) {
+      assertEquals((double) weights[i] / total, (double) counts[i] / DRAWS, 0.01, "share of index " + i);
+    }
+  }
+
+  @Test
+  public void shouldDrawUniformlyIfAllWeightsAreZero() {
+    AliasTable aliasTable = new AliasTable(new long[] {0, 0});
+
+    int firstCount = 0;
+    for (int i = 0; i < DRAWS; i++) {
+      if (aliasTable.draw() == 0) {
+        firstCount++;
+      }
+    }
+
+    assertEquals(0.5, (double) firstCount / DRAWS, 0.01);
+  }
+
+  @Test
+  public void sampleShouldNotRepeatUntilAllAreDrawn() {
+    AliasTable aliasTable = new AliasTable(new long[] {1000, 1, 1});
+
+    for (int i = 0; i < 100; i++) {
+      int[] sample = aliasTable.sample(5);
+      assertEquals(5, sample.length);
+      assertEquals(3, Arrays.stream(sample, 0, 3).distinct().count());
+      assertArrayEquals(Arrays.copyOfRange(sample, 0, 2), Arrays.copyOfRange(sample, 3, 5));
+    }
+  }
+
+  @Test
+  public void secondDrawShouldBeProportionalToRestWeights() {
+    AliasTable aliasTable = new AliasTable(new long[] {8, 1, 3});
+
+    int thirdCount = 0;
+    int secondDraws = 0;
+    for (int i = 0; i < DRAWS; i++) {
+      int[] sample = aliasTable.sample(2);
+      if (sample[0] == 0) {
+        secondDraws++;
+        if (sample[1] == 2) {
+          thirdCount++;
+        }
+      }
+    }
+
+    assertTrue(secondDraws > 0);
+    assertEquals(0.75, (double) thirdCount / secondDraws, 0.02);
+  }
+}
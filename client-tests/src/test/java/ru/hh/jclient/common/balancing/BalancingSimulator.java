@@ -0,0 +1,305 @@
+package ru.hh.jclient.common.balancing;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import ru.hh.jclient.common.balancing.config.BalancingStrategyType;
+
+/**
+ * Discrete-event model of a single upstream in virtual time, balanced by the real {@link Upstream} and {@link BalancingState}
+ * the way {@link UpstreamRequestBalancer} does it. Only servers are modelled: requests arrive as a Poisson process,
+ * an attempt takes the latency drawn from distribution of its server and fails with failure rate of the server,
+ * a failed attempt is retried while tries and retry budget allow.
+ * Servers are changed, added and removed by actions scheduled with {@link #at}, an added server starts slowly if configs say so.
+ * <p>
+ * Workload is the same for the same seed. Weighted and peak EWMA balancing are deterministic as well,
+ * other strategies draw from their own random sources.
+ */
+final class BalancingSimulator {
+  static final String DATACENTER = "dc1";
+  /**
+   * so that no time is 0, which some statistics of servers take for "never"
+   */
+  private static final long START_NANOS = TimeUnit.HOURS.toNanos(1);
+
+  private final UpstreamConfigs configs;
+  private final boolean adaptive;
+  private final double requestsPerMs;
+  private final Random random;
+  private final VirtualClock clock = new VirtualClock(START_NANOS);
+  private final Upstream upstream;
+  /**
+   * removed servers are replaced with null, as {@link ServerStore} does, so indexes of the others stay the same
+   */
+  private final List<Server> servers = new ArrayList<>();
+  private final Map<String, ServerModel> models = new LinkedHashMap<>();
+  private final PriorityQueue<Event> events = new PriorityQueue<>(
+      (a, b) -> a.atNanos != b.atNanos ? Long.compare(a.atNanos, b.atNanos) : Long.compare(a.sequence, b.sequence)
+  );
+  private long sequence;
+  private boolean arrivalsScheduled;
+  private Period period;
+
+  /**
+   * @param requestsPerMs mean arrival rate
+   * @param seed of arrivals, latencies and failures
+   */
+  BalancingSimulator(UpstreamConfigs configs, double requestsPerMs, long seed) {
+    this.configs = configs;
+    this.adaptive = configs.getBalancingStrategyType() == BalancingStrategyType.ADAPTIVE;
+    this.requestsPerMs = requestsPerMs;
+    this.random = new Random(seed);
+    this.upstream = new Upstream("simulation", configs, new ArrayList<>(), DATACENTER, true, clock);
+  }
+
+  BalancingSimulator addServer(String address, int weight, LatencyDistribution latency) {
+    if (models.containsKey(address)) {
+      throw new IllegalArgumentException("Server " + address + " is already added");
+    }
+    models.put(address, new ServerModel(latency));
+    servers.add(new Server(address, null, weight, DATACENTER));
+    upstream.update(configs, new ArrayList<>(servers));
+    return this;
+  }
+
+  /**
+   * Requests in flight to the server still get their responses, they are drawn when attempts are sent.
+   */
+  void removeServer(String address) {
+    if (models.remove(address) == null) {
+      throw new IllegalArgumentException("Server " + address + " is not added");
+    }
+    for (int i = 0; i < servers.size(); i++) {
+      if (servers.get(i) != null && servers.get(i).getAddress().equals(address)) {
+        servers.set(i, null);
+      }
+    }
+    upstream.update(configs, new ArrayList<>(servers));
+  }
+
+  void setLatency(String address, LatencyDistribution latency) {
+    getModel(address).latency = latency;
+  }
+
+  /**
+   * @param failureRate share of attempts that fail with a server error, 1 for a server that is down
+   */
+  void setFailureRate(String address, double failureRate) {
+    getModel(address).failureRate = failureRate;
+  }
+
+  /**
+   * @param atMs virtual time since the simulation start
+   */
+  void at(long atMs, Runnable action) {
+    schedule(START_NANOS + TimeUnit.MILLISECONDS.toNanos(atMs), action);
+  }
+
+  /**
+   * @return virtual time since the simulation start
+   */
+  long getNowMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(clock.nanos - START_NANOS);
+  }
+
+  Upstream getUpstream() {
+    return upstream;
+  }
+
+  /**
+   * Advances virtual time processing everything that happens meanwhile.
+   *
+   * @return attempts sent and requests finished during the run, requests still in flight are reported by the next one
+   */
+  SimulationReport run(long durationMs) {
+    if (!arrivalsScheduled) {
+      arrivalsScheduled = true;
+      scheduleArrival();
+    }
+    period = new Period();
+    long endNanos = clock.nanos + TimeUnit.MILLISECONDS.toNanos(durationMs);
+    while (!events.isEmpty() && events.peek().atNanos < endNanos) {
+      Event event = events.poll();
+      clock.nanos = event.atNanos;
+      event.action.run();
+    }
+    clock.nanos = endNanos;
+    return period.toReport(durationMs);
+  }
+
+  private void scheduleArrival() {
+    double intervalMs = -Math.log(1 - random.nextDouble()) / requestsPerMs;
+    schedule(clock.nanos + Math.max(1, toNanos(intervalMs)), this::arrive);
+  }
+
+  private void arrive() {
+    scheduleArrival();
+    BalancingState state = adaptive ? new AdaptiveBalancingState(upstream, null) : new BalancingState(upstream, null);
+    sendAttempt(new SimulatedRequest(state));
+  }
+
+  private void sendAttempt(SimulatedRequest request) {
+    BalancingState state = request.state;
+    if (!state.tryAcquireConcurrency()) {
+      period.finish(request, false);
+      return;
+    }
+    state.acquireServer();
+    if (!state.isServerAvailable()) {
+      state.releaseConcurrency(-1, false);
+      period.finish(request, false);
+      return;
+    }
+    request.tries++;
+    String address = state.getCurrentServer().getAddress();
+    period.countAttempt(address);
+    ServerModel model = getModel(address);
+    long latencyNanos = Math.max(0, toNanos(model.latency.sampleMillis(random)));
+    boolean isError = model.failureRate > 0 && random.nextDouble() < model.failureRate;
+    schedule(clock.nanos + latencyNanos, () -> receiveResponse(request, TimeUnit.NANOSECONDS.toMillis(latencyNanos), isError));
+  }
+
+  private void receiveResponse(SimulatedRequest request, long responseTimeMillis, boolean isError) {
+    BalancingState state = request.state;
+    state.releaseServer(responseTimeMillis, isError);
+    state.releaseConcurrency(responseTimeMillis, isError);
+    if (!isError) {
+      if (request.tries == 1) {
+        state.onFirstAttemptSuccess();
+      }
+      period.finish(request, true);
+      return;
+    }
+    if (request.tries < state.getUpstreamConfig().getMaxTries() && state.tryAcquireRetry()) {
+      state.incrementTries();
+      sendAttempt(request);
+      return;
+    }
+    period.finish(request, false);
+  }
+
+  private void schedule(long atNanos, Runnable action) {
+    events.add(new Event(atNanos, sequence++, action));
+  }
+
+  private ServerModel getModel(String address) {
+    ServerModel model = models.get(address);
+    if (model == null) {
+      throw new IllegalArgumentException("Server " + address + " is not added");
+    }
+    return model;
+  }
+
+  private static long toNanos(double millis) {
+    return Math.round(millis * TimeUnit.MILLISECONDS.toNanos(1));
+  }
+
+  private static final class ServerModel {
+    private LatencyDistribution latency;
+    private double failureRate;
+
+    private ServerModel(LatencyDistribution latency) {
+      this.latency = latency;
+    }
+  }
+
+  private final class SimulatedRequest {
+    private final BalancingState state;
+    private final long arrivalNanos = clock.nanos;
+    private int tries;
+
+    private SimulatedRequest(BalancingState state) {
+      this.state = state;
+    }
+  }
+
+  private static final class Event {
+    private final long atNanos;
+    private final long sequence;
+    private final Runnable action;
+
+    private Event(long atNanos, long sequence, Runnable action) {
+      this.atNanos = atNanos;
+      this.sequence = sequence;
+      this.action = action;
+    }
+  }
+
+  private final class Period {
+    private final Map<String, Long> attemptsByServer = new LinkedHashMap<>();
+    private long requests;
+    private long failedRequests;
+    private long attemptsOfRequests;
+    private long[] latenciesNanos = new long[1024];
+
+    private Period() {
+      models.keySet().forEach(address -> attemptsByServer.put(address, 0L));
+    }
+
+    private void countAttempt(String address) {
+      attemptsByServer.merge(address, 1L, Long::sum);
+    }
+
+    private void finish(SimulatedRequest request, boolean succeeded) {
+      if (requests == latenciesNanos.length) {
+        latenciesNanos = Arrays.copyOf(latenciesNanos, latenciesNanos.length * 2);
+      }
+      latenciesNanos[(int) requests++] = clock.nanos - request.arrivalNanos;
+      attemptsOfRequests += request.tries;
+      if (!succeeded) {
+        failedRequests++;
+      }
+    }
+
+    private SimulationReport toReport(long durationMs) {
+      return new SimulationReport(
+          durationMs,
+          attemptsByServer,
+          requests,
+          failedRequests,
+          attemptsOfRequests,
+          Arrays.copyOf(latenciesNanos, (int) requests)
+      );
+    }
+  }
+
+  /**
+   * Stands still between events, so balancing sees the time of the event being processed.
+   */
+  private static final class VirtualClock extends Clock {
+    private long nanos;
+
+    private VirtualClock(long nanos) {
+      this.nanos = nanos;
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long millis() {
+      return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    @Override
+    public Instant instant() {
+      return Instant.ofEpochSecond(0, nanos);
+    }
+  }
+}
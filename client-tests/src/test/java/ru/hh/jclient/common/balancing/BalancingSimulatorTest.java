@@ -0,0 +1,62 @@
+package ru.hh.jclient.common.balancing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static ru.hh.jclient.common.balancing.BalancingStrategySimulation.FIRST_SERVER;
+import static ru.hh.jclient.common.balancing.LatencyDistribution.constant;
+import static ru.hh.jclient.common.balancing.UpstreamConfigs.getDefaultConfig;
+import ru.hh.jclient.common.balancing.config.BalancingStrategyType;
+
+public class BalancingSimulatorTest {
+
+  @Test
+  public void sameSeedShouldGiveSameResult() {
+    SimulationReport first = BalancingStrategySimulation.slowdown(BalancingStrategyType.WEIGHTED);
+    SimulationReport second = BalancingStrategySimulation.slowdown(BalancingStrategyType.WEIGHTED);
+
+    assertEquals(first.getRequests(), second.getRequests());
+    assertEquals(first.getAttemptsByServer(), second.getAttemptsByServer());
+    assertEquals(first.getLatencyQuantileMillis(0.99), second.getLatencyQuantileMillis(0.99));
+  }
+
+  @Test
+  public void failedAttemptsShouldBeRetried() {
+    SimulationReport report = BalancingStrategySimulation.outage(BalancingStrategyType.WEIGHTED);
+
+    assertEquals(0, report.getFailedShare(), report.toString());
+    assertEquals(1 + report.getLoadShare(FIRST_SERVER) / (1 - report.getLoadShare(FIRST_SERVER)), report.getRetryAmplification(), 0.02);
+  }
+
+  @Test
+  public void addedServerShouldStartSlowly() {
+    SimulationReport report = BalancingStrategySimulation.slowStart(BalancingStrategyType.WEIGHTED);
+
+    assertTrue(report.getLoadShare(BalancingStrategySimulation.server(5)) < 0.05, report.toString());
+    assertTrue(report.getLoadShare(BalancingStrategySimulation.server(5)) > 0, report.toString());
+  }
+
+  @Test
+  public void removedServerShouldGetNoRequests() {
+    SimulationReport report = BalancingStrategySimulation.removal(BalancingStrategyType.WEIGHTED);
+
+    assertEquals(0, report.getLoadShare(FIRST_SERVER));
+    assertEquals(0, report.getFailedShare());
+  }
+
+  @Test
+  public void latencyShouldBeMeasuredInVirtualTime() {
+    BalancingSimulator simulator = new BalancingSimulator(getDefaultConfig(), 1, 1)
+        .addServer("a", 1, constant(30))
+        .addServer("b", 1, constant(30));
+    simulator.run(100);
+
+    SimulationReport report = simulator.run(10_000);
+
+    assertEquals(10_100, simulator.getNowMillis());
+    assertEquals(10_000, report.getRequests(), 300);
+    assertEquals(30, report.getLatencyQuantileMillis(0.5));
+    assertEquals(30, report.getLatencyQuantileMillis(0.999));
+    assertEquals(0.5, report.getLoadShare("a"), 0.01);
+  }
+}
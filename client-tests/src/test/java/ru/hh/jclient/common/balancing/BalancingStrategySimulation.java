@@ -0,0 +1,93 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import static ru.hh.jclient.common.balancing.LatencyDistribution.logNormal;
+import static ru.hh.jclient.common.balancing.UpstreamConfig.DEFAULT;
+import static ru.hh.jclient.common.balancing.UpstreamConfigs.getDefaultConfig;
+import ru.hh.jclient.common.balancing.config.BalancingStrategyType;
+
+/**
+ * Scenarios of {@link BalancingSimulator} with {@link #SERVERS} equal servers, every one reports the period after its event.
+ * Unlike {@link BalancingWorkloadModelTest} they need no sockets and run in virtual time.
+ * Run {@link #main} to compare all strategies.
+ */
+final class BalancingStrategySimulation {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BalancingStrategySimulation.class);
+  private static final int SERVERS = 5;
+  private static final double REQUESTS_PER_MS = 5;
+  private static final int LATENCY_MS = 20;
+  private static final int SLOWDOWN = 10;
+  private static final long WARM_UP_MS = 1000;
+  private static final long PERIOD_MS = 1000;
+  private static final int SLOW_START_SEC = 10;
+  private static final long SEED = 42;
+  private static final LatencyDistribution LATENCY = logNormal(LATENCY_MS, 0.5);
+  static final String FIRST_SERVER = server(0);
+
+  /**
+   * The first server gets {@link #SLOWDOWN} times slower.
+   */
+  static SimulationReport slowdown(BalancingStrategyType type) {
+    BalancingSimulator simulator = createSimulator(getDefaultConfig(type.getPublicName()));
+    simulator.run(WARM_UP_MS);
+    simulator.setLatency(FIRST_SERVER, LATENCY.times(SLOWDOWN));
+    return simulator.run(PERIOD_MS);
+  }
+
+  /**
+   * The first server fails every request, they are retried on the others.
+   */
+  static SimulationReport outage(BalancingStrategyType type) {
+    BalancingSimulator simulator = createSimulator(getDefaultConfig(type.getPublicName()));
+    simulator.run(WARM_UP_MS);
+    simulator.setFailureRate(FIRST_SERVER, 1);
+    return simulator.run(PERIOD_MS);
+  }
+
+  /**
+   * A server is added to the warm ones and starts slowly for {@link #SLOW_START_SEC}, the period covers the first second of it.
+   */
+  static SimulationReport slowStart(BalancingStrategyType type) {
+    UpstreamConfig config = UpstreamConfigs.createUpstreamConfigWithDefaults(null, null, null, null, SLOW_START_SEC, null, Map.of());
+    BalancingSimulator simulator = createSimulator(UpstreamConfigs.of(Map.of(DEFAULT, config), type.getPublicName()));
+    simulator.run(WARM_UP_MS + SLOW_START_SEC * 1000L);
+    simulator.addServer(server(SERVERS), 1, LATENCY);
+    return simulator.run(PERIOD_MS);
+  }
+
+  /**
+   * The first server is removed with requests in flight.
+   */
+  static SimulationReport removal(BalancingStrategyType type) {
+    BalancingSimulator simulator = createSimulator(getDefaultConfig(type.getPublicName()));
+    simulator.run(WARM_UP_MS);
+    simulator.removeServer(FIRST_SERVER);
+    return simulator.run(PERIOD_MS);
+  }
+
+  private static BalancingSimulator createSimulator(UpstreamConfigs configs) {
+    BalancingSimulator simulator = new BalancingSimulator(configs, REQUESTS_PER_MS, SEED);
+    for (int i = 0; i < SERVERS; i++) {
+      simulator.addServer(server(i), 1, LATENCY);
+    }
+    return simulator;
+  }
+
+  static String server(int i) {
+    return "server" + i;
+  }
+
+  public static void main(String[] args) {
+    for (BalancingStrategyType type : BalancingStrategyType.values()) {
+      LOGGER.info("{} slowdown: {}", type, slowdown(type));
+      LOGGER.info("{} outage: {}", type, outage(type));
+      LOGGER.info("{} slow start: {}", type, slowStart(type));
+      LOGGER.info("{} removal: {}", type, removal(type));
+    }
+  }
+
+  private BalancingStrategySimulation() {
+  }
+}
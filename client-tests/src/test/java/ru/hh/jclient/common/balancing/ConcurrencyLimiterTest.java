@@ -0,0 +1,179 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import ru.hh.jclient.common.HttpStatuses;
+import ru.hh.jclient.common.Request;
+import ru.hh.jclient.common.RequestResponseWrapper;
+import ru.hh.jclient.common.Response;
+
+public class ConcurrencyLimiterTest extends UpstreamRequestBalancerTestBase {
+  private final List<CompletableFuture<RequestResponseWrapper>> attempts = new CopyOnWriteArrayList<>();
+
+  @Test
+  public void shouldRejectOverLimit() {
+    ConcurrencyLimiter limiter = createLimiter(2, 1, 10);
+
+    assertTrue(limiter.tryAcquire());
+    assertTrue(limiter.tryAcquire());
+    assertFalse(limiter.tryAcquire());
+
+    limiter.cancel();
+    assertTrue(limiter.tryAcquire());
+  }
+
+  @Test
+  public void limitShouldGrowWithoutQueueing() {
+    ConcurrencyLimiter limiter = createLimiter(10, 1, 100);
+
+    for (int i = 0; i < 50; i++) {
+      releaseAtFullLoad(limiter, 10);
+    }
+
+    assertTrue(limiter.getLimit() > 10, "limit " + limiter.getLimit());
+  }
+
+  @Test
+  public void limitShouldShrinkWhenResponsesGetSlower() {
+    ConcurrencyLimiter limiter = createLimiter(50, 1, 100);
+    releaseAtFullLoad(limiter, 10);
+
+    for (int i = 0; i < 50; i++) {
+      releaseAtFullLoad(limiter, 100);
+    }
+
+    assertTrue(limiter.getLimit() < 50, "limit " + limiter.getLimit());
+  }
+
+  @Test
+  public void limitShouldShrinkOnErrors() {
+    ConcurrencyLimiter limiter = createLimiter(50, 5, 100);
+    limiter.tryAcquire();
+    limiter.release(10, false);
+
+    for (int i = 0; i < 100; i++) {
+      limiter.tryAcquire();
+      limiter.release(10, true);
+    }
+
+    assertEquals(5, limiter.getLimit());
+  }
+
+  @Test
+  public void limitShouldNotGrowWhenMostlyUnused() {
+    ConcurrencyLimiter limiter = createLimiter(10, 1, 100);
+
+    for (int i = 0; i < 100; i++) {
+      limiter.tryAcquire();
+      limiter.release(10, false);
+    }
+
+    assertEquals(10, limiter.getLimit());
+  }
+
+  @Test
+  public void requestsShouldNotBeLimitedWithoutConfig() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter();
+
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(limiter.tryAcquire());
+    }
+    assertEquals(1000, limiter.getInFlight());
+  }
+
+  @Test
+  public void balancerShouldFailFastOverLimit() throws Exception {
+    Upstream upstream = createUpstream(1);
+    createBalancer(upstream).execute();
+
+    Response response = createBalancer(upstream).execute().get(1, TimeUnit.SECONDS);
+
+    assertEquals(HttpStatuses.CONCURRENCY_LIMIT_EXCEEDED, response.getStatusCode());
+    assertEquals(1, attempts.size());
+    assertEquals(1, upstream.getServers().get(0).getCurrentRequests());
+    verify(monitoring).countConcurrencyLimitExceeded(UPSTREAM, 1);
+  }
+
+  @Test
+  public void balancerShouldReleaseLimitOnResponse() throws Exception {
+    Upstream upstream = createUpstream(1);
+    CompletableFuture<Response> first = createBalancer(upstream).execute();
+    complete(attempts.get(0));
+    assertEquals(HttpStatuses.OK, first.get(1, TimeUnit.SECONDS).getStatusCode());
+
+    createBalancer(upstream).execute();
+
+    assertEquals(2, attempts.size());
+  }
+
+  @Test
+  public void balancerShouldReleaseLimitOnFailedAttempt() {
+    Upstream upstream = createUpstream(1);
+    CompletableFuture<Response> first = createBalancer(upstream).execute();
+    attempts.get(0).completeExceptionally(new IllegalStateException("listener failed"));
+    assertTrue(first.isCompletedExceptionally());
+    assertEquals(0, upstream.getServers().get(0).getCurrentRequests());
+
+    createBalancer(upstream).execute();
+
+    assertEquals(2, attempts.size());
+    verify(monitoring, never()).countConcurrencyLimitExceeded(UPSTREAM, 1);
+  }
+
+  @Test
+  public void balancerShouldReportLimitChanges() {
+    Upstream upstream = createUpstream(1);
+    for (int i = 0; i < 10; i++) {
+      createBalancer(upstream).execute();
+      complete(attempts.get(i));
+    }
+
+    assertTrue(upstream.getConcurrencyLimit() > 1);
+    verify(monitoring, atLeastOnce()).countConcurrencyLimit(eq(UPSTREAM), anyInt());
+  }
+
+  private static ConcurrencyLimiter createLimiter(int initialLimit, int minLimit, int maxLimit) {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter();
+    limiter.setConfig(UpstreamConfigs.createConcurrencyLimitConfigWithDefaults(initialLimit, minLimit, maxLimit));
+    return limiter;
+  }
+
+  private static void releaseAtFullLoad(ConcurrencyLimiter limiter, long rttMillis) {
+    while (limiter.tryAcquire()) {
+    }
+    limiter.release(rttMillis, false);
+    while (limiter.getInFlight() > 0) {
+      limiter.cancel();
+    }
+  }
+
+  private static Upstream createUpstream(int initialLimit) {
+    UpstreamConfigs configs = UpstreamConfigs
+        .defaultConfigBuilder()
+        .withConcurrencyLimitConfig(UpstreamConfigs.createConcurrencyLimitConfigWithDefaults(initialLimit, 1, 100))
+        .build();
+    return new Upstream(UPSTREAM, configs, createServers("a"), DATACENTER);
+  }
+
+  private static void complete(CompletableFuture<RequestResponseWrapper> attempt) {
+    attempt.complete(createResponse("a", HttpStatuses.OK, 10));
+  }
+
+  @Override
+  CompletableFuture<RequestResponseWrapper> executeAttempt(Request request) {
+    CompletableFuture<RequestResponseWrapper> attempt = new CompletableFuture<>();
+    attempts.add(attempt);
+    return attempt;
+  }
+}
@@ -0,0 +1,121 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import ru.hh.jclient.common.HttpClientFactory;
+import ru.hh.jclient.common.Monitoring;
+import ru.hh.jclient.common.RequestContext;
+import ru.hh.jclient.common.TransportConfig;
+import ru.hh.jclient.common.Uri;
+import static ru.hh.jclient.common.balancing.UpstreamConfig.DEFAULT_CONFIG;
+
+public class ConnectionPrewarmerTest {
+  private static final String UPSTREAM = "backend";
+  private static final String DATACENTER = "DC1";
+  private static final int CONNECTIONS_PER_SERVER = 2;
+
+  private final ConfigStore configStore = new ConfigStoreImpl();
+  private final ServerStore serverStore = new ServerStoreImpl();
+  private final Monitoring monitoring = mock(Monitoring.class);
+  private final HttpClientFactory httpClientFactory = mock(HttpClientFactory.class);
+  private final List<Server> servers = new ArrayList<>(List.of(
+      new Server("host1:8080", "node1", 100, DATACENTER),
+      new Server("https://host2:8443", "node2", 100, DATACENTER)
+  ));
+
+  @Test
+  public void serversShouldBePrewarmedOnStartAndWhenAdded() {
+    when(httpClientFactory.prewarmConnection(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+    BalancingUpstreamManager manager = createUpstreamManager(null);
+
+    startPrewarm(manager, 1);
+
+    assertEquals(List.of("http://host1:8080/status", "https://host2:8443/status"), getPrewarmedUrls(2 * CONNECTIONS_PER_SERVER));
+
+    servers.add(new Server("host3:8080", "node3", 100, DATACENTER));
+    serverStore.updateServers(UPSTREAM, servers, List.of());
+    manager.updateUpstreams(Set.of(UPSTREAM));
+    manager.updateUpstreams(Set.of(UPSTREAM));
+
+    assertEquals(List.of("http://host1:8080/status", "https://host2:8443/status", "http://host3:8080/status"),
+        getPrewarmedUrls(3 * CONNECTIONS_PER_SERVER));
+    verify(monitoring, times(3 * CONNECTIONS_PER_SERVER)).countConnectionPrewarm(eq(UPSTREAM), eq("dc1"), any(), anyLong(), eq(false));
+  }
+
+  @Test
+  public void connectionsShouldBeOpenedWithTransportConfigOfUpstream() {
+    when(httpClientFactory.prewarmConnection(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+    ConnectionPoolConfig connectionPoolConfig = UpstreamConfigs.createConnectionPoolConfigWithDefaults(10, 60f);
+    BalancingUpstreamManager manager = createUpstreamManager(connectionPoolConfig);
+
+    startPrewarm(manager, 2);
+
+    ArgumentCaptor<RequestContext> contextCaptor = ArgumentCaptor.forClass(RequestContext.class);
+    verify(httpClientFactory, times(2 * CONNECTIONS_PER_SERVER)).prewarmConnection(any(), contextCaptor.capture());
+    RequestContext context = contextCaptor.getValue();
+    assertEquals(UPSTREAM, context.getUpstreamName());
+    assertEquals(new TransportConfig(DEFAULT_CONFIG.getConnectTimeoutMs() * 2, 10, 60_000), context.getTransportConfig());
+  }
+
+  @Test
+  public void failedPrewarmShouldBeRecordedAsServerError() {
+    when(httpClientFactory.prewarmConnection(any(), any())).thenReturn(CompletableFuture.failedFuture(new RuntimeException("refused")));
+    BalancingUpstreamManager manager = createUpstreamManager(null);
+
+    startPrewarm(manager, 1);
+
+    Server server = manager.getUpstream(UPSTREAM).getServers().get(0);
+    assertEquals(1 - (float) CONNECTIONS_PER_SERVER / OutlierDetector.WINDOW, server.getOutlierDetector().getSuccessRatio());
+    verify(monitoring, times(2 * CONNECTIONS_PER_SERVER)).countConnectionPrewarm(eq(UPSTREAM), eq("dc1"), any(), anyLong(), eq(true));
+  }
+
+  @Test
+  public void prewarmShouldNotBeStartedByDefault() {
+    createUpstreamManager(null);
+
+    verify(httpClientFactory, never()).prewarmConnection(any(), any());
+  }
+
+  private void startPrewarm(BalancingUpstreamManager manager, double timeoutMultiplier) {
+    new BalancingRequestStrategy(manager, null, null)
+        .startConnectionPrewarm(httpClientFactory, CONNECTIONS_PER_SERVER, "/status", timeoutMultiplier);
+  }
+
+  private List<String> getPrewarmedUrls(int expectedPrewarms) {
+    ArgumentCaptor<Uri> uriCaptor = ArgumentCaptor.forClass(Uri.class);
+    verify(httpClientFactory, times(expectedPrewarms)).prewarmConnection(uriCaptor.capture(), any());
+    return uriCaptor.getAllValues().stream().map(Uri::toUrl).distinct().toList();
+  }
+
+  private BalancingUpstreamManager createUpstreamManager(ConnectionPoolConfig connectionPoolConfig) {
+    OutlierEjectionConfig outlierEjectionConfig = UpstreamConfigs.createOutlierEjectionConfigWithDefaults(null, null, null);
+    configStore.updateConfig(
+        UPSTREAM,
+        UpstreamConfigs
+            .defaultConfigBuilder()
+            .withOutlierEjectionConfig(outlierEjectionConfig)
+            .withConnectionPoolConfig(connectionPoolConfig)
+            .build()
+    );
+    serverStore.updateServers(UPSTREAM, servers, List.of());
+    JClientInfrastructureConfig infrastructureConfig = mock(JClientInfrastructureConfig.class);
+    BalancingUpstreamManager manager = new BalancingUpstreamManager(configStore, serverStore, Set.of(monitoring), infrastructureConfig);
+    manager.updateUpstreams(Set.of(UPSTREAM));
+    assertTrue(manager.getUpstream(UPSTREAM).getServers().size() >= 2);
+    return manager;
+  }
+}
@@ -0,0 +1,139 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static ru.hh.jclient.common.balancing.UpstreamConfigs.getDefaultConfig;
+import ru.hh.jclient.common.balancing.config.BalancingStrategyType;
+
+public class ConsistentHashBalancingStrategyTest {
+  private static final String DATACENTER = "dc1";
+  private static final int KEYS = 1000;
+
+  @Test
+  public void shouldSendSameKeyToSameServer() {
+    Upstream upstream = createUpstream(generateServers(10, DATACENTER));
+
+    for (int key = 0; key < 100; key++) {
+      ServerEntry first = acquireAndRelease(upstream, "key" + key);
+      for (int i = 0; i < 10; i++) {
+        assertEquals(first.getAddress(), acquireAndRelease(upstream, "key" + key).getAddress());
+      }
+    }
+  }
+
+  @Test
+  public void shouldMoveOnlyKeysOfRemovedServer() {
+    List<Server> servers = generateServers(10, DATACENTER);
+    Upstream upstream = createUpstream(servers);
+    Map<String, String> before = getAddressesByKey(upstream);
+
+    List<Server> withoutFirst = new ArrayList<>(servers.subList(1, servers.size()));
+    upstream.update(getDefaultConfig(BalancingStrategyType.CONSISTENT_HASH.getPublicName()), withoutFirst);
+    Map<String, String> after = getAddressesByKey(upstream);
+
+    before.forEach((key, address) -> {
+      if (!address.equals(servers.get(0).getAddress())) {
+        assertEquals(address, after.get(key), "key " + key + " should stay on its server");
+      }
+    });
+  }
+
+  @Test
+  public void shouldSpreadKeysProportionallyToWeights() {
+    List<Server> servers = IntStream
+        .range(0, 4)
+        .mapToObj(i -> new Server("server" + i, null, i == 0 ? 4 : 1, DATACENTER))
+        .toList();
+    Upstream upstream = createUpstream(servers);
+
+    Map<String, Long> keysByAddress = getAddressesByKey(upstream).values().stream()
+        .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+
+    long heavyKeys = keysByAddress.get(servers.get(0).getAddress());
+    assertTrue(heavyKeys > KEYS * 4 / 7 * 0.8 && heavyKeys < KEYS * 4 / 7 * 1.2, "unexpected keys of heavy server: " + keysByAddress);
+  }
+
+  @Test
+  public void shouldRetryOnNextServerForKey() {
+    Upstream upstream = createUpstream(generateServers(10, DATACENTER));
+
+    ServerEntry first = upstream.acquireServerExcluding(List.of(), "key");
+    ServerEntry second = upstream.acquireServerExcluding(List.of(first), "key");
+    assertNotEquals(first.getAddress(), second.getAddress());
+    upstream.releaseServer(first, false, true, 10, false);
+    upstream.releaseServer(second, true, false, 10, false);
+
+    assertEquals(second.getAddress(), upstream.acquireServerExcluding(List.of(first), "key").getAddress());
+  }
+
+  @Test
+  public void shouldBoundLoadOfHotKey() {
+    List<Server> servers = generateServers(4, DATACENTER);
+    Upstream upstream = createUpstream(servers);
+
+    for (int i = 0; i < 100; i++) {
+      upstream.acquireServerExcluding(List.of(), "hot");
+    }
+
+    int max = servers.stream().mapToInt(Server::getCurrentRequests).max().orElseThrow();
+    assertTrue(max <= 100 / servers.size() * ConsistentHashBalancingStrategy.LOAD_FACTOR + 1, "too many requests on a single server: " + max);
+  }
+
+  @Test
+  public void shouldPreferCurrentDatacenter() {
+    List<Server> servers = IntStream
+        .range(0, 10)
+        .mapToObj(i -> new Server("server" + i, null, 1, i < 3 ? DATACENTER : "dc2"))
+        .toList();
+    Upstream upstream = createUpstream(servers);
+
+    getAddressesByKey(upstream).values().forEach(address -> assertTrue(
+        servers.subList(0, 3).stream().anyMatch(server -> server.getAddress().equals(address)),
+        "server " + address + " is not local"
+    ));
+  }
+
+  @Test
+  public void shouldUseLeastLoadedServerWithoutKey() {
+    List<Server> servers = generateServers(4, DATACENTER);
+    Upstream upstream = createUpstream(servers);
+
+    for (int i = 0; i < 100; i++) {
+      upstream.acquireServerExcluding(List.of(), null);
+    }
+
+    servers.forEach(server -> assertEquals(25, server.getCurrentRequests()));
+  }
+
+  private static Map<String, String> getAddressesByKey(Upstream upstream) {
+    return IntStream
+        .range(0, KEYS)
+        .mapToObj(i -> "key" + i)
+        .collect(Collectors.toMap(Function.identity(), key -> acquireAndRelease(upstream, key).getAddress()));
+  }
+
+  private static ServerEntry acquireAndRelease(Upstream upstream, String key) {
+    ServerEntry serverEntry = upstream.acquireServerExcluding(List.of(), key);
+    upstream.releaseServer(serverEntry, false, false, 10, false);
+    return serverEntry;
+  }
+
+  private static Upstream createUpstream(List<Server> servers) {
+    return new Upstream("test", getDefaultConfig(BalancingStrategyType.CONSISTENT_HASH.getPublicName()), servers, DATACENTER);
+  }
+
+  private static List<Server> generateServers(int n, String datacenter) {
+    return IntStream
+        .range(0, n)
+        .mapToObj(i -> new Server("server" + i, null, 1, datacenter))
+        .toList();
+  }
+}
@@ -0,0 +1,92 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.List;
+import java.util.stream.IntStream;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+public class CrossDcSpilloverTest {
+  private static final String LOCAL_DC = "dc1";
+  private static final String REMOTE_DC = "dc2";
+
+  @Test
+  public void shareShouldGrowWithinHeadroom() {
+    List<Server> servers = createServers();
+    UpstreamSnapshot snapshot = createSnapshot(servers, UpstreamConfigs.createCrossDcSpilloverConfigWithDefaults(0.2f, 10));
+
+    assertEquals(0f, CrossDcSpilloverEstimator.calculateShare(snapshot, 0));
+    acquire(servers.get(0), 8);
+    acquire(servers.get(1), 8);
+    assertEquals(0f, CrossDcSpilloverEstimator.calculateShare(snapshot, 0), 0.001);
+    acquire(servers.get(0), 2);
+    assertEquals(0.5f, CrossDcSpilloverEstimator.calculateShare(snapshot, 0), 0.001);
+    acquire(servers.get(1), 4);
+    assertEquals(1f, CrossDcSpilloverEstimator.calculateShare(snapshot, 0), 0.001);
+  }
+
+  @Test
+  public void errorsShouldReduceLocalCapacity() {
+    List<Server> servers = createServers();
+    UpstreamSnapshot snapshot = createSnapshot(servers, UpstreamConfigs.createCrossDcSpilloverConfigWithDefaults(0.2f, 10));
+    acquire(servers.get(0), 8);
+    acquire(servers.get(1), 8);
+    assertEquals(0f, CrossDcSpilloverEstimator.calculateShare(snapshot, 0), 0.001);
+
+    IntStream.range(0, OutlierDetector.WINDOW / 2).forEach(i -> servers.get(0).getOutlierDetector().record(true));
+
+    assertEquals(1f, CrossDcSpilloverEstimator.calculateShare(snapshot, 0), 0.001);
+  }
+
+  @Test
+  public void shouldNotSpillOverWithoutRemoteServers() {
+    List<Server> servers = List.of(new Server("a", null, 1, LOCAL_DC));
+    UpstreamSnapshot snapshot = createSnapshot(servers, UpstreamConfigs.createCrossDcSpilloverConfigWithDefaults(0.2f, 1));
+    acquire(servers.get(0), 10);
+
+    assertEquals(0f, CrossDcSpilloverEstimator.calculateShare(snapshot, 0));
+  }
+
+  @Test
+  public void saturatedLocalServersShouldSpillOver() throws InterruptedException {
+    List<Server> servers = List.of(new Server("a", null, 1, LOCAL_DC), new Server("b", null, 1, REMOTE_DC));
+    Upstream upstream = createUpstream(servers, UpstreamConfigs.createCrossDcSpilloverConfigWithDefaults(0.5f, 1));
+
+    assertEquals("a", upstream.acquireServer().getAddress());
+    Thread.sleep(CrossDcSpilloverEstimator.RECALCULATION_INTERVAL_MS + 10);
+
+    assertEquals("b", upstream.acquireServer().getAddress());
+    assertEquals(1f, upstream.getCrossDcSpilloverShare());
+  }
+
+  @Test
+  public void remoteServersShouldNotBeUsedWithoutSpillover() throws InterruptedException {
+    List<Server> servers = List.of(new Server("a", null, 1, LOCAL_DC), new Server("b", null, 1, REMOTE_DC));
+    Upstream upstream = createUpstream(servers, null);
+
+    assertEquals("a", upstream.acquireServer().getAddress());
+    Thread.sleep(CrossDcSpilloverEstimator.RECALCULATION_INTERVAL_MS + 10);
+
+    assertEquals("a", upstream.acquireServer().getAddress());
+    assertEquals(0f, upstream.getCrossDcSpilloverShare());
+  }
+
+  private static List<Server> createServers() {
+    return List.of(new Server("a", null, 1, LOCAL_DC), new Server("b", null, 1, LOCAL_DC), new Server("c", null, 1, REMOTE_DC));
+  }
+
+  private static void acquire(Server server, int requests) {
+    IntStream.range(0, requests).forEach(i -> server.acquire());
+  }
+
+  private static UpstreamSnapshot createSnapshot(List<Server> servers, CrossDcSpilloverConfig config) {
+    return new UpstreamSnapshot(0, createConfigs(config), servers, LOCAL_DC);
+  }
+
+  private static Upstream createUpstream(List<Server> servers, CrossDcSpilloverConfig config) {
+    return new Upstream("backend", createConfigs(config), servers, LOCAL_DC);
+  }
+
+  private static UpstreamConfigs createConfigs(CrossDcSpilloverConfig config) {
+    return UpstreamConfigs.defaultConfigBuilder().withCrossDcSpilloverConfig(config).build();
+  }
+}
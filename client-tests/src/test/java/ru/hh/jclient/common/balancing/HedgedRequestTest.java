@@ -0,0 +1,208 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import ru.hh.jclient.common.Request;
+import ru.hh.jclient.common.RequestResponseWrapper;
+import ru.hh.jclient.common.Response;
+import static ru.hh.jclient.common.balancing.UpstreamConfig.DEFAULT;
+import ru.hh.jclient.common.balancing.config.Profile;
+
+public class HedgedRequestTest extends UpstreamRequestBalancerTestBase {
+  private final Map<String, CompletableFuture<RequestResponseWrapper>> attempts = new ConcurrentHashMap<>();
+  private final Map<String, Integer> immediateStatusByHost = new ConcurrentHashMap<>();
+  private final List<Server> servers = createServers("a", "b");
+  private final Map<String, Integer> hedgeRetryCountByHost = new ConcurrentHashMap<>();
+
+  @Test
+  public void hedgeShouldWinWhenFirstServerIsSlow() throws Exception {
+    immediateStatusByHost.put("b", 200);
+    UpstreamRequestBalancer balancer = createBalancer("GET", false);
+
+    Response response = balancer.execute().get(1, TimeUnit.SECONDS);
+
+    assertEquals("b", response.getUri().getHost());
+    assertTrue(attempts.get("a").isCancelled());
+    assertEquals(0, servers.get(0).getCurrentRequests());
+    assertEquals(0, servers.get(1).getCurrentRequests());
+    assertEquals(0, upstream.getConcurrencyInFlight());
+    verify(monitoring).countHedgedRequest(UPSTREAM, DATACENTER, "b", true);
+  }
+
+  @Test
+  public void hedgeShouldBeSentAsHedgedAttemptCountingFirstOne() throws Exception {
+    immediateStatusByHost.put("b", 200);
+    UpstreamRequestBalancer balancer = createBalancer("GET", false);
+
+    balancer.execute().get(1, TimeUnit.SECONDS);
+
+    assertEquals(Map.of("b", 1), hedgeRetryCountByHost);
+  }
+
+  @Test
+  public void firstServerShouldWinWhenItRespondsBeforeHedge() throws Exception {
+    UpstreamRequestBalancer balancer = createBalancer("GET", false);
+
+    CompletableFuture<Response> result = balancer.execute();
+    verify(monitoring, never()).countHedgedRequest(anyString(), anyString(), anyString(), anyBoolean());
+    waitForAttempt("b");
+    assertEquals(2, upstream.getConcurrencyInFlight());
+    complete("a");
+
+    assertEquals("a", result.get(1, TimeUnit.SECONDS).getUri().getHost());
+    assertTrue(attempts.get("b").isCancelled());
+    assertEquals(0, servers.get(0).getCurrentRequests());
+    assertEquals(0, servers.get(1).getCurrentRequests());
+    assertEquals(0, upstream.getConcurrencyInFlight());
+    verify(monitoring).countHedgedRequest(UPSTREAM, DATACENTER, "b", false);
+  }
+
+  @Test
+  public void nonIdempotentRequestShouldNotBeHedged() throws Exception {
+    UpstreamRequestBalancer balancer = createBalancer("POST", false);
+
+    CompletableFuture<Response> result = balancer.execute();
+    Thread.sleep(100);
+    complete("a");
+
+    assertEquals("a", result.get(1, TimeUnit.SECONDS).getUri().getHost());
+    assertEquals(Set.of("a"), attempts.keySet());
+  }
+
+  @Test
+  public void forcedIdempotentRequestShouldBeHedged() throws Exception {
+    immediateStatusByHost.put("b", 200);
+    UpstreamRequestBalancer balancer = createBalancer("POST", true);
+
+    assertEquals("b", balancer.execute().get(1, TimeUnit.SECONDS).getUri().getHost());
+    verify(monitoring, timeout(1000)).countHedgedRequest(UPSTREAM, DATACENTER, "b", true);
+  }
+
+  @Test
+  public void failedHedgeShouldWaitForFirstServer() throws Exception {
+    immediateStatusByHost.put("b", 503);
+    UpstreamRequestBalancer balancer = createBalancer("GET", false, 2);
+
+    CompletableFuture<Response> result = balancer.execute();
+    waitForAttempt("b");
+    assertEquals(1, servers.get(0).getCurrentRequests());
+    assertEquals(0, servers.get(1).getCurrentRequests());
+    complete("a");
+
+    assertEquals(200, result.get(1, TimeUnit.SECONDS).getStatusCode());
+    assertEquals("a", result.get().getUri().getHost());
+    assertFalse(attempts.get("a").isCancelled());
+    assertEquals(0, servers.get(0).getCurrentRequests());
+    assertEquals(0, upstream.getConcurrencyInFlight());
+    verify(monitoring).countHedgedRequest(UPSTREAM, DATACENTER, "b", false);
+  }
+
+  @Test
+  public void hedgeShouldWinWhenFirstServerFails() throws Exception {
+    UpstreamRequestBalancer balancer = createBalancer("GET", false, 2);
+
+    CompletableFuture<Response> result = balancer.execute();
+    waitForAttempt("b");
+    complete("a", 503);
+    assertFalse(result.isDone());
+    complete("b");
+
+    assertEquals("b", result.get(1, TimeUnit.SECONDS).getUri().getHost());
+    assertEquals(0, servers.get(0).getCurrentRequests());
+    assertEquals(0, servers.get(1).getCurrentRequests());
+    assertEquals(0, upstream.getConcurrencyInFlight());
+    verify(monitoring).countHedgedRequest(UPSTREAM, DATACENTER, "b", true);
+  }
+
+  @Test
+  public void exceptionOfHedgeShouldNotCompleteRequest() throws Exception {
+    UpstreamRequestBalancer balancer = createBalancer("GET", false, 2);
+
+    CompletableFuture<Response> result = balancer.execute();
+    waitForAttempt("b");
+    attempts.get("b").completeExceptionally(new IllegalStateException("listener failed"));
+    assertFalse(result.isDone());
+    complete("a");
+
+    assertEquals("a", result.get(1, TimeUnit.SECONDS).getUri().getHost());
+    assertEquals(0, servers.get(0).getCurrentRequests());
+    assertEquals(0, servers.get(1).getCurrentRequests());
+    assertEquals(0, upstream.getConcurrencyInFlight());
+  }
+
+  @Test
+  public void hedgeShouldNotBeSentOverConcurrencyLimit() throws Exception {
+    concurrencyLimitConfig = UpstreamConfigs.createConcurrencyLimitConfigWithDefaults(1, 1, 100);
+    UpstreamRequestBalancer balancer = createBalancer("GET", false);
+
+    CompletableFuture<Response> result = balancer.execute();
+    Thread.sleep(100);
+    complete("a");
+
+    assertEquals("a", result.get(1, TimeUnit.SECONDS).getUri().getHost());
+    assertEquals(Set.of("a"), attempts.keySet());
+    assertEquals(0, upstream.getConcurrencyInFlight());
+    verify(monitoring, never()).countHedgedRequest(anyString(), anyString(), anyString(), anyBoolean());
+  }
+
+  private UpstreamRequestBalancer createBalancer(String method, boolean forceIdempotence) {
+    return createBalancer(method, forceIdempotence, 3);
+  }
+
+  private UpstreamRequestBalancer createBalancer(String method, boolean forceIdempotence, int maxTries) {
+    UpstreamConfig config = UpstreamConfigs.createUpstreamConfigWithDefaults(
+        new Profile().setMaxTries(maxTries).setRequestTimeoutSec(1f).setHedgeDelaySec(0.02f)
+    );
+    UpstreamConfigs configs = UpstreamConfigs.builder(Map.of(DEFAULT, config)).withConcurrencyLimitConfig(concurrencyLimitConfig).build();
+    upstream = new Upstream(UPSTREAM, configs, servers, DATACENTER);
+    return createBalancer(upstream, createRequest(method), forceIdempotence);
+  }
+
+  private void waitForAttempt(String host) throws InterruptedException {
+    for (int i = 0; i < 100 && !attempts.containsKey(host); i++) {
+      Thread.sleep(10);
+    }
+    assertTrue(attempts.containsKey(host), "no attempt to " + host);
+  }
+
+  private void complete(String host) {
+    complete(host, 200);
+  }
+
+  private void complete(String host, int statusCode) {
+    attempts.get(host).complete(createResponse(host, statusCode, 10));
+  }
+
+  @Override
+  CompletableFuture<RequestResponseWrapper> executeHedgedAttempt(Request request, int retryCount) {
+    hedgeRetryCountByHost.put(request.getUri().getHost(), retryCount);
+    return executeAttempt(request);
+  }
+
+  /**
+   * servers answer only when the test completes their attempts, unless they are in {@link #immediateStatusByHost}
+   */
+  @Override
+  CompletableFuture<RequestResponseWrapper> executeAttempt(Request request) {
+    String host = request.getUri().getHost();
+    attempts.put(host, new CompletableFuture<>());
+    Integer immediateStatus = immediateStatusByHost.get(host);
+    if (immediateStatus != null) {
+      complete(host, immediateStatus);
+    }
+    return attempts.get(host);
+  }
+}
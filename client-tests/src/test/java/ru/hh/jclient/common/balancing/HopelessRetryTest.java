@@ -0,0 +1,123 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import ru.hh.jclient.common.HopelessRetryReason;
+import ru.hh.jclient.common.Request;
+import ru.hh.jclient.common.RequestBuilder;
+import ru.hh.jclient.common.RequestResponseWrapper;
+import ru.hh.jclient.common.Response;
+import static ru.hh.jclient.common.balancing.UpstreamConfig.DEFAULT;
+
+public class HopelessRetryTest extends UpstreamRequestBalancerTestBase {
+  private static final int RESPONSE_TIME_MS = 200;
+
+  private final AtomicInteger attempts = new AtomicInteger();
+  private long deadlineTimeLeftMs = -1;
+
+  @Test
+  public void shouldNotRetryIfDeadlineIsCloserThanExpectedResponse() throws Exception {
+    Upstream upstream = createUpstream(0.5f);
+    warmUp(upstream);
+
+    Response response = createBalancer(upstream, createRequest(true), 100).execute().get(1, TimeUnit.SECONDS);
+
+    assertEquals(503, response.getStatusCode());
+    assertEquals(1, attempts.get());
+    verify(monitoring).countHopelessRetry(eq(UPSTREAM), eq(DATACENTER), anyString(), eq(HopelessRetryReason.DEADLINE));
+    verify(monitoring, never()).countRetryBudgetExhausted(anyString(), anyString(), anyString());
+    int withdrawals = 0;
+    while (upstream.tryAcquireRetry()) {
+      withdrawals++;
+    }
+    assertEquals(RetryBudget.MAX_TOKENS, withdrawals);
+  }
+
+  @Test
+  public void shouldNotRetryIfRequestTimeoutLeavesTooLittleTime() throws Exception {
+    Upstream upstream = createUpstream(null);
+    warmUp(upstream);
+    Request request = new RequestBuilder(createRequest(true)).setRequestTimeout(RESPONSE_TIME_MS / 4).build();
+
+    createBalancer(upstream, request, -1).execute().get(1, TimeUnit.SECONDS);
+
+    assertEquals(1, attempts.get());
+    verify(monitoring).countHopelessRetry(eq(UPSTREAM), eq(DATACENTER), anyString(), eq(HopelessRetryReason.REQUEST_TIMEOUT));
+  }
+
+  @Test
+  public void shouldRetryIfExpectedResponseFitsDeadline() throws Exception {
+    Upstream upstream = createUpstream(null);
+    warmUp(upstream);
+
+    createBalancer(upstream, createRequest(true), RESPONSE_TIME_MS * 10).execute().get(1, TimeUnit.SECONDS);
+
+    assertEquals(3, attempts.get());
+    verify(monitoring, never()).countHopelessRetry(anyString(), anyString(), anyString(), any());
+  }
+
+  @Test
+  public void shouldRetryIfResponseTimeIsUnknown() throws Exception {
+    createBalancer(createUpstream(null), createRequest(true), 1).execute().get(1, TimeUnit.SECONDS);
+
+    assertEquals(3, attempts.get());
+    verify(monitoring, never()).countHopelessRetry(anyString(), anyString(), anyString(), any());
+  }
+
+  @Test
+  public void shouldIgnoreDeadlineIfRequestDisablesIt() throws Exception {
+    Upstream upstream = createUpstream(null);
+    warmUp(upstream);
+
+    createBalancer(upstream, createRequest(false), 1).execute().get(1, TimeUnit.SECONDS);
+
+    assertEquals(3, attempts.get());
+    verify(monitoring, never()).countHopelessRetry(anyString(), anyString(), anyString(), any());
+  }
+
+  private static Upstream createUpstream(Float retryBudgetRatio) {
+    UpstreamConfig config = UpstreamConfigs.createUpstreamConfigWithDefaults(3, 3, 2f, 1f, null, null, Map.of(503, false));
+    UpstreamConfigs configs = UpstreamConfigs.builder(Map.of(DEFAULT, config)).withRetryBudgetRatio(retryBudgetRatio).build();
+    return new Upstream(UPSTREAM, configs, createServers("a", "b", "c"), DATACENTER);
+  }
+
+  private static void warmUp(Upstream upstream) {
+    for (Server server : upstream.getServers()) {
+      for (int i = 0; i < AdaptiveBalancingStrategy.RESPONSE_TIME_TRACKER_WINDOW; i++) {
+        server.getResponseTimeTracker().time(RESPONSE_TIME_MS);
+      }
+    }
+  }
+
+  private static Request createRequest(boolean deadlineEnabled) {
+    return new RequestBuilder("GET").setUrl("http://" + UPSTREAM + "/path").setDeadlineEnabled(deadlineEnabled).build();
+  }
+
+  private UpstreamRequestBalancer createBalancer(Upstream upstream, Request request, long deadlineTimeLeftMs) {
+    this.deadlineTimeLeftMs = deadlineTimeLeftMs;
+    return createBalancer(upstream, request, false);
+  }
+
+  /**
+   * every server answers with 503 in no time, the deadline stays the same
+   */
+  @Override
+  CompletableFuture<RequestResponseWrapper> executeAttempt(Request request) {
+    attempts.incrementAndGet();
+    return CompletableFuture.completedFuture(createResponse(request, 503, 0));
+  }
+
+  @Override
+  long getDeadlineTimeLeftMs() {
+    return deadlineTimeLeftMs;
+  }
+}
@@ -0,0 +1,40 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.Random;
+
+/**
+ * Response time of a server modelled by {@link BalancingSimulator}.
+ */
+@FunctionalInterface
+interface LatencyDistribution {
+
+  double sampleMillis(Random random);
+
+  static LatencyDistribution constant(double millis) {
+    return random -> millis;
+  }
+
+  static LatencyDistribution uniform(double minMillis, double maxMillis) {
+    return random -> minMillis + (maxMillis - minMillis) * random.nextDouble();
+  }
+
+  static LatencyDistribution exponential(double meanMillis) {
+    return random -> -meanMillis * Math.log(1 - random.nextDouble());
+  }
+
+  /**
+   * Heavy tailed, as response times of real services usually are.
+   *
+   * @param sigma standard deviation of the logarithm, 0.5 makes p99 about 3 times the median
+   */
+  static LatencyDistribution logNormal(double medianMillis, double sigma) {
+    return random -> medianMillis * Math.exp(sigma * random.nextGaussian());
+  }
+
+  /**
+   * @return the same distribution scaled, e.g. a server getting slow
+   */
+  default LatencyDistribution times(double factor) {
+    return random -> sampleMillis(random) * factor;
+  }
+}
@@ -0,0 +1,62 @@
+package ru.hh.jclient.common.balancing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+  @Test
+  public void bucketsShouldCoverValues() {
+    for (long value = 0; value < 100_000; value++) {
+      int bucket = LatencyHistogram.bucketOf(value);
+      assertTrue(value <= LatencyHistogram.upperBoundOf(bucket), "value " + value);
+      assertTrue(bucket == 0 || value > LatencyHistogram.upperBoundOf(bucket - 1), "value " + value);
+    }
+    assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(LatencyHistogram.MAX_VALUE));
+  }
+
+  @Test
+  public void shouldReturnQuantileWithBoundedError() {
+    LatencyHistogram histogram = new LatencyHistogram(1000);
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i);
+    }
+
+    assertQuantile(500, histogram.quantile(0.5f));
+    assertQuantile(900, histogram.quantile(0.9f));
+    assertQuantile(990, histogram.quantile(0.99f));
+    assertQuantile(1000, histogram.quantile(1f));
+  }
+
+  @Test
+  public void shouldForgetValuesOutsideWindow() {
+    LatencyHistogram histogram = new LatencyHistogram(100);
+    assertEquals(0, histogram.quantile(0.99f));
+
+    for (int i = 0; i < 100; i++) {
+      histogram.record(5000);
+    }
+    assertQuantile(5000, histogram.quantile(0.99f));
+
+    for (int i = 0; i < 100; i++) {
+      histogram.record(10);
+    }
+    assertQuantile(10, histogram.quantile(0.99f));
+  }
+
+  @Test
+  public void shouldClampValues() {
+    LatencyHistogram histogram = new LatencyHistogram(10);
+    histogram.record(-1);
+    histogram.record(Long.MAX_VALUE);
+    assertEquals(0, histogram.quantile(0.5f));
+    assertEquals(LatencyHistogram.MAX_VALUE, histogram.quantile(1f));
+  }
+
+  private static void assertQuantile(long expected, long actual) {
+    assertTrue(
+        actual >= expected && actual <= expected + expected / LatencyHistogram.SUB_BUCKETS,
+        "expected about " + expected + " but was " + actual
+    );
+  }
+}
@@ -0,0 +1,153 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static ru.hh.jclient.common.balancing.UpstreamConfig.DEFAULT;
+import ru.hh.jclient.common.balancing.config.BalancingStrategyType;
+
+public class OutlierEjectionTest {
+  private static final String DATACENTER = "dc1";
+  private static final long BASE_EJECTION_TIME_MS = 100;
+  private static final OutlierEjectionConfig CONFIG = UpstreamConfigs.createOutlierEjectionConfigWithDefaults(
+      BASE_EJECTION_TIME_MS / 1000f,
+      BASE_EJECTION_TIME_MS * 4 / 1000f,
+      50
+  );
+
+  @Test
+  public void failingServerShouldBeEjected() {
+    Upstream upstream = createUpstream(null, 3);
+
+    fail(upstream, 0);
+
+    assertTrue(getSelectedAddresses(upstream, 30).stream().noneMatch("s0"::equals));
+  }
+
+  @Test
+  public void serverShouldNotBeEjectedWithoutConfig() {
+    Upstream upstream = createUpstream(null, 3, null);
+
+    fail(upstream, 0);
+
+    assertTrue(getSelectedAddresses(upstream, 30).contains("s0"));
+  }
+
+  @Test
+  public void ejectionsShouldBeLimited() {
+    Upstream upstream = createUpstream(null, 3);
+
+    fail(upstream, 0);
+    fail(upstream, 1);
+
+    assertTrue(isEjected(upstream, 0));
+    assertFalse(isEjected(upstream, 1));
+  }
+
+  @Test
+  public void singleServerShouldNeverBeEjected() {
+    Upstream upstream = createUpstream(null, 1);
+
+    fail(upstream, 0);
+
+    assertFalse(isEjected(upstream, 0));
+    assertEquals("s0", upstream.acquireServer().getAddress());
+  }
+
+  @Test
+  public void successfulProbeShouldReadmitServer() throws InterruptedException {
+    Upstream upstream = createUpstream(null, 2);
+    fail(upstream, 0);
+    assertEquals(Set.of("s1"), getSelectedAddresses(upstream, 10));
+
+    Thread.sleep(BASE_EJECTION_TIME_MS + 10);
+    ServerEntry probe = acquire(upstream, "s0");
+    assertEquals(Set.of("s1"), getSelectedAddresses(upstream, 10));
+
+    upstream.releaseServer(probe.getIndex(), false, false, 10);
+    assertFalse(isEjected(upstream, 0));
+    assertTrue(getSelectedAddresses(upstream, 10).contains("s0"));
+  }
+
+  @Test
+  public void failedProbeShouldDoubleEjectionTime() throws InterruptedException {
+    Upstream upstream = createUpstream(null, 2);
+    fail(upstream, 0);
+
+    Thread.sleep(BASE_EJECTION_TIME_MS + 10);
+    ServerEntry probe = acquire(upstream, "s0");
+    long failedAt = System.currentTimeMillis();
+    upstream.releaseServer(probe.getIndex(), false, true, 10);
+
+    long ejectedUntil = upstream.getServers().get(0).getOutlierDetector().getEjectedUntilMillis();
+    assertTrue(ejectedUntil >= failedAt + 2 * BASE_EJECTION_TIME_MS, "ejection time should grow after a failed probe");
+    assertEquals(Set.of("s1"), getSelectedAddresses(upstream, 10));
+  }
+
+  @Test
+  public void adaptiveBalancingShouldSkipEjectedServerAndProbeItFirst() throws InterruptedException {
+    Upstream upstream = createUpstream(BalancingStrategyType.ADAPTIVE.getPublicName(), 3);
+    failAdaptive(upstream, 0);
+    assertTrue(isEjected(upstream, 0));
+
+    for (int i = 0; i < 20; i++) {
+      assertTrue(upstream.acquireAdaptiveServers(DEFAULT).stream().noneMatch(entry -> entry.getIndex() == 0));
+    }
+
+    Thread.sleep(BASE_EJECTION_TIME_MS + 10);
+    assertEquals(0, upstream.acquireAdaptiveServers(DEFAULT).get(0).getIndex());
+    assertTrue(upstream.acquireAdaptiveServers(DEFAULT).stream().noneMatch(entry -> entry.getIndex() == 0));
+  }
+
+  private static void fail(Upstream upstream, int index) {
+    IntStream.range(0, OutlierDetector.WINDOW).forEach(i -> upstream.releaseServer(index, false, true, 10));
+  }
+
+  private static void failAdaptive(Upstream upstream, int index) {
+    IntStream.range(0, OutlierDetector.WINDOW).forEach(i -> upstream.releaseServer(index, false, true, 10, true));
+  }
+
+  private static boolean isEjected(Upstream upstream, int index) {
+    return upstream.getServers().get(index).getOutlierDetector().isEjected(System.currentTimeMillis());
+  }
+
+  private static ServerEntry acquire(Upstream upstream, String address) {
+    for (int i = 0; i < 10; i++) {
+      ServerEntry entry = upstream.acquireServer();
+      if (address.equals(entry.getAddress())) {
+        return entry;
+      }
+      upstream.releaseServer(entry.getIndex(), false, false, 10);
+    }
+    throw new AssertionError(address + " is not selected");
+  }
+
+  private static Set<String> getSelectedAddresses(Upstream upstream, int requests) {
+    Set<String> addresses = new HashSet<>();
+    for (int i = 0; i < requests; i++) {
+      ServerEntry entry = upstream.acquireServer();
+      addresses.add(entry.getAddress());
+      upstream.releaseServer(entry.getIndex(), false, false, 10);
+    }
+    return addresses;
+  }
+
+  private static Upstream createUpstream(String balancingStrategy, int serversCount) {
+    return createUpstream(balancingStrategy, serversCount, CONFIG);
+  }
+
+  private static Upstream createUpstream(String balancingStrategy, int serversCount, OutlierEjectionConfig outlierEjectionConfig) {
+    List<Server> servers = IntStream.range(0, serversCount).mapToObj(i -> new Server("s" + i, null, 1, DATACENTER)).toList();
+    UpstreamConfigs configs = UpstreamConfigs
+        .defaultConfigBuilder()
+        .withBalancingStrategyType(balancingStrategy)
+        .withOutlierEjectionConfig(outlierEjectionConfig)
+        .build();
+    return new Upstream("backend", configs, servers, DATACENTER);
+  }
+}
@@ -0,0 +1,99 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.List;
+import java.util.stream.IntStream;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static ru.hh.jclient.common.balancing.UpstreamConfigs.getDefaultConfig;
+import ru.hh.jclient.common.balancing.config.BalancingStrategyType;
+
+public class PeakEwmaBalancingStrategyTest {
+  private static final String DATACENTER = "dc1";
+
+  @Test
+  public void peakShouldBeTakenAtOnce() {
+    PeakEwma peakEwma = new PeakEwma();
+    long now = System.nanoTime();
+    peakEwma.observe(10, now);
+    peakEwma.observe(500, now + 1);
+
+    assertEquals(500, peakEwma.getCostMillis(now + 1), 1);
+  }
+
+  @Test
+  public void costShouldDecayAfterPeak() {
+    PeakEwma peakEwma = new PeakEwma();
+    long now = System.nanoTime();
+    peakEwma.observe(500, now);
+    peakEwma.observe(10, now + PeakEwma.DECAY_TIME_NANOS);
+
+    double expected = 500 * Math.exp(-1) + 10 * (1 - Math.exp(-1));
+    assertEquals(expected, peakEwma.getCostMillis(now + PeakEwma.DECAY_TIME_NANOS), 1);
+  }
+
+  @Test
+  public void serverWithoutResponsesShouldGetSingleRequest() {
+    List<Server> servers = generateServers(3);
+    Upstream upstream = createUpstream(servers);
+
+    assertEquals(0, upstream.acquireServer().getIndex());
+    assertEquals(1, upstream.acquireServer().getIndex());
+    assertEquals(2, upstream.acquireServer().getIndex());
+  }
+
+  @Test
+  public void shouldAvoidSlowServer() {
+    List<Server> servers = generateServers(3);
+    Upstream upstream = createUpstream(servers);
+    for (int i = 0; i < servers.size(); i++) {
+      ServerEntry serverEntry = upstream.acquireServer();
+      upstream.releaseServer(serverEntry, false, false, serverEntry.getIndex() == 0 ? 1000 : 10, false);
+    }
+
+    for (int i = 0; i < 50; i++) {
+      assertNotEquals(0, upstream.acquireServer().getIndex());
+    }
+  }
+
+  @Test
+  public void shouldSpreadRequestsInFlightOverEquallyFastServers() {
+    List<Server> servers = generateServers(4);
+    Upstream upstream = createUpstream(servers);
+    for (int i = 0; i < servers.size(); i++) {
+      upstream.releaseServer(upstream.acquireServer(), false, false, 10, false);
+    }
+
+    for (int i = 0; i < 100; i++) {
+      upstream.acquireServer();
+    }
+
+    servers.forEach(server -> assertEquals(25, server.getCurrentRequests()));
+  }
+
+  /**
+   * Models a slowdown of one of five servers, see {@link BalancingStrategySimulation}.
+   */
+  @Test
+  public void shouldSendLessToSlowServerThanOtherStrategies() {
+    SimulationReport peakEwma = BalancingStrategySimulation.slowdown(BalancingStrategyType.PEAK_EWMA);
+    String slowServer = BalancingStrategySimulation.FIRST_SERVER;
+    for (BalancingStrategyType type : List.of(BalancingStrategyType.WEIGHTED, BalancingStrategyType.POWER_OF_TWO_CHOICES)) {
+      SimulationReport other = BalancingStrategySimulation.slowdown(type);
+      assertTrue(peakEwma.getLoadShare(slowServer) < other.getLoadShare(slowServer), peakEwma + " vs " + other);
+      assertTrue(peakEwma.getMeanLatencyMillis() < other.getMeanLatencyMillis(), peakEwma + " vs " + other);
+    }
+  }
+
+  private static Upstream createUpstream(List<Server> servers) {
+    return new Upstream("test", getDefaultConfig(BalancingStrategyType.PEAK_EWMA.getPublicName()), servers, DATACENTER);
+  }
+
+  private static List<Server> generateServers(int n) {
+    return IntStream
+        .range(0, n)
+        .mapToObj(i -> new Server("server" + i, null, 1, DATACENTER))
+        .toList();
+  }
+}
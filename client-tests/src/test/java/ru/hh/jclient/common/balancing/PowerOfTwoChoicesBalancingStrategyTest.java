@@ -0,0 +1,98 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static ru.hh.jclient.common.balancing.UpstreamConfigs.getDefaultConfig;
+import ru.hh.jclient.common.balancing.config.BalancingStrategyType;
+
+public class PowerOfTwoChoicesBalancingStrategyTest {
+  private static final String DATACENTER = "dc1";
+
+  @Test
+  public void shouldKeepLoadBalanced() {
+    List<Server> servers = generateServers(10, DATACENTER);
+    Upstream upstream = createUpstream(servers);
+
+    for (int i = 0; i < 1000; i++) {
+      upstream.acquireServer();
+    }
+
+    int min = servers.stream().mapToInt(Server::getCurrentRequests).min().orElseThrow();
+    int max = servers.stream().mapToInt(Server::getCurrentRequests).max().orElseThrow();
+    assertTrue(max - min <= 10, "expected balanced load, but min=" + min + ", max=" + max);
+  }
+
+  @Test
+  public void shouldSplitLoadByWeights() {
+    List<Integer> weights = List.of(1, 2, 3, 4, 10);
+    List<Server> servers = IntStream
+        .range(0, weights.size())
+        .mapToObj(i -> new Server("server" + i, null, weights.get(i), DATACENTER))
+        .toList();
+    Upstream upstream = createUpstream(servers);
+
+    int requests = 20000;
+    int[] requestsByServer = new int[servers.size()];
+    for (int i = 0; i < requests; i++) {
+      ServerEntry server = upstream.acquireServer();
+      requestsByServer[server.getIndex()]++;
+      upstream.releaseServer(server, false, false, 10, false);
+    }
+
+    int totalWeight = weights.stream().mapToInt(Integer::intValue).sum();
+    for (int i = 0; i < servers.size(); i++) {
+      double expectedShare = (double) weights.get(i) / totalWeight;
+      assertEquals(expectedShare, (double) requestsByServer[i] / requests, 0.02, "load share of server" + i);
+    }
+  }
+
+  @Test
+  public void shouldNotPickExcludedServers() {
+    List<Server> servers = generateServers(5, DATACENTER);
+    Upstream upstream = createUpstream(servers);
+    Set<Integer> excluded = Set.of(0, 1, 2, 3);
+
+    for (int i = 0; i < 100; i++) {
+      assertEquals(4, upstream.acquireServer(excluded).getIndex());
+    }
+  }
+
+  @Test
+  public void shouldPickExcludedServerIfAllExcluded() {
+    List<Server> servers = generateServers(5, DATACENTER);
+    Upstream upstream = createUpstream(servers);
+
+    assertNotEquals(null, upstream.acquireServer(Set.of(0, 1, 2, 3, 4)));
+  }
+
+  @Test
+  public void shouldPreferCurrentDatacenter() {
+    List<Server> servers = IntStream
+        .range(0, 10)
+        .mapToObj(i -> new Server("server" + i, null, 1, i < 3 ? DATACENTER : "dc2"))
+        .toList();
+    Upstream upstream = createUpstream(servers);
+
+    for (int i = 0; i < 100; i++) {
+      assertEquals(DATACENTER, upstream.acquireServer().getDatacenter());
+    }
+    assertEquals(DATACENTER, upstream.acquireServer(Set.of(0, 1)).getDatacenter());
+    assertEquals("dc2", upstream.acquireServer(Set.of(0, 1, 2)).getDatacenter());
+  }
+
+  private static Upstream createUpstream(List<Server> servers) {
+    return new Upstream("test", getDefaultConfig(BalancingStrategyType.POWER_OF_TWO_CHOICES.getPublicName()), servers, DATACENTER);
+  }
+
+  private static List<Server> generateServers(int n, String datacenter) {
+    return IntStream
+        .range(0, n)
+        .mapToObj(i -> new Server("server" + i, null, 1, datacenter))
+        .toList();
+  }
+}
@@ -0,0 +1,146 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import ru.hh.jclient.common.Request;
+import ru.hh.jclient.common.RequestResponseWrapper;
+import ru.hh.jclient.common.Response;
+import static ru.hh.jclient.common.balancing.UpstreamConfig.DEFAULT;
+
+public class RetryBudgetTest extends UpstreamRequestBalancerTestBase {
+  private final AtomicInteger attempts = new AtomicInteger();
+
+  @Test
+  public void disabledBudgetShouldNotLimitRetries() {
+    RetryBudget budget = new RetryBudget();
+    for (int i = 0; i < RetryBudget.MAX_TOKENS * 2; i++) {
+      assertTrue(budget.tryWithdraw());
+    }
+  }
+
+  @Test
+  public void retriesShouldBeLimitedByDeposits() {
+    RetryBudget budget = new RetryBudget();
+    budget.setRatio(0.1f);
+    for (int i = 0; i < RetryBudget.MAX_TOKENS; i++) {
+      assertTrue(budget.tryWithdraw());
+    }
+    assertFalse(budget.tryWithdraw());
+
+    for (int i = 0; i < 9; i++) {
+      budget.deposit();
+    }
+    assertFalse(budget.tryWithdraw());
+    budget.deposit();
+    assertTrue(budget.tryWithdraw());
+    assertFalse(budget.tryWithdraw());
+  }
+
+  @Test
+  public void depositsShouldBeCapped() {
+    RetryBudget budget = new RetryBudget();
+    budget.setRatio(1f);
+    for (int i = 0; i < RetryBudget.MAX_TOKENS * 2; i++) {
+      budget.deposit();
+    }
+    assertEquals(RetryBudget.MAX_TOKENS, budget.getTokens(), 0.001);
+  }
+
+  @Test
+  public void concurrentDepositsShouldNotBeLost() throws Exception {
+    RetryBudget budget = new RetryBudget();
+    budget.setRatio(0.1f);
+    while (budget.tryWithdraw()) {
+      // drain the budget
+    }
+    int threads = 8;
+    int depositsPerThread = 100;
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      CompletableFuture<?>[] futures = new CompletableFuture<?>[threads];
+      for (int i = 0; i < threads; i++) {
+        futures[i] = CompletableFuture.runAsync(() -> {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+          }
+          for (int j = 0; j < depositsPerThread; j++) {
+            budget.deposit();
+          }
+        }, executor);
+      }
+      start.countDown();
+      CompletableFuture.allOf(futures).get(5, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(threads * depositsPerThread * 0.1f, budget.getTokens(), 0.001);
+  }
+
+  @Test
+  public void balancerShouldNotRetryWhenBudgetIsExhausted() throws Exception {
+    Upstream upstream = createUpstream(0.5f);
+    while (upstream.tryAcquireRetry()) {
+      // drain the budget
+    }
+
+    Response response = createBalancer(upstream).execute().get(1, TimeUnit.SECONDS);
+
+    assertEquals(503, response.getStatusCode());
+    assertEquals(1, attempts.get());
+    verify(monitoring).countRetryBudgetExhausted(anyString(), anyString(), anyString());
+  }
+
+  @Test
+  public void balancerShouldRetryWithinBudget() throws Exception {
+    Upstream upstream = createUpstream(0.5f);
+    while (upstream.tryAcquireRetry()) {
+      // drain the budget
+    }
+    upstream.onFirstAttemptSuccess();
+    upstream.onFirstAttemptSuccess();
+
+    createBalancer(upstream).execute().get(1, TimeUnit.SECONDS);
+
+    assertEquals(2, attempts.get());
+    verify(monitoring).countRetryBudgetExhausted(anyString(), anyString(), anyString());
+  }
+
+  @Test
+  public void balancerShouldRetryWithoutBudget() throws Exception {
+    createBalancer(createUpstream(null)).execute().get(1, TimeUnit.SECONDS);
+
+    assertEquals(3, attempts.get());
+    verify(monitoring, never()).countRetryBudgetExhausted(anyString(), anyString(), anyString());
+  }
+
+  private static Upstream createUpstream(Float retryBudgetRatio) {
+    UpstreamConfig config = UpstreamConfigs.createUpstreamConfigWithDefaults(3, null, null, 1f, null, null, Map.of(503, false));
+    UpstreamConfigs configs = UpstreamConfigs.builder(Map.of(DEFAULT, config)).withRetryBudgetRatio(retryBudgetRatio).build();
+    return new Upstream(UPSTREAM, configs, createServers("a", "b", "c"), DATACENTER);
+  }
+
+  /**
+   * every server answers with 503
+   */
+  @Override
+  CompletableFuture<RequestResponseWrapper> executeAttempt(Request request) {
+    attempts.incrementAndGet();
+    return CompletableFuture.completedFuture(createResponse(request, 503, 10));
+  }
+}
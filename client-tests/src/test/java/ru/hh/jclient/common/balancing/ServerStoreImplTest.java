@@ -0,0 +1,92 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+import static ru.hh.jclient.common.balancing.UpstreamConfig.DEFAULT;
+import static ru.hh.jclient.common.balancing.UpstreamConfig.DEFAULT_CONFIG;
+
+public class ServerStoreImplTest {
+  private static final String SERVICE = "backend";
+
+  private final ServerStoreImpl serverStore = new ServerStoreImpl();
+
+  @Test
+  public void readersShouldShareSnapshot() {
+    Server a = new Server("a", null, 1, "dc1");
+    Server b = new Server("b", null, 1, "dc2");
+    serverStore.updateServers(SERVICE, List.of(a, b), List.of());
+
+    List<Server> servers = serverStore.getServers(SERVICE);
+    assertEquals(List.of(a, b), servers);
+    assertSame(servers, serverStore.getServers(SERVICE));
+    assertEquals(List.of(b), serverStore.getServers(SERVICE, "dc2"));
+    assertSame(serverStore.getServers(SERVICE, "dc2"), serverStore.getServers(SERVICE, "dc2"));
+    assertEquals(List.of(), serverStore.getServers(SERVICE, "dc3"));
+    assertEquals(List.of(), serverStore.getServers("unknown"));
+    assertEquals(2, serverStore.getInitialSize(SERVICE).orElseThrow());
+    assertThrows(UnsupportedOperationException.class, () -> servers.add(a));
+  }
+
+  @Test
+  public void updateWithoutChangesShouldKeepSnapshot() {
+    Server a = new Server("a", null, 1, "dc1");
+    serverStore.updateServers(SERVICE, List.of(a), List.of());
+    List<Server> servers = serverStore.getServers(SERVICE);
+    long version = serverStore.getVersion(SERVICE);
+
+    serverStore.updateServers(SERVICE, List.of(new Server("a", null, 1, "dc1")), List.of(new Server("c", null, 1, "dc1")));
+
+    assertSame(servers, serverStore.getServers(SERVICE));
+    assertSame(a, serverStore.getServers(SERVICE).get(0));
+    assertEquals(version, serverStore.getVersion(SERVICE));
+  }
+
+  @Test
+  public void updateShouldApplyDelta() {
+    Server a = new Server("a", null, 1, "dc1");
+    Server b = new Server("b", null, 1, "dc1");
+    Server c = new Server("c", null, 1, "dc1");
+    serverStore.updateServers(SERVICE, List.of(a, b), List.of());
+    long version = serverStore.getVersion(SERVICE);
+
+    serverStore.updateServers(SERVICE, List.of(b, c), List.of(a, c));
+
+    assertEquals(List.of(b), serverStore.getServers(SERVICE));
+    assertEquals(version + 1, serverStore.getVersion(SERVICE));
+  }
+
+  @Test
+  public void weightChangeShouldCreateNewVersion() {
+    Server a = new Server("a", null, 1, "dc1");
+    serverStore.updateServers(SERVICE, List.of(a), List.of());
+    List<Server> servers = serverStore.getServers(SERVICE);
+    long version = serverStore.getVersion(SERVICE);
+
+    a.update(5, Map.of(), List.of());
+    serverStore.updateServers(SERVICE, List.of(a), List.of());
+
+    assertNotSame(servers, serverStore.getServers(SERVICE));
+    assertEquals(version + 1, serverStore.getVersion(SERVICE));
+  }
+
+  @Test
+  public void upstreamShouldSkipUpdateOfSameVersion() {
+    serverStore.updateServers(SERVICE, List.of(new Server("a", null, 1, "dc1")), List.of());
+    UpstreamConfigs configs = UpstreamConfigs.of(Map.of(DEFAULT, DEFAULT_CONFIG), null);
+    Upstream upstream = new Upstream(SERVICE, configs, serverStore.getServers(SERVICE), "dc1");
+    upstream.update(configs, serverStore.getServers(SERVICE), serverStore.getVersion(SERVICE));
+    UpstreamSnapshot snapshot = upstream.getSnapshot();
+
+    upstream.update(configs, serverStore.getServers(SERVICE), serverStore.getVersion(SERVICE));
+    assertSame(snapshot, upstream.getSnapshot());
+
+    serverStore.updateServers(SERVICE, List.of(new Server("b", null, 1, "dc1")), List.of());
+    upstream.update(configs, serverStore.getServers(SERVICE), serverStore.getVersion(SERVICE));
+    assertEquals(2, upstream.getServers().size());
+  }
+}
@@ -2,6 +2,7 @@ package ru.hh.jclient.common.balancing;
 
 import java.util.Collections;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import org.junit.jupiter.api.Test;
 
 public class ServerTest {
@@ -28,6 +29,23 @@ public class ServerTest {
     assertEquals("DC1", server.getDatacenter());
   }
 
+  @Test
+  public void testParseAddress() {
+    Server server = new Server("host:8080", null, 1, null);
+    assertNull(server.getAddressScheme());
+    assertEquals("host", server.getAddressHost());
+    assertEquals(8080, server.getAddressPort());
+
+    server = new Server("host", null, 1, null);
+    assertEquals("host", server.getAddressHost());
+    assertEquals(-1, server.getAddressPort());
+
+    server = new Server("https://host:8443", null, 1, null);
+    assertEquals("https", server.getAddressScheme());
+    assertEquals("host", server.getAddressHost());
+    assertEquals(8443, server.getAddressPort());
+  }
+
   @Test
   public void testAcquire() {
     Server server = new Server("test", null, 1, null);
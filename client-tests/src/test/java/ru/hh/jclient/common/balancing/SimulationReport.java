@@ -0,0 +1,111 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of a {@link BalancingSimulator#run} period: attempts sent and requests finished during it.
+ */
+final class SimulationReport {
+  private final long durationMillis;
+  private final Map<String, Long> attemptsByServer;
+  private final long attempts;
+  private final long requests;
+  private final long failedRequests;
+  private final long attemptsOfRequests;
+  /**
+   * of finished requests, from arrival to the last response, sorted
+   */
+  private final long[] latenciesNanos;
+
+  SimulationReport(
+      long durationMillis,
+      Map<String, Long> attemptsByServer,
+      long requests,
+      long failedRequests,
+      long attemptsOfRequests,
+      long[] latenciesNanos
+  ) {
+    this.durationMillis = durationMillis;
+    this.attemptsByServer = attemptsByServer;
+    this.attempts = attemptsByServer.values().stream().mapToLong(Long::longValue).sum();
+    this.requests = requests;
+    this.failedRequests = failedRequests;
+    this.attemptsOfRequests = attemptsOfRequests;
+    this.latenciesNanos = latenciesNanos;
+    Arrays.sort(this.latenciesNanos);
+  }
+
+  Map<String, Long> getAttemptsByServer() {
+    return attemptsByServer;
+  }
+
+  /**
+   * @return share of attempts the server got, 0 if it got none
+   */
+  double getLoadShare(String address) {
+    return attempts == 0 ? 0 : (double) attemptsByServer.getOrDefault(address, 0L) / attempts;
+  }
+
+  /**
+   * @return attempts sent during the period, some of them may still be in flight
+   */
+  long getAttempts() {
+    return attempts;
+  }
+
+  long getRequests() {
+    return requests;
+  }
+
+  /**
+   * @return share of requests whose every try failed
+   */
+  double getFailedShare() {
+    return requests == 0 ? 0 : (double) failedRequests / requests;
+  }
+
+  /**
+   * @return attempts per finished request: 1 without retries, tries count if every request is retried up to the limit
+   */
+  double getRetryAmplification() {
+    return requests == 0 ? 0 : (double) attemptsOfRequests / requests;
+  }
+
+  double getMeanLatencyMillis() {
+    if (latenciesNanos.length == 0) {
+      return 0;
+    }
+    return Arrays.stream(latenciesNanos).average().orElse(0) / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  /**
+   * @param quantile e.g. 0.99 for p99
+   */
+  double getLatencyQuantileMillis(double quantile) {
+    if (latenciesNanos.length == 0) {
+      return 0;
+    }
+    int index = (int) Math.min(latenciesNanos.length - 1, Math.ceil(quantile * latenciesNanos.length) - 1);
+    return (double) latenciesNanos[Math.max(index, 0)] / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder loadShares = new StringBuilder();
+    attemptsByServer.keySet().forEach(address -> loadShares.append(String.format(" %s=%.3f", address, getLoadShare(address))));
+    return String.format(
+        "%d ms: %d requests, %.4f failed, retry amplification %.3f, latency mean %.1f p50 %.1f p99 %.1f p999 %.1f ms, load shares:%s",
+        durationMillis,
+        requests,
+        getFailedShare(),
+        getRetryAmplification(),
+        getMeanLatencyMillis(),
+        getLatencyQuantileMillis(0.5),
+        getLatencyQuantileMillis(0.99),
+        getLatencyQuantileMillis(0.999),
+        loadShares
+    );
+  }
+}
@@ -0,0 +1,115 @@
+package ru.hh.jclient.common.balancing;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import ru.hh.jclient.common.balancing.config.SlowStartCurve;
+
+public class SlowStartTest {
+  private static final int SLOW_START_SEC = 10;
+
+  private final AtomicLong currentTimeMillis = new AtomicLong(1_000_000);
+  private final Clock clock = Clock.systemUTC();
+
+  @Test
+  public void linearFactorShouldGrowEvenly() {
+    Server server = createServer();
+    server.setSlowStartIfNeeded(SLOW_START_SEC, SlowStartCurve.LINEAR, clock);
+    assertEquals(Server.SLOW_START_MIN_FACTOR, server.getSlowStartFactor(clock));
+
+    advanceSeconds(SLOW_START_SEC / 2);
+    assertEquals(0.5f, server.getSlowStartFactor(clock), 0.001f);
+
+    advanceSeconds(SLOW_START_SEC / 2);
+    assertEquals(1f, server.getSlowStartFactor(clock));
+  }
+
+  @Test
+  public void exponentialFactorShouldStayLowLonger() {
+    Server server = createServer();
+    server.setSlowStartIfNeeded(SLOW_START_SEC, SlowStartCurve.EXPONENTIAL, clock);
+    assertEquals(Server.SLOW_START_MIN_FACTOR, server.getSlowStartFactor(clock), 0.001f);
+
+    advanceSeconds(SLOW_START_SEC / 2);
+    assertEquals(0.1f, server.getSlowStartFactor(clock), 0.001f);
+
+    advanceSeconds(SLOW_START_SEC / 2);
+    assertEquals(1f, server.getSlowStartFactor(clock));
+  }
+
+  @Test
+  public void loadShouldNotJumpWhenFactorGrows() {
+    Server warmServer = createServer();
+    for (int i = 0; i < 10_000; i++) {
+      warmServer.acquire();
+      warmServer.release(false);
+    }
+    Server server = createServer();
+    server.setSlowStartIfNeeded(SLOW_START_SEC, SlowStartCurve.LINEAR, clock);
+    List<Server> servers = List.of(warmServer, server);
+    float initialLoad = server.getStatLoad(servers, clock);
+    assertEquals(warmServer.getStatLoad(servers, clock), initialLoad, initialLoad * 0.05f);
+    int initialStatsRequests = server.getStatsRequests();
+
+    advanceSeconds(SLOW_START_SEC / 2);
+    assertEquals(initialLoad, server.getStatLoad(servers, clock), initialLoad * 0.05f);
+    assertTrue(server.getStatsRequests() > initialStatsRequests * 40, "stat requests " + server.getStatsRequests());
+  }
+
+  @Test
+  public void serverWithRequestsShouldNotStartSlowly() {
+    Server server = createServer();
+    server.getStatLoad(List.of(server), clock);
+
+    server.setSlowStartIfNeeded(SLOW_START_SEC, SlowStartCurve.LINEAR, clock);
+
+    assertEquals(1f, server.getSlowStartFactor(clock));
+  }
+
+  @Test
+  public void adaptiveShouldRarelyPickServerOnSlowStart() {
+    Server warmServer = createServer();
+    Server server = createServer();
+    server.setSlowStartIfNeeded(SLOW_START_SEC, SlowStartCurve.LINEAR, clock);
+    List<Server> servers = List.of(warmServer, server);
+
+    int slowStartPicks = 0;
+    for (int i = 0; i < 1000; i++) {
+      if (sampleOne(servers) == 1) {
+        slowStartPicks++;
+      }
+    }
+    assertTrue(slowStartPicks < 50, "picks of server on slow start: " + slowStartPicks);
+
+    advanceSeconds(SLOW_START_SEC);
+    slowStartPicks = 0;
+    for (int i = 0; i < 1000; i++) {
+      if (sampleOne(servers) == 1) {
+        slowStartPicks++;
+      }
+    }
+    assertTrue(slowStartPicks > 400, "picks of server after slow start: " + slowStartPicks);
+  }
+
+  private int sampleOne(List<Server> servers) {
+    UpstreamSnapshot snapshot = new UpstreamSnapshot(0, UpstreamConfigs.getDefaultConfig(), servers, null);
+    return AdaptiveScoreTable.create(snapshot, 0, clock).sample(1)[0];
+  }
+
+  private Server createServer() {
+    return new Server("server", null, 5, null) {
+      @Override
+      protected long getCurrentTimeMillis(Clock clock) {
+        return currentTimeMillis.get();
+      }
+    };
+  }
+
+  private void advanceSeconds(int seconds) {
+    currentTimeMillis.addAndGet(TimeUnit.SECONDS.toMillis(seconds));
+  }
+}
@@ -0,0 +1,100 @@
+package ru.hh.jclient.common.balancing;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import ru.hh.jclient.common.Monitoring;
+import ru.hh.jclient.common.Request;
+import ru.hh.jclient.common.RequestBuilder;
+import ru.hh.jclient.common.RequestContext;
+import ru.hh.jclient.common.RequestResponseWrapper;
+import ru.hh.jclient.common.RequestStrategy;
+import ru.hh.jclient.common.Response;
+
+/**
+ * Runs {@link UpstreamRequestBalancer} without http client: every attempt, hedged ones included, is answered by {@link #executeAttempt}.
+ */
+abstract class UpstreamRequestBalancerTestBase {
+  static final String UPSTREAM = "backend";
+  static final String DATACENTER = "dc1";
+
+  final Monitoring monitoring = mock(Monitoring.class);
+
+  abstract CompletableFuture<RequestResponseWrapper> executeAttempt(Request request);
+
+  CompletableFuture<RequestResponseWrapper> executeHedgedAttempt(Request request, int retryCount) {
+    return executeAttempt(request);
+  }
+
+  /**
+   * @return time left until deadline of the incoming request, negative if it has none
+   */
+  long getDeadlineTimeLeftMs() {
+    return -1;
+  }
+
+  UpstreamRequestBalancer createBalancer(Upstream upstream) {
+    return createBalancer(upstream, createRequest("GET"), false);
+  }
+
+  UpstreamRequestBalancer createBalancer(Upstream upstream, Request request, boolean forceIdempotence) {
+    return new UpstreamRequestBalancer(
+        new BalancingState(upstream, null),
+        request,
+        new RequestExecutor(),
+        forceIdempotence,
+        null,
+        "DEBUG",
+        Set.of(monitoring)
+    );
+  }
+
+  static List<Server> createServers(String... addresses) {
+    return Arrays.stream(addresses).map(address -> new Server(address, null, 1, DATACENTER)).toList();
+  }
+
+  static Request createRequest(String method) {
+    return new RequestBuilder(method).setUrl("http://" + UPSTREAM + "/path").build();
+  }
+
+  static RequestResponseWrapper createResponse(String host, int statusCode, long timeToLastByteMillis) {
+    return createResponse(new RequestBuilder().setUrl("http://" + host + "/path").build(), statusCode, timeToLastByteMillis);
+  }
+
+  static RequestResponseWrapper createResponse(Request request, int statusCode, long timeToLastByteMillis) {
+    Response response = mock(Response.class);
+    when(response.getStatusCode()).thenReturn(statusCode);
+    when(response.getUri()).thenReturn(request.getUri());
+    return new RequestResponseWrapper(request, response, timeToLastByteMillis);
+  }
+
+  private class RequestExecutor implements RequestStrategy.RequestExecutor {
+    @Override
+    public CompletableFuture<RequestResponseWrapper> executeRequest(Request request, int retryCount, RequestContext context) {
+      return executeAttempt(request);
+    }
+
+    @Override
+    public CompletableFuture<RequestResponseWrapper> executeHedgedRequest(Request request, int retryCount, RequestContext context) {
+      return executeHedgedAttempt(request, retryCount);
+    }
+
+    @Override
+    public CompletableFuture<RequestResponseWrapper> handleFailFastResponse(Request request, RequestContext requestContext, Response response) {
+      return CompletableFuture.completedFuture(new RequestResponseWrapper(request, response, 0L));
+    }
+
+    @Override
+    public int getDefaultRequestTimeoutMs() {
+      return 1000;
+    }
+
+    @Override
+    public long getDeadlineTimeLeftMs() {
+      return UpstreamRequestBalancerTestBase.this.getDeadlineTimeLeftMs();
+    }
+  }
+}
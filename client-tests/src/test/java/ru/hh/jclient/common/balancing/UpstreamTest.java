@@ -11,6 +11,7 @@ import static ru.hh.jclient.common.balancing.UpstreamConfig.DEFAULT;
 import static ru.hh.jclient.common.balancing.UpstreamConfigs.getDefaultConfig;
 import ru.hh.jclient.common.balancing.config.ApplicationConfig;
 import static ru.hh.jclient.common.balancing.config.ApplicationConfigTest.buildTestConfig;
+import ru.hh.jclient.common.balancing.config.BalancingStrategyType;
 
 public class UpstreamTest {
   private static final Logger LOGGER = LoggerFactory.getLogger(UpstreamTest.class);
@@ -111,6 +112,55 @@ public class UpstreamTest {
     assertEquals(weight - 1, server.getStatsRequests(), "stats requests");
   }
 
+  @Test
+  public void acquireReleaseWhileUpdating() throws Exception {
+    int numOfRequests = 100_000;
+    List<Server> servers = buildServers();
+    Upstream upstream = createTestUpstream(TEST_SERVICE_NAME, servers);
+
+    UpstreamConfigs adaptiveConfig = getDefaultConfig(BalancingStrategyType.ADAPTIVE.getPublicName());
+    Thread updater = new Thread(() -> {
+      for (int i = 0; i < numOfRequests / 100; i++) {
+        upstream.update(i % 2 == 0 ? adaptiveConfig : getDefaultConfig(), List.copyOf(servers));
+      }
+    });
+    updater.start();
+
+    acquireReleaseUpstream(upstream, numOfRequests);
+
+    updater.join();
+
+    assertEquals(servers, upstream.getServers());
+    assertEquals(0, servers.get(0).getCurrentRequests(), "current requests");
+    assertEquals(0, servers.get(1).getCurrentRequests(), "current requests");
+  }
+
+  @Test
+  public void releaseServerAcquiredBeforeUpdate() {
+    List<Server> servers = buildServers();
+    Upstream upstream = createTestUpstream(TEST_SERVICE_NAME, servers);
+    ServerEntry serverEntry = upstream.acquireServer();
+    assertEquals("a", serverEntry.getAddress());
+
+    upstream.update(getDefaultConfig(), List.of(servers.get(1), servers.get(0)));
+    upstream.releaseServer(serverEntry, false, false, 100, false);
+
+    assertEquals(0, servers.get(0).getCurrentRequests(), "current requests");
+    assertEquals(0, servers.get(1).getCurrentRequests(), "current requests");
+  }
+
+  @Test
+  public void excludeServerAcquiredBeforeUpdate() {
+    List<Server> servers = buildServers();
+    Upstream upstream = createTestUpstream(TEST_SERVICE_NAME, servers);
+    ServerEntry serverEntry = upstream.acquireServer(singleton(1));
+    assertEquals("a", serverEntry.getAddress());
+
+    upstream.update(getDefaultConfig(), List.of(servers.get(1), servers.get(0)));
+
+    assertEquals("b", upstream.acquireServerExcluding(List.of(serverEntry)).getAddress());
+  }
+
   private static void assertServerCounters(List<Server> servers, int serverIndex, int requests, int statsRequests) {
 
     assertEquals(requests, servers.get(serverIndex).getCurrentRequests(), "currentRequests");
@@ -121,7 +171,7 @@ public class UpstreamTest {
     for (int i = 0; i < times; i++) {
       ServerEntry serverEntry = upstream.acquireServer();
       if (serverEntry != null) {
-        upstream.releaseServer(serverEntry.getIndex(), false, false, 100);
+        upstream.releaseServer(serverEntry, false, false, 100, false);
       }
     }
   }
@@ -4,8 +4,13 @@ import java.util.HashMap;
 import java.util.Map;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
+import ru.hh.jclient.common.balancing.ConcurrencyLimitConfig;
+import ru.hh.jclient.common.balancing.ConnectionPoolConfig;
+import ru.hh.jclient.common.balancing.CrossDcSpilloverConfig;
+import ru.hh.jclient.common.balancing.OutlierEjectionConfig;
 import ru.hh.jclient.common.balancing.UpstreamConfig;
 import static ru.hh.jclient.common.balancing.UpstreamConfig.DEFAULT;
 import ru.hh.jclient.common.balancing.UpstreamConfigs;
@@ -70,6 +75,111 @@ public class ApplicationConfigTest {
     assertTrue(config.getRetryPolicy().getRules().get(503));
   }
 
+  @Test
+  public void parseSlowStartCurve() {
+    ApplicationConfig applicationConfig = buildTestConfig();
+    assertEquals(SlowStartCurve.LINEAR, getDefaultProfileConfig(applicationConfig).getSlowStartCurve());
+
+    Profile profile = applicationConfig.getHosts().get(DEFAULT).getProfiles().get(DEFAULT);
+    profile.setSlowStartCurve("exponential");
+    assertEquals(SlowStartCurve.EXPONENTIAL, getDefaultProfileConfig(applicationConfig).getSlowStartCurve());
+
+    profile.setSlowStartCurve("cubic");
+    assertEquals(SlowStartCurve.LINEAR, getDefaultProfileConfig(applicationConfig).getSlowStartCurve());
+  }
+
+  @Test
+  public void parseAdaptiveLatencyQuantile() {
+    ApplicationConfig applicationConfig = buildTestConfig().setAdaptiveLatencyQuantile(0.99f);
+    assertEquals(0.99f, ApplicationConfig.toUpstreamConfigs(applicationConfig, DEFAULT).getAdaptiveLatencyQuantile());
+    assertEquals(0.99f, ApplicationConfig.toUpstreamConfigs(applicationConfig, "unknown").getAdaptiveLatencyQuantile());
+
+    applicationConfig.setAdaptiveLatencyQuantile(1.5f);
+    assertNull(ApplicationConfig.toUpstreamConfigs(applicationConfig, DEFAULT).getAdaptiveLatencyQuantile());
+    assertNull(ApplicationConfig.toUpstreamConfigs(buildTestConfig(), DEFAULT).getAdaptiveLatencyQuantile());
+  }
+
+  @Test
+  public void parseRetryBudgetRatio() {
+    ApplicationConfig applicationConfig = buildTestConfig().setRetryBudgetRatio(0.1f);
+    assertEquals(0.1f, ApplicationConfig.toUpstreamConfigs(applicationConfig, DEFAULT).getRetryBudgetRatio());
+    assertEquals(0.1f, ApplicationConfig.toUpstreamConfigs(applicationConfig, "unknown").getRetryBudgetRatio());
+
+    applicationConfig.setRetryBudgetRatio(-1f);
+    assertNull(ApplicationConfig.toUpstreamConfigs(applicationConfig, DEFAULT).getRetryBudgetRatio());
+    assertNull(ApplicationConfig.toUpstreamConfigs(buildTestConfig(), DEFAULT).getRetryBudgetRatio());
+  }
+
+  @Test
+  public void parseOutlierEjection() {
+    assertNull(ApplicationConfig.toUpstreamConfigs(buildTestConfig(), DEFAULT).getOutlierEjectionConfig());
+
+    ApplicationConfig applicationConfig = buildTestConfig().setOutlierEjection(new OutlierEjection().setBaseEjectionTimeSec(5f));
+    OutlierEjectionConfig config = ApplicationConfig.toUpstreamConfigs(applicationConfig, DEFAULT).getOutlierEjectionConfig();
+    assertEquals(5000, config.getBaseEjectionTimeMs());
+    assertEquals(300_000, config.getMaxEjectionTimeMs());
+    assertEquals(30, config.getMaxEjectionPercent());
+
+    applicationConfig.setOutlierEjection(
+        new OutlierEjection().setBaseEjectionTimeSec(5f).setMaxEjectionTimeSec(1f).setMaxEjectionPercent(200)
+    );
+    config = ApplicationConfig.toUpstreamConfigs(applicationConfig, "unknown").getOutlierEjectionConfig();
+    assertEquals(5000, config.getMaxEjectionTimeMs());
+    assertEquals(30, config.getMaxEjectionPercent());
+  }
+
+  @Test
+  public void parseCrossDcSpillover() {
+    assertNull(ApplicationConfig.toUpstreamConfigs(buildTestConfig(), DEFAULT).getCrossDcSpilloverConfig());
+
+    ApplicationConfig applicationConfig = buildTestConfig().setCrossDcSpillover(new CrossDcSpillover().setHeadroom(0.3f));
+    CrossDcSpilloverConfig config = ApplicationConfig.toUpstreamConfigs(applicationConfig, DEFAULT).getCrossDcSpilloverConfig();
+    assertEquals(0.3f, config.getHeadroom());
+    assertEquals(10, config.getCapacityPerWeight());
+
+    applicationConfig.setCrossDcSpillover(new CrossDcSpillover().setHeadroom(2f).setCapacityPerWeight(0));
+    config = ApplicationConfig.toUpstreamConfigs(applicationConfig, "unknown").getCrossDcSpilloverConfig();
+    assertEquals(0.2f, config.getHeadroom());
+    assertEquals(10, config.getCapacityPerWeight());
+  }
+
+  @Test
+  public void parseConcurrencyLimit() {
+    assertNull(ApplicationConfig.toUpstreamConfigs(buildTestConfig(), DEFAULT).getConcurrencyLimitConfig());
+
+    ApplicationConfig applicationConfig = buildTestConfig().setConcurrencyLimit(new ConcurrencyLimit().setMaxLimit(200));
+    ConcurrencyLimitConfig config = ApplicationConfig.toUpstreamConfigs(applicationConfig, DEFAULT).getConcurrencyLimitConfig();
+    assertEquals(20, config.getInitialLimit());
+    assertEquals(1, config.getMinLimit());
+    assertEquals(200, config.getMaxLimit());
+
+    applicationConfig.setConcurrencyLimit(new ConcurrencyLimit().setInitialLimit(500).setMinLimit(0).setMaxLimit(100));
+    config = ApplicationConfig.toUpstreamConfigs(applicationConfig, "unknown").getConcurrencyLimitConfig();
+    assertEquals(100, config.getInitialLimit());
+    assertEquals(1, config.getMinLimit());
+    assertEquals(100, config.getMaxLimit());
+  }
+
+  @Test
+  public void parseConnectionPool() {
+    assertNull(ApplicationConfig.toUpstreamConfigs(buildTestConfig(), DEFAULT).getConnectionPoolConfig());
+
+    ApplicationConfig applicationConfig = buildTestConfig()
+        .setConnectionPool(new ConnectionPool().setMaxConnectionsPerHost(50).setIdleTimeoutSec(30f));
+    ConnectionPoolConfig config = ApplicationConfig.toUpstreamConfigs(applicationConfig, DEFAULT).getConnectionPoolConfig();
+    assertEquals(50, config.getMaxConnectionsPerHost());
+    assertEquals(30_000, config.getIdleTimeoutMs());
+
+    applicationConfig.setConnectionPool(new ConnectionPool().setMaxConnectionsPerHost(-1));
+    config = ApplicationConfig.toUpstreamConfigs(applicationConfig, "unknown").getConnectionPoolConfig();
+    assertEquals(0, config.getMaxConnectionsPerHost());
+    assertEquals(0, config.getIdleTimeoutMs());
+  }
+
+  private static UpstreamConfig getDefaultProfileConfig(ApplicationConfig applicationConfig) {
+    return ApplicationConfig.toUpstreamConfigs(applicationConfig, DEFAULT).get(DEFAULT).get();
+  }
+
   public static ApplicationConfig buildTestConfig() {
 
     Profile profile = new Profile()
@@ -0,0 +1,151 @@
+package ru.hh.jclient.common.bench;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.hh.jclient.common.balancing.AdaptiveBalancingState;
+import ru.hh.jclient.common.balancing.Server;
+import ru.hh.jclient.common.balancing.Upstream;
+import ru.hh.jclient.common.balancing.UpstreamConfig;
+import ru.hh.jclient.common.balancing.UpstreamMorozov;
+import ru.hh.jclient.common.balancing.config.ApplicationConfig;
+import ru.hh.jclient.common.balancing.config.BalancingStrategyType;
+
+/**
+ * Compares adaptive selection drawing from a shared score table with the previous one,
+ * which read statistics of every server and scanned scores once per try on every request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class AdaptiveSelectionBenchmark {
+  private static final String DATACENTER = "test";
+  private static final int TRIES = 2;
+
+  @Param({"10", "100", "1000"})
+  private int serversCount;
+
+  private List<Server> servers;
+  private Upstream upstream;
+
+  public static void main(String[] args) throws RunnerException {
+    var opt = new OptionsBuilder()
+        .include(AdaptiveSelectionBenchmark.class.getSimpleName())
+        .forks(1)
+        .jvmArgsAppend("-DrootLoggingLevel=WARN")
+        .build();
+    new Runner(opt).run();
+  }
+
+  @Setup
+  public void setUp() {
+    servers = IntStream
+        .range(0, serversCount)
+        .mapToObj(i -> new Server("server" + i, null, 100, DATACENTER))
+        .toList();
+    for (Server server : servers) {
+      for (int i = 0; i < 500; i++) {
+        server.getDowntimeDetector().success();
+        server.getResponseTimeTracker().time(ThreadLocalRandom.current().nextLong(10, 100));
+      }
+    }
+    upstream = new UpstreamMorozov(
+        "test",
+        ApplicationConfig.toUpstreamConfigs(
+            new ApplicationConfig().setBalancingStrategyType(BalancingStrategyType.ADAPTIVE.getPublicName()),
+            UpstreamConfig.DEFAULT
+        ),
+        servers,
+        DATACENTER
+    );
+  }
+
+  @Benchmark
+  public boolean scoreTableSingleThread() {
+    return acquireAndRelease();
+  }
+
+  @Threads(8)
+  @Benchmark
+  public boolean scoreTableEightThreads() {
+    return acquireAndRelease();
+  }
+
+  @Benchmark
+  public int scanSingleThread() {
+    return PreviousSelection.getServers(servers, TRIES)[0];
+  }
+
+  @Threads(8)
+  @Benchmark
+  public int scanEightThreads() {
+    return PreviousSelection.getServers(servers, TRIES)[0];
+  }
+
+  private boolean acquireAndRelease() {
+    AdaptiveBalancingState state = new AdaptiveBalancingState(upstream, null);
+    state.acquireServer();
+    state.releaseServer(ThreadLocalRandom.current().nextLong(10, 100), false);
+    return state.isServerAvailable();
+  }
+
+  /**
+   * Selection as it was before score tables, without warm up handling and logging.
+   */
+  private static final class PreviousSelection {
+    static int[] getServers(List<Server> servers, int triesCount) {
+      int n = servers.size();
+      long[] scores = new long[n];
+      int[] ids = new int[n];
+      long min = Long.MAX_VALUE;
+      long max = 0;
+      for (int i = 0; i < n; i++) {
+        long latency = Math.max(1, servers.get(i).getResponseTimeTracker().mean());
+        scores[i] = latency;
+        min = Math.min(min, latency);
+        max = Math.max(max, latency);
+      }
+      long total = 0;
+      for (int i = 0; i < n; i++) {
+        scores[i] = Math.round((float) min * max / scores[i]) * Math.max(servers.get(i).getDowntimeDetector().successCount(), 2);
+        ids[i] = i;
+        total += scores[i];
+      }
+
+      int[] picked = new int[triesCount];
+      for (int j = n - 1, r = 0; j >= 0 && r < triesCount; j--, r++) {
+        long pick = ThreadLocalRandom.current().nextLong(total);
+        long sum = 0;
+        for (int k = 0; k <= j; k++) {
+          sum += scores[k];
+          if (pick < sum) {
+            picked[r] = ids[k];
+            total -= scores[k];
+            swap(scores, ids, k, j);
+            break;
+          }
+        }
+      }
+      return picked;
+    }
+
+    private static void swap(long[] scores, int[] ids, int a, int b) {
+      long score = scores[a];
+      scores[a] = scores[b];
+      scores[b] = score;
+      int id = ids[a];
+      ids[a] = ids[b];
+      ids[b] = id;
+    }
+  }
+}
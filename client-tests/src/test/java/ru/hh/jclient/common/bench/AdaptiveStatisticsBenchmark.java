@@ -0,0 +1,140 @@
+package ru.hh.jclient.common.bench;
+
+import java.util.concurrent.ThreadLocalRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.hh.jclient.common.balancing.DowntimeDetector;
+import ru.hh.jclient.common.balancing.ResponseTimeTracker;
+
+/**
+ * Compares lock-free {@link DowntimeDetector} and {@link ResponseTimeTracker} with the previous synchronized ring buffers
+ * when all threads report results of the same hot server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class AdaptiveStatisticsBenchmark {
+  private static final int WINDOW = 100;
+
+  private final DowntimeDetector downtimeDetector = new DowntimeDetector(WINDOW);
+  private final ResponseTimeTracker responseTimeTracker = new ResponseTimeTracker(WINDOW);
+  private final SynchronizedStatistics synchronizedStatistics = new SynchronizedStatistics(WINDOW);
+
+  public static void main(String[] args) throws RunnerException {
+    var opt = new OptionsBuilder()
+        .include(AdaptiveStatisticsBenchmark.class.getSimpleName())
+        .forks(1)
+        .build();
+    new Runner(opt).run();
+  }
+
+  @Benchmark
+  public long lockFreeSingleThread() {
+    return recordLockFree();
+  }
+
+  @Threads(8)
+  @Benchmark
+  public long lockFreeEightThreads() {
+    return recordLockFree();
+  }
+
+  @Threads(32)
+  @Benchmark
+  public long lockFreeThirtyTwoThreads() {
+    return recordLockFree();
+  }
+
+  @Benchmark
+  public long synchronizedSingleThread() {
+    return recordSynchronized();
+  }
+
+  @Threads(8)
+  @Benchmark
+  public long synchronizedEightThreads() {
+    return recordSynchronized();
+  }
+
+  @Threads(32)
+  @Benchmark
+  public long synchronizedThirtyTwoThreads() {
+    return recordSynchronized();
+  }
+
+  private long recordLockFree() {
+    long time = ThreadLocalRandom.current().nextLong(1, 1000);
+    if (time % 10 == 0) {
+      downtimeDetector.failed();
+    } else {
+      downtimeDetector.success();
+      responseTimeTracker.time(time);
+    }
+    return responseTimeTracker.mean() + downtimeDetector.successCount();
+  }
+
+  private long recordSynchronized() {
+    long time = ThreadLocalRandom.current().nextLong(1, 1000);
+    if (time % 10 == 0) {
+      synchronizedStatistics.failed();
+    } else {
+      synchronizedStatistics.success();
+      synchronizedStatistics.time(time);
+    }
+    return synchronizedStatistics.mean() + synchronizedStatistics.successCount();
+  }
+
+  /**
+   * Previous implementation of both ring buffers, kept here as a baseline.
+   */
+  private static final class SynchronizedStatistics {
+    private final int n;
+    private final int[] errors;
+    private final long[] times;
+    private volatile int errorsCount;
+    private volatile long total;
+    private int currentError;
+    private int currentTime;
+
+    SynchronizedStatistics(int n) {
+      this.n = n;
+      this.errors = new int[n];
+      this.times = new long[n];
+    }
+
+    synchronized void failed() {
+      errorsCount = errorsCount + 1 - errors[currentError];
+      errors[currentError] = 1;
+      currentError = (currentError + 1) % n;
+    }
+
+    synchronized void success() {
+      errorsCount -= errors[currentError];
+      errors[currentError] = 0;
+      currentError = (currentError + 1) % n;
+    }
+
+    // separate monitor, as detector and tracker used to be different objects
+    void time(long time) {
+      synchronized (times) {
+        total += time - times[currentTime];
+        times[currentTime] = time;
+        currentTime = (currentTime + 1) % n;
+      }
+    }
+
+    long mean() {
+      return total / n;
+    }
+
+    int successCount() {
+      return n - errorsCount;
+    }
+  }
+}
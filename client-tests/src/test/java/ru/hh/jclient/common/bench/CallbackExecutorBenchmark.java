@@ -0,0 +1,97 @@
+package ru.hh.jclient.common.bench;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.hh.jclient.common.util.VirtualThreadExecutor;
+import ru.hh.jclient.common.util.storage.MDCStorage;
+import ru.hh.jclient.common.util.storage.StorageUtils;
+import ru.hh.jclient.common.util.storage.StorageUtils.Storages;
+import ru.hh.jclient.common.util.storage.StorageUtils.Transfers;
+import ru.hh.jclient.common.util.storage.ThreadLocalStorage;
+
+/**
+ * Completion of a request promise the way HttpClientImpl does it: context is transferred to the callback executor,
+ * the promise is completed there and the caller waits for it. Compares executing in the calling thread,
+ * as {@code Runnable::run} does, a fixed pool and a virtual thread per callback.
+ * The virtual case needs JDK 21, it fails to set up on older ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class CallbackExecutorBenchmark {
+  private final ThreadLocalStorage<String> storage = new ThreadLocalStorage<>();
+  private final Storages storages = StorageUtils.build(storage, new MDCStorage());
+
+  @Param({"direct", "pool", "virtual"})
+  public String executorType;
+
+  private Executor executor;
+  private ExecutorService pool;
+
+  public static void main(String[] args) throws RunnerException {
+    var opt = new OptionsBuilder()
+        .include(CallbackExecutorBenchmark.class.getSimpleName())
+        .forks(1)
+        .addProfiler(GCProfiler.class)
+        .jvmArgsAppend("-DrootLoggingLevel=WARN")
+        .build();
+    new Runner(opt).run();
+  }
+
+  @Setup
+  public void setUp() {
+    switch (executorType) {
+      case "direct":
+        executor = Runnable::run;
+        break;
+      case "pool":
+        pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        executor = pool;
+        break;
+      case "virtual":
+        executor = VirtualThreadExecutor.create("bench-").orElseThrow(() -> new IllegalStateException("No virtual threads in this JDK"));
+        break;
+      default:
+        throw new IllegalArgumentException(executorType);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    if (pool != null) {
+      pool.shutdown();
+    }
+  }
+
+  @Benchmark
+  @Threads(8)
+  public String complete() {
+    storage.set("context");
+    Transfers transfers = storages.prepare();
+    storage.clear();
+    CompletableFuture<String> promise = new CompletableFuture<>();
+    executor.execute(() -> {
+      try {
+        transfers.perform();
+        promise.complete(storage.get());
+      } finally {
+        transfers.rollback();
+      }
+    });
+    return promise.join();
+  }
+}
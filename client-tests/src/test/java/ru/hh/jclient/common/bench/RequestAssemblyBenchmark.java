@@ -0,0 +1,96 @@
+package ru.hh.jclient.common.bench;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.DefaultAsyncHttpClientConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.MDC;
+import ru.hh.jclient.common.DefaultRequestStrategy;
+import ru.hh.jclient.common.HttpClientContext;
+import ru.hh.jclient.common.HttpClientFactory;
+import ru.hh.jclient.common.HttpHeaderNames;
+import ru.hh.jclient.common.RequestBuilder;
+import ru.hh.jclient.common.util.storage.SingletonStorage;
+import ru.hh.trace.TraceContext;
+
+/**
+ * Cost of assembling a request, from the client to the underlying http client call, without any network involved.
+ * Run with gc profiler, as {@link #main} does, to see bytes allocated per request in gc.alloc.rate.norm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RequestAssemblyBenchmark {
+  private static final Optional<String> TRACE_ID = Optional.of("trace");
+
+  @Param({"false", "true"})
+  public boolean passThroughHeaders;
+
+  private HttpClientFactory factory;
+
+  public static void main(String[] args) throws RunnerException {
+    var opt = new OptionsBuilder()
+        .include(RequestAssemblyBenchmark.class.getSimpleName())
+        .forks(1)
+        .addProfiler(GCProfiler.class)
+        .jvmArgsAppend("-DrootLoggingLevel=WARN")
+        .build();
+    new Runner(opt).run();
+  }
+
+  @Setup
+  public void setUp() {
+    // proxies rather than mocks, as mocks allocate much more per call than the request assembly itself
+    AsyncHttpClientConfig config = new DefaultAsyncHttpClientConfig.Builder().build();
+    AsyncHttpClient http = stub(AsyncHttpClient.class, method -> "getConfig".equals(method.getName()) ? config : null);
+    TraceContext traceContext = stub(TraceContext.class, method -> "getTraceId".equals(method.getName()) ? TRACE_ID : null);
+    Map<String, List<String>> headers = passThroughHeaders
+        ? Map.of(HttpHeaderNames.X_REAL_IP, List.of("127.0.0.1"), HttpHeaderNames.AUTHORIZATION, List.of("token"))
+        : Map.of();
+    factory = new HttpClientFactory(
+        http,
+        new SingletonStorage<>(new HttpClientContext(headers, Map.of(), List.of())),
+        Set.of(),
+        Runnable::run,
+        new DefaultRequestStrategy(),
+        traceContext
+    );
+    // context of an incoming request, setup is run by the benchmark thread
+    MDC.put("rid", "1234567890abcdef");
+  }
+
+  @TearDown
+  public void tearDown() {
+    MDC.clear();
+  }
+
+  private static <T> T stub(Class<T> type, Function<Method, Object> result) {
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> result.apply(method)));
+  }
+
+  @Benchmark
+  public void request(Blackhole bh) {
+    bh.consume(factory.with(new RequestBuilder("GET").setUrl("http://localhost/status").build()).expectPlainText().result());
+  }
+}
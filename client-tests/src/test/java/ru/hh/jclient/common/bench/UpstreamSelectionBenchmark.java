@@ -0,0 +1,89 @@
+package ru.hh.jclient.common.bench;
+
+import java.util.List;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.hh.jclient.common.balancing.BalancingState;
+import ru.hh.jclient.common.balancing.Server;
+import ru.hh.jclient.common.balancing.Upstream;
+import ru.hh.jclient.common.balancing.UpstreamConfig;
+import ru.hh.jclient.common.balancing.UpstreamMorozov;
+import ru.hh.jclient.common.balancing.config.ApplicationConfig;
+
+/**
+ * Measures server selection without http layer: acquire + release on a single shared upstream.
+ * Throughput should grow with thread count as long as selection does not serialize on a shared lock.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class UpstreamSelectionBenchmark {
+  private static final String DATACENTER = "test";
+
+  @Param({"8", "128"})
+  private int serversCount;
+
+  private Upstream upstream;
+
+  public static void main(String[] args) throws RunnerException {
+    var opt = new OptionsBuilder()
+        .include(UpstreamSelectionBenchmark.class.getSimpleName())
+        .forks(1)
+        .jvmArgsAppend("-DrootLoggingLevel=WARN")
+        .build();
+    new Runner(opt).run();
+  }
+
+  @Setup
+  public void setUp() {
+    List<Server> servers = IntStream
+        .range(0, serversCount)
+        .mapToObj(i -> new Server("server" + i, null, 50 + (i % 4) * 50, i % 8 == 0 ? "remote" : DATACENTER))
+        .toList();
+    upstream = new UpstreamMorozov(
+        "test",
+        ApplicationConfig.toUpstreamConfigs(new ApplicationConfig(), UpstreamConfig.DEFAULT),
+        servers,
+        DATACENTER
+    );
+  }
+
+  @Benchmark
+  public boolean singleThread() {
+    return acquireAndRelease();
+  }
+
+  @Threads(4)
+  @Benchmark
+  public boolean fourThreads() {
+    return acquireAndRelease();
+  }
+
+  @Threads(16)
+  @Benchmark
+  public boolean sixteenThreads() {
+    return acquireAndRelease();
+  }
+
+  @Threads(32)
+  @Benchmark
+  public boolean thirtyTwoThreads() {
+    return acquireAndRelease();
+  }
+
+  private boolean acquireAndRelease() {
+    BalancingState state = new BalancingState(upstream, null);
+    state.acquireServer();
+    state.releaseServer(1, false);
+    return state.isServerAvailable();
+  }
+}
@@ -0,0 +1,56 @@
+package ru.hh.jclient.common.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import ru.hh.jclient.common.util.storage.MDCStorage;
+import ru.hh.jclient.common.util.storage.StorageUtils;
+import ru.hh.jclient.common.util.storage.StorageUtils.Transfers;
+
+public class VirtualThreadExecutorTest {
+
+  @Test
+  public void shouldBeSupportedSinceJdk21() {
+    assertEquals(Runtime.version().feature() >= 21, VirtualThreadExecutor.isSupported());
+    assertEquals(VirtualThreadExecutor.isSupported(), VirtualThreadExecutor.create("test-").isPresent());
+  }
+
+  @Test
+  public void shouldRunTaskInVirtualThreadWithTransferredContext() throws Exception {
+    assumeTrue(VirtualThreadExecutor.isSupported());
+    Executor executor = VirtualThreadExecutor.create("test-").orElseThrow();
+    MDC.put("rid", "123");
+    Transfers transfers;
+    try {
+      transfers = StorageUtils.build(new MDCStorage()).prepare();
+    } finally {
+      MDC.clear();
+    }
+
+    CompletableFuture<String> rid = new CompletableFuture<>();
+    CompletableFuture<Thread> thread = new CompletableFuture<>();
+    executor.execute(() -> {
+      transfers.perform();
+      try {
+        rid.complete(MDC.get("rid"));
+        thread.complete(Thread.currentThread());
+      } finally {
+        transfers.rollback();
+      }
+    });
+
+    assertEquals("123", rid.get(5, TimeUnit.SECONDS));
+    Thread callbackThread = thread.get(5, TimeUnit.SECONDS);
+    assertNotSame(Thread.currentThread(), callbackThread);
+    assertTrue(callbackThread.getName().startsWith("test-"));
+    assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(callbackThread));
+    assertNull(MDC.get("rid"));
+  }
+}
@@ -0,0 +1,58 @@
+package ru.hh.jclient.common.util.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import org.junit.jupiter.api.Test;
+import ru.hh.jclient.common.util.storage.StorageUtils.Snapshot;
+import ru.hh.jclient.common.util.storage.StorageUtils.Storages;
+import ru.hh.jclient.common.util.storage.StorageUtils.Transfers;
+
+public class StorageUtilsTest {
+
+  @Test
+  public void snapshotShouldBeReusedForSameStorage() {
+    Storages storages = StorageUtils.build(new ThreadLocalStorage<String>());
+    ThreadLocalStorage<String> added = new ThreadLocalStorage<>();
+
+    Snapshot snapshot = storages.snapshotWith(added);
+
+    assertSame(snapshot, storages.snapshotWith(added));
+    assertNotSame(snapshot, storages.snapshotWith(new ThreadLocalStorage<String>()));
+  }
+
+  @Test
+  public void snapshotShouldIncludeAddedStorages() {
+    ThreadLocalStorage<String> first = new ThreadLocalStorage<>();
+    ThreadLocalStorage<String> second = new ThreadLocalStorage<>();
+    ThreadLocalStorage<String> added = new ThreadLocalStorage<>();
+    Storages storages = StorageUtils.build(first);
+    Snapshot before = storages.snapshotWith(added);
+    storages.add(second);
+
+    first.set("first");
+    second.set("second");
+    added.set("added");
+    Transfers transfers = storages.snapshotWith(added).prepare();
+    Transfers transfersBefore = before.prepare();
+    first.clear();
+    second.clear();
+    added.clear();
+
+    transfers.perform();
+    assertEquals("first", first.get());
+    assertEquals("second", second.get());
+    assertEquals("added", added.get());
+    transfers.rollback();
+    assertNull(first.get());
+    assertNull(second.get());
+    assertNull(added.get());
+
+    transfersBefore.perform();
+    assertEquals("first", first.get());
+    assertNull(second.get());
+    assertEquals("added", added.get());
+    transfersBefore.rollback();
+  }
+}
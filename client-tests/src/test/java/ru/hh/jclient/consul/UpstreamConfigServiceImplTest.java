@@ -140,6 +140,7 @@ public class UpstreamConfigServiceImplTest {
   public void testBalancingStrategyParsing() {
     testBalancingStrategyParsing("weighted", BalancingStrategyType.WEIGHTED);
     testBalancingStrategyParsing("adaptive", BalancingStrategyType.ADAPTIVE);
+    testBalancingStrategyParsing("power_of_two_choices", BalancingStrategyType.POWER_OF_TWO_CHOICES);
 
     testBalancingStrategyParsing("ADAPTIVE", BalancingStrategyType.WEIGHTED); // we accept only lower case -> fallback to default
     testBalancingStrategyParsing("foo_asd", BalancingStrategyType.WEIGHTED); // unknown value -> fallback to default
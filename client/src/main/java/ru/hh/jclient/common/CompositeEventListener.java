@@ -0,0 +1,196 @@
+package ru.hh.jclient.common;
+
+import jakarta.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import ru.hh.jclient.common.exception.ResponseConverterException;
+import ru.hh.jclient.common.responseconverter.TypeConverter;
+
+/**
+ * Event listeners of a client compiled into a single one: every hook is dispatched only to the listeners that override it,
+ * in the order the listeners are given. A hook is overridden if its method is declared by the listener class, its superclass
+ * or an interface extending {@link HttpClientEventListener}, default methods of the listener interface itself are never called.
+ * Listener instances of the client serve all its attempts and response processing, only a hedged attempt gets its own,
+ * as it runs along with the attempt in flight. If the hedged attempt wins, its listeners serve the rest of the request.
+ */
+final class CompositeEventListener implements HttpClientEventListener {
+  private static final HttpClientEventListener[] NONE = new HttpClientEventListener[0];
+  private static final ClassValue<Set<Hook>> OVERRIDDEN_HOOKS = new ClassValue<>() {
+    @Override
+    protected Set<Hook> computeValue(Class<?> type) {
+      Set<Hook> hooks = EnumSet.noneOf(Hook.class);
+      for (Hook hook : Hook.values()) {
+        if (hook.isOverriddenBy(type)) {
+          hooks.add(hook);
+        }
+      }
+      return hooks;
+    }
+  };
+
+  private final List<HttpClientEventListener> listeners;
+  private final HttpClientEventListener[] beforeExecute;
+  private final HttpClientEventListener[] onRequest;
+  private final HttpClientEventListener[] onRetry;
+  private final HttpClientEventListener[] onHedge;
+  private final HttpClientEventListener[] onResponse;
+  private final HttpClientEventListener[] onResponseConverted;
+  private final HttpClientEventListener[] onClientProblem;
+  private final HttpClientEventListener[] onConverterProblem;
+  private final HttpClientEventListener[] onProcessingFinished;
+  private final HttpClientEventListener[] onCreateResultProcessor;
+  private final boolean canUnwrapDebugResponse;
+
+  CompositeEventListener(List<HttpClientEventListener> listeners) {
+    this.listeners = List.copyOf(listeners);
+    beforeExecute = select(Hook.BEFORE_EXECUTE);
+    onRequest = select(Hook.ON_REQUEST);
+    onRetry = select(Hook.ON_RETRY);
+    // hedge falls back to retry by default
+    onHedge = select(Hook.ON_HEDGE, Hook.ON_RETRY);
+    onResponse = select(Hook.ON_RESPONSE);
+    onResponseConverted = select(Hook.ON_RESPONSE_CONVERTED);
+    onClientProblem = select(Hook.ON_CLIENT_PROBLEM);
+    onConverterProblem = select(Hook.ON_CONVERTER_PROBLEM);
+    onProcessingFinished = select(Hook.ON_PROCESSING_FINISHED);
+    onCreateResultProcessor = select(Hook.ON_CREATE_RESULT_PROCESSOR);
+    canUnwrapDebugResponse = this.listeners.stream().anyMatch(HttpClientEventListener::canUnwrapDebugResponse);
+  }
+
+  private HttpClientEventListener[] select(Hook... hooks) {
+    List<HttpClientEventListener> selected = new ArrayList<>(listeners.size());
+    for (HttpClientEventListener listener : listeners) {
+      if (containsAny(OVERRIDDEN_HOOKS.get(listener.getClass()), hooks)) {
+        selected.add(listener);
+      }
+    }
+    return selected.isEmpty() ? NONE : selected.toArray(NONE);
+  }
+
+  private static boolean containsAny(Set<Hook> overriddenHooks, Hook[] hooks) {
+    for (Hook hook : hooks) {
+      if (overriddenHooks.contains(hook)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void beforeExecute(HttpClient httpClient, RequestBuilder requestBuilder, Request request) {
+    for (HttpClientEventListener listener : beforeExecute) {
+      listener.beforeExecute(httpClient, requestBuilder, request);
+    }
+  }
+
+  @Override
+  public void onRequest(Request request, @Nullable Object requestBodyEntity, RequestContext context) {
+    for (HttpClientEventListener listener : onRequest) {
+      listener.onRequest(request, requestBodyEntity, context);
+    }
+  }
+
+  @Override
+  public void onRetry(Request request, @Nullable Object requestBodyEntity, int retryCount, RequestContext context) {
+    for (HttpClientEventListener listener : onRetry) {
+      listener.onRetry(request, requestBodyEntity, retryCount, context);
+    }
+  }
+
+  @Override
+  public void onHedge(Request request, @Nullable Object requestBodyEntity, int retryCount, RequestContext context) {
+    for (HttpClientEventListener listener : onHedge) {
+      listener.onHedge(request, requestBodyEntity, retryCount, context);
+    }
+  }
+
+  @Override
+  public Response onResponse(Response response) {
+    for (HttpClientEventListener listener : onResponse) {
+      response = listener.onResponse(response);
+    }
+    return response;
+  }
+
+  /**
+   * @return true if any of the listeners can unwrap debug envelope, asked once when listeners are compiled
+   */
+  @Override
+  public boolean canUnwrapDebugResponse() {
+    return canUnwrapDebugResponse;
+  }
+
+  @Override
+  public void onResponseConverted(@Nullable Object result) {
+    for (HttpClientEventListener listener : onResponseConverted) {
+      listener.onResponseConverted(result);
+    }
+  }
+
+  @Override
+  public void onClientProblem(Throwable t) {
+    for (HttpClientEventListener listener : onClientProblem) {
+      listener.onClientProblem(t);
+    }
+  }
+
+  @Override
+  public void onConverterProblem(ResponseConverterException e) {
+    for (HttpClientEventListener listener : onConverterProblem) {
+      listener.onConverterProblem(e);
+    }
+  }
+
+  @Override
+  public void onProcessingFinished() {
+    for (HttpClientEventListener listener : onProcessingFinished) {
+      listener.onProcessingFinished();
+    }
+  }
+
+  @Override
+  public <T> void onCreateResultProcessor(HttpClient httpClient, TypeConverter<T> converter) {
+    for (HttpClientEventListener listener : onCreateResultProcessor) {
+      listener.onCreateResultProcessor(httpClient, converter);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "CompositeEventListener{" + listeners + '}';
+  }
+
+  private enum Hook {
+    BEFORE_EXECUTE("beforeExecute", HttpClient.class, RequestBuilder.class, Request.class),
+    ON_REQUEST("onRequest", Request.class, Object.class, RequestContext.class),
+    ON_RETRY("onRetry", Request.class, Object.class, int.class, RequestContext.class),
+    ON_HEDGE("onHedge", Request.class, Object.class, int.class, RequestContext.class),
+    ON_RESPONSE("onResponse", Response.class),
+    ON_RESPONSE_CONVERTED("onResponseConverted", Object.class),
+    ON_CLIENT_PROBLEM("onClientProblem", Throwable.class),
+    ON_CONVERTER_PROBLEM("onConverterProblem", ResponseConverterException.class),
+    ON_PROCESSING_FINISHED("onProcessingFinished"),
+    ON_CREATE_RESULT_PROCESSOR("onCreateResultProcessor", HttpClient.class, TypeConverter.class);
+
+    private final String methodName;
+    private final Class<?>[] parameterTypes;
+
+    Hook(String methodName, Class<?>... parameterTypes) {
+      this.methodName = methodName;
+      this.parameterTypes = parameterTypes;
+    }
+
+    /**
+     * A listener that can not be inspected is assumed to override the hook, so it is never skipped by mistake.
+     */
+    private boolean isOverriddenBy(Class<?> type) {
+      try {
+        return type.getMethod(methodName, parameterTypes).getDeclaringClass() != HttpClientEventListener.class;
+      } catch (NoSuchMethodException | SecurityException e) {
+        return true;
+      }
+    }
+  }
+}
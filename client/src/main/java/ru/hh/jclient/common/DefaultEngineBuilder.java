@@ -14,9 +14,11 @@ public class DefaultEngineBuilder implements RequestEngineBuilder<DefaultEngineB
   public RequestEngine build(Request request, RequestStrategy.RequestExecutor executor) {
     return () -> {
       var requestTimeout = request.getRequestTimeout() > 0 ? request.getRequestTimeout() : executor.getDefaultRequestTimeoutMs();
-      var requestWithTimeout = new RequestBuilder(request)
-          .setRequestTimeout(ofNullable(timeoutMultiplier).map(multiplier -> (int) (multiplier * requestTimeout)).orElse(requestTimeout))
-          .build();
+      int timeout = ofNullable(timeoutMultiplier).map(multiplier -> (int) (multiplier * requestTimeout)).orElse(requestTimeout);
+      // the executor copies the request anyway, so it is copied here only if the timeout has to be changed
+      var requestWithTimeout = timeout == request.getRequestTimeout()
+          ? request
+          : new RequestBuilder(request).setRequestTimeout(timeout).build();
       return executor
           .executeRequest(requestWithTimeout, 0, RequestContext.EMPTY_CONTEXT)
           .thenApply(RequestResponseWrapper::getResponse);
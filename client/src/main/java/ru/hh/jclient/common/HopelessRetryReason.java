@@ -0,0 +1,15 @@
+package ru.hh.jclient.common;
+
+/**
+ * Limit that leaves a retry too little time to get a response, see {@link Monitoring#countHopelessRetry}.
+ */
+public enum HopelessRetryReason {
+  /**
+   * time left of request timeouts of the balanced request
+   */
+  REQUEST_TIMEOUT,
+  /**
+   * time left until deadline of the incoming request
+   */
+  DEADLINE
+}
@@ -32,7 +32,7 @@ import ru.hh.jclient.common.responseconverter.VoidConverter;
 import ru.hh.jclient.common.responseconverter.XmlConverter;
 import ru.hh.jclient.common.util.SimpleRange;
 import ru.hh.jclient.common.util.storage.Storage;
-import ru.hh.jclient.common.util.storage.StorageUtils.Storages;
+import ru.hh.jclient.common.util.storage.StorageUtils.Snapshot;
 
 public abstract class HttpClient {
   public static final SimpleRange OK_RANGE = new SimpleRange(0, 399);
@@ -41,9 +41,9 @@ public abstract class HttpClient {
   private final AsyncHttpClient http;
   private final HttpClientContext httpClientContext;
   private final Set<String> customHostsWithSession;
-  private final Storages storages;
+  private final Snapshot storages;
   private final RequestEngineBuilder<?> requestEngineBuilder;
-  private List<HttpClientEventListener> eventListeners;
+  private volatile CompositeEventListener eventListener;
 
   private Request request;
   @Nullable
@@ -78,8 +78,8 @@ public abstract class HttpClient {
             " c) HttpClientContextThreadLocalSupplier.addContext(...) is not being called from corresponding (servlet) filter during " +
             " request handling - ensure proper filter is set up correctly."));
 
-    storages = httpClientContext.getStorages().copy().add(contextSupplier);
-    this.eventListeners = httpClientContext.getEventListenerSuppliers().stream().map(Supplier::get).collect(toList());
+    storages = httpClientContext.getStorages().snapshotWith(contextSupplier);
+    this.eventListener = createEventListener();
   }
 
   /**
@@ -342,12 +342,26 @@ public abstract class HttpClient {
     return httpClientContext;
   }
 
-  Storages getStorages() {
+  Snapshot getStorages() {
     return storages;
   }
 
-  List<HttpClientEventListener> getEventListeners() {
-    return eventListeners;
+  CompositeEventListener getEventListener() {
+    return eventListener;
+  }
+
+  /**
+   * @return listeners of their own for a hedged attempt, as it runs in another thread along with the attempt in flight
+   */
+  CompositeEventListener createEventListener() {
+    return new CompositeEventListener(httpClientContext.getEventListenerSuppliers().stream().map(Supplier::get).collect(toList()));
+  }
+
+  /**
+   * Passes the rest of the request, retries and response processing, to listeners of a hedged attempt that won.
+   */
+  void setEventListener(CompositeEventListener eventListener) {
+    this.eventListener = eventListener;
   }
 
   Optional<?> getRequestBodyEntity() {
@@ -366,10 +380,6 @@ public abstract class HttpClient {
     expectedMediaTypesForErrors = mediaTypes;
   }
 
-  void setEventListeners(List<HttpClientEventListener> eventListeners) {
-    this.eventListeners = eventListeners;
-  }
-
   boolean useReadOnlyReplica() {
     return readOnlyReplica;
   }
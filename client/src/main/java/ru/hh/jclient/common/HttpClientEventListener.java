@@ -10,6 +10,10 @@ import ru.hh.jclient.common.responseconverter.TypeConverter;
  *
  * <p>Previously this functionality was provided by {@code RequestDebug}. The interface was renamed to
  * {@code HttpClientEventListener}. All existing implementations can migrate by simply renaming the reference.</p>
+ *
+ * <p>Instances are got from suppliers of the context once per client and serve all its attempts. A hedged attempt runs
+ * along with the attempt in flight, so it gets instances of its own, which serve the rest of the request if it wins.
+ * An instance is therefore not called concurrently by attempts of the same request.</p>
  */
 public interface HttpClientEventListener {
   HttpClientEventListener DISABLED_EVENT_LISTENER = new HttpClientEventListener(){};
@@ -33,6 +37,16 @@ public interface HttpClientEventListener {
   default void onRetry(Request request, @Nullable Object requestBodyEntity, int retryCount, RequestContext context) {
   }
 
+  /**
+   * Called before sending a hedged attempt, which runs along with the attempt in flight instead of following it.
+   * Falls back to {@link #onRetry} for listeners not telling hedged attempts from retries.
+   *
+   * @param retryCount attempts sent before this one, the one in flight included
+   */
+  default void onHedge(Request request, @Nullable Object requestBodyEntity, int retryCount, RequestContext context) {
+    onRetry(request, requestBodyEntity, retryCount, context);
+  }
+
   /** Called once response is fully parsed; may return modified response. */
   default Response onResponse(Response response) {
     return response;
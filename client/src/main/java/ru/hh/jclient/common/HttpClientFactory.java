@@ -5,6 +5,7 @@ import java.util.Map;
 import static java.util.Objects.requireNonNull;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.function.UnaryOperator;
 import org.asynchttpclient.AsyncHttpClient;
@@ -14,7 +15,7 @@ import ru.hh.trace.TraceContext;
 
 public class HttpClientFactory {
 
-  private final AsyncHttpClient http;
+  private final UpstreamHttpClients httpClients;
   private final Storage<HttpClientContext> contextSupplier;
   private final Set<String> customHostsWithSession;
   private final Executor callbackExecutor;
@@ -52,7 +53,19 @@ public class HttpClientFactory {
       RequestStrategy<?> requestStrategy,
       TraceContext traceContext
   ) {
-    this.http = requireNonNull(http, "http must not be null");
+    this(new UpstreamHttpClients(requireNonNull(http, "http must not be null"), false), contextSupplier, customHostsWithSession,
+        callbackExecutor, requestStrategy, traceContext);
+  }
+
+  HttpClientFactory(
+      UpstreamHttpClients httpClients,
+      Storage<HttpClientContext> contextSupplier,
+      Set<String> customHostsWithSession,
+      Executor callbackExecutor,
+      RequestStrategy<?> requestStrategy,
+      TraceContext traceContext
+  ) {
+    this.httpClients = requireNonNull(httpClients, "httpClients must not be null");
     this.contextSupplier = requireNonNull(contextSupplier, "contextSupplier must not be null");
     this.customHostsWithSession = requireNonNull(customHostsWithSession, "hostsWithSession must not be null");
     this.callbackExecutor = requireNonNull(callbackExecutor, "callbackExecutor must not be null");
@@ -67,7 +80,7 @@ public class HttpClientFactory {
    */
   public HttpClient with(Request request) {
     return new HttpClientImpl(
-        http,
+        httpClients,
         requireNonNull(request, "request must not be null"),
         requestStrategy,
         contextSupplier,
@@ -77,6 +90,17 @@ public class HttpClientFactory {
     );
   }
 
+  /**
+   * Opens a connection to the server ahead of requests, it stays in the pool the context selects.
+   * The request is sent as is: request strategy, event listeners and the incoming request context are not involved.
+   *
+   * @param uri of the server, HEAD request is sent to it
+   * @return completed when the server responds, whatever the status is, or exceptionally if there is no connection
+   */
+  public CompletableFuture<Void> prewarmConnection(Uri uri, RequestContext context) {
+    return httpClients.prewarm(uri, context);
+  }
+
   /**
    * @return returns copy (within case insensitive map) of headers contained within global (incoming) request
    */
@@ -87,11 +111,15 @@ public class HttpClientFactory {
   }
 
   AsyncHttpClient getHttp() {
-    return http;
+    return httpClients.getDefault();
+  }
+
+  UpstreamHttpClients getHttpClients() {
+    return httpClients;
   }
 
   MetricsProvider getMetricProvider() {
-    return MetricsProviderFactory.from(getHttp());
+    return MetricsProviderFactory.from(httpClients);
   }
 
   Storage<HttpClientContext> getContextSupplier() {
@@ -108,7 +136,7 @@ public class HttpClientFactory {
   @SuppressWarnings({"unchecked", "rawtypes"})
   public HttpClientFactory createCustomizedCopy(UnaryOperator<? extends RequestEngineBuilder> mapper) {
     return new HttpClientFactory(
-        this.http,
+        this.httpClients,
         this.contextSupplier,
         this.customHostsWithSession,
         this.callbackExecutor,
@@ -12,14 +12,20 @@ import org.asynchttpclient.AsyncHttpClient;
 import org.asynchttpclient.AsyncHttpClientConfig;
 import org.asynchttpclient.DefaultAsyncHttpClient;
 import org.asynchttpclient.DefaultAsyncHttpClientConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import ru.hh.jclient.common.metrics.MetricsConsumer;
 import ru.hh.jclient.common.util.MDCCopy;
+import ru.hh.jclient.common.util.VirtualThreadExecutor;
 import ru.hh.jclient.common.util.storage.Storage;
 import ru.hh.trace.TraceContext;
 
 public class HttpClientFactoryBuilder {
   public static final double DEFAULT_TIMEOUT_MULTIPLIER = 1;
   public static final String DEFAULT_BALANCING_REQUESTS_LOG_LEVEL = "DEBUG";
+  public static final String DEFAULT_PREWARM_PATH = "/";
+  private static final String VIRTUAL_CALLBACK_THREAD_NAME_PREFIX = "jclient-callback-";
+  private static final Logger LOGGER = LoggerFactory.getLogger(HttpClientFactoryBuilder.class);
 
   private final TraceContext traceContext;
   private DefaultAsyncHttpClientConfig.Builder configBuilder;
@@ -30,6 +36,10 @@ public class HttpClientFactoryBuilder {
   private double timeoutMultiplier = DEFAULT_TIMEOUT_MULTIPLIER;
   private String balancingRequestsLogLevel = DEFAULT_BALANCING_REQUESTS_LOG_LEVEL;
   private MetricsConsumer metricsConsumer;
+  private boolean upstreamConnectionPools;
+  private int prewarmConnectionsPerServer;
+  private String prewarmPath = DEFAULT_PREWARM_PATH;
+  private boolean virtualThreadCallbacks;
 
   public HttpClientFactoryBuilder(Storage<HttpClientContext> contextSupplier, TraceContext traceContext) {
     this.configBuilder = defaultConfigBuilder();
@@ -46,6 +56,10 @@ public class HttpClientFactoryBuilder {
         prototype.timeoutMultiplier,
         prototype.balancingRequestsLogLevel,
         prototype.metricsConsumer,
+        prototype.upstreamConnectionPools,
+        prototype.prewarmConnectionsPerServer,
+        prototype.prewarmPath,
+        prototype.virtualThreadCallbacks,
         prototype.traceContext
     );
   }
@@ -59,6 +73,10 @@ public class HttpClientFactoryBuilder {
       double timeoutMultiplier,
       String balancingRequestsLogLevel,
       MetricsConsumer metricsConsumer,
+      boolean upstreamConnectionPools,
+      int prewarmConnectionsPerServer,
+      String prewarmPath,
+      boolean virtualThreadCallbacks,
       TraceContext traceContext
   ) {
     this.configBuilder = configBuilder;
@@ -69,6 +87,10 @@ public class HttpClientFactoryBuilder {
     this.timeoutMultiplier = timeoutMultiplier;
     this.balancingRequestsLogLevel = balancingRequestsLogLevel;
     this.metricsConsumer = metricsConsumer;
+    this.upstreamConnectionPools = upstreamConnectionPools;
+    this.prewarmConnectionsPerServer = prewarmConnectionsPerServer;
+    this.prewarmPath = prewarmPath;
+    this.virtualThreadCallbacks = virtualThreadCallbacks;
     this.traceContext = traceContext;
   }
 
@@ -117,6 +139,17 @@ public class HttpClientFactoryBuilder {
     ofNullable(properties.getProperty(ConfigKeys.IO_THREADS_COUNT))
         .map(Integer::parseInt)
         .ifPresent(target.configBuilder::setIoThreadsCount);
+    ofNullable(properties.getProperty(ConfigKeys.UPSTREAM_CONNECTION_POOLS))
+        .map(Boolean::parseBoolean)
+        .ifPresent(upstreamConnectionPools -> target.upstreamConnectionPools = upstreamConnectionPools);
+    ofNullable(properties.getProperty(ConfigKeys.PREWARM_CONNECTIONS_PER_SERVER))
+        .map(Integer::parseInt)
+        .ifPresent(prewarmConnectionsPerServer -> target.prewarmConnectionsPerServer = prewarmConnectionsPerServer);
+    ofNullable(properties.getProperty(ConfigKeys.PREWARM_PATH))
+        .ifPresent(prewarmPath -> target.prewarmPath = prewarmPath);
+    ofNullable(properties.getProperty(ConfigKeys.VIRTUAL_THREAD_CALLBACKS))
+        .map(Boolean::parseBoolean)
+        .ifPresent(virtualThreadCallbacks -> target.virtualThreadCallbacks = virtualThreadCallbacks);
 
     return target;
   }
@@ -189,23 +222,77 @@ public class HttpClientFactoryBuilder {
     return target;
   }
 
+  /**
+   * Gives every upstream its own connection pool with connect timeout, max connections per host and idle timeout of its config.
+   * Otherwise requests of all upstreams share one pool configured by this builder.
+   * Max connections of this builder limit upstream pools together, requests without upstream config keep a pool of their own
+   * with the same limit.
+   */
+  public HttpClientFactoryBuilder withUpstreamConnectionPools(boolean enabled) {
+    var target = getCopy();
+    target.upstreamConnectionPools = enabled;
+    return target;
+  }
+
+  /**
+   * Opens keep-alive connections to servers of the request strategy in the background, when the factory is built
+   * and whenever new servers appear, so that the first requests to them do not pay for handshakes.
+   * See {@link RequestStrategy#startConnectionPrewarm}, the default strategy knows no servers.
+   *
+   * @param connectionsPerServer 0 disables prewarming
+   * @param path HEAD request to it opens a connection, response status does not matter
+   */
+  public HttpClientFactoryBuilder withConnectionPrewarm(int connectionsPerServer, String path) {
+    var target = getCopy();
+    target.prewarmConnectionsPerServer = connectionsPerServer;
+    target.prewarmPath = path;
+    return target;
+  }
+
+  /**
+   * Completes requests on a new virtual thread each, so that callbacks neither block netty threads nor need a sized pool.
+   * Context of the request is installed in the virtual thread and dies with it.
+   * Virtual threads are looked up at runtime: without them the executor of {@link #withCallbackExecutor} is used.
+   */
+  public HttpClientFactoryBuilder withVirtualThreadCallbacks(boolean enabled) {
+    var target = getCopy();
+    target.virtualThreadCallbacks = enabled;
+    return target;
+  }
+
   public HttpClientFactory build() {
+    RequestStrategy<? extends RequestEngineBuilder<?>> strategy = initStrategy();
     HttpClientFactory httpClientFactory = new HttpClientFactory(
-        buildClient(),
+        new UpstreamHttpClients(buildClient(), upstreamConnectionPools),
         contextSupplier,
         ofNullable(customHostsWithSession).map(Set::copyOf).orElseGet(Set::of),
-        callbackExecutor,
-        initStrategy(),
+        getCallbackExecutor(),
+        strategy,
         traceContext
     );
     ofNullable(metricsConsumer).ifPresent(consumer -> consumer.accept(httpClientFactory.getMetricProvider()));
+    if (prewarmConnectionsPerServer > 0) {
+      strategy.startConnectionPrewarm(httpClientFactory, prewarmConnectionsPerServer, prewarmPath, timeoutMultiplier);
+    }
     return httpClientFactory;
   }
 
+  private Executor getCallbackExecutor() {
+    if (!virtualThreadCallbacks) {
+      return callbackExecutor;
+    }
+    return VirtualThreadExecutor.create(VIRTUAL_CALLBACK_THREAD_NAME_PREFIX).orElseGet(() -> {
+      LOGGER.warn("Virtual threads are not available, callbacks are executed by {}", callbackExecutor);
+      return callbackExecutor;
+    });
+  }
+
   private AsyncHttpClient buildClient() {
-    AsyncHttpClientConfig clientConfig = applyTimeoutMultiplier(configBuilder)
+    AsyncHttpClientConfig config = applyTimeoutMultiplier(configBuilder)
         .setCookieStore(null)
         .build();
+    // upstream clients are copies of the default one, so they take connections from the same limit
+    AsyncHttpClientConfig clientConfig = upstreamConnectionPools ? UpstreamHttpClients.withSharedMaxConnections(config) : config;
 
     return MDCCopy.doWithoutContext(() -> new DefaultAsyncHttpClient(clientConfig));
   }
@@ -288,5 +375,9 @@ public class HttpClientFactoryBuilder {
     public static final String ACCEPT_ANY_CERTIFICATE = "acceptAnyCertificate";
     public static final String KEEP_ALIVE = "keepAlive";
     public static final String IO_THREADS_COUNT = "ioThreadsCount";
+    public static final String UPSTREAM_CONNECTION_POOLS = "upstreamConnectionPools";
+    public static final String PREWARM_CONNECTIONS_PER_SERVER = "prewarmConnectionsPerServer";
+    public static final String PREWARM_PATH = "prewarmPath";
+    public static final String VIRTUAL_THREAD_CALLBACKS = "virtualThreadCallbacks";
   }
 }
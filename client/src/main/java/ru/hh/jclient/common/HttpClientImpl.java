@@ -1,5 +1,6 @@
 package ru.hh.jclient.common;
 
+import jakarta.annotation.Nullable;
 import static java.lang.Boolean.TRUE;
 import java.time.Instant;
 import static java.time.Instant.now;
@@ -9,11 +10,8 @@ import java.util.Set;
 import static java.util.Set.of;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
-import java.util.function.Supplier;
-import java.util.stream.Collectors;
-import static java.util.stream.Collectors.toList;
 import org.asynchttpclient.AsyncCompletionHandler;
-import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.ListenableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.hh.deadline.context.DeadlineContext;
@@ -55,11 +53,14 @@ class HttpClientImpl extends HttpClient {
       X_HH_PROFESSIONAL_ROLES_MODE
   );
 
+  private final UpstreamHttpClients httpClients;
   private final Executor callbackExecutor;
   private final TraceContext traceContext;
+  private volatile RequestHeaders requestHeaders;
+  private volatile MDCCopy mdcCopy;
 
   HttpClientImpl(
-      AsyncHttpClient http,
+      UpstreamHttpClients httpClients,
       Request request,
       RequestStrategy<? extends RequestEngineBuilder<?>> requestStrategy,
       Storage<HttpClientContext> contextSupplier,
@@ -67,32 +68,52 @@ class HttpClientImpl extends HttpClient {
       Executor callbackExecutor,
       TraceContext traceContext
   ) {
-    super(http, request, requestStrategy, contextSupplier, customHostsWithSession);
+    super(httpClients.getDefault(), request, requestStrategy, contextSupplier, customHostsWithSession);
+    this.httpClients = httpClients;
     this.callbackExecutor = callbackExecutor;
     this.traceContext = traceContext;
   }
 
   @Override
   CompletableFuture<RequestResponseWrapper> executeRequest(Request originalRequest, int retryCount, RequestContext requestContext) {
-    RequestBuilder requestBuilder = new RequestBuilder(originalRequest);
-    getEventListeners().forEach(eventListener -> eventListener.beforeExecute(this, requestBuilder, originalRequest));
+    return executeRequest(originalRequest, new RequestBuilder(originalRequest), retryCount, requestContext, getEventListener(), false);
+  }
+
+  /**
+   * @param requestBuilder builder of the attempt, either a copy of the original request or the one the request is built with:
+   * headers are added to it and the request is built once more, not copied
+   */
+  private CompletableFuture<RequestResponseWrapper> executeRequest(
+      Request originalRequest,
+      RequestBuilder requestBuilder,
+      int retryCount,
+      RequestContext requestContext,
+      HttpClientEventListener eventListener,
+      boolean hedged
+  ) {
+    eventListener.beforeExecute(this, requestBuilder, originalRequest);
 
     CompletableFuture<RequestResponseWrapper> promise = new CompletableFuture<>();
     Request request = addHeadersAndParams(requestBuilder, originalRequest, requestContext);
 
     try {
-      if (retryCount > 0) {
+      if (hedged) {
+        LOGGER.debug("HTTP_CLIENT_HEDGE {}: {} {}", retryCount, request.getMethod(), request.getUri());
+        eventListener.onHedge(request, getRequestBodyEntity().orElse(null), retryCount, requestContext);
+      } else if (retryCount > 0) {
         LOGGER.debug("HTTP_CLIENT_RETRY {}: {} {}", retryCount, request.getMethod(), request.getUri());
-        getEventListeners().forEach(eventListener -> eventListener.onRetry(request, getRequestBodyEntity().orElse(null), retryCount, requestContext));
+        eventListener.onRetry(request, getRequestBodyEntity().orElse(null), retryCount, requestContext);
       } else {
         LOGGER.debug("HTTP_CLIENT_START: Starting {} {}", request.getMethod(), request.getUri());
-        getEventListeners().forEach(eventListener -> eventListener.onRequest(request, getRequestBodyEntity().orElse(null), requestContext));
+        eventListener.onRequest(request, getRequestBodyEntity().orElse(null), requestContext);
       }
     } catch (RuntimeException e) {
       LOGGER.error("Request debug failed during event processing, request: {} {}", request.getMethod(), request.getUri(), e);
     }
 
-    LOGGER.trace("HTTP_CLIENT_REQUEST: {} ", request.toStringExtended());
+    if (LOGGER.isTraceEnabled()) {
+      LOGGER.trace("HTTP_CLIENT_REQUEST: {} ", request.toStringExtended());
+    }
 
     Transfers transfers = getStorages().prepare();
     TraceContextTransfer traceContextTransfer = traceContext.getTransfer();
@@ -100,34 +121,34 @@ class HttpClientImpl extends HttpClient {
         promise,
         request,
         now(),
-        getEventListeners(),
+        getMdcCopy(),
+        eventListener,
         transfers,
         traceContextTransfer,
         callbackExecutor,
         getContext().getDeadlineContext()
     );
-    getHttp().executeRequest(request.getDelegate(), handler);
+    ListenableFuture<RequestResponseWrapper> future = httpClients.get(requestContext).executeRequest(request.getDelegate(), handler);
+    if (future != null) {
+      // cancelled attempt, e.g. a hedged one that lost, should not keep the connection busy
+      promise.whenComplete((wrapper, throwable) -> {
+        if (promise.isCancelled()) {
+          future.cancel(true);
+        }
+      });
+    }
 
     return promise;
   }
 
   private Request addHeadersAndParams(RequestBuilder requestBuilder, Request request, RequestContext context) {
+    RequestHeaders requestHeaders = getRequestHeaders(request);
+
     // compute headers. Headers from context are used as base, with headers from request overriding any existing values
     HttpHeaders headers = new HttpHeaders();
-    if (!isExternalRequest()) {
-      PASS_THROUGH_HEADERS
-          .stream()
-          .filter(getContext().getHeaders()::containsKey)
-          .forEach(h -> headers.add(h, getContext().getHeaders().get(h)));
-    }
-
-    boolean canUnwrapDebugResponse = getEventListeners().stream().anyMatch(HttpClientEventListener::canUnwrapDebugResponse);
-    boolean enableDebug = !isNoDebug() && !isExternalRequest() && getContext().isDebugMode() && canUnwrapDebugResponse;
+    headers.add(requestHeaders.passThroughHeaders);
 
-    // debug header is passed through by default, but should be removed if debug is not enabled
-    if (!enableDebug) {
-      headers.remove(X_HH_DEBUG);
-    }
+    boolean enableDebug = !isNoDebug() && !isExternalRequest() && getContext().isDebugMode() && getEventListener().canUnwrapDebugResponse();
 
     headers.add(request.getHeaders());
 
@@ -140,25 +161,12 @@ class HttpClientImpl extends HttpClient {
 
     traceContext.getTraceId().ifPresent(traceId -> requestBuilder.setHeader(HttpHeaderNames.X_REQUEST_ID, traceId));
 
-    if (!headers.contains(ACCEPT) && !getExpectedMediaTypes().isEmpty()) {
-      requestBuilder.addHeader(ACCEPT, String.join(",", getExpectedMediaTypes()));
+    if (requestHeaders.accept != null && !headers.contains(ACCEPT)) {
+      requestBuilder.addHeader(ACCEPT, requestHeaders.accept);
     }
 
-    if (!areAllowedMediaTypesForResponseAndErrorCompatible()) {
-      LOGGER.warn(
-          "Different MediaTypes for successful answer and for errors on {} {} s: {} e: {} ",
-          request.getMethod(),
-          request.getUri(),
-          getExpectedMediaTypes().stream().map(Object::toString).collect(Collectors.joining(",")),
-          getExpectedMediaTypesForErrors().stream().map(Object::toString).collect(Collectors.joining(","))
-      );
-    }
-
-    if (!headers.contains(X_HH_ACCEPT_ERRORS) && !getExpectedMediaTypesForErrors().isEmpty()) {
-      requestBuilder.addHeader(
-          X_HH_ACCEPT_ERRORS,
-          getExpectedMediaTypesForErrors().stream().map(Object::toString).collect(Collectors.joining(","))
-      );
+    if (requestHeaders.acceptErrors != null && !headers.contains(X_HH_ACCEPT_ERRORS)) {
+      requestBuilder.addHeader(X_HH_ACCEPT_ERRORS, requestHeaders.acceptErrors);
     }
 
     // add readonly param
@@ -167,7 +175,7 @@ class HttpClientImpl extends HttpClient {
     }
 
     // add both debug param and debug header (for backward compatibility)
-    if (enableDebug && !isExternalRequest()) {
+    if (enableDebug) {
       requestBuilder.setHeader(X_HH_DEBUG, "true");
       requestBuilder.addQueryParam(HttpParams.DEBUG, HttpParams.getDebugValue());
     }
@@ -180,13 +188,74 @@ class HttpClientImpl extends HttpClient {
         throw new IllegalStateException("Debug header in request when debug is disabled");
       }
 
-      if (request.getQueryParams().stream().anyMatch(param -> param.getName().equals(HttpParams.DEBUG))) {
-        throw new IllegalStateException("Debug param in request when debug is disabled");
+      for (org.asynchttpclient.Param param : request.getDelegate().getQueryParams()) {
+        if (param.getName().equals(HttpParams.DEBUG)) {
+          throw new IllegalStateException("Debug param in request when debug is disabled");
+        }
       }
     }
     return requestBuilder.build();
   }
 
+  /**
+   * Headers of the incoming request and expected media types do not change between attempts, so they are computed
+   * by the first attempt and reused by retries and hedges.
+   */
+  private RequestHeaders getRequestHeaders(Request request) {
+    RequestHeaders headers = requestHeaders;
+    if (headers == null) {
+      if (!areAllowedMediaTypesForResponseAndErrorCompatible()) {
+        LOGGER.warn(
+            "Different MediaTypes for successful answer and for errors on {} {} s: {} e: {} ",
+            request.getMethod(),
+            request.getUri(),
+            String.join(",", getExpectedMediaTypes()),
+            String.join(",", getExpectedMediaTypesForErrors())
+        );
+      }
+      headers = new RequestHeaders(
+          getPassThroughHeaders(),
+          getExpectedMediaTypes().isEmpty() ? null : String.join(",", getExpectedMediaTypes()),
+          getExpectedMediaTypesForErrors().isEmpty() ? null : String.join(",", getExpectedMediaTypesForErrors())
+      );
+      requestHeaders = headers;
+    }
+    return headers;
+  }
+
+  /**
+   * Debug header is not passed through: it is either removed or replaced with a fresh one if debug is enabled.
+   */
+  private HttpHeaders getPassThroughHeaders() {
+    HttpHeaders headers = new HttpHeaders();
+    if (isExternalRequest()) {
+      return headers;
+    }
+    for (String name : PASS_THROUGH_HEADERS) {
+      List<String> values = getContext().getHeaders().get(name);
+      if (values != null && !X_HH_DEBUG.equals(name)) {
+        headers.add(name, values);
+      }
+    }
+    return headers;
+  }
+
+  /**
+   * MDC is needed for debug logging of responses only. It is copied once by the first attempt, in the thread of the caller,
+   * and shared by retries and hedges, which may be sent from other threads.
+   */
+  private MDCCopy getMdcCopy() {
+    if (!LOGGER.isDebugEnabled()) {
+      return MDCCopy.EMPTY;
+    }
+    MDCCopy copy = mdcCopy;
+    if (copy == null) {
+      copy = MDCCopy.capture();
+      mdcCopy = copy;
+    }
+    return copy;
+  }
+
   private boolean areAllowedMediaTypesForResponseAndErrorCompatible() {
     if (getExpectedMediaTypes().isEmpty() || getExpectedMediaTypesForErrors().isEmpty()) {
       return true;
@@ -202,30 +271,75 @@ class HttpClientImpl extends HttpClient {
   @Override
   RequestExecutor createRequestExecutor() {
     return new RequestStrategy.RequestExecutor() {
+      private volatile CompositeEventListener hedgeEventListener;
+
       @Override
       public CompletableFuture<RequestResponseWrapper> executeRequest(Request request, int retryCount, RequestContext requestContext) {
         logErrorIfTraceIdIsNotPresent();
         try (Scope ignored = traceContext.generateAndSetTraceIdIfNotPresent()) {
-          if (retryCount > 0) {
-            // due to retry possibly performed in another thread
-            // TODO do not re-get suppliers here
-            setEventListeners(getContext().getEventListenerSuppliers().stream().map(Supplier::get).collect(toList()));
-          }
           return HttpClientImpl.this.executeRequest(request, retryCount, requestContext);
         }
       }
 
+      @Override
+      public CompletableFuture<RequestResponseWrapper> executeRequest(
+          RequestBuilder requestBuilder,
+          int retryCount,
+          RequestContext requestContext
+      ) {
+        logErrorIfTraceIdIsNotPresent();
+        try (Scope ignored = traceContext.generateAndSetTraceIdIfNotPresent()) {
+          Request request = requestBuilder.build();
+          return HttpClientImpl.this.executeRequest(request, requestBuilder, retryCount, requestContext, getEventListener(), false);
+        }
+      }
+
+      @Override
+      public CompletableFuture<RequestResponseWrapper> executeHedgedRequest(Request request, int retryCount, RequestContext requestContext) {
+        return executeHedgedRequest(request, new RequestBuilder(request), retryCount, requestContext);
+      }
+
+      @Override
+      public CompletableFuture<RequestResponseWrapper> executeHedgedRequest(
+          RequestBuilder requestBuilder,
+          int retryCount,
+          RequestContext requestContext
+      ) {
+        return executeHedgedRequest(requestBuilder.build(), requestBuilder, retryCount, requestContext);
+      }
+
+      private CompletableFuture<RequestResponseWrapper> executeHedgedRequest(
+          Request originalRequest,
+          RequestBuilder requestBuilder,
+          int retryCount,
+          RequestContext requestContext
+      ) {
+        logErrorIfTraceIdIsNotPresent();
+        try (Scope ignored = traceContext.generateAndSetTraceIdIfNotPresent()) {
+          // listeners of the client are busy with the attempt in flight
+          CompositeEventListener eventListener = createEventListener();
+          hedgeEventListener = eventListener;
+          return HttpClientImpl.this.executeRequest(originalRequest, requestBuilder, retryCount, requestContext, eventListener, true);
+        }
+      }
+
+      @Override
+      public void onHedgedAttemptWon() {
+        CompositeEventListener eventListener = hedgeEventListener;
+        if (eventListener != null) {
+          setEventListener(eventListener);
+        }
+      }
+
       @Override
       public CompletableFuture<RequestResponseWrapper> handleFailFastResponse(Request request, RequestContext requestContext, Response response) {
         logErrorIfTraceIdIsNotPresent();
         try (Scope ignored = traceContext.generateAndSetTraceIdIfNotPresent()) {
-          for (HttpClientEventListener eventListener : getEventListeners()) {
-            eventListener.onRequest(request, getRequestBodyEntity().orElse(null), requestContext);
-          }
+          getEventListener().onRequest(request, getRequestBodyEntity().orElse(null), requestContext);
           Transfers transfers = getStorages().prepare();
           TraceContextTransfer traceContextTransfer = traceContext.getTransfer();
           CompletableFuture<RequestResponseWrapper> promise = new CompletableFuture<>();
-          proceedWithResponse(request, response, 0, getEventListeners(), transfers, traceContextTransfer, promise, callbackExecutor);
+          proceedWithResponse(request, response, 0, getEventListener(), transfers, traceContextTransfer, promise, callbackExecutor);
           return promise;
         }
       }
@@ -235,6 +349,27 @@ class HttpClientImpl extends HttpClient {
         return getHttp().getConfig().getRequestTimeout();
       }
 
+      @Override
+      public void executeDelayed(Runnable task, long delayMillis) {
+        Transfers transfers = getStorages().prepare();
+        TraceContextTransfer traceContextTransfer = traceContext.getTransfer();
+        // not the callback executor: it may run tasks inline, and then the task would run in the thread of the timer
+        httpClients.schedule(() -> {
+          try (Scope ignored = traceContext.propagate(traceContextTransfer)) {
+            transfers.perform();
+            task.run();
+          } finally {
+            transfers.rollback();
+          }
+        }, delayMillis);
+      }
+
+      @Override
+      public long getDeadlineTimeLeftMs() {
+        DeadlineContext deadlineContext = getContext().getDeadlineContext();
+        return deadlineContext == null ? -1 : deadlineContext.getTimeLeft();
+      }
+
       private void logErrorIfTraceIdIsNotPresent() {
         if (traceContext.getTraceId().isEmpty()) {
           IllegalStateException error = new IllegalStateException(NULL_TRACE_ID_ERROR_MESSAGE);
@@ -248,16 +383,14 @@ class HttpClientImpl extends HttpClient {
       Request request,
       Response response,
       long responseTimeMillis,
-      List<HttpClientEventListener> eventListeners,
+      HttpClientEventListener eventListener,
       Transfers contextTransfers,
       TraceContextTransfer traceContextTransfer,
       CompletableFuture<RequestResponseWrapper> promise,
       Executor callbackExecutor
   ) {
 
-    for (HttpClientEventListener eventListener : eventListeners) {
-      response = eventListener.onResponse(response);
-    }
+    response = eventListener.onResponse(response);
     RequestResponseWrapper wrapper = new RequestResponseWrapper(request, response, responseTimeMillis);
     // complete promise in a separate thread to avoid blocking caller (AsyncHttpClient) thread
     callbackExecutor.execute(() -> {
@@ -279,7 +412,7 @@ class HttpClientImpl extends HttpClient {
     private final CompletableFuture<RequestResponseWrapper> promise;
     private final Request request;
     private final Instant requestStart;
-    private final List<HttpClientEventListener> eventListeners;
+    private final HttpClientEventListener eventListener;
     private final Transfers contextTransfers;
     private final TraceContextTransfer traceContextTransfer;
     private final Executor callbackExecutor;
@@ -289,7 +422,8 @@ class HttpClientImpl extends HttpClient {
         CompletableFuture<RequestResponseWrapper> promise,
         Request request,
         Instant requestStart,
-        List<HttpClientEventListener> eventListeners,
+        MDCCopy mdcCopy,
+        HttpClientEventListener eventListener,
         Transfers contextTransfers,
         TraceContextTransfer traceContextTransfer,
         Executor callbackExecutor,
@@ -297,10 +431,10 @@ class HttpClientImpl extends HttpClient {
     ) {
       this.requestStart = requestStart;
       this.deadlineContext = deadlineContext;
-      mdcCopy = MDCCopy.capture();
+      this.mdcCopy = mdcCopy;
       this.promise = promise;
       this.request = request;
-      this.eventListeners = List.copyOf(eventListeners);
+      this.eventListener = eventListener;
       this.contextTransfers = contextTransfers;
       this.traceContextTransfer = traceContextTransfer;
       this.callbackExecutor = callbackExecutor;
@@ -312,9 +446,11 @@ class HttpClientImpl extends HttpClient {
       String responseStatusText = response.getStatusText();
 
       long timeToLastByteMillis = getTimeToLastByte();
-      mdcCopy.doInContext(() -> LOGGER.debug("HTTP_CLIENT_RESPONSE: {} {} in {} millis on {} {}",
-          responseStatusCode, responseStatusText, timeToLastByteMillis, request.getMethod(), request.getUri()
-      ));
+      if (LOGGER.isDebugEnabled()) {
+        mdcCopy.doInContext(() -> LOGGER.debug("HTTP_CLIENT_RESPONSE: {} {} in {} millis on {} {}",
+            responseStatusCode, responseStatusText, timeToLastByteMillis, request.getMethod(), request.getUri()
+        ));
+      }
 
       return proceedWithResponse(response, timeToLastByteMillis);
     }
@@ -325,23 +461,25 @@ class HttpClientImpl extends HttpClient {
         org.asynchttpclient.Response response = TransportExceptionMapper.map(t, request.getUri(), deadlineContext);
         long timeToLastByteMillis = getTimeToLastByte();
 
-        mdcCopy.doInContext(
-            () -> LOGGER.debug(
-                "HTTP_CLIENT_ERROR: client error after {} millis on {} {}: {}{}",
-                timeToLastByteMillis,
-                request.getMethod(),
-                request.getUri(),
-                t,
-                response != null ? " (mapped to " + response.getStatusCode() + "), proceeding" : ", propagating"
-            ));
+        if (LOGGER.isDebugEnabled()) {
+          mdcCopy.doInContext(
+              () -> LOGGER.debug(
+                  "HTTP_CLIENT_ERROR: client error after {} millis on {} {}: {}{}",
+                  timeToLastByteMillis,
+                  request.getMethod(),
+                  request.getUri(),
+                  t,
+                  response != null ? " (mapped to " + response.getStatusCode() + "), proceeding" : ", propagating"
+              ));
+        }
 
         if (response != null) {
           proceedWithResponse(response, timeToLastByteMillis);
           return;
         }
 
-        eventListeners.forEach(eventListener -> eventListener.onClientProblem(t));
-        eventListeners.forEach(HttpClientEventListener::onProcessingFinished);
+        eventListener.onClientProblem(t);
+        eventListener.onProcessingFinished();
         completeExceptionally(t);
       } catch (RuntimeException e) {
         // `e` is probably an infrastructure exception and needs more attention than `t`
@@ -355,7 +493,7 @@ class HttpClientImpl extends HttpClient {
           request,
           new Response(response),
           responseTimeMillis,
-          eventListeners,
+          eventListener,
           contextTransfers,
           traceContextTransfer,
           promise,
@@ -379,9 +517,13 @@ class HttpClientImpl extends HttpClient {
         // complete promise in a separate thread to avoid blocking caller (AsyncHttpClient) thread
         callbackExecutor.execute(completeExceptionallyTask);
       } catch (RuntimeException e) {
-        mdcCopy.doInContext(() ->
-            LOGGER.error("Failed to complete promise exceptionally in a separate thread, using AsyncHttpClient thread", e)
-        );
+        // MDC is captured only if debug is enabled, so request is logged explicitly
+        mdcCopy.doInContext(() -> LOGGER.error(
+            "Failed to complete promise exceptionally in a separate thread, using AsyncHttpClient thread, on {} {}",
+            request.getMethod(),
+            request.getUri(),
+            e
+        ));
 
         completeExceptionallyTask.run();
       }
@@ -391,4 +533,18 @@ class HttpClientImpl extends HttpClient {
       return requestStart.until(now(), ChronoUnit.MILLIS);
     }
   }
+
+  private static final class RequestHeaders {
+    private final HttpHeaders passThroughHeaders;
+    @Nullable
+    private final String accept;
+    @Nullable
+    private final String acceptErrors;
+
+    private RequestHeaders(HttpHeaders passThroughHeaders, @Nullable String accept, @Nullable String acceptErrors) {
+      this.passThroughHeaders = passThroughHeaders;
+      this.accept = accept;
+      this.acceptErrors = acceptErrors;
+    }
+  }
 }
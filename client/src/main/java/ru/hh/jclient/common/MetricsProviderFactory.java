@@ -5,10 +5,15 @@ import io.netty.buffer.ByteBufAllocatorMetric;
 import io.netty.buffer.PoolArenaMetric;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.PooledByteBufAllocatorMetric;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import static java.util.Optional.ofNullable;
 import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.ClientStats;
 import ru.hh.jclient.common.metrics.MetricsProvider;
 
 public final class MetricsProviderFactory {
@@ -17,20 +22,43 @@ public final class MetricsProviderFactory {
   }
 
   public static MetricsProvider from(AsyncHttpClient httpClient) {
+    return from(new UpstreamHttpClients(httpClient, false));
+  }
+
+  /**
+   * Totals include connections of every pool. Upstream clients share the allocator of the default one.
+   */
+  static MetricsProvider from(UpstreamHttpClients httpClients) {
+    AsyncHttpClient httpClient = httpClients.getDefault();
     return new MetricsProvider() {
       @Override
       public Supplier<Long> totalConnectionCount() {
-        return () -> httpClient.getClientStats().getTotalConnectionCount();
+        return () -> sum(httpClients.getAll(), ClientStats::getTotalConnectionCount);
       }
 
       @Override
       public Supplier<Long> totalActiveConnectionCount() {
-        return () -> httpClient.getClientStats().getTotalActiveConnectionCount();
+        return () -> sum(httpClients.getAll(), ClientStats::getTotalActiveConnectionCount);
       }
 
       @Override
       public Supplier<Long> totalIdleConnectionCount() {
-        return () -> httpClient.getClientStats().getTotalIdleConnectionCount();
+        return () -> sum(httpClients.getAll(), ClientStats::getTotalIdleConnectionCount);
+      }
+
+      @Override
+      public Supplier<Map<String, Long>> connectionCountByUpstream() {
+        return () -> sumByUpstream(httpClients, ClientStats::getTotalConnectionCount);
+      }
+
+      @Override
+      public Supplier<Map<String, Long>> activeConnectionCountByUpstream() {
+        return () -> sumByUpstream(httpClients, ClientStats::getTotalActiveConnectionCount);
+      }
+
+      @Override
+      public Supplier<Map<String, Long>> idleConnectionCountByUpstream() {
+        return () -> sumByUpstream(httpClients, ClientStats::getTotalIdleConnectionCount);
       }
 
       @Override
@@ -77,6 +105,16 @@ public final class MetricsProviderFactory {
     };
   }
 
+  private static long sum(Collection<AsyncHttpClient> httpClients, ToLongFunction<ClientStats> metric) {
+    return httpClients.stream().mapToLong(httpClient -> metric.applyAsLong(httpClient.getClientStats())).sum();
+  }
+
+  private static Map<String, Long> sumByUpstream(UpstreamHttpClients httpClients, ToLongFunction<ClientStats> metric) {
+    Map<String, Long> result = new HashMap<>();
+    httpClients.getClientsByUpstream().forEach((upstreamName, clients) -> result.put(upstreamName, sum(clients, metric)));
+    return result;
+  }
+
   private static Optional<PooledByteBufAllocatorMetric> getAllocatorMetrics(AsyncHttpClient asyncHttpClient) {
     ByteBufAllocator allocator = ofNullable(asyncHttpClient.getConfig().getAllocator()).orElse(ByteBufAllocator.DEFAULT);
     if (allocator instanceof PooledByteBufAllocator) {
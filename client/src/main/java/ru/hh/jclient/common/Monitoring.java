@@ -26,4 +26,67 @@ public interface Monitoring {
   );
 
   void countUpdateIgnore(String upstreamName, String serverDatacenter);
+
+  /**
+   * Called once per request that fired a hedged attempt, when the first of the attempts completes.
+   * Hedged attempts are not passed to {@link #countRequest}, only the winning one is.
+   *
+   * @param serverAddress address of the hedged attempt server
+   * @param hedgeWon whether the hedged attempt completed first
+   */
+  default void countHedgedRequest(String upstreamName, String serverDatacenter, String serverAddress, boolean hedgeWon) {
+  }
+
+  /**
+   * Called when a retry or a hedged attempt is not fired because retry budget of the upstream is exhausted.
+   *
+   * @param serverAddress address of the server whose response would have been retried
+   */
+  default void countRetryBudgetExhausted(String upstreamName, String serverDatacenter, String serverAddress) {
+  }
+
+  /**
+   * Called along with {@link #countRequest} for every response of a server of another datacenter,
+   * either a spilled over request or a retry after local servers.
+   *
+   * @param spilloverShare share of requests the upstream currently sends to other datacenters because local servers are short of headroom
+   */
+  default void countCrossDcRequest(String upstreamName, String serverDatacenter, String serverAddress, float spilloverShare) {
+  }
+
+  /**
+   * Called when adaptive concurrency limit of the upstream changes.
+   */
+  default void countConcurrencyLimit(String upstreamName, int limit) {
+  }
+
+  /**
+   * Called when a request is not sent because the upstream already has as many requests in flight as its concurrency limit allows.
+   */
+  default void countConcurrencyLimitExceeded(String upstreamName, int limit) {
+  }
+
+  /**
+   * Called when a retry is not fired because time left for the request is shorter than expected response time of servers it may go to.
+   *
+   * @param serverAddress address of the server whose response would have been retried
+   * @param reason which limit left too little time
+   */
+  default void countHopelessRetry(String upstreamName, String serverDatacenter, String serverAddress, HopelessRetryReason reason) {
+  }
+
+  /**
+   * Called for every connection opened to a new server ahead of requests.
+   *
+   * @param timeMillis from sending the prewarm request to its response or failure
+   * @param isError whether the connection could not be opened
+   */
+  default void countConnectionPrewarm(
+      String upstreamName,
+      String serverDatacenter,
+      String serverAddress,
+      long timeMillis,
+      boolean isError
+  ) {
+  }
 }
@@ -7,16 +7,28 @@ public class RequestContext {
   private final String destinationDatacenter;
   private final String destinationHost;
   private final boolean isSessionRequired;
+  private final TransportConfig transportConfig;
 
   public RequestContext(String upstreamName, String destinationDatacenter, String destinationHost) {
     this(upstreamName, destinationDatacenter, destinationHost, false);
   }
 
   public RequestContext(String upstreamName, String destinationDatacenter, String destinationHost, boolean isSessionRequired) {
+    this(upstreamName, destinationDatacenter, destinationHost, isSessionRequired, null);
+  }
+
+  public RequestContext(
+      String upstreamName,
+      String destinationDatacenter,
+      String destinationHost,
+      boolean isSessionRequired,
+      TransportConfig transportConfig
+  ) {
     this.upstreamName = upstreamName;
     this.destinationDatacenter = destinationDatacenter;
     this.destinationHost = destinationHost;
     this.isSessionRequired = isSessionRequired;
+    this.transportConfig = transportConfig;
   }
 
   public String getUpstreamName() {
@@ -35,6 +47,13 @@ public class RequestContext {
     return isSessionRequired;
   }
 
+  /**
+   * @return connection settings of the upstream, null if the request should use the ones of the factory
+   */
+  public TransportConfig getTransportConfig() {
+    return transportConfig;
+  }
+
   @Override
   public String toString() {
     return "RequestContext{" +
@@ -42,6 +61,7 @@ public class RequestContext {
            ", destinationDatacenter='" + destinationDatacenter + '\'' +
            ", destinationHost='" + destinationHost + '\'' +
            ", isSessionRequired=" + isSessionRequired +
+           ", transportConfig=" + transportConfig +
            '}';
   }
 }
@@ -1,6 +1,7 @@
 package ru.hh.jclient.common;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.UnaryOperator;
 
 public interface RequestStrategy<REB extends RequestEngineBuilder<REB>> {
@@ -8,9 +9,82 @@ public interface RequestStrategy<REB extends RequestEngineBuilder<REB>> {
   REB createRequestEngineBuilder(HttpClient client);
   RequestStrategy<REB> createCustomizedCopy(UnaryOperator<REB> configAction);
 
+  /**
+   * Called once the factory is built if connection prewarming is enabled. A strategy that knows servers it sends requests to
+   * should open connections to them with {@link HttpClientFactory#prewarmConnection} now and whenever new servers appear.
+   *
+   * @param connectionsPerServer connections to open to every server
+   * @param path of the prewarm request
+   * @param timeoutMultiplier the one requests are sent with, connect timeout of the prewarm request should be scaled by it as well
+   */
+  default void startConnectionPrewarm(
+      HttpClientFactory httpClientFactory,
+      int connectionsPerServer,
+      String path,
+      double timeoutMultiplier
+  ) {
+  }
+
   interface RequestExecutor {
     CompletableFuture<RequestResponseWrapper> executeRequest(Request request, int retryCount, RequestContext context);
     CompletableFuture<RequestResponseWrapper> handleFailFastResponse(Request request, RequestContext requestContext, Response response);
     int getDefaultRequestTimeoutMs();
+
+    /**
+     * Sends a hedged attempt, which runs along with the attempt in flight instead of following it.
+     *
+     * @param retryCount attempts sent before this one, the one in flight included
+     */
+    default CompletableFuture<RequestResponseWrapper> executeHedgedRequest(Request request, int retryCount, RequestContext context) {
+      return executeRequest(request, retryCount, context);
+    }
+
+    /**
+     * Sends an attempt whose request is not built yet. The builder belongs to the attempt, so executors adding headers
+     * of their own should add them to it rather than copy the built request.
+     */
+    default CompletableFuture<RequestResponseWrapper> executeRequest(
+        RequestBuilder requestBuilder,
+        int retryCount,
+        RequestContext context
+    ) {
+      return executeRequest(requestBuilder.build(), retryCount, context);
+    }
+
+    /**
+     * @see #executeHedgedRequest(Request, int, RequestContext)
+     * @see #executeRequest(RequestBuilder, int, RequestContext)
+     */
+    default CompletableFuture<RequestResponseWrapper> executeHedgedRequest(
+        RequestBuilder requestBuilder,
+        int retryCount,
+        RequestContext context
+    ) {
+      return executeHedgedRequest(requestBuilder.build(), retryCount, context);
+    }
+
+    /**
+     * Called when the response of the last hedged attempt becomes the response of the attempt it was sent along with.
+     * Executors giving hedged attempts listeners of their own should pass the rest of the request to them.
+     */
+    default void onHedgedAttemptWon() {
+    }
+
+    /**
+     * Runs the task after the delay. Used to start hedged attempts.
+     * The default implementation runs it in the common pool and propagates nothing: no storages, trace context or MDC
+     * of the calling thread. Executors that send requests with a context should override it and install the context
+     * for the task, as response callbacks are run.
+     */
+    default void executeDelayed(Runnable task, long delayMillis) {
+      CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS).execute(task);
+    }
+
+    /**
+     * @return time left until deadline of the incoming request, negative if it has none
+     */
+    default long getDeadlineTimeLeftMs() {
+      return -1;
+    }
   }
 }
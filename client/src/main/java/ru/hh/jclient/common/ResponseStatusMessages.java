@@ -9,6 +9,7 @@ public class ResponseStatusMessages {
   public static final String CHANNEL_OUTPUT_SHUTDOWN_MESSAGE = "Channel output shutdown";
   public static final String SERVER_TIMEOUT_MESSAGE = "Server timeout";
   public static final String INSUFFICIENT_TIMEOUT_MESSAGE = "Insufficient timeout";
+  public static final String CONCURRENCY_LIMIT_EXCEEDED_MESSAGE = "Concurrency limit exceeded";
 
   private ResponseStatusMessages() {
   }
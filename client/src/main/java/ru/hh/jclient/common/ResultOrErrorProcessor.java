@@ -86,13 +86,13 @@ public class ResultOrErrorProcessor<T, E> {
         value = responseProcessor.getConverter().converterFunction().apply(response).get();
         errorValue = Optional.empty();
 
-        responseProcessor.getHttpClient().getEventListeners().forEach(eventListener -> eventListener.onResponseConverted(value.orElse(null)));
+        responseProcessor.getHttpClient().getEventListener().onResponseConverted(value.orElse(null));
       }
       else {
         value = Optional.empty();
         errorValue = parseError(response);
 
-        responseProcessor.getHttpClient().getEventListeners().forEach(eventListener -> eventListener.onResponseConverted(errorValue.orElse(null)));
+        responseProcessor.getHttpClient().getEventListener().onResponseConverted(errorValue.orElse(null));
       }
       return new ResultOrErrorWithResponse<>(value.orElse(null), errorValue.orElse(null), response);
     }
@@ -101,11 +101,11 @@ public class ResultOrErrorProcessor<T, E> {
     }
     catch (Exception e) {
       ResponseConverterException rce = new ResponseConverterException("Failed to convert response", e);
-      responseProcessor.getHttpClient().getEventListeners().forEach(eventListener -> eventListener.onConverterProblem(rce));
+      responseProcessor.getHttpClient().getEventListener().onConverterProblem(rce);
       throw rce;
     }
     finally {
-      responseProcessor.getHttpClient().getEventListeners().forEach(HttpClientEventListener::onProcessingFinished);
+      responseProcessor.getHttpClient().getEventListener().onProcessingFinished();
     }
   }
 
@@ -0,0 +1,59 @@
+package ru.hh.jclient.common;
+
+import java.util.Objects;
+
+/**
+ * Connection settings requested for an upstream, a value not greater than 0 means the one of the factory.
+ * Requests with equal settings to the same upstream share a connection pool, see {@link UpstreamHttpClients}.
+ */
+public final class TransportConfig {
+  private final int connectTimeoutMs;
+  private final int maxConnectionsPerHost;
+  private final int pooledConnectionIdleTimeoutMs;
+
+  public TransportConfig(int connectTimeoutMs, int maxConnectionsPerHost, int pooledConnectionIdleTimeoutMs) {
+    this.connectTimeoutMs = connectTimeoutMs;
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+    this.pooledConnectionIdleTimeoutMs = pooledConnectionIdleTimeoutMs;
+  }
+
+  public int getConnectTimeoutMs() {
+    return connectTimeoutMs;
+  }
+
+  public int getMaxConnectionsPerHost() {
+    return maxConnectionsPerHost;
+  }
+
+  public int getPooledConnectionIdleTimeoutMs() {
+    return pooledConnectionIdleTimeoutMs;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    TransportConfig that = (TransportConfig) o;
+    return connectTimeoutMs == that.connectTimeoutMs
+        && maxConnectionsPerHost == that.maxConnectionsPerHost
+        && pooledConnectionIdleTimeoutMs == that.pooledConnectionIdleTimeoutMs;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(connectTimeoutMs, maxConnectionsPerHost, pooledConnectionIdleTimeoutMs);
+  }
+
+  @Override
+  public String toString() {
+    return "TransportConfig{" +
+        "connectTimeoutMs=" + connectTimeoutMs +
+        ", maxConnectionsPerHost=" + maxConnectionsPerHost +
+        ", pooledConnectionIdleTimeoutMs=" + pooledConnectionIdleTimeoutMs +
+        '}';
+  }
+}
@@ -0,0 +1,309 @@
+package ru.hh.jclient.common;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static java.util.Objects.requireNonNull;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.asynchttpclient.AsyncCompletionHandler;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.DefaultAsyncHttpClient;
+import org.asynchttpclient.DefaultAsyncHttpClientConfig;
+import org.asynchttpclient.RequestBuilder;
+import org.asynchttpclient.Response;
+import org.asynchttpclient.exception.TooManyConnectionsException;
+import org.asynchttpclient.netty.channel.ConnectionSemaphore;
+import org.asynchttpclient.netty.channel.ConnectionSemaphoreFactory;
+import org.asynchttpclient.netty.channel.DefaultConnectionSemaphoreFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.hh.jclient.common.util.MDCCopy;
+
+/**
+ * Clients of the factory: the default one and the ones created for upstreams with {@link RequestContext#getTransportConfig()}.
+ * Every upstream gets its own client per transport config, so it has its own channel pool and a slow upstream can exhaust
+ * connections of its own only. Upstream clients are copies of the default one sharing its event loop group and its timer,
+ * if the default config has none, they share one timer of their own, which is the only thread they add.
+ * The same timer schedules delayed tasks of the factory, such as hedged attempts.
+ * Max connections of the default config limit connections of the default client and all upstream clients together,
+ * if the default client is built with {@link #withSharedMaxConnections}. A default client built with a limit of its own
+ * keeps it, and upstream clients share another one of the same size.
+ * They live as long as the factory, unused connections are closed by idle timeout.
+ */
+class UpstreamHttpClients {
+  private static final Logger LOGGER = LoggerFactory.getLogger(UpstreamHttpClients.class);
+
+  private final AsyncHttpClient defaultClient;
+  private final boolean enabled;
+  /**
+   * immutable maps replaced under lock, as there are a few configs per upstream
+   */
+  private final Map<String, Map<TransportConfig, AsyncHttpClient>> clientsByUpstream = new ConcurrentHashMap<>();
+  private Timer timer;
+  private ConnectionSemaphoreFactory sharedLimitSemaphoreFactory;
+
+  /**
+   * @param enabled false to send every request with the default client
+   */
+  UpstreamHttpClients(AsyncHttpClient defaultClient, boolean enabled) {
+    this.defaultClient = requireNonNull(defaultClient, "defaultClient must not be null");
+    this.enabled = enabled;
+  }
+
+  /**
+   * @return the config with max connections turned into a limit shared by clients the default client is copied into,
+   * or the config itself if connections are not limited
+   */
+  static AsyncHttpClientConfig withSharedMaxConnections(AsyncHttpClientConfig config) {
+    if (config.getMaxConnections() <= 0) {
+      return config;
+    }
+    // per client semaphore keeps max connections per host only, the total one is shared
+    return new DefaultAsyncHttpClientConfig.Builder(config)
+        .setMaxConnections(-1)
+        .setConnectionSemaphoreFactory(new SharedLimitConnectionSemaphoreFactory(config))
+        .build();
+  }
+
+  AsyncHttpClient getDefault() {
+    return defaultClient;
+  }
+
+  /**
+   * @return client of the upstream with its transport config, the default one if the context has none
+   * or the default client can not be copied
+   */
+  AsyncHttpClient get(RequestContext context) {
+    TransportConfig transportConfig = context.getTransportConfig();
+    if (!enabled || transportConfig == null || context.getUpstreamName() == null || !(defaultClient instanceof DefaultAsyncHttpClient)) {
+      return defaultClient;
+    }
+    AsyncHttpClient client = clientsByUpstream.getOrDefault(context.getUpstreamName(), Map.of()).get(transportConfig);
+    return client != null ? client : createClient(context.getUpstreamName(), transportConfig);
+  }
+
+  /**
+   * @return clients created for upstreams, the default one is not included
+   */
+  Map<String, Collection<AsyncHttpClient>> getClientsByUpstream() {
+    Map<String, Collection<AsyncHttpClient>> clients = new HashMap<>();
+    clientsByUpstream.forEach((upstreamName, clientByConfig) -> clients.put(upstreamName, clientByConfig.values()));
+    return clients;
+  }
+
+  /**
+   * @return the default client and clients created for upstreams
+   */
+  List<AsyncHttpClient> getAll() {
+    List<AsyncHttpClient> clients = new ArrayList<>();
+    clients.add(defaultClient);
+    clientsByUpstream.values().forEach(clientByConfig -> clients.addAll(clientByConfig.values()));
+    return clients;
+  }
+
+  /**
+   * Runs the task after the delay in the common pool. The timer thread only hands the task over, so a slow task delays
+   * no other timeouts, and the task is kept off the event loops, which serve the channels of all clients.
+   */
+  void schedule(Runnable task, long delayMillis) {
+    getTimer(defaultClient.getConfig()).newTimeout(timeout -> ForkJoinPool.commonPool().execute(task), delayMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Sends HEAD request with the client of the context, so that the connection stays in its pool for requests to come.
+   *
+   * @return completed when the response is received, whatever its status is, or exceptionally if there is no connection
+   */
+  CompletableFuture<Void> prewarm(Uri uri, RequestContext context) {
+    CompletableFuture<Void> result = new CompletableFuture<>();
+    org.asynchttpclient.Request request = new RequestBuilder("HEAD").setUri(uri.getDelegate()).build();
+    get(context).executeRequest(request, new AsyncCompletionHandler<Void>() {
+      @Override
+      public Void onCompleted(Response response) {
+        result.complete(null);
+        return null;
+      }
+
+      @Override
+      public void onThrowable(Throwable t) {
+        result.completeExceptionally(t);
+      }
+    });
+    return result;
+  }
+
+  private synchronized AsyncHttpClient createClient(String upstreamName, TransportConfig transportConfig) {
+    Map<TransportConfig, AsyncHttpClient> clientByConfig = clientsByUpstream.getOrDefault(upstreamName, Map.of());
+    AsyncHttpClient client = clientByConfig.get(transportConfig);
+    if (client != null) {
+      return client;
+    }
+    AsyncHttpClientConfig config = createConfig(transportConfig);
+    client = MDCCopy.doWithoutContext(() -> new DefaultAsyncHttpClient(config));
+    Map<TransportConfig, AsyncHttpClient> newClientByConfig = new HashMap<>(clientByConfig);
+    newClientByConfig.put(transportConfig, client);
+    clientsByUpstream.put(upstreamName, Map.copyOf(newClientByConfig));
+    LOGGER.info("Created connection pool of upstream {} with {}", upstreamName, transportConfig);
+    return client;
+  }
+
+  private AsyncHttpClientConfig createConfig(TransportConfig transportConfig) {
+    AsyncHttpClientConfig defaultConfig = defaultClient.getConfig();
+    DefaultAsyncHttpClientConfig.Builder builder = new DefaultAsyncHttpClientConfig.Builder(defaultConfig)
+        .setEventLoopGroup(((DefaultAsyncHttpClient) defaultClient).getEventLoopGroup())
+        .setNettyTimer(getTimer(defaultConfig));
+    ConnectionSemaphoreFactory semaphoreFactory = getSharedLimitSemaphoreFactory(defaultConfig);
+    if (semaphoreFactory != null) {
+      builder.setMaxConnections(-1).setConnectionSemaphoreFactory(semaphoreFactory);
+    }
+    if (transportConfig.getConnectTimeoutMs() > 0) {
+      builder.setConnectTimeout(transportConfig.getConnectTimeoutMs());
+    }
+    if (transportConfig.getMaxConnectionsPerHost() > 0) {
+      builder.setMaxConnectionsPerHost(transportConfig.getMaxConnectionsPerHost());
+    }
+    if (transportConfig.getPooledConnectionIdleTimeoutMs() > 0) {
+      builder.setPooledConnectionIdleTimeout(transportConfig.getPooledConnectionIdleTimeoutMs());
+    }
+    return builder.build();
+  }
+
+  private synchronized Timer getTimer(AsyncHttpClientConfig defaultConfig) {
+    if (defaultConfig.getNettyTimer() != null) {
+      return defaultConfig.getNettyTimer();
+    }
+    if (timer == null) {
+      ThreadFactory threadFactory = defaultConfig.getThreadFactory() != null
+          ? defaultConfig.getThreadFactory()
+          : new DefaultThreadFactory(defaultConfig.getThreadPoolName() + "-upstream-timer");
+      timer = new HashedWheelTimer(
+          threadFactory,
+          defaultConfig.getHashedWheelTimerTickDuration(),
+          TimeUnit.MILLISECONDS,
+          defaultConfig.getHashedWheelTimerSize()
+      );
+    }
+    return timer;
+  }
+
+  /**
+   * @return factory of the limit shared with the default client, or of the one upstream clients share among themselves
+   * if the default client has a limit of its own, null if connections are not limited
+   */
+  private ConnectionSemaphoreFactory getSharedLimitSemaphoreFactory(AsyncHttpClientConfig defaultConfig) {
+    if (defaultConfig.getConnectionSemaphoreFactory() instanceof SharedLimitConnectionSemaphoreFactory factory) {
+      return factory;
+    }
+    if (defaultConfig.getMaxConnections() <= 0) {
+      return null;
+    }
+    if (sharedLimitSemaphoreFactory == null) {
+      sharedLimitSemaphoreFactory = new SharedLimitConnectionSemaphoreFactory(defaultConfig);
+    }
+    return sharedLimitSemaphoreFactory;
+  }
+
+  /**
+   * Closes clients created for upstreams, the default one is closed by its owner.
+   */
+  synchronized void close() {
+    clientsByUpstream.values().forEach(clientByConfig -> clientByConfig.values().forEach(client -> {
+      try {
+        client.close();
+      } catch (Exception e) {
+        LOGGER.warn("Failed to close upstream client", e);
+      }
+    }));
+    clientsByUpstream.clear();
+    if (timer != null) {
+      timer.stop();
+      timer = null;
+    }
+    sharedLimitSemaphoreFactory = null;
+  }
+
+  /**
+   * Creates semaphores of clients taking connections from one limit.
+   */
+  private static final class SharedLimitConnectionSemaphoreFactory implements ConnectionSemaphoreFactory {
+    private final Semaphore sharedFreeChannels;
+    private final int maxConnections;
+    private final ConnectionSemaphoreFactory clientSemaphoreFactory;
+
+    private SharedLimitConnectionSemaphoreFactory(AsyncHttpClientConfig config) {
+      this.sharedFreeChannels = new Semaphore(config.getMaxConnections());
+      this.maxConnections = config.getMaxConnections();
+      this.clientSemaphoreFactory = config.getConnectionSemaphoreFactory() != null
+          ? config.getConnectionSemaphoreFactory()
+          : new DefaultConnectionSemaphoreFactory();
+    }
+
+    @Override
+    public ConnectionSemaphore newConnectionSemaphore(AsyncHttpClientConfig config) {
+      return new SharedLimitConnectionSemaphore(
+          sharedFreeChannels,
+          maxConnections,
+          Math.max(0, config.getAcquireFreeChannelTimeout()),
+          clientSemaphoreFactory.newConnectionSemaphore(config)
+      );
+    }
+  }
+
+  /**
+   * Takes a connection from the shared limit, then from the limit of the client itself.
+   */
+  private static final class SharedLimitConnectionSemaphore implements ConnectionSemaphore {
+    private final Semaphore sharedFreeChannels;
+    private final int maxConnections;
+    private final int acquireTimeoutMs;
+    private final ConnectionSemaphore clientSemaphore;
+
+    private SharedLimitConnectionSemaphore(
+        Semaphore sharedFreeChannels,
+        int maxConnections,
+        int acquireTimeoutMs,
+        ConnectionSemaphore clientSemaphore
+    ) {
+      this.sharedFreeChannels = sharedFreeChannels;
+      this.maxConnections = maxConnections;
+      this.acquireTimeoutMs = acquireTimeoutMs;
+      this.clientSemaphore = clientSemaphore;
+    }
+
+    @Override
+    public void acquireChannelLock(Object partitionKey) throws IOException {
+      try {
+        if (!sharedFreeChannels.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+          throw new TooManyConnectionsException(maxConnections);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for a free connection", e);
+      }
+      try {
+        clientSemaphore.acquireChannelLock(partitionKey);
+      } catch (IOException | RuntimeException e) {
+        sharedFreeChannels.release();
+        throw e;
+      }
+    }
+
+    @Override
+    public void releaseChannelLock(Object partitionKey) {
+      clientSemaphore.releaseChannelLock(partitionKey);
+      sharedFreeChannels.release();
+    }
+  }
+}
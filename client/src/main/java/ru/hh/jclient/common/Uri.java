@@ -21,7 +21,11 @@ public class Uri {
   }
 
   public Uri(String scheme, String userInfo, String host, int port, String path, String query) {
-    this.delegate = new org.asynchttpclient.uri.Uri(scheme, userInfo, host, port, path, query, null);
+    this(scheme, userInfo, host, port, path, query, null);
+  }
+
+  public Uri(String scheme, String userInfo, String host, int port, String path, String query, String fragment) {
+    this.delegate = new org.asynchttpclient.uri.Uri(scheme, userInfo, host, port, path, query, fragment);
   }
 
   public String getQuery() {
@@ -32,6 +36,10 @@ public class Uri {
     return delegate.getPath();
   }
 
+  public String getFragment() {
+    return delegate.getFragment();
+  }
+
   public String getUserInfo() {
     return delegate.getUserInfo();
   }
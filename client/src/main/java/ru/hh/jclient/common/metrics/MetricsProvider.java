@@ -1,5 +1,6 @@
 package ru.hh.jclient.common.metrics;
 
+import java.util.Map;
 import java.util.function.Supplier;
 
 public interface MetricsProvider {
@@ -7,6 +8,21 @@ public interface MetricsProvider {
   Supplier<Long> totalActiveConnectionCount();
   Supplier<Long> totalIdleConnectionCount();
 
+  /**
+   * connections of upstreams with their own pools by upstream name, the ones of the shared pool are counted by totals only
+   */
+  default Supplier<Map<String, Long>> connectionCountByUpstream() {
+    return Map::of;
+  }
+
+  default Supplier<Map<String, Long>> activeConnectionCountByUpstream() {
+    return Map::of;
+  }
+
+  default Supplier<Map<String, Long>> idleConnectionCountByUpstream() {
+    return Map::of;
+  }
+
   Supplier<Long> usedDirectMemory();
   Supplier<Long> usedHeapMemory();
 
@@ -0,0 +1,57 @@
+package ru.hh.jclient.common.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs every task on a new virtual thread. Virtual threads are looked up at runtime, as the library is built for JDK 17:
+ * {@link #create} gives nothing on a JDK without them or with them in preview only.
+ * <p>
+ * A virtual thread lives as long as its task, so context installed by the task, e.g. with
+ * {@link ru.hh.jclient.common.util.storage.StorageUtils.Transfers}, dies with it and never stays in a pooled thread.
+ */
+public final class VirtualThreadExecutor implements Executor {
+  private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadExecutor.class);
+
+  private final ThreadFactory threadFactory;
+
+  private VirtualThreadExecutor(ThreadFactory threadFactory) {
+    this.threadFactory = threadFactory;
+  }
+
+  /**
+   * @param threadNamePrefix threads are named with it and a sequence number
+   * @return executor, or empty if virtual threads are not available
+   */
+  public static Optional<Executor> create(String threadNamePrefix) {
+    return createThreadFactory(threadNamePrefix).map(VirtualThreadExecutor::new);
+  }
+
+  public static boolean isSupported() {
+    return createThreadFactory("").isPresent();
+  }
+
+  private static Optional<ThreadFactory> createThreadFactory(String threadNamePrefix) {
+    try {
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, threadNamePrefix, 0L);
+      return Optional.of((ThreadFactory) builderClass.getMethod("factory").invoke(builder));
+    } catch (ClassNotFoundException | NoSuchMethodException e) {
+      return Optional.empty();
+    } catch (InvocationTargetException | IllegalAccessException e) {
+      // virtual threads are a preview feature that is not enabled
+      LOGGER.debug("Virtual threads are not available", e);
+      return Optional.empty();
+    }
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    threadFactory.newThread(command).start();
+  }
+}
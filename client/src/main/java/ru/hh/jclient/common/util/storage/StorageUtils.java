@@ -1,11 +1,11 @@
 package ru.hh.jclient.common.util.storage;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Objects;
+import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
-import static java.util.stream.Collectors.toList;
 
 public class StorageUtils {
 
@@ -27,6 +27,7 @@ public class StorageUtils {
   public static class Storages {
 
     protected Collection<Storage<?>> storages;
+    private volatile Snapshot lastSnapshot;
 
     protected Storages(Collection<Storage<?>> storages) {
       this.storages = new CopyOnWriteArrayList<>(storages); // can be changed concurrently via add
@@ -38,7 +39,31 @@ public class StorageUtils {
     }
 
     public Transfers prepare() {
-      return new Transfers(storages.stream().map(Storage::prepareTransferToAnotherThread).filter(Objects::nonNull).collect(toList()));
+      List<Transfer> transfers = new ArrayList<>(storages.size());
+      for (Storage<?> storage : storages) {
+        Transfer transfer = storage.prepareTransferToAnotherThread();
+        if (transfer != null) {
+          transfers.add(transfer);
+        }
+      }
+      return new Transfers(transfers);
+    }
+
+    /**
+     * Same as {@code copy().add(storage)} that can not be changed, but without copying for every call:
+     * the last snapshot is reused while the storage is the same one and no storages are added.
+     */
+    public Snapshot snapshotWith(Storage<?> storage) {
+      Snapshot snapshot = lastSnapshot;
+      int size = storages.size();
+      if (snapshot == null || snapshot.added != storage || snapshot.sourceSize != size) {
+        Storage<?>[] source = storages.toArray(new Storage<?>[0]);
+        Storage<?>[] all = Arrays.copyOf(source, source.length + 1);
+        all[source.length] = storage;
+        snapshot = new Snapshot(all, storage, source.length);
+        lastSnapshot = snapshot;
+      }
+      return snapshot;
     }
 
     public Storages copy() {
@@ -47,20 +72,56 @@ public class StorageUtils {
 
   }
 
+  /**
+   * Immutable set of storages to prepare transfers of, see {@link Storages#snapshotWith}.
+   */
+  public static final class Snapshot {
+
+    private final Storage<?>[] storages;
+    private final Storage<?> added;
+    private final int sourceSize;
+
+    private Snapshot(Storage<?>[] storages, Storage<?> added, int sourceSize) {
+      this.storages = storages;
+      this.added = added;
+      this.sourceSize = sourceSize;
+    }
+
+    public Transfers prepare() {
+      Transfer[] transfers = new Transfer[storages.length];
+      int count = 0;
+      for (Storage<?> storage : storages) {
+        Transfer transfer = storage.prepareTransferToAnotherThread();
+        if (transfer != null) {
+          transfers[count++] = transfer;
+        }
+      }
+      return new Transfers(count == transfers.length ? transfers : Arrays.copyOf(transfers, count));
+    }
+  }
+
   public static class Transfers {
 
-    private Collection<Transfer> transfers;
+    private final Transfer[] transfers;
 
     protected Transfers(Collection<Transfer> transfers) {
+      this(transfers.toArray(new Transfer[0]));
+    }
+
+    private Transfers(Transfer[] transfers) {
       this.transfers = transfers;
     }
 
     public void perform() {
-      transfers.forEach(Transfer::perform);
+      for (Transfer transfer : transfers) {
+        transfer.perform();
+      }
     }
 
     public void rollback() {
-      transfers.forEach(Transfer::rollback);
+      for (Transfer transfer : transfers) {
+        transfer.rollback();
+      }
     }
   }
 
@@ -77,7 +77,7 @@ public class ThreadLocalStorage<T> implements Storage<T> {
 
     @Override
     public void perform() {
-      if (!parentHasInitValue) {
+      if (!parentHasInitValue && LOG.isWarnEnabled()) {
         T currentValue = parent.get();
         if (currentValue != null) {
           LOG.warn("[{}] Replacing existing object {} with {}", parent.getClass().getName(), currentValue, valueForTransfer);
@@ -88,9 +88,11 @@ public class ThreadLocalStorage<T> implements Storage<T> {
 
     @Override
     public void rollback() {
-      T currentValue = parent.get();
-      if (currentValue != valueForTransfer) {
-        LOG.warn("[{}] Unexpected object when removing {} - was {}", parent.getClass().getName(), valueForTransfer, currentValue);
+      if (LOG.isWarnEnabled()) {
+        T currentValue = parent.get();
+        if (currentValue != valueForTransfer) {
+          LOG.warn("[{}] Unexpected object when removing {} - was {}", parent.getClass().getName(), valueForTransfer, currentValue);
+        }
       }
       parent.clear();
       valueForTransfer = null;
@@ -13,5 +13,6 @@ public final class HttpStatuses {
   public static final int SERVICE_UNAVAILABLE = 503;
   public static final int GATEWAY_TIMEOUT = 504;
   public static final int SERVER_TIMEOUT = 577;
+  public static final int CONCURRENCY_LIMIT_EXCEEDED = 579;
   public static final int CONNECT_TIMEOUT_ERROR = 599;
 }